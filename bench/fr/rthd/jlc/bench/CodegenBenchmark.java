@@ -0,0 +1,101 @@
+package fr.rthd.jlc.bench;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LLVM code generation benchmark, the output being discarded. The code
+ * generation modifies its input, so each call takes its own copy, prepared
+ * before the iteration, and the score is the time of a batch of calls
+ * @author RomainTHD
+ */
+@NonNls
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = CodegenBenchmark.BATCH_SIZE)
+@Measurement(iterations = 5, batchSize = CodegenBenchmark.BATCH_SIZE)
+@Fork(1)
+public class CodegenBenchmark {
+    /**
+     * Default optimization level, of the optimizer and the code generation
+     */
+    private static final int LEVEL = 1;
+
+    /**
+     * Number of calls per iteration, each with its own copy of the input
+     */
+    static final int BATCH_SIZE = 8;
+
+    /**
+     * Compile every program of the input
+     * @param optimized Optimized programs
+     * @return Number of emitted instructions
+     */
+    @Benchmark
+    public int compile(Optimized optimized) {
+        int instructions = 0;
+        for (Compilation c : optimized.next()) {
+            instructions += Corpus.compile(c.tree, c.env, LEVEL);
+        }
+        return instructions;
+    }
+
+    /**
+     * Optimized programs, one copy for each call of the iteration since the
+     * code generation modifies them
+     */
+    @State(Scope.Thread)
+    public static class Optimized {
+        /**
+         * Copies of the optimized programs not used yet
+         */
+        private final Deque<List<Compilation>> _copies = new ArrayDeque<>();
+
+        /**
+         * Parse, type check and optimize the input, once for each call of
+         * the iteration
+         * @param corpus Input
+         * @throws Exception On syntax error
+         */
+        @Setup(Level.Iteration)
+        public void setup(Corpus corpus) throws Exception {
+            _copies.clear();
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                List<Compilation> programs = new ArrayList<>();
+                for (String source : corpus.getSources()) {
+                    Compilation c = Compilation.typechecked(source);
+                    programs.add(new Compilation(
+                        Corpus.optimize(c.tree, c.env, LEVEL),
+                        c.env
+                    ));
+                }
+                _copies.add(programs);
+            }
+        }
+
+        /**
+         * @return Next unused copy of the programs
+         */
+        @NotNull
+        public List<Compilation> next() {
+            return _copies.pop();
+        }
+    }
+}
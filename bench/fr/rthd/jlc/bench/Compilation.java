@@ -0,0 +1,52 @@
+package fr.rthd.jlc.bench;
+
+import fr.rthd.jlc.env.ClassType;
+import fr.rthd.jlc.env.Env;
+import fr.rthd.jlc.env.FunType;
+import javalette.Absyn.Prog;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Program in the middle of its compilation, with its environment
+ * @author RomainTHD
+ */
+@NonNls
+class Compilation {
+    /**
+     * Program
+     */
+    @NotNull
+    public final Prog tree;
+
+    /**
+     * Environment
+     */
+    @NotNull
+    public final Env<?, FunType, ClassType<?>> env;
+
+    /**
+     * Constructor
+     * @param tree Program
+     * @param env Environment
+     */
+    Compilation(@NotNull Prog tree, @NotNull Env<?, FunType, ClassType<?>> env) {
+        this.tree = tree;
+        this.env = env;
+    }
+
+    /**
+     * Parse and type check a program
+     * @param source Source code
+     * @return Type checked program
+     * @throws Exception On syntax error
+     */
+    @NotNull
+    static Compilation typechecked(@NotNull String source) throws Exception {
+        Env<?, FunType, ClassType<?>> env = Corpus.newEnv();
+        return new Compilation(
+            Corpus.typecheck(Corpus.parse(source), env),
+            env
+        );
+    }
+}
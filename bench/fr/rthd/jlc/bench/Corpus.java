@@ -0,0 +1,224 @@
+package fr.rthd.jlc.bench;
+
+import fr.rthd.jlc.TypeUniverse;
+import fr.rthd.jlc.compiler.llvm.LLVMCompiler;
+import fr.rthd.jlc.env.ClassType;
+import fr.rthd.jlc.env.Env;
+import fr.rthd.jlc.env.FunType;
+import fr.rthd.jlc.internal.CorpusGenerator;
+import fr.rthd.jlc.optimizer.Optimizer;
+import fr.rthd.jlc.typechecker.TypeChecker;
+import javalette.Absyn.Prog;
+import javalette.Yylex;
+import javalette.parser;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark inputs, either the programs of the testsuite or a generated
+ * program of a given number of functions. Also provides the phases of the
+ * compiler, run exactly like `Main` does
+ * @author RomainTHD
+ */
+@NonNls
+@State(Scope.Benchmark)
+public class Corpus {
+    /**
+     * Input name of the testsuite
+     */
+    public static final String TESTSUITE = "testsuite";
+
+    /**
+     * Prefix of the generated inputs, followed by the number of functions
+     */
+    public static final String SYNTHETIC = "synthetic-";
+
+    /**
+     * Testsuite directories, relative to the repository root
+     */
+    private static final String[] TESTSUITE_DIRS = {
+        "tester/testsuite/good",
+        "tester/testsuite/extensions",
+    };
+
+    /**
+     * Input name
+     */
+    @Param({
+        TESTSUITE,
+        SYNTHETIC + "100",
+        SYNTHETIC + "1000",
+        SYNTHETIC + "10000",
+    })
+    public String input;
+
+    /**
+     * Sources of the input
+     */
+    private List<String> _sources;
+
+    /**
+     * Parse a program
+     * @param source Source code
+     * @return Parsed program
+     * @throws Exception On syntax error
+     */
+    @NotNull
+    public static Prog parse(@NotNull String source) throws Exception {
+        return new parser(new Yylex(new StringReader(source))).pProg();
+    }
+
+    /**
+     * @return New environment, for a single compilation
+     */
+    @NotNull
+    public static Env<?, FunType, ClassType<?>> newEnv() {
+        return new Env<>(new TypeUniverse());
+    }
+
+    /**
+     * Type check a program
+     * @param parsed Parsed program
+     * @param env Environment
+     * @return Type checked program
+     */
+    @NotNull
+    public static Prog typecheck(
+        @NotNull Prog parsed,
+        @NotNull Env<?, FunType, ClassType<?>> env
+    ) {
+        return new TypeChecker().accept(parsed, env);
+    }
+
+    /**
+     * Optimize a program
+     * @param checked Type checked program
+     * @param env Environment
+     * @param level Optimization level
+     * @return Optimized program
+     */
+    @NotNull
+    public static Prog optimize(
+        @NotNull Prog checked,
+        @NotNull Env<?, FunType, ClassType<?>> env,
+        int level
+    ) {
+        return new Optimizer(level).accept(checked, env);
+    }
+
+    /**
+     * Generate the LLVM IR of a program, and discard it
+     * @param optimized Optimized program
+     * @param env Environment
+     * @param level Optimization level, the same as the one of the optimizer
+     * @return Number of emitted instructions
+     */
+    public static int compile(
+        @NotNull Prog optimized,
+        @NotNull Env<?, FunType, ClassType<?>> env,
+        int level
+    ) {
+        LLVMCompiler compiler = new LLVMCompiler(
+            null,
+            OutputStream.nullOutputStream(),
+            false,
+            level
+        );
+        compiler.accept(optimized, env);
+        return compiler.getInstructionCount();
+    }
+
+    /**
+     * Check if a program compiles, some testsuite programs use features not
+     * supported yet
+     * @param source Source code
+     * @return If it compiles or not
+     */
+    private static boolean compiles(@NotNull String source) {
+        try {
+            Env<?, FunType, ClassType<?>> env = newEnv();
+            compile(optimize(typecheck(parse(source), env), env, 1), env, 1);
+            return true;
+        } catch (Exception | Error e) {
+            return false;
+        }
+    }
+
+    /**
+     * Load the testsuite programs that compile
+     * @return Sources, sorted by path
+     * @throws IOException If the testsuite can't be read
+     */
+    @NotNull
+    private static List<String> loadTestsuite() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        for (String dir : TESTSUITE_DIRS) {
+            try (Stream<Path> files = Files.walk(Paths.get(dir))) {
+                paths.addAll(files
+                    .filter(f -> f.toString().endsWith(".jl"))
+                    .collect(Collectors.toList()));
+            }
+        }
+        Collections.sort(paths);
+
+        List<String> sources = new ArrayList<>();
+        for (Path path : paths) {
+            String source = Files.readString(path, StandardCharsets.UTF_8);
+            if (compiles(source)) {
+                sources.add(source);
+            }
+        }
+
+        if (sources.isEmpty()) {
+            throw new IOException(
+                "No testsuite program found, run from the repository root"
+            );
+        }
+
+        return sources;
+    }
+
+    /**
+     * Load the input
+     * @throws IOException If the testsuite can't be read
+     */
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        if (input.equals(TESTSUITE)) {
+            _sources = loadTestsuite();
+        } else if (input.startsWith(SYNTHETIC)) {
+            _sources = Collections.singletonList(new CorpusGenerator().set(
+                "functions",
+                Long.parseLong(input.substring(SYNTHETIC.length()))
+            ).generate());
+        } else {
+            throw new IllegalArgumentException("Unknown input: " + input);
+        }
+    }
+
+    /**
+     * @return Sources of the input
+     */
+    @NotNull
+    public List<String> getSources() {
+        return _sources;
+    }
+}
@@ -0,0 +1,59 @@
+package fr.rthd.jlc.bench;
+
+import fr.rthd.jlc.Main;
+import org.jetbrains.annotations.NonNls;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole compilation benchmark, from the standard input to a discarded
+ * standard output, like `jlc < file.jl`
+ * @author RomainTHD
+ */
+@NonNls
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+    /**
+     * Discarded output
+     */
+    private static final PrintStream NULL = new PrintStream(
+        OutputStream.nullOutputStream()
+    );
+
+    /**
+     * Compile every program of the input
+     * @param corpus Input
+     * @return Sum of the status codes, 0 if everything compiled
+     */
+    @Benchmark
+    public int compile(Corpus corpus) {
+        int status = 0;
+        for (String source : corpus.getSources()) {
+            status += Main.compile(
+                new String[0],
+                new ByteArrayInputStream(
+                    source.getBytes(StandardCharsets.UTF_8)
+                ),
+                NULL,
+                NULL,
+                null
+            );
+        }
+        return status;
+    }
+}
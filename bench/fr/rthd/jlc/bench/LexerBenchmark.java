@@ -0,0 +1,177 @@
+package fr.rthd.jlc.bench;
+
+import fr.rthd.jlc.utils.SourceReader;
+import javalette.Yylex;
+import javalette.sym;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexer benchmark on large generated sources, comparing the legacy input
+ * path, copying the whole file into a string, with the memory-mapped one.
+ * Each call lexes the whole source once, and the allocations are reported
+ * through `-prof gc`. The legacy path needs a large heap for the largest
+ * sources. Run alone with `make bench BENCH_FLAGS="-prof gc LexerBenchmark"`
+ * @author RomainTHD
+ * @see SourceReader
+ */
+@NonNls
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LexerBenchmark {
+    /**
+     * Function template, `%d` is replaced by a unique ID
+     */
+    private static final String TEMPLATE = String.join(
+        "\n",
+        "// Generated function %1$d",
+        "int f%1$d(int n) {",
+        "    int i = 0, acc = %1$d;",
+        "    double d = 1.5;",
+        "    while (i < n) {",
+        "        if (i %% 3 == 0 && acc >= 0) {",
+        "            acc = acc + i * 2 - 1;",
+        "        } else {",
+        "            acc--;",
+        "        }",
+        "        i++;",
+        "    }",
+        "    printString(\"f%1$d done\");",
+        "    return acc;",
+        "}",
+        "",
+        ""
+    );
+
+    /**
+     * Lex the whole source
+     * @param source Source
+     * @return Number of tokens
+     * @throws Exception On lexing error
+     */
+    @Benchmark
+    public long lex(Source source) throws Exception {
+        long tokens = 0;
+        try (Reader reader = source.open()) {
+            Yylex lex = new Yylex(reader);
+            while (lex.next_token().sym != sym.EOF) {
+                ++tokens;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Generated source file
+     */
+    @State(Scope.Benchmark)
+    public static class Source {
+        /**
+         * Source size, in MB
+         */
+        @Param({"10", "100", "500"})
+        public int sizeMB;
+
+        /**
+         * Input path, `legacy` or `mapped`
+         */
+        @Param({"legacy", "mapped"})
+        public String reader;
+
+        /**
+         * Generated file
+         */
+        private Path _path;
+
+        /**
+         * Generate the source file
+         * @throws IOException On write error
+         */
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            _path = Files.createTempFile("jlc-bench-" + sizeMB + "MB-", ".jl");
+            long target = (long) sizeMB << 20;
+            long written = 0;
+
+            try (BufferedWriter w = Files.newBufferedWriter(
+                _path,
+                StandardCharsets.UTF_8
+            )) {
+                for (int i = 0; written < target; ++i) {
+                    String f = String.format(TEMPLATE, i);
+                    w.write(f);
+                    written += f.length();
+                }
+                w.write("int main() {\n    return f0(10);\n}\n");
+            }
+        }
+
+        /**
+         * Delete the source file
+         * @throws IOException On delete error
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(_path);
+        }
+
+        /**
+         * @return Reader of the source, through the chosen input path
+         * @throws IOException On read error
+         */
+        @NotNull
+        Reader open() throws IOException {
+            return "mapped".equals(reader)
+                ? SourceReader.fromFile(_path.toString())
+                : legacyReader(_path);
+        }
+
+        /**
+         * Legacy input path, the whole file is copied into a string
+         * @param path File path
+         * @return Reader
+         * @throws IOException On read error
+         */
+        @NotNull
+        private static Reader legacyReader(@NotNull Path path)
+            throws IOException {
+            StringBuilder input = new StringBuilder();
+            try (BufferedReader r = new BufferedReader(
+                new FileReader(path.toFile())
+            )) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    input.append(line).append("\n");
+                }
+            }
+            return new StringReader(input.toString());
+        }
+    }
+}
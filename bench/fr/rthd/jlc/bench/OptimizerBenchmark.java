@@ -0,0 +1,98 @@
+package fr.rthd.jlc.bench;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optimizer benchmark, at each optimization level. The optimizer modifies
+ * its input, so each call takes its own copy, prepared before the iteration,
+ * and the score is the time of a batch of calls
+ * @author RomainTHD
+ */
+@NonNls
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = OptimizerBenchmark.BATCH_SIZE)
+@Measurement(iterations = 5, batchSize = OptimizerBenchmark.BATCH_SIZE)
+@Fork(1)
+public class OptimizerBenchmark {
+    /**
+     * Number of calls per iteration, each with its own copy of the input
+     */
+    static final int BATCH_SIZE = 8;
+
+    /**
+     * Optimize every program of the input
+     * @param checked Type checked programs
+     * @param bh Blackhole
+     */
+    @Benchmark
+    public void optimize(Checked checked, Blackhole bh) {
+        for (Compilation c : checked.next()) {
+            bh.consume(Corpus.optimize(c.tree, c.env, checked.level));
+        }
+    }
+
+    /**
+     * Type checked programs, one copy for each call of the iteration since
+     * the optimizer modifies their environment
+     */
+    @State(Scope.Thread)
+    public static class Checked {
+        /**
+         * Optimization level, like the `-0z`, `-0s`, `-0` to `-3` flags
+         */
+        @Param({"-2", "-1", "0", "1", "2", "3"})
+        public int level;
+
+        /**
+         * Copies of the type checked programs not used yet
+         */
+        private final Deque<List<Compilation>> _copies = new ArrayDeque<>();
+
+        /**
+         * Parse and type check the input, once for each call of the
+         * iteration
+         * @param corpus Input
+         * @throws Exception On syntax error
+         */
+        @Setup(Level.Iteration)
+        public void setup(Corpus corpus) throws Exception {
+            _copies.clear();
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                List<Compilation> programs = new ArrayList<>();
+                for (String source : corpus.getSources()) {
+                    programs.add(Compilation.typechecked(source));
+                }
+                _copies.add(programs);
+            }
+        }
+
+        /**
+         * @return Next unused copy of the programs
+         */
+        @NotNull
+        public List<Compilation> next() {
+            return _copies.pop();
+        }
+    }
+}
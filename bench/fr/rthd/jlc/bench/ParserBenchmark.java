@@ -0,0 +1,38 @@
+package fr.rthd.jlc.bench;
+
+import org.jetbrains.annotations.NonNls;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexer and parser benchmark, the lexer being driven by the parser
+ * @author RomainTHD
+ */
+@NonNls
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    /**
+     * Parse every program of the input
+     * @param corpus Input
+     * @param bh Blackhole
+     * @throws Exception On syntax error
+     */
+    @Benchmark
+    public void parse(Corpus corpus, Blackhole bh) throws Exception {
+        for (String source : corpus.getSources()) {
+            bh.consume(Corpus.parse(source));
+        }
+    }
+}
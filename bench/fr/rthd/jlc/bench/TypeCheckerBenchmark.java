@@ -0,0 +1,91 @@
+package fr.rthd.jlc.bench;
+
+import javalette.Absyn.Prog;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Type checker benchmark. Each call takes its own copy of the parsed
+ * programs, prepared before the iteration, and the score is the time of a
+ * batch of calls
+ * @author RomainTHD
+ */
+@NonNls
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = TypeCheckerBenchmark.BATCH_SIZE)
+@Measurement(iterations = 5, batchSize = TypeCheckerBenchmark.BATCH_SIZE)
+@Fork(1)
+public class TypeCheckerBenchmark {
+    /**
+     * Number of calls per iteration, each with its own copy of the input
+     */
+    static final int BATCH_SIZE = 8;
+
+    /**
+     * Type check every program of the input
+     * @param parsed Parsed programs
+     * @param bh Blackhole
+     */
+    @Benchmark
+    public void typecheck(Parsed parsed, Blackhole bh) {
+        for (Prog p : parsed.next()) {
+            bh.consume(Corpus.typecheck(p, Corpus.newEnv()));
+        }
+    }
+
+    /**
+     * Parsed programs, one copy for each call of the iteration since the
+     * following phases may modify them
+     */
+    @State(Scope.Thread)
+    public static class Parsed {
+        /**
+         * Copies of the parsed programs not used yet
+         */
+        private final Deque<List<Prog>> _copies = new ArrayDeque<>();
+
+        /**
+         * Parse the input, once for each call of the iteration
+         * @param corpus Input
+         * @throws Exception On syntax error
+         */
+        @Setup(Level.Iteration)
+        public void setup(Corpus corpus) throws Exception {
+            _copies.clear();
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                List<Prog> programs = new ArrayList<>();
+                for (String source : corpus.getSources()) {
+                    programs.add(Corpus.parse(source));
+                }
+                _copies.add(programs);
+            }
+        }
+
+        /**
+         * @return Next unused copy of the programs
+         */
+        @NotNull
+        public List<Prog> next() {
+            return _copies.pop();
+        }
+    }
+}
@@ -1,2 +1,2 @@
 #!/bin/sh
-sudo apt-get install -y make python3 clang bnfc default-jdk nasm llvm llvm-dev
+sudo apt-get install -y make python3 clang bnfc default-jdk nasm llvm llvm-dev curl
@@ -0,0 +1,69 @@
+#!/usr/bin/env python3
+"""Thin client of the JLC compile server (`jlc --server`).
+
+Usage: jlc_client.py <socket> [<jlc arguments>...]
+
+Forwards the arguments, the working directory and the standard input to the
+server, and replays its standard output, standard error and exit status.
+Exits with status 75 without writing anything if the server is unreachable,
+so that the caller can fall back to a cold compiler.
+"""
+import os
+import socket
+import struct
+import sys
+
+UNREACHABLE = 75
+
+
+def encode(s):
+    data = s.encode("utf-8", "surrogateescape")
+    return struct.pack(">i", len(data)) + data
+
+
+def read_exact(sock, n):
+    buf = b""
+    while len(buf) < n:
+        chunk = sock.recv(n - len(buf))
+        if not chunk:
+            raise ConnectionError("Connection closed by the server")
+        buf += chunk
+    return buf
+
+
+def main():
+    path, args = sys.argv[1], sys.argv[2:]
+    sock = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+    try:
+        sock.connect(path)
+    except OSError:
+        sys.exit(UNREACHABLE)
+
+    request = encode(os.getcwd()) + struct.pack(">i", len(args))
+    for arg in args:
+        request += encode(arg)
+    sock.sendall(request)
+
+    outputs = {ord("O"): sys.stdout.buffer, ord("E"): sys.stderr.buffer}
+    while True:
+        kind, length = struct.unpack(">ci", read_exact(sock, 5))
+        data = read_exact(sock, length)
+        if kind == b"X":
+            sys.stdout.flush()
+            sys.stderr.flush()
+            sys.exit(struct.unpack(">i", data)[0] & 0xFF)
+        elif kind == b"I":
+            while True:
+                chunk = sys.stdin.buffer.read1(1 << 16)
+                if not chunk:
+                    break
+                sock.sendall(chunk)
+            sock.shutdown(socket.SHUT_WR)
+        else:
+            out = outputs[kind[0]]
+            out.write(data)
+            out.flush()
+
+
+if __name__ == "__main__":
+    main()
@@ -1,10 +1,13 @@
 package fr.rthd.jlc;
 
+import fr.rthd.jlc.optimizer.PassManager;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -43,6 +46,14 @@ public class ArgParse {
      */
     public final int optimizationLevel;
 
+    /**
+     * Optimizer passes run instead of the pipeline of the optimization
+     * level, null if not specified
+     * Flag --passes=<pass>,<pass>...
+     */
+    @Nullable
+    public final List<String> passes;
+
     /**
      * Typechecking only
      * Flag -t, --typecheck or --typecheck-only
@@ -55,6 +66,12 @@ public class ArgParse {
     @Nullable
     public final String inputFile;
 
+    /**
+     * All input files, in order, used by the batch mode
+     */
+    @NotNull
+    public final List<String> inputFiles;
+
     /**
      * Output file, stdout if not specified
      * Flag -o or --output <file>
@@ -81,35 +98,100 @@ public class ArgParse {
      */
     public final boolean printAST;
 
+    /**
+     * Per-phase statistics report format
+     * Flags --time-passes or --time-passes=json
+     */
+    @NotNull
+    public final TimePassesFormat timePasses;
+
+    /**
+     * Run a compile server instead of compiling
+     * Flag --server
+     */
+    public final boolean server;
+
+    /**
+     * Unix socket of the compile server, default one if not specified
+     * Flag --socket <path>
+     */
+    @Nullable
+    public final String socketPath;
+
+    /**
+     * Compile all input files concurrently
+     * Flag --batch
+     */
+    public final boolean batch;
+
+    /**
+     * Output directory of the batch mode, next to each input if not specified
+     * Flag -d or --output-dir <dir>
+     */
+    @Nullable
+    public final String outputDirectory;
+
+    /**
+     * Keep descriptive names in the generated IR instead of compact ones
+     * Flag --readable-ir
+     */
+    public final boolean readableIR;
+
     /**
      * Constructor, builder pattern
      * @param showHelp Show help or not
      * @param verbosity Verbosity level
      * @param optimizationLevel Optimization level
+     * @param passes Optimizer passes
      * @param typecheckOnly Typechecking only
      * @param inputFile Input file
+     * @param inputFiles All input files
      * @param outputFile Output file
      * @param backend Specified backend
      * @param printAST Print the AST or not
+     * @param timePasses Per-phase statistics report format
+     * @param server Run a compile server or not
+     * @param socketPath Unix socket of the compile server
+     * @param batch Batch mode or not
+     * @param outputDirectory Output directory of the batch mode
+     * @param readableIR Descriptive IR names or not
      */
     private ArgParse(
         boolean showHelp,
         @NotNull VerboseLevel verbosity,
         int optimizationLevel,
+        @Nullable List<String> passes,
         boolean typecheckOnly,
         @Nullable String inputFile,
+        @NotNull List<String> inputFiles,
         @Nullable String outputFile,
         @NotNull Backend backend,
-        boolean printAST
+        boolean printAST,
+        @NotNull TimePassesFormat timePasses,
+        boolean server,
+        @Nullable String socketPath,
+        boolean batch,
+        @Nullable String outputDirectory,
+        boolean readableIR
     ) {
         this.showHelp = showHelp;
         this.verbosity = verbosity;
         this.optimizationLevel = optimizationLevel;
+        this.passes = passes == null
+            ? null
+            : Collections.unmodifiableList(passes);
         this.typecheckOnly = typecheckOnly;
         this.inputFile = inputFile;
+        this.inputFiles = Collections.unmodifiableList(inputFiles);
         this.outputFile = outputFile;
         this.backend = backend;
         this.printAST = printAST;
+        this.timePasses = timePasses;
+        this.server = server;
+        this.socketPath = socketPath;
+        this.batch = batch;
+        this.outputDirectory = outputDirectory;
+        this.readableIR = readableIR;
     }
 
     /**
@@ -130,11 +212,19 @@ public class ArgParse {
         boolean showHelp = false;
         VerboseLevel verbosity = VerboseLevel.WARNING;
         int optimizationLevel = 1;
+        List<String> passes = null;
         boolean typecheckOnly = false;
         String inputFile = null;
+        List<String> inputFiles = new ArrayList<>();
         String outputFile = null;
         Backend backend = Backend.LLVM;
         boolean printAST = false;
+        TimePassesFormat timePasses = TimePassesFormat.NONE;
+        boolean server = false;
+        String socketPath = null;
+        boolean batch = false;
+        boolean readableIR = false;
+        String outputDirectory = null;
 
         String linkedFlag = null;
         for (String arg : args) {
@@ -211,6 +301,27 @@ public class ArgParse {
                     printAST = true;
                     break;
 
+                case "--time-passes":
+                case "--time-passes=table":
+                    timePasses = TimePassesFormat.TABLE;
+                    break;
+
+                case "--time-passes=json":
+                    timePasses = TimePassesFormat.JSON;
+                    break;
+
+                case "--server":
+                    server = true;
+                    break;
+
+                case "--batch":
+                    batch = true;
+                    break;
+
+                case "--readable-ir":
+                    readableIR = true;
+                    break;
+
                 case "-h":
                 case "--help":
                     showHelp = true;
@@ -219,7 +330,13 @@ public class ArgParse {
                 // DEFAULT
 
                 default:
-                    processed = false;
+                    if (arg.startsWith("--passes=")) {
+                        passes = parsePasses(
+                            arg.substring("--passes=".length())
+                        );
+                    } else {
+                        processed = false;
+                    }
                     break;
             }
 
@@ -244,6 +361,7 @@ public class ArgParse {
             if (linkedFlag == null) {
                 // A situation like `jlc <file>`
                 inputFile = arg;
+                inputFiles.add(arg);
                 continue;
             }
 
@@ -253,6 +371,15 @@ public class ArgParse {
                     outputFile = arg;
                     break;
 
+                case "--socket":
+                    socketPath = arg;
+                    break;
+
+                case "-d":
+                case "--output-dir":
+                    outputDirectory = arg;
+                    break;
+
                 case "-b":
                 case "--backend":
                     switch (arg.toLowerCase()) {
@@ -305,18 +432,60 @@ public class ArgParse {
             ));
         }
 
+        if (batch && outputFile != null) {
+            throw new IllegalArgumentException(
+                "Flag '--batch' can't be used with '--output', use '--output-dir'"
+            );
+        }
+
+        if (batch && inputFiles.isEmpty()) {
+            throw new IllegalArgumentException("No input file for '--batch'");
+        }
+
         return new ArgParse(
             showHelp,
             verbosity,
             optimizationLevel,
+            passes,
             typecheckOnly,
             inputFile,
+            inputFiles,
             outputFile,
             backend,
-            printAST
+            printAST,
+            timePasses,
+            server,
+            socketPath,
+            batch,
+            outputDirectory,
+            readableIR
         );
     }
 
+    /**
+     * Parse a list of optimizer passes
+     * @param list Comma-separated pass names, possibly empty
+     * @return Pass names
+     */
+    @NotNull
+    private static List<String> parsePasses(@NotNull String list) {
+        List<String> passes = new ArrayList<>();
+        if (list.isEmpty()) {
+            return passes;
+        }
+
+        for (String name : list.split(",")) {
+            if (!PassManager.exists(name)) {
+                throw new IllegalArgumentException(String.format(
+                    "Unknown optimizer pass '%s'",
+                    name
+                ));
+            }
+            passes.add(name);
+        }
+        return passes;
+    }
+
     /**
      * Verbose level
      */
@@ -338,4 +507,13 @@ public class ArgParse {
         RISCV,
         JVM,
     }
+
+    /**
+     * Per-phase statistics report formats
+     */
+    public enum TimePassesFormat {
+        NONE,
+        TABLE,
+        JSON,
+    }
 }
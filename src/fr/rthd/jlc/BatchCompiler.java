@@ -0,0 +1,272 @@
+package fr.rthd.jlc;
+
+import fr.rthd.jlc.internal.Timer;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Batch mode, compiling many programs concurrently in a single JVM. Each
+ * program is compiled on its own thread with its own environment
+ * @author RomainTHD
+ * @see Main#compile(ArgParse, String, String, java.io.InputStream, PrintStream, PrintStream)
+ */
+@NonNls
+class BatchCompiler {
+    /**
+     * Parsed arguments
+     */
+    @NotNull
+    private final ArgParse _opt;
+
+    /**
+     * Working directory of the caller, null for the current one
+     */
+    @Nullable
+    private final Path _workingDir;
+
+    /**
+     * Constructor
+     * @param opt Parsed arguments
+     * @param workingDir Working directory of the caller
+     */
+    BatchCompiler(@NotNull ArgParse opt, @Nullable Path workingDir) {
+        _opt = opt;
+        _workingDir = workingDir;
+    }
+
+    /**
+     * Get the output path of an input file. Relative inputs keep their
+     * directory structure inside the output directory, so that inputs with
+     * the same name don't collide
+     * @param input Input file, as given by the user
+     * @return Output file
+     */
+    @NotNull
+    private Path getOutputPath(@NotNull String input) {
+        Path in = Paths.get(input).normalize();
+        String name = Main.stripSuffix(in.getFileName().toString()) + ".ll";
+
+        if (_opt.outputDirectory == null) {
+            return Paths.get(Main.resolve(_workingDir, input))
+                        .resolveSibling(name);
+        }
+
+        Path dir = Paths.get(Main.resolve(_workingDir, _opt.outputDirectory));
+        if (!in.isAbsolute() && !in.startsWith("..")) {
+            return dir.resolve(in).resolveSibling(name);
+        } else {
+            return dir.resolve(name);
+        }
+    }
+
+    /**
+     * Compile a single input
+     * @param input Input file, as given by the user
+     * @param output Output file
+     * @return Compilation result
+     */
+    @NotNull
+    private Result compileOne(@NotNull String input, @NotNull Path output) {
+        ByteArrayOutputStream errBuffer = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream(
+            errBuffer,
+            true,
+            StandardCharsets.UTF_8
+        );
+        Timer timer = new Timer().start();
+        int status;
+
+        try {
+            Path parent = output.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            status = Main.compile(
+                _opt,
+                Main.resolve(_workingDir, input),
+                output.toString(),
+                new ByteArrayInputStream(new byte[0]),
+                new PrintStream(OutputStream.nullOutputStream()),
+                err
+            );
+        } catch (IOException e) {
+            err.println("ERROR");
+            err.println("IO error: " + e.getMessage());
+            status = 1;
+        }
+
+        return new Result(
+            status,
+            timer.stop(),
+            errBuffer.toString(StandardCharsets.UTF_8)
+        );
+    }
+
+    /**
+     * Compile all inputs and report their status in input order
+     * @param out Standard output, for the report
+     * @param err Error output
+     * @return Status code, 0 if every input compiled
+     */
+    int run(@NotNull PrintStream out, @NotNull PrintStream err) {
+        List<String> inputs = _opt.inputFiles;
+        List<Path> outputs = new ArrayList<>();
+        Map<Path, String> owners = new HashMap<>();
+
+        for (String input : inputs) {
+            Path output = getOutputPath(input);
+            String previous = owners.put(output, input);
+            if (previous != null) {
+                err.println("ERROR");
+                err.println(
+                    "IO error: `" + previous + "` and `" + input
+                    + "` would both be compiled to `" + output + "`"
+                );
+                return 1;
+            }
+            outputs.add(output);
+        }
+
+        Timer timer = new Timer().start();
+        ExecutorService pool = Executors.newWorkStealingPool();
+        List<Future<Result>> results = new ArrayList<>();
+        for (int i = 0; i < inputs.size(); ++i) {
+            String input = inputs.get(i);
+            Path output = outputs.get(i);
+            results.add(pool.submit(() -> compileOne(input, output)));
+        }
+
+        int failures = 0;
+        for (int i = 0; i < inputs.size(); ++i) {
+            Result res;
+            try {
+                res = results.get(i).get();
+            } catch (InterruptedException | ExecutionException e) {
+                res = new Result(-1, 0, "ERROR\n" + e.getMessage() + "\n");
+            }
+
+            if (res.status != 0) {
+                ++failures;
+            }
+
+            out.println(String.format(
+                "%-6s %10.3f ms  %s%s",
+                res.status == 0 ? "OK" : "ERROR",
+                res.time / 1_000.0,
+                inputs.get(i),
+                res.status == 0 ? " -> " + outputs.get(i) : res.getMessage()
+            ));
+
+            // The statistics of each input follow its status line
+            if (_opt.timePasses != ArgParse.TimePassesFormat.NONE
+                && res.status == 0) {
+                out.print(res.getStatistics());
+            }
+        }
+        pool.shutdown();
+
+        out.println(String.format(
+            "%d compiled, %d failed, %.3f ms",
+            inputs.size() - failures,
+            failures,
+            timer.stop() / 1_000.0
+        ));
+
+        if (failures != 0) {
+            err.println("ERROR");
+            err.println(failures + " of " + inputs.size() + " inputs failed");
+            return 1;
+        }
+
+        err.println("OK");
+        return 0;
+    }
+
+    /**
+     * Compilation result of a single input
+     */
+    private static final class Result {
+        /**
+         * Status code
+         */
+        public final int status;
+
+        /**
+         * Wall time, in microseconds
+         */
+        public final long time;
+
+        /**
+         * Error output
+         */
+        @NotNull
+        public final String errors;
+
+        /**
+         * Constructor
+         * @param status Status code
+         * @param time Wall time, in microseconds
+         * @param errors Error output
+         */
+        private Result(int status, long time, @NotNull String errors) {
+            this.status = status;
+            this.time = time;
+            this.errors = errors;
+        }
+
+        /**
+         * @return Statistics printed by `--time-passes` on success, before
+         *     the `OK` marker
+         */
+        @NotNull
+        public String getStatistics() {
+            StringBuilder res = new StringBuilder();
+            for (String line : errors.split("\n")) {
+                if (!line.equals("OK")) {
+                    res.append(line).append("\n");
+                }
+            }
+            return res.toString();
+        }
+
+        /**
+         * @return Error message on a single line, after the `ERROR` marker
+         */
+        @NotNull
+        public String getMessage() {
+            StringBuilder res = new StringBuilder();
+            for (String line : errors.split("\n")) {
+                line = line.trim();
+                if (line.isEmpty() || line.equals("ERROR")) {
+                    continue;
+                }
+
+                res.append(res.length() == 0 ? ": " : " ").append(line);
+                if (res.length() > 200) {
+                    break;
+                }
+            }
+            return res.toString();
+        }
+    }
+}
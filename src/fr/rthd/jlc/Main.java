@@ -5,24 +5,29 @@ import fr.rthd.jlc.env.ClassType;
 import fr.rthd.jlc.env.Env;
 import fr.rthd.jlc.env.FunType;
 import fr.rthd.jlc.env.exception.EnvException;
+import fr.rthd.jlc.internal.PassStatistics;
 import fr.rthd.jlc.optimizer.Optimizer;
+import fr.rthd.jlc.server.CompileServer;
 import fr.rthd.jlc.typechecker.TypeChecker;
 import fr.rthd.jlc.typechecker.exception.TypeException;
+import fr.rthd.jlc.utils.SourceReader;
 import javalette.Absyn.Prog;
 import javalette.PrettyPrinter;
 import javalette.Yylex;
 import javalette.parser;
 import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
 
 /**
  * Main class of the compiler
@@ -50,6 +55,11 @@ public class Main {
             "\t([-q|--quiet] | [--error] | [--warn] | [-v|--info|--verbose] | [-vv|--debug|--very-verbose])",
             "\t([-Oz] | [-Os] | [-0|--O0] | [-1|--O1] | [-2|--O2] | [-3|--O3])",
             "\t[-t|--typecheck-only|--typecheck]",
+            "\t[--time-passes[=json]]",
+            "\t[--passes=<pass>,...]",
+            "\t[--server [--socket <path>]]",
+            "\t[--batch <file>... [-d|--output-dir <dir>]]",
+            "\t[--readable-ir]",
             "\t[-h|--help]",
             "",
             "Options:",
@@ -62,6 +72,13 @@ public class Main {
             "\t-vv, --debug, --very-verbose\t\tShow debug",
             "\t-t, --typecheck-only, --typecheck\tOnly typecheck",
             "\t--ast, --ast-only\t\t\t\tOnly print AST",
+            "\t--time-passes[=json]\t\t\tReport time, allocations and sizes of each phase",
+            "\t--passes=<pass>,...\t\t\tOptimizer passes, instead of the ones of the level",
+            "\t--server\t\t\t\tRun a compile server, used by the `jlc` script",
+            "\t--socket <path>\t\t\t\tUnix socket of the compile server",
+            "\t--batch\t\t\t\t\tCompile all the input files concurrently",
+            "\t-d, --output-dir <dir>\t\t\tOutput directory of the batch mode",
+            "\t--readable-ir\t\t\t\tDescriptive value and label names in the IR",
             "\t-h, --help\t\t\t\tShow this help",
             "\t-Oz, -Os, -0, --O0, --O1, --O2, --O3\tOptimization level"
         ));
@@ -73,15 +90,59 @@ public class Main {
     }
 
     /**
-     * Exit the program
+     * End a compilation
+     * @param err Error output
      * @param status Status code
+     * @return Status code
      */
-    private static void exit(int status) {
+    private static int exit(@NotNull PrintStream err, int status) {
         if (status == 0) {
-            System.err.println("OK");
+            err.println("OK");
         }
 
-        System.exit(status);
+        return status;
+    }
+
+    /**
+     * Print the per-phase statistics, if requested
+     * @param opt Parsed arguments
+     * @param stats Collected statistics
+     * @param err Error output
+     */
+    private static void printStatistics(
+        @NotNull ArgParse opt,
+        @NotNull PassStatistics stats,
+        @NotNull PrintStream err
+    ) {
+        switch (opt.timePasses) {
+            case TABLE:
+                err.print(stats.toTable());
+                break;
+
+            case JSON:
+                err.println(stats.toJson());
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Resolve a path against the working directory of the caller
+     * @param workingDir Working directory, null for the current one
+     * @param path Path
+     * @return Resolved path
+     */
+    @Nullable
+    static String resolve(
+        @Nullable Path workingDir,
+        @Nullable String path
+    ) {
+        if (workingDir == null || path == null) {
+            return path;
+        }
+        return workingDir.resolve(path).toString();
     }
 
     /**
@@ -90,109 +151,197 @@ public class Main {
      */
     public static void main(String[] args) {
         ArgParse opt = null;
+        try {
+            opt = ArgParse.parse(args);
+        } catch (IllegalArgumentException ignored) {
+            // Reported by `compile`
+        }
+
+        if (opt != null && opt.server) {
+            try {
+                new CompileServer(opt.socketPath).run();
+                System.exit(0);
+            } catch (IOException e) {
+                System.err.println("ERROR");
+                System.err.println("IO error: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        System.exit(compile(args, System.in, System.out, System.err, null));
+    }
+
+    /**
+     * Run a whole compilation. Nothing is shared between two calls, so it
+     * can run in a long-lived process
+     * @param args Command line arguments
+     * @param in Standard input
+     * @param out Standard output
+     * @param err Error output
+     * @param workingDir Working directory of the caller, used to resolve the
+     *     input and output paths. Null for the current one
+     * @return Status code
+     */
+    public static int compile(
+        @NotNull String[] args,
+        @NotNull InputStream in,
+        @NotNull PrintStream out,
+        @NotNull PrintStream err,
+        @Nullable Path workingDir
+    ) {
+        ArgParse opt;
         try {
             opt = ArgParse.parse(args);
         } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
-            System.out.println();
-            System.out.println(getHelp(true));
-            System.exit(0);
+            out.println(e.getMessage());
+            out.println();
+            out.println(getHelp(true));
+            // Reported like any other error, so that scripts can detect it
+            err.println("ERROR");
+            err.println("Argument error: " + e.getMessage());
+            return 1;
         }
 
         if (opt.showHelp) {
             // If help is requested, print it and exit
-            System.out.println(getHelp(false));
-            System.exit(0);
+            out.println(getHelp(false));
+            return 0;
         }
 
-        String lexerInput = null;
-
-        if (opt.inputFile != null) {
-            try {
-                BufferedReader reader = new BufferedReader(new FileReader(opt.inputFile));
-                StringBuilder input = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    input.append(line).append("\n");
-                }
-                reader.close();
-                lexerInput = input.toString();
-            } catch (IOException ignored) {
-                // TODO: Log this error
-            }
+        if (opt.batch) {
+            return new BatchCompiler(opt, workingDir).run(out, err);
         }
 
-        if (lexerInput == null) {
-            StringBuilder input = new StringBuilder();
-            Scanner sc = new Scanner(System.in);
-            while (sc.hasNextLine()) {
-                input.append(sc.nextLine()).append("\n");
-            }
+        return compile(
+            opt,
+            resolve(workingDir, opt.inputFile),
+            resolve(workingDir, opt.outputFile),
+            in,
+            out,
+            err
+        );
+    }
 
-            lexerInput = input.toString();
+    /**
+     * Compile a single program
+     * @param opt Parsed arguments
+     * @param inputFile Resolved input file, stdin if null
+     * @param outputFile Resolved output file, stdout if null
+     * @param in Standard input
+     * @param out Standard output
+     * @param err Error output
+     * @return Status code
+     */
+    static int compile(
+        @NotNull ArgParse opt,
+        @Nullable String inputFile,
+        @Nullable String outputFile,
+        @NotNull InputStream in,
+        @NotNull PrintStream out,
+        @NotNull PrintStream err
+    ) {
+        PassStatistics stats = new PassStatistics(
+            opt.timePasses != ArgParse.TimePassesFormat.NONE
+        );
+        SourceReader input;
+        try {
+            input = inputFile == null
+                ? SourceReader.fromStream(in)
+                : SourceReader.fromFile(inputFile);
+        } catch (IOException e) {
+            err.println("ERROR");
+            err.println("IO error: " + e.getMessage());
+            return exit(err, 1);
         }
 
-        Yylex lex = new Yylex(new StringReader(lexerInput));
+        Yylex lex = new Yylex(input);
 
-        try {
-            // Parse
+        // The input is also closed when parsing fails
+        try (input) {
+            // Parse, the lexer is driven by the parser and reads the input
+            //  on demand. The input is released as soon as it is parsed
+            stats.start("parse");
             parser p = new parser(lex);
-            Prog tree = p.pProg();
+            final Prog parsed = p.pProg();
+            input.close();
+            stats.stop(() -> PassStatistics.countNodes(parsed), "nodes");
 
             // Type check
-            Env<?, FunType, ClassType<?>> env = new Env<>();
-            tree = new TypeChecker().accept(tree, env);
+            stats.start("typecheck");
+            Env<?, FunType, ClassType<?>> env = new Env<>(new TypeUniverse());
+            final Prog checked = new TypeChecker().accept(parsed, env);
+            stats.stop(() -> PassStatistics.countNodes(checked), "nodes");
 
             if (opt.typecheckOnly) {
-                exit(0);
+                printStatistics(opt, stats, err);
+                return exit(err, 0);
             }
 
-            tree = new Optimizer(opt.optimizationLevel).accept(tree, env);
+            // Each optimizer pass run is recorded as its own phase
+            Prog tree = new Optimizer(
+                opt.optimizationLevel,
+                opt.passes,
+                stats
+            ).accept(checked, env);
 
             if (opt.printAST) {
                 // TODO: Respect the -o flag
-                System.out.println(PrettyPrinter.print(new Unannotater().accept(
+                out.println(PrettyPrinter.print(new Unannotater().accept(
                     tree,
                     env
                 )));
-                exit(0);
+                printStatistics(opt, stats, err);
+                return exit(err, 0);
             }
 
             if (opt.backend == ArgParse.Backend.LLVM) {
-                tree = new LLVMCompiler(opt.outputFile).accept(tree, env);
+                stats.start("codegen");
+                LLVMCompiler compiler = new LLVMCompiler(
+                    outputFile,
+                    out,
+                    opt.readableIR,
+                    opt.optimizationLevel
+                );
+                tree = compiler.accept(tree, env);
+                stats.stop(compiler::getInstructionCount, "instructions");
             } else {
                 throw new UnsupportedOperationException(
                     "Backend not supported yet"
                 );
             }
 
-            exit(0);
+            printStatistics(opt, stats, err);
+            return exit(err, 0);
         } catch (TypeException e) {
-            System.err.println("ERROR");
-            System.err.println("Type error: " + e.getMessage());
-            exit(1);
+            err.println("ERROR");
+            err.println("Type error: " + e.getMessage());
+            return exit(err, 1);
         } catch (EnvException e) {
-            System.err.println("ERROR");
-            System.err.println("Environment error: " + e.getMessage());
-            exit(1);
+            err.println("ERROR");
+            err.println("Environment error: " + e.getMessage());
+            return exit(err, 1);
+        } catch (UncheckedIOException e) {
+            err.println("ERROR");
+            err.println("IO error: " + e.getCause().getMessage());
+            return exit(err, 1);
         } catch (RuntimeException | StackOverflowError | AssertionError e) {
-            e.printStackTrace();
-            exit(-1);
+            e.printStackTrace(err);
+            return exit(err, -1);
         } catch (IOException e) {
-            System.err.println("ERROR");
-            System.err.println("IO error: " + e.getMessage());
-            exit(1);
+            err.println("ERROR");
+            err.println("IO error: " + e.getMessage());
+            return exit(err, 1);
         } catch (Exception | Error e) {
-            System.err.println("ERROR");
-            System.err.println(
+            err.println("ERROR");
+            err.println(
                 "Syntax error at line " +
                 lex.line_num() +
                 ", near \"" +
                 lex.buff() +
                 "\" :"
             );
-            System.err.println("\t" + e.getMessage());
-            exit(1);
+            err.println("\t" + e.getMessage());
+            return exit(err, 1);
         }
     }
 
@@ -223,7 +372,7 @@ public class Main {
      * @param filename File name
      * @return File name without extension
      */
-    private static String stripSuffix(String filename) {
+    static String stripSuffix(String filename) {
         int divider = filename.lastIndexOf('.');
         if (divider <= 0) {
             return filename;
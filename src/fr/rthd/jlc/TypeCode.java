@@ -5,13 +5,12 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-
 /**
- * Type code
+ * Type code. Primitive types are singletons, and class and array types are
+ * interned by the type universe of the compilation, so type codes can be
+ * compared by identity
  * @author RomainTHD
+ * @see TypeUniverse
  */
 @NonNls
 public class TypeCode {
@@ -80,14 +79,6 @@ public class TypeCode {
      */
     public final static int POINTER_SIZE = 8;
 
-    /**
-     * Type code pool, to avoid problems with class and array type comparison,
-     * like `Dog == Dog` or `Dog[] == Dog[]`, because they might be different
-     * instances.
-     */
-    @NotNull
-    private static final Map<String, TypeCode> _pool = new HashMap<>();
-
     /**
      * Real name in source code
      */
@@ -206,66 +197,49 @@ public class TypeCode {
     }
 
     /**
-     * Create a type code for a class
+     * Create a type code for a class. Should only be called by the type
+     * universe, which interns it
      * @param realName Real class name in source code
      * @return Type code
+     * @see TypeUniverse#forClass(String)
      */
     @NotNull
-    public static TypeCode forClass(@NotNull String realName) {
-        TypeCode typeCode = _pool.get(realName);
-        if (typeCode == null) {
-            typeCode = new TypeCode(
-                realName,
-                realName,
-                "%" + realName,
-                null,
-                0,
-                false,
-                null
-            );
-            _pool.put(realName, typeCode);
-        }
-
-        return typeCode;
+    static TypeCode newClass(@NotNull String realName) {
+        return new TypeCode(
+            realName,
+            realName,
+            "%" + realName,
+            null,
+            0,
+            false,
+            null
+        );
     }
 
     /**
-     * Create a type code for an array
+     * Create a type code for an array. Should only be called by the type
+     * universe, which interns it
+     * @param realName Real array name in source code
      * @param baseType Array base type
-     * @param dimension Array dimension (1D, 2D, ...)
+     * @param dimension Array dimension (1D, 2D, ...), strictly positive
      * @return Type code
+     * @see TypeUniverse#forArray(TypeCode, int)
      */
     @NotNull
-    public static TypeCode forArray(@NotNull TypeCode baseType, int dimension) {
-        if (dimension <= 0) {
-            return baseType;
-        }
-
-        String realName = baseType._realName + "[]".repeat(dimension);
-        TypeCode typeCode = _pool.get(realName);
-        if (typeCode == null) {
-            typeCode = new TypeCode(
-                realName,
-                baseType.getReadableAssemblyName() + "_" + dimension + "D",
-                "%Array_" + baseType.getRealName() + "_" + dimension + "D",
-                null,
-                dimension,
-                false,
-                baseType
-            );
-            _pool.put(realName, typeCode);
-        }
-
-        return typeCode;
-    }
-
-    /**
-     * Get all non-primitive types
-     * @return All non-primitive types
-     */
-    @NotNull
-    public static Collection<TypeCode> getAllComplexTypes() {
-        return _pool.values();
+    static TypeCode newArray(
+        @NotNull String realName,
+        @NotNull TypeCode baseType,
+        int dimension
+    ) {
+        return new TypeCode(
+            realName,
+            baseType.getReadableAssemblyName() + "_" + dimension + "D",
+            "%Array_" + baseType.getRealName() + "_" + dimension + "D",
+            null,
+            dimension,
+            false,
+            baseType
+        );
     }
 
     @Contract(pure = true)
@@ -275,21 +249,6 @@ public class TypeCode {
         return _assemblyName;
     }
 
-    @Contract(pure = true)
-    @Override
-    public boolean equals(@Nullable Object obj) {
-        if (obj == null) {
-            return false;
-        } else if (obj == this) {
-            return true;
-        } else if (obj instanceof TypeCode) {
-            TypeCode other = (TypeCode) obj;
-            return _realName.equals(other._realName);
-        } else {
-            return false;
-        }
-    }
-
     /**
      * @return Type size
      */
@@ -0,0 +1,89 @@
+package fr.rthd.jlc;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Type universe of a single compilation, interning its class and array types.
+ * Two lookups of the same type always return the same instance, so types can
+ * be compared by identity. Lookups of known types don't lock, which lets
+ * several threads work on the same compilation
+ * @author RomainTHD
+ * @see TypeCode
+ */
+@NonNls
+public class TypeUniverse {
+    /**
+     * Interned types, by real name
+     */
+    @NotNull
+    private final ConcurrentMap<String, TypeCode> _types;
+
+    /**
+     * Constructor
+     */
+    public TypeUniverse() {
+        _types = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Intern a type
+     * @param created Newly created type, dropped if another thread was faster
+     * @return Interned type
+     */
+    @NotNull
+    private TypeCode intern(@NotNull TypeCode created) {
+        TypeCode previous = _types.putIfAbsent(created.getRealName(), created);
+        return previous == null ? created : previous;
+    }
+
+    /**
+     * Get the type code of a class
+     * @param realName Real class name in source code
+     * @return Type code
+     */
+    @NotNull
+    public TypeCode forClass(@NotNull String realName) {
+        TypeCode type = _types.get(realName);
+        if (type == null) {
+            type = intern(TypeCode.newClass(realName));
+        }
+
+        return type;
+    }
+
+    /**
+     * Get the type code of an array
+     * @param baseType Array base type
+     * @param dimension Array dimension (1D, 2D, ...)
+     * @return Type code, the base type itself for a null dimension
+     */
+    @NotNull
+    public TypeCode forArray(@NotNull TypeCode baseType, int dimension) {
+        if (dimension <= 0) {
+            return baseType;
+        }
+
+        String realName = baseType.getRealName() + "[]".repeat(dimension);
+        TypeCode type = _types.get(realName);
+        if (type == null) {
+            type = intern(TypeCode.newArray(realName, baseType, dimension));
+        }
+
+        return type;
+    }
+
+    /**
+     * Get all non-primitive types
+     * @return All non-primitive types
+     */
+    @NotNull
+    public Collection<TypeCode> getAllComplexTypes() {
+        return Collections.unmodifiableCollection(_types.values());
+    }
+}
@@ -17,7 +17,7 @@ import org.jetbrains.annotations.NotNull;
  * @author RomainTHD
  */
 @NonNls
-public class TypeVisitor implements Type.Visitor<TypeCode, Void>, BaseType.Visitor<TypeCode, Void> {
+public class TypeVisitor implements Type.Visitor<TypeCode, TypeUniverse>, BaseType.Visitor<TypeCode, TypeUniverse> {
     @NotNull
     public static TType getTypeFromTypecode(@NotNull TypeCode typecode) {
         BaseType base;
@@ -48,17 +48,17 @@ public class TypeVisitor implements Type.Visitor<TypeCode, Void>, BaseType.Visit
     }
 
     @Override
-    public TypeCode visit(TType p, Void ignored) {
-        TypeCode base = p.basetype_.accept(new TypeVisitor(), null);
+    public TypeCode visit(TType p, TypeUniverse types) {
+        TypeCode base = p.basetype_.accept(new TypeVisitor(), types);
         if (p.listdim_.size() == 0) {
             return base;
         } else {
             for (int i = 0; i < p.listdim_.size(); ++i) {
                 // Populate all intermediate types, used for compiler
-                TypeCode.forArray(base, i);
+                types.forArray(base, i);
             }
 
-            return TypeCode.forArray(base, p.listdim_.size());
+            return types.forArray(base, p.listdim_.size());
         }
     }
 
@@ -69,7 +69,7 @@ public class TypeVisitor implements Type.Visitor<TypeCode, Void>, BaseType.Visit
      * @return TypeCode.CBool
      * @see TypeCode#CBool
      */
-    public TypeCode visit(Bool t, Void ignored) {
+    public TypeCode visit(Bool t, TypeUniverse ignored) {
         return TypeCode.CBool;
     }
 
@@ -80,7 +80,7 @@ public class TypeVisitor implements Type.Visitor<TypeCode, Void>, BaseType.Visit
      * @return TypeCode.CInt
      * @see TypeCode#CInt
      */
-    public TypeCode visit(Int t, Void ignored) {
+    public TypeCode visit(Int t, TypeUniverse ignored) {
         return TypeCode.CInt;
     }
 
@@ -91,7 +91,7 @@ public class TypeVisitor implements Type.Visitor<TypeCode, Void>, BaseType.Visit
      * @return TypeCode.CDouble
      * @see TypeCode#CDouble
      */
-    public TypeCode visit(Doub t, Void ignored) {
+    public TypeCode visit(Doub t, TypeUniverse ignored) {
         return TypeCode.CDouble;
     }
 
@@ -102,18 +102,18 @@ public class TypeVisitor implements Type.Visitor<TypeCode, Void>, BaseType.Visit
      * @return TypeCode.CVoid
      * @see TypeCode#CVoid
      */
-    public TypeCode visit(javalette.Absyn.Void t, Void ignored) {
+    public TypeCode visit(javalette.Absyn.Void t, TypeUniverse ignored) {
         return TypeCode.CVoid;
     }
 
     /**
      * Object type
      * @param t Object type
-     * @param ignored Unused, visitor pattern artifact
-     * @return TypeCode.CObject
-     * @see TypeCode#forClass(String)
+     * @param types Type universe
+     * @return Class type code
+     * @see TypeUniverse#forClass(String)
      */
-    public TypeCode visit(Class t, Void ignored) {
-        return TypeCode.forClass(t.ident_);
+    public TypeCode visit(Class t, TypeUniverse types) {
+        return types.forClass(t.ident_);
     }
 }
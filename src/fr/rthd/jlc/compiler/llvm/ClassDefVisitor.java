@@ -1,6 +1,7 @@
 package fr.rthd.jlc.compiler.llvm;
 
 import fr.rthd.jlc.env.Attribute;
+import fr.rthd.jlc.env.ClassLayout;
 import fr.rthd.jlc.env.ClassType;
 import javalette.Absyn.ClassDef;
 import javalette.Absyn.ClsDef;
@@ -27,21 +28,38 @@ class ClassDefVisitor implements ClassDef.Visitor<Void, EnvCompiler> {
         assert c != null;
 
         List<Attribute> attrs = c.getAllAttributes();
-        // Comment like `Class Foo: int bar`
-        env.emit(env.instructionBuilder.comment(
-            "Class " + p.ident_ + ": "
-            + attrs.stream()
-                   .map(Attribute::toString)
-                   .collect(Collectors.joining(", "))
-        ));
-        // Define class
-        env.emit(env.instructionBuilder.classDef(
-            c.getName(),
-            attrs.stream()
-                 .map(Attribute::getType)
-                 .collect(Collectors.toList())
-        ));
-        env.emit(env.instructionBuilder.newLine());
+        // Deferred as well, to keep the class definition before its methods
+        env.defer(e -> {
+            // Comment like `Class Foo: int bar`
+            e.emit(e.instructionBuilder.comment(
+                "Class " + p.ident_ + ": "
+                + attrs.stream()
+                       .map(Attribute::toString)
+                       .collect(Collectors.joining(", "))
+            ));
+            // Define class
+            e.emit(e.instructionBuilder.classDef(
+                c.getName(),
+                attrs.stream()
+                     .map(Attribute::getType)
+                     .collect(Collectors.toList())
+            ));
+            e.emit(e.instructionBuilder.newLine());
+
+            // Methods have their `self` argument by now, so their type is
+            //  known
+            e.emit(e.instructionBuilder.vtableDef(c));
+            e.emit(e.instructionBuilder.newLine());
+
+            // Stubs of the methods overridden by a subclass
+            ClassLayout<?> layout = c.getLayout();
+            for (int slot = 0; slot < layout.getSlotCount(); ++slot) {
+                if (e.isVirtualCall(c, slot)) {
+                    e.emit(e.instructionBuilder.dispatchDef(c, slot));
+                    e.emit(e.instructionBuilder.newLine());
+                }
+            }
+        });
 
         // Set class as current class and visit class body
         env.setCurrentClass(c);
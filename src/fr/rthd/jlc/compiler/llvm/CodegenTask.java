@@ -0,0 +1,73 @@
+package fr.rthd.jlc.compiler.llvm;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.StringWriter;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Code generation of an independent part of the module, like a function. It
+ * runs on its own environment and output buffer, so that several of them can
+ * run in parallel
+ * @author RomainTHD
+ * @see EnvCompiler#defer(Consumer)
+ */
+@NonNls
+class CodegenTask extends RecursiveAction {
+    /**
+     * Output buffer
+     */
+    @NotNull
+    private final StringWriter _output;
+
+    /**
+     * Function-local environment
+     */
+    @NotNull
+    private final EnvCompiler _env;
+
+    /**
+     * Code generation itself
+     */
+    @NotNull
+    private final Consumer<EnvCompiler> _body;
+
+    /**
+     * Constructor
+     * @param parent Module environment
+     * @param body Code generation, run on the function-local environment
+     */
+    CodegenTask(
+        @NotNull EnvCompiler parent,
+        @NotNull Consumer<EnvCompiler> body
+    ) {
+        _output = new StringWriter();
+        _env = parent.fork(_output);
+        _body = body;
+    }
+
+    @Override
+    protected void compute() {
+        _body.accept(_env);
+    }
+
+    /**
+     * @return Function-local environment
+     */
+    @Contract(pure = true)
+    @NotNull
+    public EnvCompiler getEnv() {
+        return _env;
+    }
+
+    /**
+     * @return Emitted code
+     */
+    @NotNull
+    public String getOutput() {
+        return _output.toString();
+    }
+}
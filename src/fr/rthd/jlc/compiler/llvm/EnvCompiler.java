@@ -3,21 +3,33 @@ package fr.rthd.jlc.compiler.llvm;
 import fr.rthd.jlc.TypeCode;
 import fr.rthd.jlc.compiler.Instruction;
 import fr.rthd.jlc.compiler.Variable;
+import fr.rthd.jlc.env.ClassHierarchy;
 import fr.rthd.jlc.env.ClassType;
 import fr.rthd.jlc.env.Env;
 import fr.rthd.jlc.env.FunType;
+import fr.rthd.jlc.ir.BasicBlock;
+import fr.rthd.jlc.ir.Function;
+import fr.rthd.jlc.ir.FunctionPass;
+import fr.rthd.jlc.ir.Inliner;
+import fr.rthd.jlc.ir.Operation;
+import fr.rthd.jlc.ir.Verifier;
+import fr.rthd.jlc.utils.Choice;
+import fr.rthd.jlc.utils.SymbolCounter;
+import javalette.Absyn.Prog;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.math.BigInteger;
-import java.security.MessageDigest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 /**
  * Environment of the compiler
@@ -45,10 +57,23 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
     public final InstructionBuilder instructionBuilder;
 
     /**
-     * Instructions output
+     * Instructions output, written as soon as they are emitted
      */
     @NotNull
-    private final List<String> _output;
+    private final Writer _output;
+
+    /**
+     * String literals of the module, shared by all function-local
+     * environments
+     */
+    @NotNull
+    private final StringPool _stringPool;
+
+    /**
+     * Deferred code generation, merged in the order it was deferred
+     */
+    @NotNull
+    private final List<CodegenTask> _deferred;
 
     /**
      * Variable counter to avoid collisions, like
@@ -56,16 +81,17 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
      * .temp$0 = 0
      * .temp$1 = 1
      * ```
+     * One counter per scope depth, reused from one scope to the next
      */
     @NotNull
-    private final LinkedList<Map<String, Integer>> _varCount;
+    private final List<SymbolCounter> _varCount;
 
     /**
      * Label counter
      * @see #_varCount
      */
     @NotNull
-    private final LinkedList<Map<String, Integer>> _labelCount;
+    private final List<SymbolCounter> _labelCount;
 
     /**
      * Depth access counter, to avoid collisions between blocks like
@@ -79,59 +105,283 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
      * ```
      */
     @NotNull
-    private final Map<Integer, Integer> _depthAccessCount;
+    private int[] _depthAccessCount;
+
+    /**
+     * Descriptive value and label names like `.temp$cast$stack_1_0$scope_2`
+     * instead of compact ones like `t12`
+     */
+    private final boolean _readableNames;
+
+    /**
+     * Passes run on each function before printing it
+     */
+    @NotNull
+    private final List<FunctionPass> _passes;
+
+    /**
+     * Inliner run on the whole module once every function is lowered, or
+     * null to print each function as soon as it is lowered
+     */
+    @Nullable
+    private final Inliner _inliner;
+
+    /**
+     * Resolve method calls statically when no subclass overrides them, or
+     * always call them through the vtable
+     */
+    private final boolean _devirtualize;
 
     /**
-     * Hashing algorithm to store strings
+     * Class hierarchy of the module, known once the program is visited
      */
     @Nullable
-    private final MessageDigest _hashAlgorithm;
+    private ClassHierarchy _hierarchy;
+
+    /**
+     * Functions lowered in this environment, waiting for the inliner
+     */
+    @NotNull
+    private final List<Function> _lowered;
+
+    /**
+     * Value counter of the current function, for compact names
+     */
+    private int _valueCounter;
+
+    /**
+     * Label counter of the current function, for compact names
+     */
+    private int _labelCounter;
+
+    /**
+     * Function being built, or null outside of function bodies
+     */
+    @Nullable
+    private Function _function;
+
+    /**
+     * Block being built, or null outside of function bodies
+     */
+    @Nullable
+    private BasicBlock _block;
 
     /**
      * Indent level
      */
     private int _indentLevel;
 
+    /**
+     * Number of emitted instructions, comments and declarations excluded
+     */
+    private int _instructionCount;
+
     /**
      * Constructor
      * @param env Parent environment
      * @param builder Instruction builder
+     * @param stringPool String literals of the module
+     * @param output Output, should be buffered
+     * @param readableNames Descriptive value and label names instead of
+     *     compact ones
+     * @param passes Passes run on each function before printing it
+     * @param inliner Inliner of the module, or null if none
+     * @param devirtualize Resolve method calls statically when possible
      */
     public EnvCompiler(
         @NotNull Env<?, FunType, ClassType<?>> env,
-        @NotNull InstructionBuilder builder
+        @NotNull InstructionBuilder builder,
+        @NotNull StringPool stringPool,
+        @NotNull Writer output,
+        boolean readableNames,
+        @NotNull List<FunctionPass> passes,
+        @Nullable Inliner inliner,
+        boolean devirtualize
     ) {
         super(env);
         instructionBuilder = builder;
-        _output = new ArrayList<>();
-        _varCount = new LinkedList<>();
-        _labelCount = new LinkedList<>();
-        _depthAccessCount = new HashMap<>();
-        _depthAccessCount.put(getScopeDepth(), 0);
+        _stringPool = stringPool;
+        _output = output;
+        _readableNames = readableNames;
+        _passes = passes;
+        _inliner = inliner;
+        _devirtualize = devirtualize;
+        _hierarchy = null;
+        _lowered = new ArrayList<>();
+        _valueCounter = 0;
+        _labelCounter = 0;
+        _deferred = new ArrayList<>();
+        _varCount = new ArrayList<>();
+        _varCount.add(new SymbolCounter());
+        _labelCount = new ArrayList<>();
+        _labelCount.add(new SymbolCounter());
+        _depthAccessCount = new int[]{0};
+        _function = null;
+        _block = null;
         _indentLevel = 0;
+        _instructionCount = 0;
+    }
 
-        MessageDigest md = null;
-        try {
-            md = MessageDigest.getInstance("MD5");
-        } catch (Exception ignored) {
-            // MD5 not supported, use native `hashCode` instead
+    /**
+     * Create a function-local environment, sharing the signatures of this one
+     * but with its own scopes, counters and output
+     * @param output Output of the new environment
+     * @return Function-local environment
+     */
+    @NotNull
+    public EnvCompiler fork(@NotNull Writer output) {
+        EnvCompiler env = new EnvCompiler(
+            this,
+            instructionBuilder,
+            _stringPool,
+            output,
+            _readableNames,
+            _passes,
+            _inliner,
+            _devirtualize
+        );
+        env._hierarchy = _hierarchy;
+        env.setCurrentClass(getCurrentClass());
+        return env;
+    }
+
+    /**
+     * Set the class hierarchy of the module, before any code generation is
+     * deferred, since it is copied by the forked environments
+     * @param hierarchy Class hierarchy
+     */
+    public void setClassHierarchy(@NotNull ClassHierarchy hierarchy) {
+        assert _deferred.isEmpty();
+        _hierarchy = hierarchy;
+    }
+
+    /**
+     * @param c Static class of the receiver
+     * @param slot Method slot
+     * @return If a call to this method needs the vtable or not. Constructors
+     *     are only called on new objects, of a known class
+     */
+    @Contract(pure = true)
+    public boolean isVirtualCall(@NotNull ClassType<?> c, int slot) {
+        assert _hierarchy != null;
+        if (c.getLayout().getSlotMethod(slot).getName()
+             .equals(ClassType.CONSTRUCTOR_NAME)) {
+            return false;
         }
-        _hashAlgorithm = md;
+        return !_devirtualize || _hierarchy.isOverridden(c, slot);
     }
 
     /**
-     * Output the instructions to a single string
-     * @return Assembly string
+     * @param c Static class of the receiver
+     * @param slot Method slot
+     * @return If all the methods a call may reach are pure or not
      */
     @Contract(pure = true)
-    @NotNull
-    public String toAssembly() {
-        StringBuilder res = new StringBuilder();
-        for (String inst : _output) {
-            res.append(inst).append("\n");
+    public boolean isPureCall(@NotNull ClassType<?> c, int slot) {
+        assert _hierarchy != null;
+        for (FunType m : _hierarchy.getImplementations(c, slot)) {
+            if (m.isPure() != Choice.TRUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Defer the code generation of an independent part of the module, like a
+     * function. It will run on its own environment, created right away
+     * @param body Code generation
+     * @see #runDeferred()
+     */
+    public void defer(@NotNull Consumer<EnvCompiler> body) {
+        _deferred.add(new CodegenTask(this, body));
+    }
+
+    /**
+     * Run the deferred code generation in parallel, then write their output
+     * in the order they were deferred, so that the module doesn't depend on
+     * the scheduling. With an inliner, the lowered functions are only
+     * printed once it ran, in parallel as well, right after the output of
+     * their task
+     */
+    public void runDeferred() {
+        ForkJoinTask.invokeAll(_deferred);
+
+        List<List<CodegenTask>> printing = new ArrayList<>();
+        if (_inliner != null) {
+            List<Function> functions = new ArrayList<>();
+            for (CodegenTask task : _deferred) {
+                functions.addAll(task.getEnv()._lowered);
+            }
+            _inliner.run(functions);
+
+            List<CodegenTask> all = new ArrayList<>();
+            for (CodegenTask task : _deferred) {
+                List<CodegenTask> tasks = new ArrayList<>();
+                for (Function f : task.getEnv()._lowered) {
+                    tasks.add(new CodegenTask(this, e -> e.print(f)));
+                }
+                printing.add(tasks);
+                all.addAll(tasks);
+            }
+            ForkJoinTask.invokeAll(all);
+        }
+
+        for (int i = 0; i < _deferred.size(); ++i) {
+            merge(_deferred.get(i));
+            if (_inliner != null) {
+                for (CodegenTask task : printing.get(i)) {
+                    merge(task);
+                }
+            }
+        }
+
+        _deferred.clear();
+    }
+
+    /**
+     * Write the output of a finished task
+     * @param task Task
+     */
+    private void merge(@NotNull CodegenTask task) {
+        try {
+            _output.write(task.getOutput());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        _instructionCount += task.getEnv()._instructionCount;
+    }
+
+    /**
+     * Flush the output
+     */
+    public void finish() {
+        try {
+            _output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        return res.toString();
+    /**
+     * Write a line to the output
+     * @param line Line
+     */
+    private void write(@NotNull String line) {
+        try {
+            _output.write(line);
+            _output.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Number of emitted instructions
+     */
+    @Contract(pure = true)
+    public int getInstructionCount() {
+        return _instructionCount;
     }
 
     /**
@@ -159,33 +409,148 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
     }
 
     /**
-     * Emit an instruction
+     * Emit a module-level instruction
      * @param inst Instruction to emit
      */
     public void emit(@NotNull Instruction inst) {
+        assert _function == null : "Text instruction in a function body";
         for (String emitted : inst.emit()) {
-            if (emitted.isEmpty()) {
-                _output.add("");
-            } else if (inst.isIndentable()) {
-                _output.add(getIndentString() + emitted);
+            if (emitted.isEmpty() || !inst.isIndentable()) {
+                write(emitted);
             } else {
-                _output.add(emitted);
+                write(getIndentString() + emitted);
             }
         }
     }
 
     /**
-     * Emit an instruction at the beginning of the file. Mainly used for global
-     * string literals
-     * @param inst Instruction to emit
+     * Emit an operation in the current block. An operation following a
+     * terminator starts a new unlabelled block, which is dead code. Outside
+     * of function bodies, only comments are allowed
+     * @param op Operation to emit
      */
-    public void emitAtBeginning(@NotNull Instruction inst) {
-        for (String emitted : inst.emit()) {
-            if (emitted.isEmpty()) {
-                _output.add(0, "");
-            } else {
-                _output.add(0, emitted);
+    public void emit(@NotNull Operation op) {
+        if (_function == null) {
+            assert op.isComment() : "Operation outside of a function body";
+            String text = op.getName();
+            assert text != null;
+            write(text.isEmpty() ? "" : getIndentString() + "; " + text);
+            return;
+        }
+
+        assert _block != null;
+        if (!op.isComment() && _block.isTerminated()) {
+            _block = new BasicBlock(null);
+            _function.insert(_block);
+        }
+
+        op.setNesting(_indentLevel);
+        _block.add(op);
+    }
+
+    /**
+     * Emit several operations in the current block
+     * @param ops Operations to emit
+     */
+    public void emit(@NotNull List<Operation> ops) {
+        for (Operation op : ops) {
+            emit(op);
+        }
+    }
+
+    /**
+     * Start the body of a function, with an entry block
+     * @param name Assembly name
+     * @param retType Return type
+     * @param args Arguments
+     */
+    public void startFunction(
+        @NotNull String name,
+        @NotNull TypeCode retType,
+        @NotNull List<Variable> args
+    ) {
+        assert _function == null : "Nested function";
+        _function = new Function(name, retType, args);
+        enterBlock(_function.getBlock("entry"));
+    }
+
+    /**
+     * Create a new block, inserted later by `enterBlock(BasicBlock)`
+     * @param ctx Label context, like "if_true", "while_loop", etc
+     * @return Block
+     */
+    @NotNull
+    public BasicBlock createBlock(@NotNull String ctx) {
+        assert _function != null;
+        return _function.getBlock(getNewLabel(ctx));
+    }
+
+    /**
+     * Insert a block at the end of the current function and continue there.
+     * The current block should already be terminated
+     * @param block Block
+     */
+    public void enterBlock(@NotNull BasicBlock block) {
+        assert _function != null;
+        _function.insert(block);
+        _block = block;
+    }
+
+    /**
+     * End the body of the current function, verify it, optimize it and
+     * print it, or keep it for the inliner
+     */
+    public void endFunction() {
+        assert _function != null;
+        Function f = _function;
+        _function = null;
+        _block = null;
+
+        Verifier.verify(f);
+        if (!_passes.isEmpty()) {
+            for (FunctionPass pass : _passes) {
+                pass.run(f);
             }
+            Verifier.verify(f);
+        }
+
+        if (_inliner == null) {
+            print(f);
+        } else {
+            _lowered.add(f);
+        }
+    }
+
+    /**
+     * Print a function, followed by an empty line
+     * @param f Function
+     */
+    private void print(@NotNull Function f) {
+        try {
+            new IRPrinter(_output).print(f);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        write("");
+        _instructionCount += f.getOperationCount();
+    }
+
+    /**
+     * Pool all the string literals of a program and emit their globals, before
+     * any function body
+     * @param p Program
+     */
+    public void emitStringPool(@NotNull Prog p) {
+        _stringPool.addAll(p);
+        for (Map.Entry<String, Variable> literal : _stringPool.getAll()) {
+            emit(instructionBuilder.globalStringLiteral(
+                literal.getValue(),
+                literal.getKey()
+            ));
+        }
+
+        if (!_stringPool.getAll().isEmpty()) {
+            emit(instructionBuilder.newLine());
         }
     }
 
@@ -196,15 +561,12 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
      */
     @NotNull
     private String getVariableUID(@NotNull String name) {
-        Map<String, Integer> scope = _varCount.peek();
-        assert scope != null;
         // Get access count for current scope and increment it
-        int count = scope.getOrDefault(name, 0);
-        scope.put(name, count + 1);
+        int count = _varCount.get(getScopeDepth()).next(name);
         return "stack_"
                + getScopeDepth()
                + "_"
-               + _depthAccessCount.get(getScopeDepth())
+               + _depthAccessCount[getScopeDepth()]
                + SEP
                + "scope_"
                + count;
@@ -236,7 +598,9 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
     ) {
         return new Variable(
             type,
-            ".temp" + SEP + ctx + SEP + getVariableUID(ctx),
+            _readableNames
+                ? ".temp" + SEP + ctx + SEP + getVariableUID(ctx)
+                : "t" + _valueCounter++,
             null,
             pointerLevel
         );
@@ -276,7 +640,9 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
     ) {
         return new Variable(
             type,
-            name + SEP + getVariableUID(name),
+            _readableNames
+                ? name + SEP + getVariableUID(name)
+                : "t" + _valueCounter++,
             name,
             pointerLevel,
             isClassVariable
@@ -290,15 +656,7 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
      */
     @NotNull
     public Variable createGlobalStringLiteral(@NotNull String content) {
-        return new Variable(
-            TypeCode.CString,
-            ".string" + SEP + getHash(content),
-            null,
-            1, // FIXME: This pointer level isn't even used
-            false,
-            true,
-            content.length() + 1
-        );
+        return _stringPool.get(content);
     }
 
     /**
@@ -307,11 +665,12 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
      * @return Label
      */
     @NotNull
-    public String getNewLabel(@NotNull String ctx) {
-        Map<String, Integer> scope = _labelCount.peek();
-        assert scope != null;
-        int count = scope.getOrDefault(ctx, 0);
-        scope.put(ctx, count + 1);
+    private String getNewLabel(@NotNull String ctx) {
+        if (!_readableNames) {
+            return "L" + _labelCounter++;
+        }
+
+        int count = _labelCount.get(getScopeDepth()).next(ctx);
         return ".label"
                + SEP
                + ctx
@@ -319,55 +678,45 @@ class EnvCompiler extends Env<Variable, FunType, ClassType<?>> {
                + "stack_"
                + getScopeDepth()
                + "_"
-               + _depthAccessCount.get(getScopeDepth())
+               + _depthAccessCount[getScopeDepth()]
                + SEP
                + "scope_"
                + count;
     }
 
-    @Override
-    public void enterScope() {
-        super.enterScope();
-        _varCount.push(new HashMap<>());
-        _labelCount.push(new HashMap<>());
+    /**
+     * Reset the counter of the current scope depth, creating it if needed
+     * @param counters Counters, by scope depth
+     */
+    private void resetCounter(@NotNull List<SymbolCounter> counters) {
         int depth = getScopeDepth();
-        _depthAccessCount.put(
-            depth,
-            _depthAccessCount.getOrDefault(depth, -1) + 1
-        );
+        if (depth < counters.size()) {
+            counters.get(depth).clear();
+        } else {
+            counters.add(new SymbolCounter());
+        }
     }
 
     @Override
-    public void leaveScope() {
-        super.leaveScope();
-        _varCount.pop();
-        _labelCount.pop();
+    public void enterScope() {
+        super.enterScope();
+        resetCounter(_varCount);
+        resetCounter(_labelCount);
+        int depth = getScopeDepth();
+        if (depth >= _depthAccessCount.length) {
+            int length = _depthAccessCount.length;
+            _depthAccessCount = Arrays.copyOf(_depthAccessCount, length * 2);
+            Arrays.fill(_depthAccessCount, length, length * 2, -1);
+        }
+        ++_depthAccessCount[depth];
     }
 
     @Override
     public void resetScope() {
         super.resetScope();
-        _varCount.clear();
-        _varCount.push(new HashMap<>());
-        _labelCount.clear();
-        _labelCount.push(new HashMap<>());
-    }
-
-    /**
-     * @param content String
-     * @return Hash of the string
-     */
-    @NotNull
-    private String getHash(@NotNull String content) {
-        if (_hashAlgorithm == null) {
-            // Use default `hashCode` implementation, which isn't recommended
-            return Integer.toString(content.hashCode());
-        } else {
-            // Use custom hash algorithm in hexadecimal format
-            _hashAlgorithm.update(content.getBytes());
-            byte[] bytes = _hashAlgorithm.digest();
-            BigInteger bi = new BigInteger(1, bytes);
-            return String.format("%0" + (bytes.length << 1) + "X", bi);
-        }
+        _valueCounter = 0;
+        _labelCounter = 0;
+        resetCounter(_varCount);
+        resetCounter(_labelCount);
     }
 }
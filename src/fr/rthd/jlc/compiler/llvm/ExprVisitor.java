@@ -5,10 +5,13 @@ import fr.rthd.jlc.TypeVisitor;
 import fr.rthd.jlc.compiler.Literal;
 import fr.rthd.jlc.compiler.OperationItem;
 import fr.rthd.jlc.compiler.Variable;
+import fr.rthd.jlc.env.ClassLayout;
 import fr.rthd.jlc.env.ClassType;
 import fr.rthd.jlc.env.FunArg;
 import fr.rthd.jlc.env.FunType;
 import fr.rthd.jlc.internal.NotImplementedException;
+import fr.rthd.jlc.ir.BasicBlock;
+import fr.rthd.jlc.utils.Choice;
 import fr.rthd.jlc.utils.Value;
 import javalette.Absyn.Ass;
 import javalette.Absyn.BStmt;
@@ -81,7 +84,7 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
      */
     @Override
     public OperationItem visit(ENull p, EnvCompiler env) {
-        return new Literal(TypeCode.forClass(p.ident_), null, 1);
+        return new Literal(env.getTypeUniverse().forClass(p.ident_), null, 1);
     }
 
     /**
@@ -168,6 +171,8 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
     public OperationItem visit(EApp p, EnvCompiler env) {
         FunType func;
         String fName;
+        boolean pure;
+        ClassType<?> receiver = null;
         List<OperationItem> args = new ArrayList<>();
         ListExpr listExpr = p.listexpr_;
         List<FunArg> funArgs = new ArrayList<>();
@@ -178,6 +183,7 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
             fName = ((EVar) p.expr_).ident_;
             func = env.lookupFun(fName);
             assert func != null;
+            pure = func.isPure() == Choice.TRUE;
         } else if (p.expr_ instanceof EDot) {
             // Class method
 
@@ -191,14 +197,24 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
             ClassType<?> c = env.lookupClass(ref.getType());
             assert c != null;
 
-            while ((func = c.getMethod(dot.ident_, false)) == null) {
-                c = c.getSuperclass();
-                assert c != null;
+            // Resolve the method and the class defining it
+            ClassLayout<?> layout = c.getLayout();
+            int slot = layout.getSlot(dot.ident_);
+            assert slot >= 0;
+            func = layout.getSlotMethod(slot);
+
+            if (env.isVirtualCall(c, slot)) {
+                // Overridden by a subclass, so the object's vtable is needed
+                fName = c.getDispatchMethodName(dot.ident_);
+                pure = env.isPureCall(c, slot);
+                receiver = c;
+            } else {
+                // call `@Class$method` instead of `@method`
+                fName = layout.getSlotOwner(slot)
+                              .getAssemblyMethodName(dot.ident_);
+                pure = func.isPure() == Choice.TRUE;
             }
 
-            // call `@Class$method` instead of `@method`
-            fName = c.getAssemblyMethodName(dot.ident_);
-
             // Add `this` to the arguments by adding the variable itself. Either
             //  it is a "real" variable like `obj.call()`, or a temporary one
             //  if a cast or deref is involved
@@ -214,6 +230,10 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
         }
 
         funArgs.addAll(func.getArgs());
+        if (receiver != null) {
+            // The dispatch stub takes the static type of the receiver
+            funArgs.set(0, new FunArg(receiver.getType(), "self"));
+        }
 
         for (int i = 0; i < listExpr.size(); i++) {
             // Visit arguments
@@ -248,7 +268,7 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
                 "function_call",
                 func.getRetType().isPrimitive() ? 0 : 1
             );
-            env.emit(env.instructionBuilder.call(out, fName, args));
+            env.emit(env.instructionBuilder.call(out, fName, args, pure));
             return out;
         }
     }
@@ -289,7 +309,7 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
         OperationItem left = p.expr_.accept(new ExprVisitor(), env);
         OperationItem index = p.index_.accept(new IndexVisitor(), env);
 
-        TypeCode elemType = TypeCode.forArray(
+        TypeCode elemType = env.getTypeUniverse().forArray(
             left.getType().getBaseType(),
             left.getType().getDimension() - 1 - p.listindex_.size()
         );
@@ -336,18 +356,9 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
     @Override
     public OperationItem visit(EString p, EnvCompiler env) {
         String content = p.string_;
+        // Defined once for the whole module, see `ProgVisitor`
         Variable global = env.createGlobalStringLiteral(content);
 
-        if (env.lookupVar(global.getName()) == null) {
-            // Avoid loading the same string literal multiple times by emitting
-            //  a global variable only if it is not already defined
-            env.insertVar(global.getName(), global);
-            env.emitAtBeginning(env.instructionBuilder.globalStringLiteral(
-                global,
-                content
-            ));
-        }
-
         // Load the global variable into a local variable
         Variable tmp = env.createTempVar(
             TypeCode.CString,
@@ -366,8 +377,8 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
      */
     @Override
     public OperationItem visit(ENew p, EnvCompiler env) {
-        TypeCode type = TypeCode.forArray(
-            p.basetype_.accept(new TypeVisitor(), null),
+        TypeCode type = env.getTypeUniverse().forArray(
+            p.basetype_.accept(new TypeVisitor(), env.getTypeUniverse()),
             p.listindex_.size()
         );
 
@@ -394,6 +405,34 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
         env.emit(env.instructionBuilder.newObject(ref, tmp, size));
 
         if (type.isObject()) {
+            // The vtable pointer is stored before anything can be called
+            ClassType<?> c = env.lookupClass(type);
+            assert c != null;
+            Variable field = env.createTempVar(
+                TypeCode.CRawPointer,
+                "vtable_field",
+                2
+            );
+            Variable vtable = env.createTempVar(
+                TypeCode.CRawPointer,
+                "vtable",
+                1
+            );
+            env.emit(env.instructionBuilder.storeVTable(
+                ref,
+                field,
+                vtable,
+                new Variable(
+                    TypeCode.CRawPointer,
+                    c.getVTablePointerName(),
+                    null,
+                    2,
+                    false,
+                    true,
+                    1
+                )
+            ));
+
             // Call the constructor, which is a method of the object
             new EApp(
                 new EDot(
@@ -417,7 +456,7 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
             env.emit(env.instructionBuilder.loadAttribute(lenField, ref, 0));
             env.emit(env.instructionBuilder.store(lenField, len));
 
-            TypeCode contentType = TypeCode.forArray(
+            TypeCode contentType = env.getTypeUniverse().forArray(
                 type.getBaseType(),
                 type.getDimension() - 1
             );
@@ -598,9 +637,9 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
         Variable var = env.createTempVar(TypeCode.CBool, "and_ptr", 1);
         env.emit(env.instructionBuilder.declare(var));
 
-        String trueLabel = env.getNewLabel("and_true");
-        String falseLabel = env.getNewLabel("and_false");
-        String endLabel = env.getNewLabel("and_end");
+        BasicBlock trueBlock = env.createBlock("and_true");
+        BasicBlock falseBlock = env.createBlock("and_false");
+        BasicBlock endBlock = env.createBlock("and_end");
 
         env.emit(env.instructionBuilder.comment("and"));
         env.indent();
@@ -609,30 +648,30 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
         OperationItem left = p.expr_1.accept(new ExprVisitor(), env);
         env.emit(env.instructionBuilder.conditionalJump(
             left,
-            trueLabel,
-            falseLabel
+            trueBlock,
+            falseBlock
         ));
 
-        env.emit(env.instructionBuilder.label(trueLabel));
+        env.enterBlock(trueBlock);
         env.enterScope();
         env.emit(env.instructionBuilder.comment("and true"));
         env.emit(env.instructionBuilder.store(
             var,
             p.expr_2.accept(new ExprVisitor(), env)
         ));
-        env.emit(env.instructionBuilder.jump(endLabel));
+        env.emit(env.instructionBuilder.jump(endBlock));
         env.leaveScope();
 
-        env.emit(env.instructionBuilder.label(falseLabel));
+        env.enterBlock(falseBlock);
         env.emit(env.instructionBuilder.comment("and false"));
         env.emit(env.instructionBuilder.store(
             var,
             new Literal(TypeCode.CBool, false)
         ));
-        env.emit(env.instructionBuilder.jump(endLabel));
+        env.emit(env.instructionBuilder.jump(endBlock));
 
         env.unindent();
-        env.emit(env.instructionBuilder.label(endLabel));
+        env.enterBlock(endBlock);
         env.emit(env.instructionBuilder.comment("end and"));
         env.emit(env.instructionBuilder.newLine());
 
@@ -652,9 +691,9 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
         Variable var = env.createTempVar(TypeCode.CBool, "or_ptr", 1);
         env.emit(env.instructionBuilder.declare(var));
 
-        String trueLabel = env.getNewLabel("or_true");
-        String falseLabel = env.getNewLabel("or_false");
-        String endLabel = env.getNewLabel("or_end");
+        BasicBlock trueBlock = env.createBlock("or_true");
+        BasicBlock falseBlock = env.createBlock("or_false");
+        BasicBlock endBlock = env.createBlock("or_end");
 
         env.emit(env.instructionBuilder.comment("or"));
         env.indent();
@@ -663,30 +702,30 @@ class ExprVisitor implements Expr.Visitor<OperationItem, EnvCompiler> {
         OperationItem left = p.expr_1.accept(new ExprVisitor(), env);
         env.emit(env.instructionBuilder.conditionalJump(
             left,
-            trueLabel,
-            falseLabel
+            trueBlock,
+            falseBlock
         ));
 
-        env.emit(env.instructionBuilder.label(trueLabel));
+        env.enterBlock(trueBlock);
         env.emit(env.instructionBuilder.comment("or true"));
         env.emit(env.instructionBuilder.store(
             var,
             new Literal(TypeCode.CBool, true)
         ));
-        env.emit(env.instructionBuilder.jump(endLabel));
+        env.emit(env.instructionBuilder.jump(endBlock));
 
-        env.emit(env.instructionBuilder.label(falseLabel));
+        env.enterBlock(falseBlock);
         env.enterScope();
         env.emit(env.instructionBuilder.comment("or false"));
         env.emit(env.instructionBuilder.store(
             var,
             p.expr_2.accept(new ExprVisitor(), env)
         ));
-        env.emit(env.instructionBuilder.jump(endLabel));
+        env.emit(env.instructionBuilder.jump(endBlock));
         env.leaveScope();
 
         env.unindent();
-        env.emit(env.instructionBuilder.label(endLabel));
+        env.enterBlock(endBlock);
         env.emit(env.instructionBuilder.comment("end or"));
         env.emit(env.instructionBuilder.newLine());
 
@@ -44,13 +44,9 @@ class FuncDefVisitor implements FuncDef.Visitor<Void, EnvCompiler> {
 
         assert func != null;
 
+        // Methods already have `self` as first argument, see MemberVisitor
         env.resetScope();
 
-        if (c != null) {
-            // `self` is the first argument for methods
-            func.addArgFirst(new FunArg(c.getType(), "self"));
-        }
-
         List<Variable> args = new ArrayList<>();
         for (FunArg arg : func.getArgs()) {
             Variable var = env.createVar(
@@ -63,13 +59,13 @@ class FuncDefVisitor implements FuncDef.Visitor<Void, EnvCompiler> {
             args.add(var);
         }
 
-        env.emit(env.instructionBuilder.functionDeclarationStart(
-            c,
+        env.startFunction(
+            c == null
+                ? func.getName()
+                : c.getAssemblyMethodName(func.getName()),
             func.getRetType(),
-            func.getName(),
             args
-        ));
-        env.emit(env.instructionBuilder.label("entry"));
+        );
 
         for (FunArg arg : func.getArgs()) {
             Variable v = env.lookupVar(arg.getName());
@@ -90,9 +86,7 @@ class FuncDefVisitor implements FuncDef.Visitor<Void, EnvCompiler> {
 
         if (c != null) {
             // If method, we load all fields on the stack
-            List<Attribute> attrs = c.getAllAttributes();
-            for (int i = 0; i < attrs.size(); i++) {
-                Attribute a = attrs.get(i);
+            for (Attribute a : c.getAllAttributes()) {
                 Variable v = env.createVar(
                     a.getType(),
                     a.getName(),
@@ -102,7 +96,11 @@ class FuncDefVisitor implements FuncDef.Visitor<Void, EnvCompiler> {
                 env.insertVar(a.getName(), v);
                 Variable selfVar = env.lookupVar("self");
                 assert selfVar != null;
-                env.emit(env.instructionBuilder.loadAttribute(v, selfVar, i));
+                env.emit(env.instructionBuilder.loadAttribute(
+                    v,
+                    selfVar,
+                    c.getLayout().getFieldIndex(a.getName())
+                ));
             }
         }
 
@@ -120,8 +118,7 @@ class FuncDefVisitor implements FuncDef.Visitor<Void, EnvCompiler> {
             )));
         }
 
-        env.emit(env.instructionBuilder.functionDeclarationEnd());
-        env.emit(env.instructionBuilder.newLine());
+        env.endFunction();
 
         return null;
     }
@@ -0,0 +1,392 @@
+package fr.rthd.jlc.compiler.llvm;
+
+import fr.rthd.jlc.TypeCode;
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import fr.rthd.jlc.ir.BasicBlock;
+import fr.rthd.jlc.ir.Comparison;
+import fr.rthd.jlc.ir.Function;
+import fr.rthd.jlc.ir.Operation;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * LLVM printer of IR functions. Quite critical section as well, so
+ * `String.format` shouldn't be used either
+ * @author RomainTHD
+ * @see InstructionBuilder
+ */
+@NonNls
+class IRPrinter {
+    /**
+     * Output
+     */
+    @NotNull
+    private final Writer _output;
+
+    /**
+     * Constructor
+     * @param output Output
+     */
+    public IRPrinter(@NotNull Writer output) {
+        _output = output;
+    }
+
+    /**
+     * @param item Value
+     * @return Type of the value, with its pointer level
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String typeOf(@NotNull OperationItem item) {
+        return item.getType() + "*".repeat(item.getPointerLevel());
+    }
+
+    /**
+     * @param comparison Comparison
+     * @param type Value type
+     * @return LLVM predicate, like `sgt` for a signed greater than
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String predicate(
+        @NotNull Comparison comparison,
+        @NotNull TypeCode type
+    ) {
+        String prefix = "";
+        if (type == TypeCode.CInt || type == TypeCode.CBool) {
+            if (comparison == Comparison.LT ||
+                comparison == Comparison.LE ||
+                comparison == Comparison.GT ||
+                comparison == Comparison.GE) {
+                // Signed operation
+                prefix = "s";
+            }
+        } else if (type == TypeCode.CDouble) {
+            // Floating point operation, ignore NaN
+            prefix = "o";
+        }
+        return prefix + comparison.name().toLowerCase();
+    }
+
+    /**
+     * Write a line
+     * @param line Line
+     * @throws IOException If the output fails
+     */
+    private void write(@NotNull String line) throws IOException {
+        _output.write(line);
+        _output.write('\n');
+    }
+
+    /**
+     * Print a function
+     * @param f Function
+     * @throws IOException If the output fails
+     */
+    public void print(@NotNull Function f) throws IOException {
+        TypeCode retType = f.getRetType();
+        // "define %s%s @%s(%s) nounwind \"nosync\" \"nofree\" {",
+        StringBuilder header = new StringBuilder();
+        header.append("define ")
+              .append(retType)
+              .append(retType.isPrimitive() ? "" : "*")
+              .append(" @")
+              .append(f.getName())
+              .append('(');
+        List<Variable> args = f.getArgs();
+        for (int i = 0; i < args.size(); ++i) {
+            Variable arg = args.get(i);
+            // "%s%s %%%s"
+            header.append(i == 0 ? "" : ", ")
+                  .append(typeOf(arg))
+                  .append(" %")
+                  .append(arg.getName());
+        }
+        header.append(") nounwind \"nosync\" \"nofree\" {");
+        write(header.toString());
+
+        for (BasicBlock b : f.getBlocks()) {
+            if (b.getLabel() != null) {
+                write(b.getLabel() + ":");
+            }
+
+            List<Operation> ops = b.getOperations();
+            for (int i = 0; i < ops.size(); ++i) {
+                Operation op = ops.get(i);
+                String text;
+                if (b.isTailCall(i)) {
+                    // Self calls have the same prototype, so the frame reuse
+                    //  can be required instead of only allowed
+                    text = call(
+                        op,
+                        f.getName().equals(op.getName())
+                            ? "musttail "
+                            : "tail "
+                    );
+                } else {
+                    text = format(op);
+                }
+                if (text.isEmpty()) {
+                    write("");
+                } else {
+                    write(EnvCompiler.INDENT.repeat(op.getNesting()) + text);
+                }
+            }
+        }
+
+        write("}");
+    }
+
+    /**
+     * @param op Operation
+     * @return LLVM instruction, empty for a new line
+     */
+    @Contract(pure = true)
+    @NotNull
+    public String format(@NotNull Operation op) {
+        Variable dst = op.getResult();
+        List<OperationItem> operands = op.getOperands();
+        OperationItem left = operands.isEmpty() ? null : operands.get(0);
+        OperationItem right = operands.size() < 2 ? null : operands.get(1);
+
+        switch (op.getOpcode()) {
+            case COMMENT:
+                assert op.getName() != null;
+                return op.getName().isEmpty() ? "" : "; " + op.getName();
+
+            case ALLOCA:
+                // "%s = alloca %s%s"
+                assert dst != null;
+                return dst
+                       + " = alloca "
+                       + dst.getType()
+                       + "*".repeat(dst.getPointerLevel() - 1);
+
+            case LOAD:
+                // "%s = load %s%s, %s%s %s"
+                assert dst != null;
+                return dst
+                       + " = load "
+                       + typeOf(dst)
+                       + ", "
+                       + typeOf(dst)
+                       + "* "
+                       + left;
+
+            case STORE:
+                // "store %s%s %s, %s%s %s"
+                assert left != null && right != null;
+                return "store "
+                       + typeOf(left)
+                       + " "
+                       + left
+                       + ", "
+                       + left.getType()
+                       + "*".repeat(right.getPointerLevel())
+                       + " "
+                       + right;
+
+            case FIELD:
+                // "%s = getelementptr %s, %s%s %s, i32 0, i32 %d"
+                assert left != null;
+                return dst
+                       + " = getelementptr "
+                       + left.getType()
+                       + ", "
+                       + typeOf(left)
+                       + left
+                       + ", i32 0, i32 "
+                       + right;
+
+            case INDEX:
+                // "%s = getelementptr inbounds %s, %s* %s, i32 %s"
+                assert left != null;
+                return dst
+                       + " = getelementptr inbounds "
+                       + left.getType()
+                       + ", "
+                       + left.getType()
+                       + "* "
+                       + left
+                       + ", i32 "
+                       + right;
+
+            case STRING:
+                // "%s = getelementptr inbounds [%d x i8], [%d x i8]* %s, i32 0, i32 0"
+                assert left instanceof Variable;
+                int size = ((Variable) left).getSize();
+                return dst
+                       + " = getelementptr inbounds ["
+                       + size
+                       + " x i8], ["
+                       + size
+                       + " x i8]* "
+                       + left
+                       + ", i32 0, i32 0";
+
+            case ADD:
+                return arithmetic(op, "add", "fadd");
+
+            case SUB:
+                return arithmetic(op, "sub", "fsub");
+
+            case MUL:
+                return arithmetic(op, "mul", "fmul");
+
+            case DIV:
+                return arithmetic(op, "sdiv", "fdiv");
+
+            case MOD:
+                return arithmetic(op, "srem", "srem");
+
+            case AND:
+                return arithmetic(op, "and", "and");
+
+            case OR:
+                return arithmetic(op, "or", "or");
+
+            case NOT:
+                // "%s = xor %s %s, 1"
+                assert left != null;
+                return dst + " = xor " + left.getType() + " " + left + ", 1";
+
+            case NEG:
+                // "%s = fneg %s %s"
+                assert left != null;
+                return dst + " = fneg " + left.getType() + " " + left;
+
+            case CMP:
+                // "%s = %ccmp %s %s%s %s, %s"
+                // Example: "%temp = fcmp oeq double %x, %y"
+                assert left != null && op.getComparison() != null;
+                return dst
+                       + " = "
+                       + (left.getType() == TypeCode.CDouble ? 'f' : 'i')
+                       + "cmp "
+                       + predicate(op.getComparison(), left.getType())
+                       + " "
+                       + typeOf(left)
+                       + " "
+                       + left
+                       + ", "
+                       + right;
+
+            case CALL:
+                return call(op, "");
+
+            case CAST:
+                // "%s = bitcast %s%s %s to %s*"
+                assert dst != null && left != null;
+                return dst
+                       + " = bitcast "
+                       + typeOf(left)
+                       + " "
+                       + left
+                       + " to "
+                       + dst.getType()
+                       + "*";
+
+            case PHI: {
+                // "%s = phi %s%s [ %s, %%%s ], ..."
+                assert dst != null;
+                StringBuilder sb = new StringBuilder();
+                sb.append(dst).append(" = phi ").append(typeOf(dst));
+                for (int i = 0; i < operands.size(); ++i) {
+                    sb.append(i == 0 ? " [ " : ", [ ")
+                      .append(operands.get(i))
+                      .append(", %")
+                      .append(op.getTargets().get(i).getLabel())
+                      .append(" ]");
+                }
+                return sb.toString();
+            }
+
+            case JUMP:
+                return "br label %" + op.getTargets().get(0).getLabel();
+
+            case BRANCH:
+                // "br i1 %s, label %%%s, label %%%s"
+                return "br i1 "
+                       + left
+                       + ", label %"
+                       + op.getTargets().get(0).getLabel()
+                       + ", label %"
+                       + op.getTargets().get(1).getLabel();
+
+            case RET:
+                // "ret %s%s %s"
+                return left == null
+                    ? "ret void"
+                    : "ret " + typeOf(left) + " " + left;
+
+            default:
+                throw new IllegalStateException(
+                    "Unsupported operation: " + op.getOpcode()
+                );
+        }
+    }
+
+    /**
+     * @param op Call
+     * @param marker Tail call marker followed by a space, or empty
+     * @return LLVM instruction
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String call(@NotNull Operation op, @NotNull String marker) {
+        // "%s%scall %s%s @%s(%s)"
+        Variable dst = op.getResult();
+        List<OperationItem> operands = op.getOperands();
+        StringBuilder sb = new StringBuilder();
+        if (dst != null) {
+            sb.append(dst).append(" = ");
+        }
+        sb.append(marker)
+          .append("call ")
+          .append(dst == null ? TypeCode.CVoid : typeOf(dst))
+          .append(" @")
+          .append(op.getName())
+          .append('(');
+        for (int i = 0; i < operands.size(); ++i) {
+            OperationItem arg = operands.get(i);
+            // "%s%s %s",
+            sb.append(i == 0 ? "" : ", ")
+              .append(typeOf(arg))
+              .append(' ')
+              .append(arg);
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * @param op Binary operation
+     * @param integer Integer instruction
+     * @param floating Floating point instruction
+     * @return LLVM instruction
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String arithmetic(
+        @NotNull Operation op,
+        @NotNull String integer,
+        @NotNull String floating
+    ) {
+        // "%s = %s %s %s, %s"
+        OperationItem left = op.getOperand(0);
+        return op.getResult()
+               + " = "
+               + (left.getType() == TypeCode.CDouble ? floating : integer)
+               + " "
+               + left.getType()
+               + " "
+               + left
+               + ", "
+               + op.getOperand(1);
+    }
+}
@@ -5,197 +5,149 @@ import fr.rthd.jlc.compiler.Instruction;
 import fr.rthd.jlc.compiler.Literal;
 import fr.rthd.jlc.compiler.OperationItem;
 import fr.rthd.jlc.compiler.Variable;
+import fr.rthd.jlc.env.ClassLayout;
 import fr.rthd.jlc.env.ClassType;
+import fr.rthd.jlc.env.FunArg;
 import fr.rthd.jlc.env.FunType;
+import fr.rthd.jlc.ir.BasicBlock;
+import fr.rthd.jlc.ir.Comparison;
+import fr.rthd.jlc.ir.Opcode;
+import fr.rthd.jlc.ir.Operation;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
- * Instruction builder for LLVM. Quite critical section, so `String.format`
- * shouldn't be used, as it is several magnitudes slower.
+ * Instruction builder for LLVM. Function bodies are built as IR operations,
+ * printed by `IRPrinter`, while module-level definitions are directly built
+ * as text. Quite critical section, so `String.format` shouldn't be used, as it
+ * is several magnitudes slower.
  * @author RomainTHD
+ * @see IRPrinter
  */
 @NonNls
 class InstructionBuilder {
     /**
-     * Output a new line
-     * @return Instruction
+     * Build a binary operation
+     * @param opcode Operation code
+     * @param dst Destination variable
+     * @param left Left value
+     * @param right Right value
+     * @return Operation
      */
     @NotNull
-    public Instruction newLine() {
-        return new Instruction("");
+    private static Operation binary(
+        @NotNull Opcode opcode,
+        @NotNull Variable dst,
+        @NotNull OperationItem left,
+        @NotNull OperationItem right
+    ) {
+        return new Operation(opcode, dst, Arrays.asList(left, right));
     }
 
     /**
-     * Output a comment
-     * @param comment Comment to add
-     * @return Instruction
+     * Build a unary operation
+     * @param opcode Operation code
+     * @param dst Destination variable
+     * @param src Source value
+     * @return Operation
      */
     @NotNull
-    public Instruction comment(@NotNull String comment) {
-        return new Instruction("; " + comment);
+    private static Operation unary(
+        @NotNull Opcode opcode,
+        @Nullable Variable dst,
+        @NotNull OperationItem src
+    ) {
+        return new Operation(opcode, dst, Collections.singletonList(src));
     }
 
     /**
-     * No-op
-     * @param noopLabel Label for a noop instruction
-     * @return Instruction
+     * Output a new line
+     * @return Operation
      */
     @NotNull
-    public Instruction noop(@NotNull String noopLabel) {
-        // There is no noop in LLVM, so we make one ourselves by using a label
-        //  and a jump to it, without any operation in between. The LLVM
-        //  optimizer will hopefully be smart enough to remove this fake noop
-        Instruction i = new Instruction();
-        i.add(jump(noopLabel));
-        i.add(label(noopLabel));
-        return i;
+    public Operation newLine() {
+        return comment("");
+    }
+
+    /**
+     * Output a comment
+     * @param comment Comment to add, a new line if empty
+     * @return Operation
+     */
+    @NotNull
+    public Operation comment(@NotNull String comment) {
+        return new Operation(
+            Opcode.COMMENT,
+            null,
+            Collections.emptyList(),
+            Collections.emptyList(),
+            comment,
+            null
+        );
     }
 
     /**
      * Store a value in a variable
      * @param dst Destination variable
      * @param src Value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction store(
+    public Operation store(
         @NotNull OperationItem dst,
         @NotNull OperationItem src
     ) {
-        // "store %s%s %s, %s%s %s"
-        return new Instruction(
-            "store "
-            + src.getType()
-            + "*".repeat(src.getPointerLevel())
-            + " "
-            + src
-            + ", "
-            + src.getType()
-            + "*".repeat(dst.getPointerLevel())
-            + " "
-            + dst
-        );
+        return new Operation(Opcode.STORE, null, Arrays.asList(src, dst));
     }
 
     /**
      * Load a variable in memory to a temporary variable
      * @param dst Destination variable
      * @param src Source variable
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction load(@NotNull Variable dst, @NotNull Variable src) {
-        // "%s = load %s%s, %s%s %s"
-        return new Instruction(
-            dst
-            + " = load "
-            + dst.getType()
-            + "*".repeat(dst.getPointerLevel())
-            + ", "
-            + dst.getType()
-            + "*".repeat(dst.getPointerLevel() + 1)
-            + " "
-            + src
-        );
+    public Operation load(@NotNull Variable dst, @NotNull Variable src) {
+        return unary(Opcode.LOAD, dst, src);
     }
 
     /**
      * Load a class attribute in memory
      * @param dst Destination variable
      * @param attributeLocation Attribute location
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction loadAttribute(
+    public Operation loadAttribute(
         @NotNull Variable dst,
         @NotNull OperationItem thisVar,
         int attributeLocation
     ) {
-        // "%s = getelementptr %s, %s%s %s, i32 0, i32 %d"
-        return new Instruction(
-            dst
-            + " = getelementptr "
-            + thisVar.getType()
-            + ", "
-            + thisVar.getType()
-            + "*".repeat(thisVar.getPointerLevel())
-            + ""
-            + thisVar
-            + ", i32 0, i32 "
-            + attributeLocation
+        return binary(
+            Opcode.FIELD,
+            dst,
+            thisVar,
+            new Literal(TypeCode.CInt, attributeLocation)
         );
     }
 
     /**
      * Declare a new variable in memory
      * @param dst Destination variable
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction declare(@NotNull Variable dst) {
-        // "%s = alloca %s%s"
+    public Operation declare(@NotNull Variable dst) {
         assert dst.getPointerLevel() != 0;
-        return new Instruction(
-            dst
-            + " = alloca "
-            + dst.getType()
-            + "*".repeat(dst.getPointerLevel() - 1)
-        );
-    }
-
-    /**
-     * Start a function declaration
-     * @param parentClass Parent class or null
-     * @param retType Return type
-     * @param funcName Function name
-     * @param args Arguments
-     * @return Instruction
-     */
-    @NotNull
-    public Instruction functionDeclarationStart(
-        @Nullable ClassType<?> parentClass,
-        @NotNull TypeCode retType,
-        @NotNull String funcName,
-        @NotNull List<Variable> args
-    ) {
-        // "define %s%s @%s(%s) nounwind \"nosync\" \"nofree\" {",
-        return new Instruction(
-            "define "
-            + retType
-            + (retType.isPrimitive() ? "" : "*")
-            + " @"
-            + (
-                parentClass == null
-                ? funcName
-                : parentClass.getAssemblyMethodName(funcName)
-            )
-            + "("
-            + args.stream()
-                  // "%s%s %%%s"
-                  .map(arg -> arg.getType()
-                              + "*".repeat(arg.getPointerLevel())
-                              + " %"
-                              + arg.getName()
-                  )
-                  .reduce((a, b) -> a + ", " + b)
-                  .orElse("")
-            + ") nounwind \"nosync\" \"nofree\" {"
-        );
-    }
-
-    /**
-     * End a function declaration
-     * @return Instruction
-     */
-    @NotNull
-    public Instruction functionDeclarationEnd() {
-        return new Instruction("}");
+        return new Operation(Opcode.ALLOCA, dst, Collections.emptyList());
     }
 
     /**
@@ -226,10 +178,10 @@ class InstructionBuilder {
      * Call a void function
      * @param funcName Function name
      * @param args Arguments
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction call(
+    public Operation call(
         @NotNull String funcName,
         @NotNull List<OperationItem> args
     ) {
@@ -241,46 +193,43 @@ class InstructionBuilder {
      * @param dst Destination variable for return value
      * @param funcName Function name
      * @param args Arguments
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction call(
+    public Operation call(
         @Nullable Variable dst,
         @NotNull String funcName,
         @NotNull List<OperationItem> args
     ) {
-        // "%scall %s%s @%s(%s)"
-        return new Instruction(
-            (dst == null ? "" : dst + " = ")
-            + "call "
-            + (dst == null ? TypeCode.CVoid : dst.getType())
-            + (dst == null ? "" : "*".repeat(dst.getPointerLevel()))
-            + " @"
-            + funcName
-            + "("
-            + args.stream()
-                  // "%s%s %s",
-                  .map(arg -> arg.getType()
-                              + "*".repeat(arg.getPointerLevel())
-                              + " "
-                              + arg
-                  )
-                  .reduce((a, b) -> a + ", " + b)
-                  .orElse("")
-            + ")"
-        );
+        return call(dst, funcName, args, false);
     }
 
     /**
-     * Output a label
-     * @param labelName Label name
-     * @return Instruction
+     * Call a function
+     * @param dst Destination variable for return value, null if void
+     * @param funcName Function name
+     * @param args Arguments
+     * @param pure Pure function or not
+     * @return Operation
+     * @see FunType#isPure()
      */
     @NotNull
-    public Instruction label(@NotNull String labelName) {
-        Instruction i = new Instruction(labelName + ":");
-        i.setIndentable(false);
-        return i;
+    public Operation call(
+        @Nullable Variable dst,
+        @NotNull String funcName,
+        @NotNull List<OperationItem> args,
+        boolean pure
+    ) {
+        Operation op = new Operation(
+            Opcode.CALL,
+            dst,
+            args,
+            Collections.emptyList(),
+            funcName,
+            null
+        );
+        op.setPureCall(pure);
+        return op;
     }
 
     /**
@@ -288,26 +237,15 @@ class InstructionBuilder {
      * @param dst Destination variable
      * @param left Left value
      * @param right Right value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction add(
+    public Operation add(
         @NotNull Variable dst,
         @NotNull OperationItem left,
         @NotNull OperationItem right
     ) {
-        // "%s = %sadd %s %s, %s"
-        return new Instruction(
-            dst
-            + " = "
-            + (left.getType() == TypeCode.CDouble ? "f" : "")
-            + "add "
-            + left.getType()
-            + " "
-            + left
-            + ", "
-            + right
-        );
+        return binary(Opcode.ADD, dst, left, right);
     }
 
     /**
@@ -315,26 +253,15 @@ class InstructionBuilder {
      * @param dst Destination variable
      * @param left Left value
      * @param right Right value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction subtract(
+    public Operation subtract(
         @NotNull Variable dst,
         @NotNull OperationItem left,
         @NotNull OperationItem right
     ) {
-        // "%s = %ssub %s %s, %s"
-        return new Instruction(
-            dst
-            + " = "
-            + (left.getType() == TypeCode.CDouble ? "f" : "")
-            + "sub "
-            + left.getType()
-            + " "
-            + left
-            + ", "
-            + right
-        );
+        return binary(Opcode.SUB, dst, left, right);
     }
 
     /**
@@ -342,26 +269,15 @@ class InstructionBuilder {
      * @param dst Destination temp variable
      * @param left Left value
      * @param right Right value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction multiply(
+    public Operation multiply(
         @NotNull Variable dst,
         @NotNull OperationItem left,
         @NotNull OperationItem right
     ) {
-        // "%s = %smul %s %s, %s"
-        return new Instruction(
-            dst
-            + " = "
-            + (left.getType() == TypeCode.CDouble ? "f" : "")
-            + "mul "
-            + left.getType()
-            + " "
-            + left
-            + ", "
-            + right
-        );
+        return binary(Opcode.MUL, dst, left, right);
     }
 
     /**
@@ -369,26 +285,15 @@ class InstructionBuilder {
      * @param dst Destination temp variable
      * @param left Left value
      * @param right Right value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction divide(
+    public Operation divide(
         @NotNull Variable dst,
         @NotNull OperationItem left,
         @NotNull OperationItem right
     ) {
-        // "%s = %cdiv %s %s, %s"
-        return new Instruction(
-            dst
-            + " = "
-            + (left.getType() == TypeCode.CDouble ? "f" : "s")
-            + "div "
-            + left.getType()
-            + " "
-            + left
-            + ", "
-            + right
-        );
+        return binary(Opcode.DIV, dst, left, right);
     }
 
     /**
@@ -396,118 +301,99 @@ class InstructionBuilder {
      * @param dst Destination temp variable
      * @param left Left value
      * @param right Right value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction modulo(
+    public Operation modulo(
         @NotNull Variable dst,
         @NotNull OperationItem left,
         @NotNull OperationItem right
     ) {
-        // "%s = srem %s %s, %s"
-        return new Instruction(
-            dst
-            + " = "
-            + "srem "
-            + left.getType()
-            + " "
-            + left
-            + ", "
-            + right
-        );
+        return binary(Opcode.MOD, dst, left, right);
     }
 
     /**
      * Compare two values
      * @param dst Destination temp variable
      * @param left Left value
-     * @param operator Operator
+     * @param comparison Comparison
      * @param right Right value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction compare(
+    public Operation compare(
         @NotNull Variable dst,
         @NotNull OperationItem left,
-        @NotNull ComparisonOperator operator,
+        @NotNull Comparison comparison,
         @NotNull OperationItem right
     ) {
-        // "%s = %ccmp %s %s%s %s, %s"
-        // Example: "%temp = fcmp oeq double %x, %y"
-        return new Instruction(
-            dst
-            + " = "
-            + (left.getType() == TypeCode.CDouble ? 'f' : 'i')
-            + "cmp "
-            + ComparisonOperator.getOperand(operator, left.getType())
-            + " "
-            + left.getType()
-            + "*".repeat(left.getPointerLevel())
-            + " "
-            + left
-            + ", "
-            + right
+        return new Operation(
+            Opcode.CMP,
+            dst,
+            Arrays.asList(left, right),
+            Collections.emptyList(),
+            null,
+            comparison
         );
     }
 
     /**
-     * Jump to a label
-     * @param label Label name
-     * @return Instruction
+     * Jump to a block
+     * @param target Target block
+     * @return Operation
      */
     @NotNull
-    public Instruction jump(@NotNull String label) {
-        return new Instruction("br label %" + label);
+    public Operation jump(@NotNull BasicBlock target) {
+        return new Operation(
+            Opcode.JUMP,
+            null,
+            Collections.emptyList(),
+            Collections.singletonList(target),
+            null,
+            null
+        );
     }
 
     /**
      * Conditional jump, for if statements or while statements
      * @param condition Condition value, boolean
-     * @param labelTrue Label name if condition is true
-     * @param labelFalse Label name if condition is false
-     * @return Instruction
+     * @param targetTrue Target block if condition is true
+     * @param targetFalse Target block if condition is false
+     * @return Operation
      */
     @NotNull
-    public Instruction conditionalJump(
+    public Operation conditionalJump(
         @NotNull OperationItem condition,
-        @NotNull String labelTrue,
-        @NotNull String labelFalse
+        @NotNull BasicBlock targetTrue,
+        @NotNull BasicBlock targetFalse
     ) {
-        // "br i1 %s, label %%%s, label %%%s"
-        return new Instruction(
-            "br i1 "
-            + condition
-            + ", label %"
-            + labelTrue
-            + ", label %"
-            + labelFalse
+        return new Operation(
+            Opcode.BRANCH,
+            null,
+            Collections.singletonList(condition),
+            Arrays.asList(targetTrue, targetFalse),
+            null,
+            null
         );
     }
 
     /**
      * Void return
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction ret() {
-        return new Instruction("ret void");
+    public Operation ret() {
+        return new Operation(Opcode.RET, null, Collections.emptyList());
     }
 
     /**
      * Non-void return
      * @param returned Returned value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction ret(@NotNull OperationItem returned) {
-        // "ret %s%s %s"
-        return new Instruction(
-            "ret "
-            + returned.getType()
-            + "*".repeat(returned.getPointerLevel())
-            + " "
-            + returned
-        );
+    public Operation ret(@NotNull OperationItem returned) {
+        return unary(Opcode.RET, null, returned);
     }
 
     /**
@@ -515,24 +401,15 @@ class InstructionBuilder {
      * @param dst Destination temp variable
      * @param left Left value
      * @param right Right value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction and(
+    public Operation and(
         @NotNull Variable dst,
         @NotNull OperationItem left,
         @NotNull OperationItem right
     ) {
-        // "%s = and %s %s, %s"
-        return new Instruction(
-            dst
-            + " = and "
-            + left.getType()
-            + " "
-            + left
-            + ", "
-            + right
-        );
+        return binary(Opcode.AND, dst, left, right);
     }
 
     /**
@@ -540,68 +417,44 @@ class InstructionBuilder {
      * @param dst Destination temp variable
      * @param left Left value
      * @param right Right value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction or(
+    public Operation or(
         @NotNull Variable dst,
         @NotNull OperationItem left,
         @NotNull OperationItem right
     ) {
-        // "%s = or %s %s, %s"
-        return new Instruction(
-            dst
-            + " = or "
-            + left.getType()
-            + " "
-            + left
-            + ", "
-            + right
-        );
+        return binary(Opcode.OR, dst, left, right);
     }
 
     /**
      * Logic negation of a value
      * @param dst Destination temp variable
      * @param src Source value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction not(
+    public Operation not(
         @NotNull Variable dst,
         @NotNull OperationItem src
     ) {
-        // "%s = xor %s %s, 1"
-        return new Instruction(
-            dst
-            + " = xor "
-            + src.getType()
-            + " "
-            + src
-            + ", 1"
-        );
+        return unary(Opcode.NOT, dst, src);
     }
 
     /**
      * Mathematical negation of a value
      * @param dst Destination temp variable
      * @param src Source value
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction neg(
+    public Operation neg(
         @NotNull Variable dst,
         @NotNull Variable src
     ) {
         if (src.getType() == TypeCode.CDouble) {
-            // "%s = fneg %s %s"
-            return new Instruction(
-                dst
-                + " = fneg "
-                + src.getType()
-                + " "
-                + src
-            );
+            return unary(Opcode.NEG, dst, src);
         } else {
             return subtract(
                 dst,
@@ -637,116 +490,279 @@ class InstructionBuilder {
      * Load a string literal
      * @param dst Destination temp variable
      * @param global Global variable
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction loadStringLiteral(
+    public Operation loadStringLiteral(
         @NotNull Variable dst,
         @NotNull Variable global
     ) {
-        // "%s = getelementptr inbounds [%d x i8], [%d x i8]* %s, i32 0, i32 0"
-        return new Instruction(
-            dst
-            + " = getelementptr inbounds ["
-            + global.getSize()
-            + " x i8], ["
-            + global.getSize()
-            + " x i8]* "
-            + global
-            + ", i32 0, i32 0"
-        );
+        return unary(Opcode.STRING, dst, global);
     }
 
     /**
      * Class definition
      * @param className Class name
-     * @param members Class members
+     * @param members Class members, after the vtable pointer
      * @return Instruction
+     * @see ClassLayout#VTABLE_FIELD
      */
     @NotNull
     public Instruction classDef(
         @NotNull String className,
         @NotNull List<TypeCode> members
     ) {
-        // "%%%s = type { %s }"
+        // "%%%s = type { i8**, %s }"
         return new Instruction(
             "%"
             + className
-            + " = type { "
+            + " = type { i8**"
             + members.stream()
-                     .map(t -> t.toString() + (t.isPrimitive() ? "" : "*"))
-                     .collect(Collectors.joining(", "))
+                     .map(t -> ", " + typeOf(t))
+                     .collect(Collectors.joining())
             + " }"
         );
     }
 
+    /**
+     * Vtable of a class, an array of untyped method pointers, and the global
+     * holding its address
+     * @param c Class
+     * @return Instruction
+     * @see ClassLayout#getSlotMethod(int)
+     */
+    @NotNull
+    public Instruction vtableDef(@NotNull ClassType<?> c) {
+        ClassLayout<?> layout = c.getLayout();
+        String arrayType = "[" + layout.getSlotCount() + " x i8*]";
+        StringBuilder entries = new StringBuilder();
+        for (int slot = 0; slot < layout.getSlotCount(); ++slot) {
+            FunType m = layout.getSlotMethod(slot);
+            // "i8* bitcast (%s* @%s to i8*)"
+            entries.append(slot == 0 ? "" : ", ")
+                   .append("i8* bitcast (")
+                   .append(functionType(m.getRetType(), m.getArgs()))
+                   .append("* @")
+                   .append(layout.getSlotOwner(slot)
+                                 .getAssemblyMethodName(m.getName()))
+                   .append(" to i8*)");
+        }
+
+        Instruction inst = new Instruction();
+        // "@%s = internal constant %s [ %s ]"
+        inst.add(
+            "@"
+            + c.getVTableName()
+            + " = internal constant "
+            + arrayType
+            + " ["
+            + entries
+            + "]"
+        );
+        // "@%s = internal constant i8** getelementptr inbounds (%s, %s* @%s,
+        //  i32 0, i32 0)"
+        inst.add(
+            "@"
+            + c.getVTablePointerName()
+            + " = internal constant i8** getelementptr inbounds ("
+            + arrayType
+            + ", "
+            + arrayType
+            + "* @"
+            + c.getVTableName()
+            + ", i32 0, i32 0)"
+        );
+        return inst;
+    }
+
+    /**
+     * Dispatch stub of a method, calling the method found in the vtable of
+     * `self`. Always inlined, so it only exists to keep the function pointer
+     * types out of the IR
+     * @param c Static class of the receiver
+     * @param slot Method slot
+     * @return Instruction
+     */
+    @NotNull
+    public Instruction dispatchDef(@NotNull ClassType<?> c, int slot) {
+        FunType m = c.getLayout().getSlotMethod(slot);
+        TypeCode retType = m.getRetType();
+        String self = typeOf(c.getType());
+
+        // Same arguments, but `self` has the static type of the receiver
+        List<String> argTypes = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        argTypes.add(self);
+        args.add(self + " %self");
+        for (int i = 1; i < m.getArgs().size(); ++i) {
+            String type = typeOf(m.getArgs().get(i).getType());
+            argTypes.add(type);
+            args.add(type + " %arg" + i);
+        }
+        String fnType = typeOf(retType)
+                        + " ("
+                        + String.join(", ", argTypes)
+                        + ")*";
+        String call = "tail call "
+                      + typeOf(retType)
+                      + " %method("
+                      + String.join(", ", args)
+                      + ")";
+
+        Instruction inst = new Instruction();
+        inst.setIndentable(false);
+        // "define internal %s @%s(%s) alwaysinline nounwind {"
+        inst.add(
+            "define internal "
+            + typeOf(retType)
+            + " @"
+            + c.getDispatchMethodName(m.getName())
+            + "("
+            + String.join(", ", args)
+            + ") alwaysinline nounwind \"nosync\" \"nofree\" {"
+        );
+        inst.add(
+            EnvCompiler.INDENT
+            + "%vptr = getelementptr "
+            + c.getType()
+            + ", "
+            + self
+            + " %self, i32 0, i32 "
+            + ClassLayout.VTABLE_FIELD
+        );
+        inst.add(EnvCompiler.INDENT + "%vtable = load i8**, i8*** %vptr");
+        inst.add(
+            EnvCompiler.INDENT
+            + "%entry = getelementptr inbounds i8*, i8** %vtable, i32 "
+            + slot
+        );
+        inst.add(EnvCompiler.INDENT + "%raw = load i8*, i8** %entry");
+        inst.add(
+            EnvCompiler.INDENT + "%method = bitcast i8* %raw to " + fnType
+        );
+        if (retType == TypeCode.CVoid) {
+            inst.add(EnvCompiler.INDENT + call);
+            inst.add(EnvCompiler.INDENT + "ret void");
+        } else {
+            inst.add(EnvCompiler.INDENT + "%result = " + call);
+            inst.add(
+                EnvCompiler.INDENT + "ret " + typeOf(retType) + " %result"
+            );
+        }
+        inst.add("}");
+        return inst;
+    }
+
+    /**
+     * Store the vtable address of a class in a new object
+     * @param obj New object
+     * @param field Vtable pointer field, as a temporary variable
+     * @param vtable Vtable address, as a temporary variable
+     * @param global Global holding the vtable address
+     * @return Operations
+     * @see ClassType#getVTablePointerName()
+     */
+    @NotNull
+    public List<Operation> storeVTable(
+        @NotNull Variable obj,
+        @NotNull Variable field,
+        @NotNull Variable vtable,
+        @NotNull Variable global
+    ) {
+        List<Operation> ops = new ArrayList<>();
+        ops.add(loadAttribute(field, obj, ClassLayout.VTABLE_FIELD));
+        ops.add(load(vtable, global));
+        ops.add(store(field, vtable));
+        return ops;
+    }
+
+    /**
+     * @param t Type
+     * @return LLVM type of a value of this type, objects being pointers
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String typeOf(@NotNull TypeCode t) {
+        return t.toString() + (t.isPrimitive() ? "" : "*");
+    }
+
+    /**
+     * @param retType Return type
+     * @param args Arguments
+     * @return LLVM type of a function, without the pointer
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String functionType(
+        @NotNull TypeCode retType,
+        @NotNull List<FunArg> args
+    ) {
+        return typeOf(retType)
+               + " ("
+               + args.stream()
+                     .map(arg -> typeOf(arg.getType()))
+                     .collect(Collectors.joining(", "))
+               + ")";
+    }
+
     /**
      * `new` call, using malloc
      * @param dst Destination variable
      * @param tmp Temporary variable
      * @param size Size of the object to allocate
-     * @return Instruction
+     * @return Operations
      */
     @NotNull
-    public Instruction newObject(
+    public List<Operation> newObject(
         @NotNull Variable dst,
         @NotNull Variable tmp,
         int size
     ) {
-        Instruction i = new Instruction();
+        List<Operation> ops = new ArrayList<>();
         List<OperationItem> args = new ArrayList<>();
         args.add(new Literal(TypeCode.CInt, size));
-        i.add(call(tmp, "malloc", args));
-        i.add(cast(dst, tmp, dst.getType()));
-        return i;
+        ops.add(call(tmp, "malloc", args));
+        ops.add(cast(dst, tmp));
+        return ops;
     }
 
     /**
-     * Cast a value to a type
+     * Cast a value to the type of the destination
      * @param dst Destination variable
      * @param src Source value
-     * @param classType Class type
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction cast(
+    public Operation cast(
         @NotNull Variable dst,
-        @NotNull OperationItem src,
-        @NotNull TypeCode classType
+        @NotNull OperationItem src
     ) {
-        // "%s = bitcast %s%s %s to %s*"
-        return new Instruction(
-            dst
-            + " = bitcast "
-            + src.getType()
-            + "*".repeat(src.getPointerLevel())
-            + " "
-            + src
-            + " to "
-            + classType
-            + "*"
-        );
+        return unary(Opcode.CAST, dst, src);
     }
 
     /**
      * Array definition
      * @param type Array type
+     * @param elementType Array element type, one dimension less
      * @return Instruction
      */
     @NotNull
-    public Instruction arrayDef(@NotNull TypeCode type) {
+    public Instruction arrayDef(
+        @NotNull TypeCode type,
+        @NotNull TypeCode elementType
+    ) {
         assert type.isArray();
         Instruction i = new Instruction();
-        i.add(comment("Array definition: " + type.getRealName()));
+        i.add("; Array definition: " + type.getRealName());
         // "%s = type { %s, %s* }"
-        i.add(new Instruction(
+        i.add(
             type
             + " = type { "
             + TypeCode.CInt
             + ", "
-            + TypeCode.forArray(type.getBaseType(), type.getDimension() - 1)
+            + elementType
             + "* }"
-        ));
+        );
         return i;
     }
 
@@ -756,22 +772,22 @@ class InstructionBuilder {
      * @param tmp Temp variable
      * @param len Array length
      * @param item Item type
-     * @return Instruction
+     * @return Operations
      */
     @NotNull
-    public Instruction arrayAlloc(
+    public List<Operation> arrayAlloc(
         @NotNull Variable dst,
         @NotNull Variable tmp,
         @NotNull OperationItem len,
         @NotNull TypeCode item
     ) {
-        Instruction i = new Instruction();
+        List<Operation> ops = new ArrayList<>();
         List<OperationItem> args = new ArrayList<>();
         args.add(len);
         args.add(new Literal(TypeCode.CInt, item.getSize()));
-        i.add(call(tmp, "calloc", args));
-        i.add(cast(dst, tmp, dst.getType()));
-        return i;
+        ops.add(call(tmp, "calloc", args));
+        ops.add(cast(dst, tmp));
+        return ops;
     }
 
     /**
@@ -779,25 +795,14 @@ class InstructionBuilder {
      * @param dst Destination variable
      * @param src Array content
      * @param index Index
-     * @return Instruction
+     * @return Operation
      */
     @NotNull
-    public Instruction loadIndex(
+    public Operation loadIndex(
         @NotNull Variable dst,
         @NotNull Variable src,
         @NotNull OperationItem index
     ) {
-        // "%s = getelementptr inbounds %s, %s* %s, i32 %s"
-        return new Instruction(
-            dst
-            + " = getelementptr inbounds "
-            + src.getType()
-            + ", "
-            + src.getType()
-            + "* "
-            + src
-            + ", i32 "
-            + index
-        );
+        return binary(Opcode.INDEX, dst, src, index);
     }
 }
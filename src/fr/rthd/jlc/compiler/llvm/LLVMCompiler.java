@@ -7,13 +7,32 @@ import fr.rthd.jlc.compiler.Variable;
 import fr.rthd.jlc.env.ClassType;
 import fr.rthd.jlc.env.Env;
 import fr.rthd.jlc.env.FunType;
+import fr.rthd.jlc.ir.ConstantPropagation;
+import fr.rthd.jlc.ir.DeadCodeElimination;
+import fr.rthd.jlc.ir.FunctionPass;
+import fr.rthd.jlc.ir.GlobalValueNumbering;
+import fr.rthd.jlc.ir.Inliner;
+import fr.rthd.jlc.ir.LoopInvariantCodeMotion;
+import fr.rthd.jlc.ir.MergeBlocks;
+import fr.rthd.jlc.ir.PromoteMemory;
+import fr.rthd.jlc.ir.TailRecursion;
 import javalette.Absyn.Prog;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Compiler
@@ -21,6 +40,11 @@ import java.io.IOException;
  */
 @NonNls
 public class LLVMCompiler implements Visitor {
+    /**
+     * Size of the stdout buffer
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     /**
      * Output file path
      */
@@ -28,11 +52,111 @@ public class LLVMCompiler implements Visitor {
     private final String _outputFilePath;
 
     /**
-     * Constructor
+     * Standard output, used if no output file was specified
+     */
+    @NotNull
+    private final OutputStream _stdout;
+
+    /**
+     * Descriptive value and label names instead of compact ones
+     */
+    private final boolean _readableNames;
+
+    /**
+     * Passes run on each function before printing it
+     */
+    @NotNull
+    private final List<FunctionPass> _passes;
+
+    /**
+     * Inliner of the module, or null if none
+     */
+    @Nullable
+    private final Inliner _inliner;
+
+    /**
+     * Resolve method calls statically when no subclass overrides them
+     */
+    private final boolean _devirtualize;
+
+    /**
+     * Number of instructions emitted by the last compilation
+     */
+    private int _instructionCount;
+
+    /**
+     * Constructor. The level is explicit, since it also selects the IR passes
      * @param outputFilePath Output file path
+     * @param stdout Standard output
+     * @param readableNames Descriptive value and label names instead of
+     *     compact ones
+     * @param optimizationLevel Optimization level
+     * @see fr.rthd.jlc.ArgParse#optimizationLevel
      */
-    public LLVMCompiler(@Nullable String outputFilePath) {
+    public LLVMCompiler(
+        @Nullable String outputFilePath,
+        @NotNull OutputStream stdout,
+        boolean readableNames,
+        int optimizationLevel
+    ) {
         _outputFilePath = outputFilePath;
+        _stdout = stdout;
+        _readableNames = readableNames;
+        _passes = getPasses(optimizationLevel);
+        _inliner = getInliner(optimizationLevel, _passes);
+        _devirtualize = optimizationLevel != 0;
+        _instructionCount = 0;
+    }
+
+    /**
+     * @param optimizationLevel Optimization level
+     * @return Passes run on each function
+     */
+    @NotNull
+    private static List<FunctionPass> getPasses(int optimizationLevel) {
+        if (optimizationLevel == 0) {
+            return Collections.emptyList();
+        }
+
+        // Constants are mostly stored in local variables, so they must be
+        //  promoted to SSA values first. Tail recursion is turned into a loop
+        //  before, so that the arguments are promoted like the locals
+        return List.of(
+            new TailRecursion(),
+            new PromoteMemory(),
+            new ConstantPropagation(),
+            new GlobalValueNumbering(),
+            new LoopInvariantCodeMotion(),
+            // Hoisted invariants of several blocks may be the same value
+            new GlobalValueNumbering(),
+            new DeadCodeElimination(),
+            new MergeBlocks()
+        );
+    }
+
+    /**
+     * @param optimizationLevel Optimization level
+     * @param passes Passes run on each function
+     * @return Inliner, or null if calls shouldn't be inlined at this level
+     */
+    @Nullable
+    private static Inliner getInliner(
+        int optimizationLevel,
+        @NotNull List<FunctionPass> passes
+    ) {
+        // Maximum number of operations of an inlined function. Inlining a
+        //  getter or a wrapper costs less than its call sequence, so it also
+        //  shrinks the code at level -1, for size
+        switch (optimizationLevel) {
+            case -1:
+                return new Inliner(4, passes);
+            case 2:
+                return new Inliner(24, passes);
+            case 3:
+                return new Inliner(64, passes);
+            default:
+                return null;
+        }
     }
 
     /**
@@ -53,20 +177,44 @@ public class LLVMCompiler implements Visitor {
             "cast",
             value.getPointerLevel()
         );
-        env.emit(env.instructionBuilder.cast(
-            tmp,
-            value,
-            tmp.getType()
-        ));
+        env.emit(env.instructionBuilder.cast(tmp, value));
 
         return tmp;
     }
 
+    /**
+     * Open the output, stdout if no output file was specified
+     * @return Buffered output
+     * @throws IOException If the output file can't be opened
+     */
+    @NotNull
+    private Writer openOutput() throws IOException {
+        if (_outputFilePath == null) {
+            // Default, print assembly to stdout. Stdout must stay open, so
+            //  closing this writer only flushes it
+            return new BufferedWriter(
+                new OutputStreamWriter(_stdout, StandardCharsets.UTF_8),
+                OUTPUT_BUFFER_SIZE
+            ) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        } else {
+            // Flag `-o` was set, write to file
+            return Files.newBufferedWriter(
+                Paths.get(_outputFilePath),
+                StandardCharsets.UTF_8
+            );
+        }
+    }
+
     /**
      * Entry point
      * @param p Program
      * @param parent Parent environment
-     * @return Compiled program as a string
+     * @return Compiled program
      */
     @NotNull
     @Override
@@ -74,25 +222,32 @@ public class LLVMCompiler implements Visitor {
         @NotNull Prog p,
         @NotNull Env<?, FunType, ClassType<?>> parent
     ) {
-        EnvCompiler env = new EnvCompiler(parent, new InstructionBuilder());
-        p.accept(new ProgVisitor(), env);
-        String asm = env.toAssembly();
-
-        if (_outputFilePath == null) {
-            // Default, print assembly to stdout
-            System.out.println(asm);
-        } else {
-            // Flag `-o` was set, write to file
-            try {
-                FileWriter fw = new FileWriter(_outputFilePath);
-                fw.write(asm);
-                fw.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-                // TODO: Log error
-            }
+        try (Writer output = openOutput()) {
+            EnvCompiler env = new EnvCompiler(
+                parent,
+                new InstructionBuilder(),
+                new StringPool(),
+                output,
+                _readableNames,
+                _passes,
+                _inliner,
+                _devirtualize
+            );
+            p.accept(new ProgVisitor(), env);
+            env.finish();
+            _instructionCount = env.getInstructionCount();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
 
         return p;
     }
+
+    /**
+     * @return Number of instructions emitted by the last compilation
+     */
+    @Contract(pure = true)
+    public int getInstructionCount() {
+        return _instructionCount;
+    }
 }
@@ -1,6 +1,10 @@
 package fr.rthd.jlc.compiler.llvm;
 
+import fr.rthd.jlc.env.ClassType;
+import fr.rthd.jlc.env.FunArg;
+import fr.rthd.jlc.env.FunType;
 import javalette.Absyn.AttrMember;
+import javalette.Absyn.FnDef;
 import javalette.Absyn.FnMember;
 import javalette.Absyn.Member;
 import org.jetbrains.annotations.NonNls;
@@ -18,7 +22,17 @@ class MemberVisitor implements Member.Visitor<Void, EnvCompiler> {
      */
     @Override
     public Void visit(FnMember p, EnvCompiler env) {
-        return p.funcdef_.accept(new FuncDefVisitor(), env);
+        ClassType<?> c = env.getCurrentClass();
+        assert c != null;
+
+        // `self` is the first argument for methods. Added before any body is
+        //  emitted, since other functions may call this method concurrently
+        FunType func = c.getMethod(((FnDef) p.funcdef_).ident_, true);
+        assert func != null;
+        func.addArgFirst(new FunArg(c.getType(), "self"));
+
+        env.defer(e -> p.funcdef_.accept(new FuncDefVisitor(), e));
+        return null;
     }
 
     /**
@@ -1,6 +1,8 @@
 package fr.rthd.jlc.compiler.llvm;
 
 import fr.rthd.jlc.TypeCode;
+import fr.rthd.jlc.TypeUniverse;
+import fr.rthd.jlc.env.ClassHierarchy;
 import fr.rthd.jlc.env.ClassType;
 import fr.rthd.jlc.env.FunType;
 import javalette.Absyn.Prog;
@@ -33,14 +35,21 @@ class ProgVisitor implements Prog.Visitor<Void, EnvCompiler> {
 
         env.emit(env.instructionBuilder.newLine());
 
-        for (TypeCode t : TypeCode.getAllComplexTypes()) {
+        TypeUniverse types = env.getTypeUniverse();
+        for (TypeCode t : types.getAllComplexTypes()) {
             // Emit all array types used in the program
             if (t.isArray()) {
-                env.emit(env.instructionBuilder.arrayDef(t));
+                env.emit(env.instructionBuilder.arrayDef(
+                    t,
+                    types.forArray(t.getBaseType(), t.getDimension() - 1)
+                ));
                 env.emit(env.instructionBuilder.newLine());
             }
         }
 
+        // String literals, defined once for the whole module
+        env.emitStringPool(p);
+
         Map<String, FunType> classFunctions = new HashMap<>();
         for (ClassType<?> c : env.getAllClass()) {
             // Fill the environment with the class methods, since they now
@@ -53,6 +62,9 @@ class ProgVisitor implements Prog.Visitor<Void, EnvCompiler> {
         // FIXME: Sill useful since all functions are now declared as global?
         env.setClassFunctions(classFunctions);
 
+        // Whole program, so a call is known to be monomorphic or not
+        env.setClassHierarchy(new ClassHierarchy(env.getAllClass()));
+
         env.emit(env.instructionBuilder.newLine());
 
         for (TopDef topdef : p.listtopdef_) {
@@ -63,6 +75,9 @@ class ProgVisitor implements Prog.Visitor<Void, EnvCompiler> {
             topdef.accept(new TopDefVisitor(false), env);
         }
 
+        // Function bodies are independent once the signatures are known
+        env.runDeferred();
+
         env.setClassFunctions(null);
         return null;
     }
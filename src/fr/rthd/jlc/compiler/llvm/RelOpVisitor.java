@@ -3,6 +3,7 @@ package fr.rthd.jlc.compiler.llvm;
 import fr.rthd.jlc.TypeCode;
 import fr.rthd.jlc.compiler.OperationItem;
 import fr.rthd.jlc.compiler.Variable;
+import fr.rthd.jlc.ir.Comparison;
 import javalette.Absyn.EQU;
 import javalette.Absyn.GE;
 import javalette.Absyn.GTH;
@@ -56,7 +57,7 @@ class RelOpVisitor implements RelOp.Visitor<OperationItem, EnvCompiler> {
         env.emit(env.instructionBuilder.compare(
             var,
             _left,
-            ComparisonOperator.LT,
+            Comparison.LT,
             _right
         ));
         return var;
@@ -74,7 +75,7 @@ class RelOpVisitor implements RelOp.Visitor<OperationItem, EnvCompiler> {
         env.emit(env.instructionBuilder.compare(
             var,
             _left,
-            ComparisonOperator.LE,
+            Comparison.LE,
             _right
         ));
         return var;
@@ -92,7 +93,7 @@ class RelOpVisitor implements RelOp.Visitor<OperationItem, EnvCompiler> {
         env.emit(env.instructionBuilder.compare(
             var,
             _left,
-            ComparisonOperator.GT,
+            Comparison.GT,
             _right
         ));
         return var;
@@ -110,7 +111,7 @@ class RelOpVisitor implements RelOp.Visitor<OperationItem, EnvCompiler> {
         env.emit(env.instructionBuilder.compare(
             var,
             _left,
-            ComparisonOperator.GE,
+            Comparison.GE,
             _right
         ));
         return var;
@@ -128,7 +129,7 @@ class RelOpVisitor implements RelOp.Visitor<OperationItem, EnvCompiler> {
         env.emit(env.instructionBuilder.compare(
             var,
             _left,
-            ComparisonOperator.EQ,
+            Comparison.EQ,
             _right
         ));
         return var;
@@ -146,7 +147,7 @@ class RelOpVisitor implements RelOp.Visitor<OperationItem, EnvCompiler> {
         env.emit(env.instructionBuilder.compare(
             var,
             _left,
-            ComparisonOperator.NE,
+            Comparison.NE,
             _right
         ));
         return var;
@@ -4,6 +4,7 @@ import fr.rthd.jlc.TypeCode;
 import fr.rthd.jlc.TypeVisitor;
 import fr.rthd.jlc.compiler.OperationItem;
 import fr.rthd.jlc.compiler.Variable;
+import fr.rthd.jlc.ir.BasicBlock;
 import fr.rthd.jlc.utils.Value;
 import javalette.Absyn.Ass;
 import javalette.Absyn.BStmt;
@@ -50,7 +51,12 @@ class StmtVisitor implements Stmt.Visitor<Void, EnvCompiler> {
      */
     @Override
     public Void visit(Empty p, EnvCompiler env) {
-        env.emit(env.instructionBuilder.noop(env.getNewLabel("noop")));
+        // There is no noop in LLVM, so we make one ourselves by using a label
+        //  and a jump to it, without any operation in between. The LLVM
+        //  optimizer will hopefully be smart enough to remove this fake noop
+        BasicBlock noop = env.createBlock("noop");
+        env.emit(env.instructionBuilder.jump(noop));
+        env.enterBlock(noop);
         return null;
     }
 
@@ -74,7 +80,7 @@ class StmtVisitor implements Stmt.Visitor<Void, EnvCompiler> {
     public Void visit(Decl p, EnvCompiler env) {
         for (Item item : p.listitem_) {
             item.accept(
-                new ItemVisitor(p.type_.accept(new TypeVisitor(), null)),
+                new ItemVisitor(p.type_.accept(new TypeVisitor(), env.getTypeUniverse())),
                 env
             );
         }
@@ -171,8 +177,8 @@ class StmtVisitor implements Stmt.Visitor<Void, EnvCompiler> {
      */
     @Override
     public Void visit(Cond p, EnvCompiler env) {
-        String thenLabel = env.getNewLabel("if_true");
-        String endLabel = env.getNewLabel("if_end");
+        BasicBlock thenBlock = env.createBlock("if_true");
+        BasicBlock endBlock = env.createBlock("if_end");
 
         env.emit(env.instructionBuilder.comment("if"));
         env.indent();
@@ -181,20 +187,20 @@ class StmtVisitor implements Stmt.Visitor<Void, EnvCompiler> {
         OperationItem res = p.expr_.accept(new ExprVisitor(), env);
         env.emit(env.instructionBuilder.conditionalJump(
             res,
-            thenLabel,
-            endLabel
+            thenBlock,
+            endBlock
         ));
 
-        env.emit(env.instructionBuilder.label(thenLabel));
+        env.enterBlock(thenBlock);
         env.enterScope();
         env.emit(env.instructionBuilder.comment("if then"));
         p.stmt_.accept(new StmtVisitor(), env);
         // Not useful to emit a jump here since there is a fallthrough
-        env.emit(env.instructionBuilder.jump(endLabel));
+        env.emit(env.instructionBuilder.jump(endBlock));
         env.leaveScope();
 
         env.unindent();
-        env.emit(env.instructionBuilder.label(endLabel));
+        env.enterBlock(endBlock);
         env.emit(env.instructionBuilder.comment("endif"));
 
         return null;
@@ -207,9 +213,9 @@ class StmtVisitor implements Stmt.Visitor<Void, EnvCompiler> {
      */
     @Override
     public Void visit(CondElse p, EnvCompiler env) {
-        String thenLabel = env.getNewLabel("if_true");
-        String elseLabel = env.getNewLabel("if_false");
-        String endLabel = env.getNewLabel("if_end");
+        BasicBlock thenBlock = env.createBlock("if_true");
+        BasicBlock elseBlock = env.createBlock("if_false");
+        BasicBlock endBlock = env.createBlock("if_end");
 
         env.emit(env.instructionBuilder.comment("if"));
         env.indent();
@@ -218,27 +224,27 @@ class StmtVisitor implements Stmt.Visitor<Void, EnvCompiler> {
         OperationItem res = p.expr_.accept(new ExprVisitor(), env);
         env.emit(env.instructionBuilder.conditionalJump(
             res,
-            thenLabel,
-            elseLabel
+            thenBlock,
+            elseBlock
         ));
 
-        env.emit(env.instructionBuilder.label(thenLabel));
+        env.enterBlock(thenBlock);
         env.enterScope();
         env.emit(env.instructionBuilder.comment("if then"));
         p.stmt_1.accept(new StmtVisitor(), env);
-        env.emit(env.instructionBuilder.jump(endLabel));
+        env.emit(env.instructionBuilder.jump(endBlock));
         env.leaveScope();
 
-        env.emit(env.instructionBuilder.label(elseLabel));
+        env.enterBlock(elseBlock);
         env.enterScope();
         env.emit(env.instructionBuilder.comment("if else"));
         p.stmt_2.accept(new StmtVisitor(), env);
         // Not useful to emit a jump here since there is a fallthrough
-        env.emit(env.instructionBuilder.jump(endLabel));
+        env.emit(env.instructionBuilder.jump(endBlock));
         env.leaveScope();
 
         env.unindent();
-        env.emit(env.instructionBuilder.label(endLabel));
+        env.enterBlock(endBlock);
         env.emit(env.instructionBuilder.comment("endif"));
 
         return null;
@@ -251,32 +257,32 @@ class StmtVisitor implements Stmt.Visitor<Void, EnvCompiler> {
      */
     @Override
     public Void visit(While p, EnvCompiler env) {
-        String cmpLabel = env.getNewLabel("while_compare");
-        String loopLabel = env.getNewLabel("while_loop");
-        String endLabel = env.getNewLabel("while_end");
+        BasicBlock cmpBlock = env.createBlock("while_compare");
+        BasicBlock loopBlock = env.createBlock("while_loop");
+        BasicBlock endBlock = env.createBlock("while_end");
 
         env.emit(env.instructionBuilder.comment("while"));
-        env.emit(env.instructionBuilder.jump(cmpLabel));
+        env.emit(env.instructionBuilder.jump(cmpBlock));
         env.indent();
-        env.emit(env.instructionBuilder.label(cmpLabel));
+        env.enterBlock(cmpBlock);
         env.emit(env.instructionBuilder.comment("while exp"));
 
         OperationItem res = p.expr_.accept(new ExprVisitor(), env);
         env.emit(env.instructionBuilder.conditionalJump(
             res,
-            loopLabel,
-            endLabel
+            loopBlock,
+            endBlock
         ));
 
-        env.emit(env.instructionBuilder.label(loopLabel));
+        env.enterBlock(loopBlock);
         env.enterScope();
         env.emit(env.instructionBuilder.comment("while loop"));
         p.stmt_.accept(new StmtVisitor(), env);
-        env.emit(env.instructionBuilder.jump(cmpLabel));
+        env.emit(env.instructionBuilder.jump(cmpBlock));
         env.leaveScope();
         env.unindent();
 
-        env.emit(env.instructionBuilder.label(endLabel));
+        env.enterBlock(endBlock);
         env.emit(env.instructionBuilder.comment("end while"));
 
         return null;
@@ -302,7 +308,7 @@ class StmtVisitor implements Stmt.Visitor<Void, EnvCompiler> {
         // Loop iteration element
         new NoInit(p.ident_).accept(new ItemVisitor(p.type_.accept(
             new TypeVisitor(),
-            null
+            env.getTypeUniverse()
         )), env);
         Variable elt = env.lookupVar(p.ident_);
         assert elt != null;
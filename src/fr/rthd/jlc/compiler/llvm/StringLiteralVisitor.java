@@ -0,0 +1,36 @@
+package fr.rthd.jlc.compiler.llvm;
+
+import javalette.Absyn.EString;
+import javalette.FoldVisitor;
+import org.jetbrains.annotations.NonNls;
+
+/**
+ * Whole program visitor adding every string literal to the pool, in source
+ * order
+ * @author RomainTHD
+ * @see StringPool
+ */
+@NonNls
+class StringLiteralVisitor extends FoldVisitor<Void, StringPool> {
+    @Override
+    public Void leaf(StringPool pool) {
+        return null;
+    }
+
+    @Override
+    public Void combine(Void x, Void y, StringPool pool) {
+        return null;
+    }
+
+    /**
+     * String literal
+     * @param p String literal
+     * @param pool String pool
+     * @return Nothing
+     */
+    @Override
+    public Void visit(EString p, StringPool pool) {
+        pool.add(p.string_);
+        return null;
+    }
+}
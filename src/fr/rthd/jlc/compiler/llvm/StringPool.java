@@ -0,0 +1,86 @@
+package fr.rthd.jlc.compiler.llvm;
+
+import fr.rthd.jlc.TypeCode;
+import fr.rthd.jlc.compiler.Variable;
+import javalette.Absyn.Prog;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Module-wide pool of string literals, each distinct content getting a global
+ * with a sequential ID. The pool is filled before any function body is
+ * generated, so the IDs only depend on the source order, and it is then only
+ * read, from any thread
+ * @author RomainTHD
+ * @see StringLiteralVisitor
+ */
+@NonNls
+class StringPool {
+    /**
+     * Globals, by content, in the order of their first occurrence
+     */
+    @NotNull
+    private final Map<String, Variable> _literals;
+
+    /**
+     * Constructor
+     */
+    StringPool() {
+        _literals = new LinkedHashMap<>();
+    }
+
+    /**
+     * Add all the string literals of a program
+     * @param p Program
+     */
+    public void addAll(@NotNull Prog p) {
+        p.accept(new StringLiteralVisitor(), this);
+    }
+
+    /**
+     * Add a string literal, if not already pooled
+     * @param content String content
+     */
+    public void add(@NotNull String content) {
+        _literals.computeIfAbsent(content, c -> new Variable(
+            TypeCode.CString,
+            ".string" + EnvCompiler.SEP + _literals.size(),
+            null,
+            1, // FIXME: This pointer level isn't even used
+            false,
+            true,
+            c.length() + 1
+        ));
+    }
+
+    /**
+     * @param content String content
+     * @return Global of the string literal
+     * @throws IllegalStateException If the literal wasn't pooled
+     */
+    @Contract(pure = true)
+    @NotNull
+    public Variable get(@NotNull String content) {
+        Variable global = _literals.get(content);
+        if (global == null) {
+            throw new IllegalStateException(
+                "String literal not pooled: " + content
+            );
+        }
+        return global;
+    }
+
+    /**
+     * @return All the globals, in ID order
+     */
+    @Contract(pure = true)
+    @NotNull
+    public Collection<Map.Entry<String, Variable>> getAll() {
+        return _literals.entrySet();
+    }
+}
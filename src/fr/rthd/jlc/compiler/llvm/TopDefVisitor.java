@@ -33,7 +33,7 @@ class TopDefVisitor implements TopDef.Visitor<Void, EnvCompiler> {
     @Override
     public Void visit(TopFnDef p, EnvCompiler env) {
         if (!_classOnly) {
-            p.funcdef_.accept(new FuncDefVisitor(), env);
+            env.defer(e -> p.funcdef_.accept(new FuncDefVisitor(), e));
         }
         return null;
     }
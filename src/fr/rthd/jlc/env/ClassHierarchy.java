@@ -0,0 +1,97 @@
+package fr.rthd.jlc.env;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class hierarchy analysis of a whole program. Since all the classes are
+ * known at compile time, a method call can be resolved statically when no
+ * subclass of the static type of its receiver overrides the method, and the
+ * vtable is then only needed for the other calls
+ * @author RomainTHD
+ * @see ClassLayout
+ */
+@NonNls
+public final class ClassHierarchy {
+    /**
+     * Strict subclasses of each class, by class name
+     */
+    @NotNull
+    private final Map<String, List<ClassType<?>>> _subclasses;
+
+    /**
+     * Constructor
+     * @param classes All the classes of the program, frozen
+     */
+    public ClassHierarchy(@NotNull Collection<? extends ClassType<?>> classes) {
+        _subclasses = new HashMap<>();
+        for (ClassType<?> c : classes) {
+            ClassType<?> parent = c.getSuperclass();
+            while (parent != null) {
+                _subclasses.computeIfAbsent(
+                    parent.getName(),
+                    k -> new ArrayList<>()
+                ).add(c);
+                parent = parent.getSuperclass();
+            }
+        }
+    }
+
+    /**
+     * @param c Class
+     * @return Strict subclasses of the class, direct or not
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<ClassType<?>> getSubclasses(@NotNull ClassType<?> c) {
+        return _subclasses.getOrDefault(c.getName(), Collections.emptyList());
+    }
+
+    /**
+     * @param c Static class of the receiver
+     * @param slot Method slot
+     * @return If a subclass overrides the method of this slot or not, in
+     *     which case the call needs the vtable
+     */
+    @Contract(pure = true)
+    public boolean isOverridden(@NotNull ClassType<?> c, int slot) {
+        ClassType<?> owner = c.getLayout().getSlotOwner(slot);
+        for (ClassType<?> sub : getSubclasses(c)) {
+            if (!sub.getLayout().getSlotOwner(slot).equals(owner)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param c Static class of the receiver
+     * @param slot Method slot
+     * @return All the methods a call on this class may reach, without
+     *     duplicates
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<FunType> getImplementations(
+        @NotNull ClassType<?> c,
+        int slot
+    ) {
+        List<FunType> methods = new ArrayList<>();
+        methods.add(c.getLayout().getSlotMethod(slot));
+        for (ClassType<?> sub : getSubclasses(c)) {
+            FunType m = sub.getLayout().getSlotMethod(slot);
+            if (!methods.contains(m)) {
+                methods.add(m);
+            }
+        }
+        return methods;
+    }
+}
@@ -0,0 +1,208 @@
+package fr.rthd.jlc.env;
+
+import fr.rthd.jlc.TypeCode;
+import fr.rthd.jlc.utils.SymbolIndex;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Flattened layout of a class, computed once its hierarchy is resolved. The
+ * attributes of the superclasses come first, so that an object can be used
+ * as any of its superclasses. Method slots follow the same rule, an override
+ * reusing the slot of the overridden method, so that the vtable of a class
+ * starts like the vtable of its superclass. The vtable pointer is the first
+ * field of every object, before the attributes
+ * @param <Method> Method type
+ * @author RomainTHD
+ * @see ClassType#freeze()
+ */
+@NonNls
+public final class ClassLayout<Method extends FunType> {
+    /**
+     * Field index of the vtable pointer
+     */
+    public static final int VTABLE_FIELD = 0;
+
+    /**
+     * All attributes, superclasses' first
+     */
+    @NotNull
+    private final List<Attribute> _attributes;
+
+    /**
+     * Field index of each attribute
+     */
+    @NotNull
+    private final SymbolIndex _fieldIndex;
+
+    /**
+     * All methods, own ones first
+     * @see ClassType#getAllMethods()
+     */
+    @NotNull
+    private final List<Method> _methods;
+
+    /**
+     * Slot of each method name
+     */
+    @NotNull
+    private final SymbolIndex _slots;
+
+    /**
+     * Resolved method of each slot
+     */
+    @NotNull
+    private final List<Method> _slotMethods;
+
+    /**
+     * Class defining the resolved method of each slot
+     */
+    @NotNull
+    private final List<ClassType<Method>> _slotOwners;
+
+    /**
+     * Object size
+     */
+    private final int _size;
+
+    /**
+     * Constructor
+     * @param c Class, with its superclass already frozen
+     */
+    ClassLayout(@NotNull ClassType<Method> c) {
+        ClassType<Method> superclass = c.getSuperclass();
+        ClassLayout<Method> parent = superclass == null
+            ? null
+            : superclass.getLayout();
+
+        List<Attribute> attributes = new ArrayList<>();
+        List<Method> methods = new ArrayList<>(c.getOwnMethods());
+        _slotMethods = new ArrayList<>();
+        _slotOwners = new ArrayList<>();
+        _fieldIndex = new SymbolIndex();
+        _slots = new SymbolIndex();
+
+        if (parent != null) {
+            attributes.addAll(parent._attributes);
+            methods.addAll(parent._methods);
+            _slotMethods.addAll(parent._slotMethods);
+            _slotOwners.addAll(parent._slotOwners);
+            for (int i = 0; i < parent._slots.size(); ++i) {
+                _slots.add(parent._slots.keyAt(i));
+            }
+        }
+
+        attributes.addAll(c.getOwnAttributes());
+        int size = TypeCode.POINTER_SIZE;
+        for (Attribute a : attributes) {
+            _fieldIndex.add(a.getName());
+            size += a.getType().getSize();
+        }
+
+        for (Method m : c.getOwnMethods()) {
+            int slot = _slots.add(m.getName());
+            if (slot < _slotMethods.size()) {
+                _slotMethods.set(slot, m);
+                _slotOwners.set(slot, c);
+            } else {
+                _slotMethods.add(m);
+                _slotOwners.add(c);
+            }
+        }
+
+        _attributes = Collections.unmodifiableList(attributes);
+        _methods = Collections.unmodifiableList(methods);
+        _size = size;
+    }
+
+    /**
+     * @return All attributes, superclasses' first
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<Attribute> getAttributes() {
+        return _attributes;
+    }
+
+    /**
+     * @param name Attribute name
+     * @return Field index of the attribute, after the vtable pointer, or -1
+     *     if not found
+     */
+    @Contract(pure = true)
+    public int getFieldIndex(@NotNull String name) {
+        int index = _fieldIndex.indexOf(name);
+        return index < 0 ? -1 : VTABLE_FIELD + 1 + index;
+    }
+
+    /**
+     * @return All methods, own ones first and overridden ones included
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<Method> getMethods() {
+        return _methods;
+    }
+
+    /**
+     * @param name Method name
+     * @return Slot of the method, or -1 if not found
+     */
+    @Contract(pure = true)
+    public int getSlot(@NotNull String name) {
+        return _slots.indexOf(name);
+    }
+
+    /**
+     * @return Number of method slots
+     */
+    @Contract(pure = true)
+    public int getSlotCount() {
+        return _slotMethods.size();
+    }
+
+    /**
+     * @param slot Method slot
+     * @return Resolved method of the slot
+     */
+    @Contract(pure = true)
+    @NotNull
+    public Method getSlotMethod(int slot) {
+        return _slotMethods.get(slot);
+    }
+
+    /**
+     * @param slot Method slot
+     * @return Class defining the resolved method of the slot
+     */
+    @Contract(pure = true)
+    @NotNull
+    public ClassType<Method> getSlotOwner(int slot) {
+        return _slotOwners.get(slot);
+    }
+
+    /**
+     * @param name Method name
+     * @return Resolved method, or null if not found
+     */
+    @Contract(pure = true)
+    @Nullable
+    public Method getMethod(@NotNull String name) {
+        int slot = _slots.indexOf(name);
+        return slot < 0 ? null : _slotMethods.get(slot);
+    }
+
+    /**
+     * @return Object size, vtable pointer included
+     */
+    @Contract(pure = true)
+    public int getSize() {
+        return _size;
+    }
+}
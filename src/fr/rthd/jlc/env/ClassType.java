@@ -1,6 +1,7 @@
 package fr.rthd.jlc.env;
 
 import fr.rthd.jlc.TypeCode;
+import fr.rthd.jlc.utils.SymbolMap;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -8,9 +9,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Class representation
@@ -30,6 +29,12 @@ public class ClassType<Method extends FunType> {
     @NotNull
     private final String _name;
 
+    /**
+     * Class type
+     */
+    @NotNull
+    private final TypeCode _type;
+
     /**
      * Superclass name or null
      * @see #_superclass
@@ -38,16 +43,16 @@ public class ClassType<Method extends FunType> {
     private final String _superclassName;
 
     /**
-     * List of defined methods
+     * List of defined methods, in definition order
      */
     @NotNull
-    private final Map<String, Method> _methods;
+    private final SymbolMap<Method> _methods;
 
     /**
-     * List of defined fields
+     * List of defined fields, in definition order
      */
     @NotNull
-    private final Map<String, Attribute> _attributes;
+    private final SymbolMap<Attribute> _attributes;
 
     /**
      * Superclass or null. Will be definer later on, when all classes have been
@@ -56,19 +61,28 @@ public class ClassType<Method extends FunType> {
     @Nullable
     private ClassType<Method> _superclass = null;
 
+    /**
+     * Flattened layout, null until the class is frozen
+     * @see #freeze()
+     */
+    @Nullable
+    private ClassLayout<Method> _layout = null;
+
     /**
      * Constructor for inheritance
-     * @param name Class name
+     * @param type Class type
      * @param superclassName Superclass name or null
      */
     public ClassType(
-        @NotNull String name,
+        @NotNull TypeCode type,
         @Nullable String superclassName
     ) {
-        _name = name;
+        assert type.isObject();
+        _name = type.getRealName();
+        _type = type;
         _superclassName = superclassName;
-        _methods = new HashMap<>();
-        _attributes = new HashMap<>();
+        _methods = new SymbolMap<>();
+        _attributes = new SymbolMap<>();
     }
 
     /**
@@ -78,6 +92,7 @@ public class ClassType<Method extends FunType> {
      *     for constructors for now
      */
     public void addMethod(@NotNull Method f, boolean override) {
+        checkNotFrozen();
         if (override || !_methods.containsKey(f.getName())) {
             _methods.put(f.getName(), f);
         }
@@ -98,6 +113,10 @@ public class ClassType<Method extends FunType> {
      */
     @NotNull
     public Collection<Method> getAllMethods() {
+        if (_layout != null) {
+            return _layout.getMethods();
+        }
+
         Collection<Method> methods = new ArrayList<>(getOwnMethods());
         if (_superclass != null) {
             methods.addAll(_superclass.getAllMethods());
@@ -113,8 +132,13 @@ public class ClassType<Method extends FunType> {
      */
     @Nullable
     public Method getMethod(@NotNull String name, boolean recurse) {
-        if (_methods.containsKey(name)) {
-            return _methods.get(name);
+        if (recurse && _layout != null) {
+            return _layout.getMethod(name);
+        }
+
+        Method m = _methods.get(name);
+        if (m != null) {
+            return m;
         } else if (recurse && _superclass != null) {
             return _superclass.getMethod(name, true);
         } else {
@@ -127,6 +151,7 @@ public class ClassType<Method extends FunType> {
      * @param a Attribute to add
      */
     public void addAttribute(@NotNull Attribute a) {
+        checkNotFrozen();
         _attributes.put(a.getName(), a);
     }
 
@@ -145,6 +170,10 @@ public class ClassType<Method extends FunType> {
      */
     @NotNull
     public List<Attribute> getAllAttributes() {
+        if (_layout != null) {
+            return _layout.getAttributes();
+        }
+
         List<Attribute> attrs = new ArrayList<>();
         if (_superclass != null) {
             attrs.addAll(_superclass.getAllAttributes());
@@ -158,7 +187,9 @@ public class ClassType<Method extends FunType> {
      * @return If the class or a superclass has an attribute with the given name
      */
     public boolean hasAttribute(@NotNull String name) {
-        if (_attributes.containsKey(name)) {
+        if (_layout != null) {
+            return _layout.getFieldIndex(name) >= 0;
+        } else if (_attributes.containsKey(name)) {
             return true;
         } else if (_superclass != null) {
             return _superclass.hasAttribute(name);
@@ -172,7 +203,9 @@ public class ClassType<Method extends FunType> {
      * @return If the class or a superclass has a method with the given name
      */
     public boolean hasMethod(@NotNull String name) {
-        if (_methods.containsKey(name)) {
+        if (_layout != null) {
+            return _layout.getSlot(name) >= 0;
+        } else if (_methods.containsKey(name)) {
             return true;
         } else if (_superclass != null) {
             return _superclass.hasMethod(name);
@@ -186,9 +219,55 @@ public class ClassType<Method extends FunType> {
      * @param c Superclass
      */
     public void updateSuperclass(@Nullable ClassType<Method> c) {
+        checkNotFrozen();
         _superclass = c;
     }
 
+    /**
+     * Freeze the class and its superclasses, once all the classes have been
+     * discovered and their members added. The layout is then computed once,
+     * and the class can't be modified anymore
+     */
+    public void freeze() {
+        if (_layout != null) {
+            return;
+        }
+
+        if (_superclass != null) {
+            _superclass.freeze();
+        }
+        _layout = new ClassLayout<>(this);
+    }
+
+    /**
+     * @return If the class is frozen or not
+     */
+    @Contract(pure = true)
+    public boolean isFrozen() {
+        return _layout != null;
+    }
+
+    /**
+     * @return Flattened layout of the class
+     * @throws IllegalStateException If the class isn't frozen yet
+     */
+    @NotNull
+    public ClassLayout<Method> getLayout() {
+        if (_layout == null) {
+            throw new IllegalStateException("Class not frozen: " + _name);
+        }
+        return _layout;
+    }
+
+    /**
+     * @throws IllegalStateException If the class is frozen
+     */
+    private void checkNotFrozen() {
+        if (_layout != null) {
+            throw new IllegalStateException("Class frozen: " + _name);
+        }
+    }
+
     /**
      * @return The superclass of the class
      */
@@ -246,7 +325,7 @@ public class ClassType<Method extends FunType> {
      */
     @NotNull
     public TypeCode getType() {
-        return TypeCode.forClass(_name);
+        return _type;
     }
 
     /**
@@ -278,10 +357,44 @@ public class ClassType<Method extends FunType> {
     }
 
     /**
-     * @return Class size
+     * @return Name of the vtable global, which can't clash with a method
+     *     since identifiers can't contain dots
+     */
+    @NotNull
+    @Contract(pure = true)
+    public String getVTableName() {
+        return ".vtable$" + _name;
+    }
+
+    /**
+     * @return Name of the global holding the address of the vtable, stored
+     *     in each new object
+     */
+    @NotNull
+    @Contract(pure = true)
+    public String getVTablePointerName() {
+        return ".vptr$" + _name;
+    }
+
+    /**
+     * @param funcName Method name
+     * @return Name of the stub calling the method through the vtable
+     */
+    @NotNull
+    @Contract(pure = true)
+    public String getDispatchMethodName(@NotNull String funcName) {
+        return ".dispatch$" + getAssemblyMethodName(funcName);
+    }
+
+    /**
+     * @return Class size, vtable pointer included
      */
     public int getSize() {
-        int size = 0;
+        if (_layout != null) {
+            return _layout.getSize();
+        }
+
+        int size = TypeCode.POINTER_SIZE; // Vtable pointer
         for (Attribute a : getAllAttributes()) {
             size += a.getType().getSize();
         }
@@ -1,6 +1,8 @@
 package fr.rthd.jlc.env;
 
 import fr.rthd.jlc.TypeCode;
+import fr.rthd.jlc.TypeUniverse;
+import fr.rthd.jlc.utils.SymbolMap;
 import fr.rthd.jlc.env.exception.EnvException;
 import fr.rthd.jlc.env.exception.SymbolAlreadyDefinedException;
 import fr.rthd.jlc.env.exception.SymbolNotFoundException;
@@ -9,8 +11,8 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +26,12 @@ import java.util.Objects;
  */
 @NonNls
 public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
+    /**
+     * Type universe of the compilation, shared by all environments
+     */
+    @NotNull
+    private final TypeUniverse _typeUniverse;
+
     /**
      * Global functions map
      */
@@ -37,10 +45,23 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
     private final Map<String, Class> _classSignatures;
 
     /**
-     * Variable contexts
+     * Innermost binding of each variable, each binding linking to the one it
+     * shadows. Unbound variables are mapped to null
+     */
+    @NotNull
+    private final SymbolMap<Binding<Value>> _bindings;
+
+    /**
+     * Undo log, variables bound in each scope, innermost last
      */
     @NotNull
-    private final LinkedList<Map<String, Value>> _contexts;
+    private final List<String> _undoLog;
+
+    /**
+     * Size of the undo log when each scope was entered, innermost last
+     */
+    @NotNull
+    private final List<Integer> _scopeStarts;
 
     /**
      * Class-wide function map
@@ -56,12 +77,16 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
 
     /**
      * Empty constructor
+     * @param typeUniverse Type universe of the compilation
      */
-    public Env() {
+    public Env(@NotNull TypeUniverse typeUniverse) {
+        _typeUniverse = typeUniverse;
         _funcSignatures = new HashMap<>();
         _classFuncSignatures = new HashMap<>();
         _classSignatures = new HashMap<>();
-        _contexts = new LinkedList<>();
+        _bindings = new SymbolMap<>();
+        _undoLog = new ArrayList<>();
+        _scopeStarts = new ArrayList<>();
     }
 
     /**
@@ -69,14 +94,25 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
      * @param baseEnv Parent environment
      */
     public Env(@NotNull Env<?, Func, Class> baseEnv) {
+        _typeUniverse = baseEnv._typeUniverse;
         _funcSignatures = baseEnv._funcSignatures;
         _classFuncSignatures = baseEnv._classFuncSignatures;
         _classSignatures = baseEnv._classSignatures;
-        _contexts = new LinkedList<>();
-        _contexts.push(new HashMap<>());
+        _bindings = new SymbolMap<>();
+        _undoLog = new ArrayList<>();
+        _scopeStarts = new ArrayList<>();
         _currentClass = null;
     }
 
+    /**
+     * @return Type universe of the compilation
+     */
+    @Contract(pure = true)
+    @NotNull
+    public TypeUniverse getTypeUniverse() {
+        return _typeUniverse;
+    }
+
     @Contract(pure = true)
     @NotNull
     @Override
@@ -100,11 +136,9 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
             s.append("\n");
         }
 
-        Iterator<Map<String, Value>> iter = _contexts.descendingIterator();
-        while (iter.hasNext()) {
-            Map<String, Value> ctx = iter.next();
-            s.append("\n");
-            for (String varName : ctx.keySet()) {
+        s.append("\n");
+        for (String varName : _bindings.keys()) {
+            if (lookupVar(varName) != null) {
                 s.append(varName).append(" ");
                 s.append(lookupVar(varName));
                 s.append("\n");
@@ -139,13 +173,8 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
     @Contract(pure = true)
     @Nullable
     public Value lookupVar(String id) {
-        for (Map<String, Value> env : _contexts) {
-            Value v = env.get(id);
-            if (v != null) {
-                return v;
-            }
-        }
-        return null;
+        Binding<Value> b = _bindings.get(id);
+        return b == null ? null : b.value;
     }
 
     /**
@@ -230,24 +259,26 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
         @NotNull Value value,
         boolean force
     ) throws EnvException {
-        Map<String, Value> env = _contexts.peek();
-        assert env != null;
-        if (force || env.get(id) == null) {
-            env.put(id, value);
+        Binding<Value> b = _bindings.get(id);
+        if (b != null && b.depth == getScopeDepth()) {
+            if (!force) {
+                throw new SymbolAlreadyDefinedException(id);
+            }
+            b.value = value;
         } else {
-            throw new SymbolAlreadyDefinedException(id);
+            _bindings.put(id, new Binding<>(value, getScopeDepth(), b));
+            _undoLog.add(id);
         }
     }
 
     /**
-     * @param value Variable
-     * @return Whether a variable is in the top-level context or not
+     * @param id Variable name
+     * @return Whether a variable is bound in the top-level context or not
      */
     @Contract(pure = true)
-    public boolean isTopLevel(Value value) {
-        Map<String, Value> env = _contexts.peek();
-        assert env != null;
-        return env.containsValue(value);
+    public boolean isTopLevel(@NotNull String id) {
+        Binding<Value> b = _bindings.get(id);
+        return b != null && b.depth == getScopeDepth();
     }
 
     /**
@@ -256,12 +287,9 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
      * @param value Variable
      */
     public void updateVar(@NotNull String id, @NotNull Value value) {
-        for (Map<String, Value> env : _contexts) {
-            Value v = env.get(id);
-            if (v != null) {
-                env.put(id, value);
-                break;
-            }
+        Binding<Value> b = _bindings.get(id);
+        if (b != null) {
+            b.value = value;
         }
     }
 
@@ -315,22 +343,30 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
      * Enter a new scope
      */
     public void enterScope() {
-        _contexts.push(new HashMap<>());
+        _scopeStarts.add(_undoLog.size());
     }
 
     /**
-     * Leave the scope
+     * Leave the scope, unbinding its variables
      */
     public void leaveScope() {
-        _contexts.pop();
+        assert !_scopeStarts.isEmpty() : "No scope to leave";
+        int start = _scopeStarts.remove(_scopeStarts.size() - 1);
+        for (int i = _undoLog.size() - 1; i >= start; --i) {
+            String id = _undoLog.remove(i);
+            Binding<Value> b = _bindings.get(id);
+            assert b != null;
+            _bindings.put(id, b.shadowed);
+        }
     }
 
     /**
      * Reset scope
      */
     public void resetScope() {
-        _contexts.clear();
-        _contexts.push(new HashMap<>());
+        _bindings.clear();
+        _undoLog.clear();
+        _scopeStarts.clear();
     }
 
     /**
@@ -338,7 +374,7 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
      */
     @Contract(pure = true)
     public int getScopeDepth() {
-        return _contexts.size() - 1;
+        return _scopeStarts.size();
     }
 
     /**
@@ -366,4 +402,42 @@ public class Env<Value, Func extends FunType, Class extends ClassType<?>> {
             _classSignatures.remove(name);
         }
     }
+
+    /**
+     * Variable binding
+     * @param <Value> Variable type
+     */
+    private static final class Binding<Value> {
+        /**
+         * Scope depth of the binding
+         */
+        public final int depth;
+
+        /**
+         * Binding shadowed by this one, null if none
+         */
+        @Nullable
+        public final Binding<Value> shadowed;
+
+        /**
+         * Bound variable
+         */
+        public Value value;
+
+        /**
+         * Constructor
+         * @param value Bound variable
+         * @param depth Scope depth of the binding
+         * @param shadowed Binding shadowed by this one
+         */
+        private Binding(
+            Value value,
+            int depth,
+            @Nullable Binding<Value> shadowed
+        ) {
+            this.value = value;
+            this.depth = depth;
+            this.shadowed = shadowed;
+        }
+    }
 }
@@ -0,0 +1,307 @@
+package fr.rthd.jlc.internal;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Generator of valid Javalette programs of arbitrary size, to find the
+ * compile-time cliffs that the testsuite never triggers. Every knob scales a
+ * single dimension of the program, the others staying the same.
+ * Usage: `java fr.rthd.jlc.internal.CorpusGenerator [--functions N]
+ * [--calls N] [--depth N] [--classes N] [--strings N] [--arrays N]
+ * [--seed N] > out.jl`
+ * @author RomainTHD
+ * @see ScalingReport
+ */
+@NonNls
+public class CorpusGenerator {
+    /**
+     * Indent
+     */
+    private static final String INDENT = "    ";
+
+    /**
+     * Number of top-level functions, main excluded
+     */
+    private int _functions;
+
+    /**
+     * Number of calls from each function to previous ones
+     */
+    private int _calls;
+
+    /**
+     * Block nesting depth of each function
+     */
+    private int _depth;
+
+    /**
+     * Depth of the class hierarchy, 0 for no class
+     */
+    private int _classes;
+
+    /**
+     * Number of distinct string literals in the program
+     */
+    private int _strings;
+
+    /**
+     * Dimension of the arrays, 0 for no array
+     */
+    private int _arrays;
+
+    /**
+     * Random seed, for the call graph
+     */
+    private long _seed;
+
+    /**
+     * Constructor, with small default knobs
+     */
+    public CorpusGenerator() {
+        _functions = 100;
+        _calls = 2;
+        _depth = 3;
+        _classes = 2;
+        _strings = 20;
+        _arrays = 1;
+        _seed = 0;
+    }
+
+    /**
+     * Main method, print a generated program
+     * @param args Knobs, like `--functions 1000`
+     */
+    public static void main(String[] args) {
+        CorpusGenerator gen = new CorpusGenerator();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value: " + args[i]);
+            }
+            gen.set(args[i].replaceFirst("^--", ""), Long.parseLong(args[i + 1]));
+        }
+        System.out.print(gen.generate());
+    }
+
+    /**
+     * Set a knob by name
+     * @param knob Knob name, like `functions`
+     * @param value Knob value
+     * @return This generator
+     */
+    @NotNull
+    public CorpusGenerator set(@NotNull String knob, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + knob);
+        }
+
+        switch (knob) {
+            case "functions":
+                _functions = (int) Math.max(value, 1);
+                break;
+            case "calls":
+                _calls = (int) value;
+                break;
+            case "depth":
+                _depth = (int) value;
+                break;
+            case "classes":
+                _classes = (int) value;
+                break;
+            case "strings":
+                _strings = (int) value;
+                break;
+            case "arrays":
+                _arrays = (int) value;
+                break;
+            case "seed":
+                _seed = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown knob: " + knob);
+        }
+
+        return this;
+    }
+
+    /**
+     * @param base Base type
+     * @param dimension Array dimension
+     * @return Array type, like `int[][]`
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String arrayType(@NotNull String base, int dimension) {
+        return base + "[]".repeat(dimension);
+    }
+
+    /**
+     * Generate the class hierarchy, each class extending the previous one
+     * @param s Output
+     */
+    private void generateClasses(@NotNull StringBuilder s) {
+        for (int c = 0; c < _classes; ++c) {
+            s.append("class C").append(c);
+            if (c > 0) {
+                s.append(" extends C").append(c - 1);
+            }
+            s.append(" {\n")
+             .append(INDENT).append("int a").append(c).append(";\n\n")
+             .append(INDENT).append("int m").append(c).append("(int x) {\n")
+             .append(INDENT).append(INDENT)
+             .append("a").append(c).append(" = a").append(c)
+             .append(" + x * ").append(c + 1).append(";\n")
+             .append(INDENT).append(INDENT)
+             .append("return a").append(c).append(";\n")
+             .append(INDENT).append("}\n")
+             .append("}\n\n");
+        }
+    }
+
+    /**
+     * Generate the nested blocks of a function, declaring a variable at each
+     * level and using the outermost one at the innermost level, so that
+     * lookups go through every scope
+     * @param s Output
+     * @param level Current level
+     * @param indent Current indent
+     */
+    private void generateNested(
+        @NotNull StringBuilder s,
+        int level,
+        @NotNull String indent
+    ) {
+        if (level > _depth) {
+            s.append(indent).append("acc = acc + v0;\n");
+            return;
+        }
+
+        String prev = level == 1 ? "n" : "v" + (level - 1);
+        s.append(indent)
+         .append(level % 2 == 0 ? "while (" : "if (")
+         .append(prev).append(" > ").append(level % 2 == 0 ? level : 0)
+         .append(") {\n");
+
+        String inner = indent + INDENT;
+        s.append(inner).append("int v").append(level).append(" = ")
+         .append(prev).append(" - 1;\n");
+        generateNested(s, level + 1, inner);
+        if (level % 2 == 0) {
+            // Ensure termination of the loop
+            s.append(inner).append(prev).append(" = ").append(level)
+             .append(";\n");
+        }
+
+        s.append(indent).append("}\n");
+    }
+
+    /**
+     * Generate the arrays of a function
+     * @param s Output
+     */
+    private void generateArrays(@NotNull StringBuilder s) {
+        if (_arrays == 0) {
+            return;
+        }
+
+        s.append(INDENT).append(arrayType("int", _arrays)).append(" arr = new int");
+        for (int d = 0; d < _arrays; ++d) {
+            s.append("[n + ").append(d + 1).append("]");
+        }
+        s.append(";\n");
+
+        if (_arrays == 1) {
+            s.append(INDENT).append("arr[0] = acc;\n");
+        }
+
+        String indent = INDENT;
+        String iterated = "arr";
+        for (int d = _arrays - 1; d >= 0; --d) {
+            String elt = "e" + d;
+            s.append(indent).append("for (")
+             .append(arrayType("int", d)).append(" ").append(elt)
+             .append(" : ").append(iterated).append(") {\n");
+            indent += INDENT;
+            iterated = elt;
+        }
+        s.append(indent).append("acc = acc + e0;\n");
+        for (int d = 0; d < _arrays; ++d) {
+            indent = indent.substring(INDENT.length());
+            s.append(indent).append("}\n");
+        }
+    }
+
+    /**
+     * Generate a function
+     * @param s Output
+     * @param id Function ID
+     * @param random Random generator, for the call graph
+     */
+    private void generateFunction(
+        @NotNull StringBuilder s,
+        int id,
+        @NotNull Random random
+    ) {
+        s.append("int f").append(id).append("(int n) {\n")
+         .append(INDENT).append("int v0 = n;\n")
+         .append(INDENT).append("int acc = ").append(id).append(";\n");
+
+        generateNested(s, 1, INDENT);
+
+        if (_classes > 0) {
+            s.append(INDENT).append("C").append(_classes - 1)
+             .append(" o = new C").append(_classes - 1).append(";\n");
+            for (int c = 0; c < _classes; ++c) {
+                s.append(INDENT).append("acc = acc + o.m").append(c)
+                 .append("(n);\n");
+            }
+        }
+
+        generateArrays(s);
+
+        for (int i = id; i < _strings; i += _functions) {
+            s.append(INDENT).append("printString(\"f").append(id)
+             .append(" string ").append(i).append("\");\n");
+        }
+
+        if (id > 0 && _calls > 0) {
+            s.append(INDENT).append("if (n > 0) {\n");
+            for (int c = 0; c < _calls; ++c) {
+                // Always call the previous function, so that every function
+                //  is reachable from main
+                int callee = c == 0 ? id - 1 : random.nextInt(id);
+                s.append(INDENT).append(INDENT).append("acc = acc + f")
+                 .append(callee).append("(n - 1);\n");
+            }
+            s.append(INDENT).append("}\n");
+        }
+
+        s.append(INDENT).append("return acc;\n")
+         .append("}\n\n");
+    }
+
+    /**
+     * Generate a program
+     * @return Source code
+     */
+    @NotNull
+    public String generate() {
+        Random random = new Random(_seed);
+        StringBuilder s = new StringBuilder();
+
+        generateClasses(s);
+        for (int f = 0; f < _functions; ++f) {
+            generateFunction(s, f, random);
+        }
+
+        s.append("int main() {\n")
+         .append(INDENT).append("printInt(f").append(_functions - 1)
+         .append("(2));\n")
+         .append(INDENT).append("return 0;\n")
+         .append("}\n");
+        return s.toString();
+    }
+}
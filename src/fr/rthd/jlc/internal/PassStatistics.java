@@ -0,0 +1,432 @@
+package fr.rthd.jlc.internal;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-phase compilation statistics, used by `--time-passes`. Allocations are
+ * those of the calling thread and of the workers of the pool running the
+ * parallel phases: the pool of the batch mode, shared by the inputs compiled
+ * concurrently, or the common pool otherwise. A worker stopped during a
+ * phase loses its allocations
+ * @author RomainTHD
+ * @see Timer
+ */
+@NonNls
+public class PassStatistics {
+    /**
+     * Package of the AST nodes
+     */
+    private static final String AST_PACKAGE = "javalette.Absyn";
+
+    /**
+     * Collect statistics or not. All methods are no-ops when disabled
+     */
+    private final boolean _enabled;
+
+    /**
+     * Thread MXBean, null if allocated bytes can't be measured on this JVM
+     */
+    @Nullable
+    private final com.sun.management.ThreadMXBean _threadBean;
+
+    /**
+     * Recorded phases, in execution order
+     */
+    @NotNull
+    private final List<Phase> _phases;
+
+    /**
+     * Timer of the running phase
+     */
+    @NotNull
+    private final Timer _timer;
+
+    /**
+     * Name of the running phase, null if none
+     */
+    @Nullable
+    private String _currentName;
+
+    /**
+     * Allocated bytes of each measured thread when the running phase
+     * started, by thread ID, null if unknown
+     */
+    @Nullable
+    private Map<Long, Long> _currentAllocated;
+
+    /**
+     * Constructor
+     * @param enabled Collect statistics or not
+     */
+    public PassStatistics(boolean enabled) {
+        _enabled = enabled;
+        _phases = new ArrayList<>();
+        _timer = new Timer();
+        _currentName = null;
+        _currentAllocated = null;
+
+        if (!enabled) {
+            _threadBean = null;
+            return;
+        }
+
+        com.sun.management.ThreadMXBean bean = null;
+        try {
+            java.lang.management.ThreadMXBean base =
+                ManagementFactory.getThreadMXBean();
+            if (base instanceof com.sun.management.ThreadMXBean) {
+                bean = (com.sun.management.ThreadMXBean) base;
+                if (bean.isThreadAllocatedMemorySupported()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                } else {
+                    bean = null;
+                }
+            }
+        } catch (UnsupportedOperationException | SecurityException ignored) {
+            // Allocations will be reported as unknown
+            bean = null;
+        }
+        _threadBean = bean;
+    }
+
+    /**
+     * Count the AST nodes reachable from a node. Annotation wrappers added by
+     * the later passes are traversed but not counted, so that the counts of
+     * the different phases can be compared
+     * @param root Root node
+     * @return Number of nodes
+     */
+    public static int countNodes(@NotNull Object root) {
+        Map<Object, Boolean> seen = new IdentityHashMap<>();
+        LinkedList<Object> toVisit = new LinkedList<>();
+        toVisit.add(root);
+        int count = 0;
+
+        while (!toVisit.isEmpty()) {
+            Object node = toVisit.pop();
+            if (seen.put(node, true) != null) {
+                continue;
+            }
+
+            if (node instanceof Iterable) {
+                for (Object child : (Iterable<?>) node) {
+                    if (child != null) {
+                        toVisit.add(child);
+                    }
+                }
+                continue;
+            }
+
+            Class<?> cls = node.getClass();
+            if (!isAstClass(cls)) {
+                continue;
+            }
+
+            if (AST_PACKAGE.equals(cls.getPackageName())) {
+                ++count;
+            }
+
+            for (; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+                for (Field f : cls.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())
+                        || f.getType().isPrimitive()) {
+                        continue;
+                    }
+
+                    try {
+                        f.setAccessible(true);
+                        Object child = f.get(node);
+                        if (child != null) {
+                            toVisit.add(child);
+                        }
+                    } catch (RuntimeException | IllegalAccessException ignored) {
+                        // Inaccessible field, not part of the tree
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @param cls Class
+     * @return If this class is an AST node or an annotated AST node
+     */
+    @Contract(pure = true)
+    private static boolean isAstClass(@NotNull Class<?> cls) {
+        for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+            if (AST_PACKAGE.equals(c.getPackageName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Escape a string for JSON
+     * @param s String
+     * @return Escaped string
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String escapeJson(@NotNull String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * @return Bytes allocated by the current thread and the workers of its
+     *     pool, by thread ID, null if unknown
+     */
+    @Nullable
+    private Map<Long, Long> getAllocatedBytes() {
+        if (_threadBean == null) {
+            return null;
+        }
+
+        // The parallel phases fork their tasks in the pool of the current
+        //  worker, if any
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        if (pool == null) {
+            pool = ForkJoinPool.commonPool();
+        }
+
+        // Enumerated from the root group, which doesn't dump their stacks
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() * 2 + 1];
+        int count = root.enumerate(threads, true);
+
+        List<Long> ids = new ArrayList<>();
+        ids.add(Thread.currentThread().getId());
+        for (int i = 0; i < count; ++i) {
+            Thread t = threads[i];
+            if (t instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) t).getPool() == pool
+                && t != Thread.currentThread()) {
+                ids.add(t.getId());
+            }
+        }
+
+        long[] idArray = ids.stream().mapToLong(Long::longValue).toArray();
+        long[] bytes = _threadBean.getThreadAllocatedBytes(idArray);
+        Map<Long, Long> res = new HashMap<>();
+        for (int i = 0; i < idArray.length; ++i) {
+            if (bytes[i] >= 0) {
+                res.put(idArray[i], bytes[i]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param before Allocated bytes by thread at the start of a phase
+     * @param after Allocated bytes by thread at its end
+     * @return Bytes allocated in between, threads started in between
+     *     counting from zero, -1 if unknown
+     */
+    @Contract(pure = true)
+    private static long allocatedBetween(
+        @Nullable Map<Long, Long> before,
+        @Nullable Map<Long, Long> after
+    ) {
+        if (before == null || after == null) {
+            return -1;
+        }
+
+        long total = 0;
+        for (Map.Entry<Long, Long> e : after.entrySet()) {
+            total += e.getValue() - before.getOrDefault(e.getKey(), 0L);
+        }
+        return total;
+    }
+
+    /**
+     * Start a new phase
+     * @param name Phase name
+     */
+    public void start(@NotNull String name) {
+        if (!_enabled) {
+            return;
+        }
+
+        assert _currentName == null : "Phase `" + _currentName + "` not stopped";
+        _currentName = name;
+        // Measured out of the timed region
+        _currentAllocated = getAllocatedBytes();
+        _timer.start();
+    }
+
+    /**
+     * Stop the running phase. The count is computed after the measurements,
+     * so counting doesn't pollute them
+     * @param count Number of items produced by the phase
+     * @param unit Unit of this count, like "nodes" or "instructions"
+     */
+    public void stop(@NotNull LongSupplier count, @NotNull String unit) {
+        if (!_enabled) {
+            return;
+        }
+
+        long time = _timer.stop();
+        Map<Long, Long> allocated = getAllocatedBytes();
+        assert _currentName != null : "No phase started";
+
+        _phases.add(new Phase(
+            _currentName,
+            time,
+            allocatedBetween(_currentAllocated, allocated),
+            count.getAsLong(),
+            unit
+        ));
+        _currentName = null;
+        _currentAllocated = null;
+    }
+
+    /**
+     * @return Human-readable table of all phases
+     */
+    @Contract(pure = true)
+    @NotNull
+    public String toTable() {
+        StringBuilder res = new StringBuilder();
+        long totalTime = 0;
+        long totalAllocated = 0;
+
+        res.append(String.format(
+            "%-12s %12s %14s %12s%n",
+            "Phase",
+            "Time (ms)",
+            "Alloc (KiB)",
+            "Count"
+        ));
+
+        for (Phase phase : _phases) {
+            totalTime += phase.time;
+            if (phase.allocated >= 0 && totalAllocated >= 0) {
+                totalAllocated += phase.allocated;
+            } else {
+                totalAllocated = -1;
+            }
+
+            res.append(String.format(
+                "%-12s %12.3f %14s %12d %s%n",
+                phase.name,
+                phase.time / 1_000.0,
+                phase.allocated < 0 ? "?" : String.valueOf(phase.allocated / 1_024),
+                phase.count,
+                phase.unit
+            ));
+        }
+
+        res.append(String.format(
+            "%-12s %12.3f %14s%n",
+            "total",
+            totalTime / 1_000.0,
+            totalAllocated < 0 ? "?" : String.valueOf(totalAllocated / 1_024)
+        ));
+
+        return res.toString();
+    }
+
+    /**
+     * @return JSON representation of all phases
+     */
+    @Contract(pure = true)
+    @NotNull
+    public String toJson() {
+        StringBuilder res = new StringBuilder("{\"phases\":[");
+        for (int i = 0; i < _phases.size(); ++i) {
+            Phase phase = _phases.get(i);
+            if (i != 0) {
+                res.append(",");
+            }
+
+            res.append("{\"name\":\"")
+               .append(escapeJson(phase.name))
+               .append("\",\"timeMicros\":")
+               .append(phase.time)
+               .append(",\"allocatedBytes\":")
+               .append(phase.allocated < 0 ? "null" : phase.allocated)
+               .append(",\"count\":")
+               .append(phase.count)
+               .append(",\"unit\":\"")
+               .append(escapeJson(phase.unit))
+               .append("\"}");
+        }
+        return res.append("]}").toString();
+    }
+
+    /**
+     * Statistics of a single phase
+     */
+    private static final class Phase {
+        /**
+         * Phase name
+         */
+        @NotNull
+        public final String name;
+
+        /**
+         * Wall time, in microseconds
+         */
+        public final long time;
+
+        /**
+         * Allocated bytes, -1 if unknown
+         */
+        public final long allocated;
+
+        /**
+         * Number of items produced
+         */
+        public final long count;
+
+        /**
+         * Unit of the count
+         */
+        @NotNull
+        public final String unit;
+
+        /**
+         * Constructor
+         * @param name Phase name
+         * @param time Wall time, in microseconds
+         * @param allocated Allocated bytes, -1 if unknown
+         * @param count Number of items produced
+         * @param unit Unit of the count
+         */
+        private Phase(
+            @NotNull String name,
+            long time,
+            long allocated,
+            long count,
+            @NotNull String unit
+        ) {
+            this.name = name;
+            this.time = time;
+            this.allocated = allocated;
+            this.count = count;
+            this.unit = unit;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package fr.rthd.jlc.internal;
+
+import fr.rthd.jlc.TypeUniverse;
+import fr.rthd.jlc.compiler.llvm.LLVMCompiler;
+import fr.rthd.jlc.env.ClassType;
+import fr.rthd.jlc.env.Env;
+import fr.rthd.jlc.env.FunType;
+import fr.rthd.jlc.optimizer.Optimizer;
+import fr.rthd.jlc.typechecker.TypeChecker;
+import javalette.Absyn.Prog;
+import javalette.Yylex;
+import javalette.parser;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scaling report, compiling generated programs while one knob of the
+ * generator grows and the others stay the same. For each knob, it reports the
+ * time of each phase and the growth exponent between two points, so that
+ * superlinear phases stand out. Writes `report.md` and one CSV file per knob.
+ * Usage: `java fr.rthd.jlc.internal.ScalingReport [--out DIR]
+ * [--repeat N] [--knob NAME]`
+ * @author RomainTHD
+ * @see CorpusGenerator
+ */
+@NonNls
+public class ScalingReport {
+    /**
+     * Phases, in order
+     */
+    private static final String[] PHASES = {
+        "parse",
+        "typecheck",
+        "optimize",
+        "codegen",
+    };
+
+    /**
+     * Optimization level, of the optimizer and the code generation
+     */
+    private static final int LEVEL = 1;
+
+    /**
+     * Growth exponent above which a phase is reported as superlinear
+     */
+    private static final double SUPERLINEAR = 1.3;
+
+    /**
+     * Width of the bar charts, in characters
+     */
+    private static final int CHART_WIDTH = 60;
+
+    /**
+     * Stack size of the compilation thread, deep nesting needs a deep stack
+     */
+    private static final long STACK_SIZE = 1L << 29;
+
+    /**
+     * Values of each knob
+     */
+    private static final Map<String, long[]> KNOBS = new LinkedHashMap<>();
+
+    static {
+        KNOBS.put("functions", new long[]{250, 500, 1000, 2000, 4000});
+        KNOBS.put("calls", new long[]{1, 2, 4, 8, 16, 32});
+        KNOBS.put("depth", new long[]{4, 8, 16, 32, 64});
+        KNOBS.put("classes", new long[]{1, 2, 4, 8, 16, 32});
+        KNOBS.put("strings", new long[]{250, 500, 1000, 2000, 4000});
+        KNOBS.put("arrays", new long[]{1, 2, 3, 4, 5, 6});
+    }
+
+    /**
+     * Compile a program, like `Main` does but without any output
+     * @param source Source code
+     * @return Time of each phase, in microseconds
+     * @throws Exception On compilation error
+     */
+    @NotNull
+    private static long[] compile(@NotNull String source) throws Exception {
+        long[] times = new long[PHASES.length];
+        Timer timer = new Timer().start();
+
+        Prog p = new parser(new Yylex(new StringReader(source))).pProg();
+        times[0] = timer.reset();
+
+        Env<?, FunType, ClassType<?>> env = new Env<>(new TypeUniverse());
+        p = new TypeChecker().accept(p, env);
+        times[1] = timer.reset();
+
+        p = new Optimizer(LEVEL).accept(p, env);
+        times[2] = timer.reset();
+
+        new LLVMCompiler(
+            null,
+            OutputStream.nullOutputStream(),
+            false,
+            LEVEL
+        ).accept(p, env);
+        times[3] = timer.reset();
+
+        return times;
+    }
+
+    /**
+     * Compile a program several times and keep the median of each phase
+     * @param source Source code
+     * @param repeat Number of compilations
+     * @return Median time of each phase, in microseconds
+     * @throws Exception On compilation error
+     */
+    @NotNull
+    private static long[] measure(
+        @NotNull String source,
+        int repeat
+    ) throws Exception {
+        long[][] runs = new long[PHASES.length][repeat];
+        for (int r = 0; r < repeat; ++r) {
+            long[] times = compile(source);
+            for (int i = 0; i < PHASES.length; ++i) {
+                runs[i][r] = times[i];
+            }
+        }
+
+        long[] res = new long[PHASES.length];
+        for (int i = 0; i < PHASES.length; ++i) {
+            Arrays.sort(runs[i]);
+            res[i] = runs[i][repeat / 2];
+        }
+        return res;
+    }
+
+    /**
+     * Growth exponent between two points, 1 for linear and 2 for quadratic
+     * @param x0 First knob value
+     * @param y0 First time
+     * @param x1 Second knob value
+     * @param y1 Second time
+     * @return Growth exponent
+     */
+    private static double exponent(long x0, long y0, long x1, long y1) {
+        if (x0 <= 0 || y0 <= 0 || x1 <= x0 || y1 <= 0) {
+            return Double.NaN;
+        }
+        return Math.log((double) y1 / y0) / Math.log((double) x1 / x0);
+    }
+
+    /**
+     * Report a single knob
+     * @param knob Knob name
+     * @param repeat Number of compilations per point
+     * @param outDir Output directory
+     * @return Markdown report
+     * @throws Exception On compilation or write error
+     */
+    @NotNull
+    private static String reportKnob(
+        @NotNull String knob,
+        int repeat,
+        @NotNull Path outDir
+    ) throws Exception {
+        long[] values = KNOBS.get(knob);
+        List<long[]> results = new ArrayList<>();
+
+        StringBuilder csv = new StringBuilder(knob);
+        for (String phase : PHASES) {
+            csv.append(",").append(phase).append("_ms");
+        }
+        csv.append(",total_ms\n");
+
+        for (long value : values) {
+            String source = new CorpusGenerator().set(knob, value).generate();
+            long[] times = measure(source, repeat);
+            results.add(times);
+
+            csv.append(value);
+            for (long t : times) {
+                csv.append(String.format(",%.3f", t / 1_000.0));
+            }
+            csv.append(String.format(",%.3f%n", sum(times) / 1_000.0));
+            System.err.printf(
+                "%-10s %8d %10.1f ms%n",
+                knob,
+                value,
+                sum(times) / 1_000.0
+            );
+        }
+
+        Files.writeString(
+            outDir.resolve(knob + ".csv"),
+            csv.toString(),
+            StandardCharsets.UTF_8
+        );
+
+        return toMarkdown(knob, values, results);
+    }
+
+    /**
+     * @param times Times of each phase
+     * @return Total time
+     */
+    private static long sum(@NotNull long[] times) {
+        long total = 0;
+        for (long t : times) {
+            total += t;
+        }
+        return total;
+    }
+
+    /**
+     * Format the results of a knob
+     * @param knob Knob name
+     * @param values Knob values
+     * @param results Times of each phase, for each value
+     * @return Markdown report
+     */
+    @NotNull
+    private static String toMarkdown(
+        @NotNull String knob,
+        @NotNull long[] values,
+        @NotNull List<long[]> results
+    ) {
+        StringBuilder s = new StringBuilder();
+        s.append("## ").append(knob).append("\n\n");
+
+        // Table, with the growth exponent since the previous point
+        s.append("| ").append(knob);
+        for (String phase : PHASES) {
+            s.append(" | ").append(phase).append(" (ms)");
+        }
+        s.append(" | total (ms) | exponent |\n|---:");
+        s.append("|---:".repeat(PHASES.length + 2)).append("|\n");
+
+        for (int i = 0; i < values.length; ++i) {
+            long[] times = results.get(i);
+            s.append("| ").append(values[i]);
+            for (long t : times) {
+                s.append(String.format(" | %.1f", t / 1_000.0));
+            }
+            s.append(String.format(" | %.1f", sum(times) / 1_000.0));
+
+            if (i == 0) {
+                s.append(" | |\n");
+            } else {
+                long[] prev = results.get(i - 1);
+                s.append(String.format(" | %.2f |\n", exponent(
+                    values[i - 1],
+                    sum(prev),
+                    values[i],
+                    sum(times)
+                )));
+            }
+        }
+
+        // Exponent of each phase over the whole range, less noisy than the
+        //  one between two points. Phases too short to matter are ignored
+        int last = values.length - 1;
+        long[] first = results.get(0);
+        long[] end = results.get(last);
+        List<String> superlinear = new ArrayList<>();
+        s.append("| exponent");
+        for (int p = 0; p < PHASES.length; ++p) {
+            double e = exponent(values[0], first[p], values[last], end[p]);
+            s.append(String.format(" | %.2f", e));
+            if (e > SUPERLINEAR && end[p] * 10 >= sum(end)) {
+                superlinear.add(PHASES[p]);
+            }
+        }
+        s.append(String.format(
+            " | %.2f | |\n",
+            exponent(values[0], sum(first), values[last], sum(end))
+        ));
+
+        // Stacked bar chart, each phase with its own letter
+        long max = 1;
+        for (long[] times : results) {
+            max = Math.max(max, sum(times));
+        }
+
+        s.append("\n```\n");
+        for (int i = 0; i < values.length; ++i) {
+            long[] times = results.get(i);
+            s.append(String.format("%8d |", values[i]));
+            for (int p = 0; p < PHASES.length; ++p) {
+                int width = (int) Math.round(
+                    (double) times[p] * CHART_WIDTH / max
+                );
+                s.append(String.valueOf(
+                    Character.toUpperCase(PHASES[p].charAt(0))
+                ).repeat(width));
+            }
+            s.append(String.format(" %.1f ms%n", sum(times) / 1_000.0));
+        }
+        s.append("```\n\n");
+
+        if (superlinear.isEmpty()) {
+            s.append("No superlinear phase.\n\n");
+        } else {
+            s.append("Superlinear phases (exponent above ")
+             .append(SUPERLINEAR)
+             .append("): ")
+             .append(String.join(", ", superlinear))
+             .append(".\n\n");
+        }
+
+        return s.toString();
+    }
+
+    /**
+     * Run the report
+     * @param args Arguments
+     * @throws Exception On error
+     */
+    private static void run(@NotNull String[] args) throws Exception {
+        Path outDir = Paths.get("scaling_report");
+        int repeat = 3;
+        List<String> knobs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value: " + args[i]);
+            }
+
+            switch (args[i]) {
+                case "--out":
+                    outDir = Paths.get(args[i + 1]);
+                    break;
+                case "--repeat":
+                    repeat = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                case "--knob":
+                    if (!KNOBS.containsKey(args[i + 1])) {
+                        throw new IllegalArgumentException(
+                            "Unknown knob: " + args[i + 1]
+                        );
+                    }
+                    knobs.add(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "Unknown argument: " + args[i]
+                    );
+            }
+        }
+
+        if (knobs.isEmpty()) {
+            knobs.addAll(KNOBS.keySet());
+        }
+
+        Files.createDirectories(outDir);
+
+        // Warm-up run, results discarded
+        measure(new CorpusGenerator().generate(), repeat);
+
+        StringBuilder report = new StringBuilder("# Scaling report\n\n");
+        report.append("Phase time against each knob of the generator, the ")
+              .append("others keeping their default value. Median of ")
+              .append(repeat)
+              .append(" runs. Bars: P = parse, T = typecheck, O = optimize, ")
+              .append("C = codegen.\n\n");
+
+        for (String knob : knobs) {
+            report.append(reportKnob(knob, repeat, outDir));
+        }
+
+        Files.writeString(
+            outDir.resolve("report.md"),
+            report.toString(),
+            StandardCharsets.UTF_8
+        );
+        System.out.print(report);
+    }
+
+    /**
+     * Main method
+     * @param args Arguments
+     * @throws Exception On error
+     */
+    public static void main(String[] args) throws Exception {
+        Exception[] error = new Exception[1];
+        Thread t = new Thread(null, () -> {
+            try {
+                run(args);
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        }, "scaling-report", STACK_SIZE);
+        t.start();
+        t.join();
+
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Basic block, a sequence of operations ending with a single terminator.
+ * Comments may follow the terminator, since they don't execute
+ * @author RomainTHD
+ * @see Function
+ */
+@NonNls
+public class BasicBlock {
+    /**
+     * Label, or null for a block only reachable by falling through a
+     * terminator, hence dead
+     */
+    @Nullable
+    private final String _label;
+
+    /**
+     * Operations
+     */
+    @NotNull
+    private final List<Operation> _operations;
+
+    /**
+     * Constructor
+     * @param label Label, or null if none
+     */
+    public BasicBlock(@Nullable String label) {
+        _label = label;
+        _operations = new ArrayList<>();
+    }
+
+    /**
+     * @return Label, or null if none
+     */
+    @Contract(pure = true)
+    @Nullable
+    public String getLabel() {
+        return _label;
+    }
+
+    /**
+     * @return Label, or a placeholder if none, for debugging
+     */
+    @Contract(pure = true)
+    @NotNull
+    public String getName() {
+        return _label == null ? "<unnamed>" : _label;
+    }
+
+    /**
+     * @return Operations
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<Operation> getOperations() {
+        return _operations;
+    }
+
+    /**
+     * Append an operation
+     * @param op Operation
+     */
+    public void add(@NotNull Operation op) {
+        _operations.add(op);
+    }
+
+    /**
+     * @return Terminator, or null if the block isn't terminated yet
+     */
+    @Contract(pure = true)
+    @Nullable
+    public Operation getTerminator() {
+        for (int i = _operations.size() - 1; i >= 0; --i) {
+            Operation op = _operations.get(i);
+            if (!op.isComment()) {
+                return op.isTerminator() ? op : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Terminated or not
+     */
+    @Contract(pure = true)
+    public boolean isTerminated() {
+        return getTerminator() != null;
+    }
+
+    /**
+     * @param index Position of an operation
+     * @return If the operation is a call whose result is returned right
+     *     after, comments aside, so that the call can reuse the stack frame
+     */
+    @Contract(pure = true)
+    public boolean isTailCall(int index) {
+        Operation call = _operations.get(index);
+        if (call.getOpcode() != Opcode.CALL) {
+            return false;
+        }
+
+        for (int i = index + 1; i < _operations.size(); ++i) {
+            Operation op = _operations.get(i);
+            if (op.isComment()) {
+                continue;
+            }
+            if (op.getOpcode() != Opcode.RET) {
+                return false;
+            }
+            Variable result = call.getResult();
+            if (result == null || op.getOperands().isEmpty()) {
+                return result == null && op.getOperands().isEmpty();
+            }
+            return Operation.sameValue(result, op.getOperand(0));
+        }
+        return false;
+    }
+
+    /**
+     * @return Successors, from the terminator
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<BasicBlock> getSuccessors() {
+        Operation terminator = getTerminator();
+        return terminator == null
+            ? Collections.emptyList()
+            : terminator.getTargets();
+    }
+
+    /**
+     * @return Phi nodes, at the start of the block
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<Operation> getPhis() {
+        List<Operation> phis = new ArrayList<>();
+        for (Operation op : _operations) {
+            if (op.getOpcode() == Opcode.PHI) {
+                phis.add(op);
+            } else if (!op.isComment()) {
+                break;
+            }
+        }
+        return phis;
+    }
+
+    /**
+     * Remove the incoming values from a block in the phi nodes of this one
+     * @param pred Former predecessor
+     */
+    public void removeIncoming(@NotNull BasicBlock pred) {
+        for (Operation phi : getPhis()) {
+            phi.removeIncoming(pred);
+        }
+    }
+
+    @Contract(pure = true)
+    @NotNull
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
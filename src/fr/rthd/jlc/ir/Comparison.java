@@ -0,0 +1,16 @@
+package fr.rthd.jlc.ir;
+
+/**
+ * Comparison of a `CMP` operation, signedness and ordering being derived from
+ * the operand types by the backend
+ * @author RomainTHD
+ * @see Opcode#CMP
+ */
+public enum Comparison {
+    EQ,
+    NE,
+    LT,
+    LE,
+    GT,
+    GE,
+}
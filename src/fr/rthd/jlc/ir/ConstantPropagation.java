@@ -0,0 +1,542 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.TypeCode;
+import fr.rthd.jlc.compiler.Literal;
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse conditional constant propagation, from Wegman and Zadeck. Values
+ * start unknown and are only lowered, while the blocks are only marked
+ * executable when a jump to them may be taken, so that loops converge to a
+ * fixed point and branches proven dead are removed along with their blocks
+ * @author RomainTHD
+ * @see PromoteMemory
+ */
+@NonNls
+public class ConstantPropagation implements FunctionPass {
+    @Override
+    public boolean run(@NotNull Function f) {
+        return new Propagation(f).run();
+    }
+
+    /**
+     * @param op Operation
+     * @param operands Constant operands
+     * @return Folded result, or null if it can't be folded
+     */
+    @Contract(pure = true)
+    @Nullable
+    static Literal fold(@NotNull Operation op, @NotNull List<Literal> operands) {
+        Variable result = op.getResult();
+        if (result == null || result.getPointerLevel() != 0) {
+            return null;
+        }
+        for (Literal l : operands) {
+            if (l.getValue() == null || l.getPointerLevel() != 0) {
+                return null;
+            }
+        }
+
+        Object value = null;
+        Object left = operands.isEmpty() ? null : operands.get(0).getValue();
+        Object right = operands.size() < 2 ? null : operands.get(1).getValue();
+        TypeCode type = operands.isEmpty() ? null : operands.get(0).getType();
+
+        switch (op.getOpcode()) {
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+                if (type == TypeCode.CInt) {
+                    value = foldInt(
+                        op.getOpcode(),
+                        ((Number) left).intValue(),
+                        ((Number) right).intValue()
+                    );
+                } else if (type == TypeCode.CDouble) {
+                    value = foldDouble(
+                        op.getOpcode(),
+                        ((Number) left).doubleValue(),
+                        ((Number) right).doubleValue()
+                    );
+                }
+                break;
+
+            case AND:
+                value = (Boolean) left && (Boolean) right;
+                break;
+
+            case OR:
+                value = (Boolean) left || (Boolean) right;
+                break;
+
+            case NOT:
+                value = !(Boolean) left;
+                break;
+
+            case NEG:
+                if (type == TypeCode.CDouble) {
+                    value = -((Number) left).doubleValue();
+                }
+                break;
+
+            case CMP:
+                assert op.getComparison() != null;
+                value = foldComparison(op.getComparison(), type, left, right);
+                break;
+
+            default:
+                break;
+        }
+
+        return value == null ? null : new Literal(result.getType(), value);
+    }
+
+    /**
+     * @param opcode Arithmetic operation
+     * @param left Left operand
+     * @param right Right operand
+     * @return Result, wrapping around like LLVM, or null if undefined
+     */
+    @Contract(pure = true)
+    @Nullable
+    private static Integer foldInt(@NotNull Opcode opcode, int left, int right) {
+        switch (opcode) {
+            case ADD:
+                return left + right;
+            case SUB:
+                return left - right;
+            case MUL:
+                return left * right;
+            case DIV:
+            case MOD:
+                if (right == 0 || (left == Integer.MIN_VALUE && right == -1)) {
+                    // Undefined, left for the runtime
+                    return null;
+                }
+                return opcode == Opcode.DIV ? left / right : left % right;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param opcode Arithmetic operation
+     * @param left Left operand
+     * @param right Right operand
+     * @return Result, or null if not finite, since LLVM has no literal for it
+     */
+    @Contract(pure = true)
+    @Nullable
+    private static Double foldDouble(
+        @NotNull Opcode opcode,
+        double left,
+        double right
+    ) {
+        double value;
+        switch (opcode) {
+            case ADD:
+                value = left + right;
+                break;
+            case SUB:
+                value = left - right;
+                break;
+            case MUL:
+                value = left * right;
+                break;
+            case DIV:
+                value = left / right;
+                break;
+            default:
+                return null;
+        }
+        return Double.isFinite(value) ? value : null;
+    }
+
+    /**
+     * @param comparison Comparison
+     * @param type Operands type
+     * @param left Left operand
+     * @param right Right operand
+     * @return Result, or null if it can't be folded
+     */
+    @Contract(pure = true)
+    @Nullable
+    private static Boolean foldComparison(
+        @NotNull Comparison comparison,
+        @Nullable TypeCode type,
+        @NotNull Object left,
+        @NotNull Object right
+    ) {
+        int cmp;
+        if (type == TypeCode.CInt) {
+            cmp = Integer.compare(
+                ((Number) left).intValue(),
+                ((Number) right).intValue()
+            );
+        } else if (type == TypeCode.CBool) {
+            cmp = Boolean.compare((Boolean) left, (Boolean) right);
+        } else if (type == TypeCode.CDouble) {
+            double l = ((Number) left).doubleValue();
+            double r = ((Number) right).doubleValue();
+            if (Double.isNaN(l) || Double.isNaN(r)) {
+                return null;
+            }
+            cmp = l < r ? -1 : (l > r ? 1 : 0);
+        } else {
+            return null;
+        }
+
+        switch (comparison) {
+            case EQ:
+                return cmp == 0;
+            case NE:
+                return cmp != 0;
+            case LT:
+                return cmp < 0;
+            case LE:
+                return cmp <= 0;
+            case GT:
+                return cmp > 0;
+            case GE:
+                return cmp >= 0;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Propagation in a single function
+     */
+    private static class Propagation {
+        /**
+         * Value known to vary
+         */
+        private static final Object BOTTOM = new Object();
+
+        /**
+         * Function
+         */
+        @NotNull
+        private final Function _function;
+
+        /**
+         * Lattice value of each local value, by name: a literal if constant,
+         * `BOTTOM` if varying, and unknown yet if missing
+         */
+        @NotNull
+        private final Map<String, Object> _values;
+
+        /**
+         * Operations using each value, by name
+         */
+        @NotNull
+        private final Map<String, List<Operation>> _users;
+
+        /**
+         * Block of each operation
+         */
+        @NotNull
+        private final Map<Operation, BasicBlock> _blocks;
+
+        /**
+         * Executable edges, by target block
+         */
+        @NotNull
+        private final Map<BasicBlock, List<BasicBlock>> _edges;
+
+        /**
+         * Edges to visit, as source and target, the entry having no source
+         */
+        @NotNull
+        private final List<BasicBlock[]> _flowWork;
+
+        /**
+         * Operations to evaluate again
+         */
+        @NotNull
+        private final List<Operation> _ssaWork;
+
+        /**
+         * Constructor
+         * @param f Function
+         */
+        Propagation(@NotNull Function f) {
+            _function = f;
+            _values = new HashMap<>();
+            _users = new HashMap<>();
+            _blocks = new IdentityHashMap<>();
+            _edges = new IdentityHashMap<>();
+            _flowWork = new ArrayList<>();
+            _ssaWork = new ArrayList<>();
+        }
+
+        /**
+         * @return Changed or not
+         */
+        boolean run() {
+            for (Variable arg : _function.getArgs()) {
+                _values.put(arg.getName(), BOTTOM);
+            }
+            for (BasicBlock b : _function.getBlocks()) {
+                for (Operation op : b.getOperations()) {
+                    _blocks.put(op, b);
+                    for (OperationItem item : op.getOperands()) {
+                        if (item instanceof Variable) {
+                            _users.computeIfAbsent(
+                                ((Variable) item).getName(),
+                                name -> new ArrayList<>()
+                            ).add(op);
+                        }
+                    }
+                }
+            }
+
+            _flowWork.add(new BasicBlock[]{null, _function.getEntry()});
+            while (!_flowWork.isEmpty() || !_ssaWork.isEmpty()) {
+                while (!_flowWork.isEmpty()) {
+                    BasicBlock[] edge = _flowWork.remove(_flowWork.size() - 1);
+                    visitEdge(edge[0], edge[1]);
+                }
+                while (!_ssaWork.isEmpty()) {
+                    Operation op = _ssaWork.remove(_ssaWork.size() - 1);
+                    BasicBlock b = _blocks.get(op);
+                    if (_edges.containsKey(b)) {
+                        evaluate(op, b);
+                    }
+                }
+            }
+
+            return rewrite();
+        }
+
+        /**
+         * Visit an edge, the first visit of a block evaluating all its
+         * operations and the next ones only its phi nodes
+         * @param from Source block, or null for the entry
+         * @param to Target block
+         */
+        private void visitEdge(@Nullable BasicBlock from, @NotNull BasicBlock to) {
+            List<BasicBlock> edges = _edges.get(to);
+            boolean first = edges == null;
+            if (first) {
+                edges = new ArrayList<>();
+                _edges.put(to, edges);
+            } else if (from == null || edges.contains(from)) {
+                return;
+            }
+            if (from != null) {
+                edges.add(from);
+            }
+
+            if (first) {
+                for (Operation op : to.getOperations()) {
+                    evaluate(op, to);
+                }
+            } else {
+                for (Operation phi : to.getPhis()) {
+                    evaluate(phi, to);
+                }
+            }
+        }
+
+        /**
+         * @param item Operand
+         * @return Lattice value
+         */
+        @Nullable
+        private Object valueOf(@NotNull OperationItem item) {
+            if (item instanceof Literal) {
+                return item;
+            }
+            Variable v = (Variable) item;
+            return v.isGlobal() ? BOTTOM : _values.get(v.getName());
+        }
+
+        /**
+         * @param a Lattice value
+         * @param b Lattice value
+         * @return Meet of both values
+         */
+        @Nullable
+        private static Object meet(@Nullable Object a, @Nullable Object b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            if (a == BOTTOM || b == BOTTOM) {
+                return BOTTOM;
+            }
+            return Operation.sameValue((Literal) a, (Literal) b) ? a : BOTTOM;
+        }
+
+        /**
+         * Evaluate an operation of an executable block
+         * @param op Operation
+         * @param b Block
+         */
+        private void evaluate(@NotNull Operation op, @NotNull BasicBlock b) {
+            switch (op.getOpcode()) {
+                case COMMENT:
+                case STORE:
+                case RET:
+                    return;
+
+                case JUMP:
+                    _flowWork.add(new BasicBlock[]{b, op.getTargets().get(0)});
+                    return;
+
+                case BRANCH: {
+                    Object cond = valueOf(op.getOperand(0));
+                    if (cond == BOTTOM) {
+                        _flowWork.add(new BasicBlock[]{b, op.getTargets().get(0)});
+                        _flowWork.add(new BasicBlock[]{b, op.getTargets().get(1)});
+                    } else if (cond != null) {
+                        boolean taken = (Boolean) ((Literal) cond).getValue();
+                        _flowWork.add(new BasicBlock[]{
+                            b,
+                            op.getTargets().get(taken ? 0 : 1)
+                        });
+                    }
+                    return;
+                }
+
+                case PHI: {
+                    Object value = null;
+                    List<BasicBlock> edges = _edges.get(b);
+                    for (int i = 0; i < op.getOperands().size(); ++i) {
+                        if (edges.contains(op.getTargets().get(i))) {
+                            value = meet(value, valueOf(op.getOperand(i)));
+                        }
+                    }
+                    update(op, value);
+                    return;
+                }
+
+                default:
+                    break;
+            }
+
+            if (op.getResult() == null) {
+                return;
+            }
+
+            List<Literal> operands = new ArrayList<>();
+            for (OperationItem item : op.getOperands()) {
+                Object value = valueOf(item);
+                if (value == null) {
+                    // Not known yet
+                    return;
+                }
+                if (value == BOTTOM) {
+                    update(op, BOTTOM);
+                    return;
+                }
+                operands.add((Literal) value);
+            }
+
+            Literal folded = fold(op, operands);
+            update(op, folded == null ? BOTTOM : folded);
+        }
+
+        /**
+         * Lower the value of an operation, evaluating its users again if it
+         * changed
+         * @param op Operation
+         * @param value New lattice value
+         */
+        private void update(@NotNull Operation op, @Nullable Object value) {
+            Variable result = op.getResult();
+            assert result != null;
+            Object old = _values.get(result.getName());
+            Object lowered = meet(old, value);
+            if (lowered == null || lowered == old) {
+                return;
+            }
+            if (old != null && lowered != BOTTOM) {
+                // Same constant
+                return;
+            }
+            _values.put(result.getName(), lowered);
+            List<Operation> users = _users.get(result.getName());
+            if (users != null) {
+                _ssaWork.addAll(users);
+            }
+        }
+
+        /**
+         * Replace the constants, remove the dead branches and the blocks
+         * never executed
+         * @return Changed or not
+         */
+        private boolean rewrite() {
+            boolean changed = false;
+            Map<String, Literal> constants = new HashMap<>();
+            for (BasicBlock b : _function.getBlocks()) {
+                if (!_edges.containsKey(b)) {
+                    continue;
+                }
+
+                List<Operation> ops = b.getOperations();
+                for (int i = 0; i < ops.size(); ++i) {
+                    Operation op = ops.get(i);
+                    if (op.getOpcode() != Opcode.BRANCH) {
+                        continue;
+                    }
+                    Object cond = valueOf(op.getOperand(0));
+                    if (!(cond instanceof Literal)) {
+                        continue;
+                    }
+                    boolean taken = (Boolean) ((Literal) cond).getValue();
+                    BasicBlock target = op.getTargets().get(taken ? 0 : 1);
+                    BasicBlock other = op.getTargets().get(taken ? 1 : 0);
+                    Operation jump = new Operation(
+                        Opcode.JUMP,
+                        null,
+                        new ArrayList<>(),
+                        List.of(target),
+                        null,
+                        null
+                    );
+                    jump.setNesting(op.getNesting());
+                    ops.set(i, jump);
+                    if (other != target) {
+                        other.removeIncoming(b);
+                    }
+                    changed = true;
+                }
+
+                changed |= ops.removeIf(op -> {
+                    Variable result = op.getResult();
+                    if (result == null) {
+                        return false;
+                    }
+                    Object value = _values.get(result.getName());
+                    if (value instanceof Literal) {
+                        constants.put(result.getName(), (Literal) value);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+
+            changed |= _function.removeUnreachableBlocks();
+            changed |= _function.replaceUses(constants);
+            return changed;
+        }
+    }
+}
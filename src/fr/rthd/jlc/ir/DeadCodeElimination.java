@@ -0,0 +1,129 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removal of the phi nodes merging a single value, then of the operations
+ * whose result is never used and without any side effect
+ * @author RomainTHD
+ * @see Opcode#isPure()
+ */
+@NonNls
+public class DeadCodeElimination implements FunctionPass {
+    /**
+     * @param op Operation
+     * @return Removable if its result is unused, loads and allocations
+     *     included since they don't change the memory
+     */
+    @Contract(pure = true)
+    private static boolean isRemovable(@NotNull Operation op) {
+        Opcode opcode = op.getOpcode();
+        return op.getResult() != null
+               && (opcode.isPure()
+                   || opcode == Opcode.LOAD
+                   || opcode == Opcode.ALLOCA);
+    }
+
+    /**
+     * @param phi Phi node
+     * @return Single value merged by the node, itself excluded, or null if
+     *     there are several
+     */
+    @Contract(pure = true)
+    @Nullable
+    private static OperationItem uniqueValue(@NotNull Operation phi) {
+        Variable self = phi.getResult();
+        assert self != null;
+        OperationItem unique = null;
+        for (OperationItem item : phi.getOperands()) {
+            if (Operation.sameValue(item, self)) {
+                continue;
+            }
+            if (unique == null) {
+                unique = item;
+            } else if (!Operation.sameValue(item, unique)) {
+                return null;
+            }
+        }
+        return unique;
+    }
+
+    @Override
+    public boolean run(@NotNull Function f) {
+        boolean changed = simplifyPhis(f);
+
+        Map<String, Operation> defs = new HashMap<>();
+        List<Operation> work = new ArrayList<>();
+        for (BasicBlock b : f.getBlocks()) {
+            for (Operation op : b.getOperations()) {
+                if (isRemovable(op)) {
+                    assert op.getResult() != null;
+                    defs.put(op.getResult().getName(), op);
+                } else {
+                    work.add(op);
+                }
+            }
+        }
+
+        // Mark the operations used by the ones with a side effect
+        Map<String, Boolean> live = new HashMap<>();
+        while (!work.isEmpty()) {
+            Operation op = work.remove(work.size() - 1);
+            for (OperationItem item : op.getOperands()) {
+                if (!(item instanceof Variable)) {
+                    continue;
+                }
+                String name = ((Variable) item).getName();
+                Operation def = defs.get(name);
+                if (def != null && live.put(name, true) == null) {
+                    work.add(def);
+                }
+            }
+        }
+
+        for (BasicBlock b : f.getBlocks()) {
+            changed |= b.getOperations().removeIf(op -> isRemovable(op)
+                && !live.containsKey(op.getResult().getName()));
+        }
+        return changed;
+    }
+
+    /**
+     * Replace the phi nodes merging a single value, until none is left
+     * @param f Function
+     * @return Changed or not
+     */
+    private static boolean simplifyPhis(@NotNull Function f) {
+        Map<String, OperationItem> replacements = new HashMap<>();
+        boolean changed = false;
+        boolean again = true;
+        while (again) {
+            again = false;
+            for (BasicBlock b : f.getBlocks()) {
+                for (Operation phi : b.getPhis()) {
+                    phi.replaceUses(replacements);
+                    OperationItem value = uniqueValue(phi);
+                    if (value != null) {
+                        assert phi.getResult() != null;
+                        replacements.put(phi.getResult().getName(), value);
+                        b.getOperations().remove(phi);
+                        changed = true;
+                        again = true;
+                    }
+                }
+            }
+        }
+        f.replaceUses(replacements);
+        return changed;
+    }
+}
@@ -0,0 +1,305 @@
+package fr.rthd.jlc.ir;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dominator tree of a function, computed with the iterative algorithm of
+ * Cooper, Harvey and Kennedy over the reverse postorder. Only the blocks
+ * reachable from the entry are part of the tree
+ * @author RomainTHD
+ * @see Function
+ */
+@NonNls
+public class DominatorTree {
+    /**
+     * Reachable blocks, in reverse postorder
+     */
+    @NotNull
+    private final List<BasicBlock> _order;
+
+    /**
+     * Position of each reachable block in the reverse postorder
+     */
+    @NotNull
+    private final Map<BasicBlock, Integer> _index;
+
+    /**
+     * Immediate dominator of each block, by position, the entry being its
+     * own dominator
+     */
+    @NotNull
+    private final int[] _idom;
+
+    /**
+     * Children of each block in the tree, by position
+     */
+    @NotNull
+    private final List<List<BasicBlock>> _children;
+
+    /**
+     * Preorder number of each block in the tree, by position
+     */
+    @NotNull
+    private final int[] _pre;
+
+    /**
+     * Postorder number of each block in the tree, by position
+     */
+    @NotNull
+    private final int[] _post;
+
+    /**
+     * Predecessors of each block
+     */
+    @NotNull
+    private final Map<BasicBlock, List<BasicBlock>> _preds;
+
+    /**
+     * Dominance frontier of each block, by position, computed on demand
+     */
+    @Nullable
+    private List<List<BasicBlock>> _frontiers;
+
+    /**
+     * Constructor
+     * @param f Function
+     */
+    public DominatorTree(@NotNull Function f) {
+        _order = reversePostOrder(f.getEntry());
+        _index = new IdentityHashMap<>();
+        for (int i = 0; i < _order.size(); ++i) {
+            _index.put(_order.get(i), i);
+        }
+
+        int n = _order.size();
+        _preds = f.getPredecessors();
+        _frontiers = null;
+
+        _idom = new int[n];
+        Arrays.fill(_idom, -1);
+        _idom[0] = 0;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = 1; b < n; ++b) {
+                int idom = -1;
+                for (BasicBlock p : _preds.get(_order.get(b))) {
+                    Integer pi = _index.get(p);
+                    if (pi == null || _idom[pi] == -1) {
+                        // Unreachable or not processed yet
+                        continue;
+                    }
+                    idom = idom == -1 ? pi : intersect(pi, idom);
+                }
+                if (_idom[b] != idom) {
+                    _idom[b] = idom;
+                    changed = true;
+                }
+            }
+        }
+
+        _children = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            _children.add(new ArrayList<>());
+        }
+        for (int b = 1; b < n; ++b) {
+            _children.get(_idom[b]).add(_order.get(b));
+        }
+
+        // Numbering of the tree, for constant time dominance queries
+        _pre = new int[n];
+        _post = new int[n];
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        int depth = 0;
+        int preCount = 0;
+        int postCount = 0;
+        if (n > 0) {
+            stack[0] = 0;
+            _pre[0] = preCount++;
+        }
+        while (depth >= 0 && n > 0) {
+            int b = stack[depth];
+            List<BasicBlock> children = _children.get(b);
+            if (next[b] < children.size()) {
+                int c = _index.get(children.get(next[b]++));
+                _pre[c] = preCount++;
+                stack[++depth] = c;
+            } else {
+                _post[b] = postCount++;
+                --depth;
+            }
+        }
+    }
+
+    /**
+     * @param entry Entry block
+     * @return Reachable blocks, in reverse postorder
+     */
+    @NotNull
+    private static List<BasicBlock> reversePostOrder(
+        @NotNull BasicBlock entry
+    ) {
+        List<BasicBlock> post = new ArrayList<>();
+        Map<BasicBlock, Boolean> visited = new IdentityHashMap<>();
+        List<BasicBlock> stack = new ArrayList<>();
+        List<Integer> next = new ArrayList<>();
+
+        visited.put(entry, true);
+        stack.add(entry);
+        next.add(0);
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            BasicBlock b = stack.get(top);
+            List<BasicBlock> succs = b.getSuccessors();
+            int i = next.get(top);
+            if (i < succs.size()) {
+                next.set(top, i + 1);
+                BasicBlock s = succs.get(i);
+                if (visited.put(s, true) == null) {
+                    stack.add(s);
+                    next.add(0);
+                }
+            } else {
+                post.add(b);
+                stack.remove(top);
+                next.remove(top);
+            }
+        }
+
+        Collections.reverse(post);
+        return post;
+    }
+
+    /**
+     * @param a Block position
+     * @param b Block position
+     * @return Position of the nearest common dominator
+     */
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) {
+                a = _idom[a];
+            }
+            while (b > a) {
+                b = _idom[b];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * @return Reachable blocks, in reverse postorder
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<BasicBlock> getReversePostOrder() {
+        return Collections.unmodifiableList(_order);
+    }
+
+    /**
+     * @param b Block
+     * @return Reachable from the entry or not
+     */
+    @Contract(pure = true)
+    public boolean isReachable(@NotNull BasicBlock b) {
+        return _index.containsKey(b);
+    }
+
+    /**
+     * @param b Block
+     * @return Immediate dominator, or null for the entry or an unreachable
+     *     block
+     */
+    @Contract(pure = true)
+    @Nullable
+    public BasicBlock getImmediateDominator(@NotNull BasicBlock b) {
+        Integer i = _index.get(b);
+        if (i == null || i == 0) {
+            return null;
+        }
+        return _order.get(_idom[i]);
+    }
+
+    /**
+     * @param b Block
+     * @return Blocks immediately dominated by this one
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<BasicBlock> getChildren(@NotNull BasicBlock b) {
+        Integer i = _index.get(b);
+        return i == null
+            ? Collections.emptyList()
+            : Collections.unmodifiableList(_children.get(i));
+    }
+
+    /**
+     * @param b Block
+     * @return Dominance frontier, the blocks where the dominance of this one
+     *     stops, like the join points of a condition
+     */
+    @NotNull
+    public List<BasicBlock> getFrontier(@NotNull BasicBlock b) {
+        Integer i = _index.get(b);
+        if (i == null) {
+            return Collections.emptyList();
+        }
+
+        if (_frontiers == null) {
+            // Cooper, Harvey and Kennedy, from the join points upwards
+            List<List<BasicBlock>> frontiers = new ArrayList<>(_order.size());
+            for (int j = 0; j < _order.size(); ++j) {
+                frontiers.add(new ArrayList<>());
+            }
+            for (int j = 0; j < _order.size(); ++j) {
+                BasicBlock join = _order.get(j);
+                List<BasicBlock> preds = _preds.get(join);
+                if (preds.size() < 2) {
+                    continue;
+                }
+                for (BasicBlock p : preds) {
+                    Integer runner = _index.get(p);
+                    while (runner != null && runner != _idom[j]) {
+                        List<BasicBlock> frontier = frontiers.get(runner);
+                        if (frontier.isEmpty()
+                            || frontier.get(frontier.size() - 1) != join) {
+                            frontier.add(join);
+                        }
+                        runner = runner == 0 ? null : _idom[runner];
+                    }
+                }
+            }
+            _frontiers = frontiers;
+        }
+
+        return Collections.unmodifiableList(_frontiers.get(i));
+    }
+
+    /**
+     * @param a Block
+     * @param b Block
+     * @return If `a` dominates `b`, a block dominating itself. Always false
+     *     for unreachable blocks
+     */
+    @Contract(pure = true)
+    public boolean dominates(@NotNull BasicBlock a, @NotNull BasicBlock b) {
+        Integer ai = _index.get(a);
+        Integer bi = _index.get(b);
+        if (ai == null || bi == null) {
+            return false;
+        }
+        return _pre[ai] <= _pre[bi] && _post[bi] <= _post[ai];
+    }
+}
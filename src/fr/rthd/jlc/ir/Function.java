@@ -0,0 +1,256 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.TypeCode;
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Function as a control flow graph of basic blocks, the first one being the
+ * entry point
+ * @author RomainTHD
+ * @see BasicBlock
+ * @see Verifier
+ */
+@NonNls
+public class Function {
+    /**
+     * Assembly name
+     */
+    @NotNull
+    private final String _name;
+
+    /**
+     * Return type
+     */
+    @NotNull
+    private final TypeCode _retType;
+
+    /**
+     * Arguments
+     */
+    @NotNull
+    private final List<Variable> _args;
+
+    /**
+     * Blocks, in layout order
+     */
+    @NotNull
+    private final List<BasicBlock> _blocks;
+
+    /**
+     * Blocks by label, inserted or not yet
+     */
+    @NotNull
+    private final Map<String, BasicBlock> _labels;
+
+    /**
+     * Number of values created by `newName(String)`
+     */
+    private int _nameCount;
+
+    /**
+     * Constructor
+     * @param name Assembly name
+     * @param retType Return type
+     * @param args Arguments
+     */
+    public Function(
+        @NotNull String name,
+        @NotNull TypeCode retType,
+        @NotNull List<Variable> args
+    ) {
+        _name = name;
+        _retType = retType;
+        _args = Collections.unmodifiableList(new ArrayList<>(args));
+        _blocks = new ArrayList<>();
+        _labels = new HashMap<>();
+        _nameCount = 0;
+    }
+
+    /**
+     * @return Assembly name
+     */
+    @Contract(pure = true)
+    @NotNull
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * @return Return type
+     */
+    @Contract(pure = true)
+    @NotNull
+    public TypeCode getRetType() {
+        return _retType;
+    }
+
+    /**
+     * @return Arguments
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<Variable> getArgs() {
+        return _args;
+    }
+
+    /**
+     * @return Blocks, in layout order
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<BasicBlock> getBlocks() {
+        return _blocks;
+    }
+
+    /**
+     * @return Entry block
+     */
+    @Contract(pure = true)
+    @NotNull
+    public BasicBlock getEntry() {
+        return _blocks.get(0);
+    }
+
+    /**
+     * Block of a label, created if needed but only inserted by
+     * `insert(BasicBlock)`, so that forward jumps can refer to it
+     * @param label Label
+     * @return Block
+     */
+    @NotNull
+    public BasicBlock getBlock(@NotNull String label) {
+        return _labels.computeIfAbsent(label, BasicBlock::new);
+    }
+
+    /**
+     * Insert a block at the end of the function
+     * @param block Block
+     */
+    public void insert(@NotNull BasicBlock block) {
+        _blocks.add(block);
+    }
+
+    /**
+     * @param base Base name, like the variable a value replaces
+     * @return New value name, unique in the function
+     */
+    @NotNull
+    public String newName(@NotNull String base) {
+        return base + "." + _nameCount++;
+    }
+
+    /**
+     * Replace the uses of values in the whole function
+     * @param replacements Replacements, by value name
+     * @return Changed or not
+     */
+    public boolean replaceUses(
+        @NotNull Map<String, ? extends OperationItem> replacements
+    ) {
+        if (replacements.isEmpty()) {
+            return false;
+        }
+
+        boolean changed = false;
+        for (BasicBlock b : _blocks) {
+            for (Operation op : b.getOperations()) {
+                changed |= op.replaceUses(replacements);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Remove the blocks unreachable from the entry, and their incoming
+     * values in phi nodes
+     * @return Changed or not
+     */
+    public boolean removeUnreachableBlocks() {
+        Map<BasicBlock, Boolean> reachable = new IdentityHashMap<>();
+        List<BasicBlock> stack = new ArrayList<>();
+        reachable.put(getEntry(), true);
+        stack.add(getEntry());
+        while (!stack.isEmpty()) {
+            BasicBlock b = stack.remove(stack.size() - 1);
+            for (BasicBlock succ : b.getSuccessors()) {
+                if (reachable.put(succ, true) == null) {
+                    stack.add(succ);
+                }
+            }
+        }
+
+        if (reachable.size() == _blocks.size()) {
+            return false;
+        }
+
+        for (BasicBlock b : _blocks) {
+            if (reachable.containsKey(b)) {
+                continue;
+            }
+            for (BasicBlock succ : b.getSuccessors()) {
+                if (reachable.containsKey(succ)) {
+                    succ.removeIncoming(b);
+                }
+            }
+        }
+
+        _blocks.removeIf(b -> !reachable.containsKey(b));
+        return true;
+    }
+
+    /**
+     * @return Predecessors of each block, in layout order and duplicates
+     *     allowed, like a conditional jump with twice the same target
+     */
+    @Contract(pure = true)
+    @NotNull
+    public Map<BasicBlock, List<BasicBlock>> getPredecessors() {
+        Map<BasicBlock, List<BasicBlock>> preds = new IdentityHashMap<>();
+        for (BasicBlock b : _blocks) {
+            preds.put(b, new ArrayList<>());
+        }
+        for (BasicBlock b : _blocks) {
+            for (BasicBlock succ : b.getSuccessors()) {
+                List<BasicBlock> list = preds.get(succ);
+                if (list != null) {
+                    list.add(b);
+                }
+            }
+        }
+        return preds;
+    }
+
+    /**
+     * @return Number of operations, comments excluded
+     */
+    @Contract(pure = true)
+    public int getOperationCount() {
+        int count = 0;
+        for (BasicBlock b : _blocks) {
+            for (Operation op : b.getOperations()) {
+                if (!op.isComment()) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Contract(pure = true)
+    @NotNull
+    @Override
+    public String toString() {
+        return _name;
+    }
+}
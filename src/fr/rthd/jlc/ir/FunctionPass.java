@@ -0,0 +1,18 @@
+package fr.rthd.jlc.ir;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Transformation of a function. Passes shouldn't keep any state between two
+ * runs, since functions are compiled in parallel
+ * @author RomainTHD
+ * @see Function
+ */
+public interface FunctionPass {
+    /**
+     * Transform a function
+     * @param f Function
+     * @return Changed or not
+     */
+    boolean run(@NotNull Function f);
+}
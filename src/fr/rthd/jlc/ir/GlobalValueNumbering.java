@@ -0,0 +1,347 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dominator-based value numbering, removing the pure operations and calls
+ * already computed by a dominating block, and the loads of an address already
+ * loaded or stored without any store nor impure call in between
+ * @author RomainTHD
+ * @see DominatorTree
+ * @see Operation#isPureCall()
+ */
+@NonNls
+public class GlobalValueNumbering implements FunctionPass {
+    /**
+     * @param op Operation
+     * @return Key of its value, equal for the operations computing the same
+     *     value, or null if it can't be numbered
+     */
+    @Contract(pure = true)
+    @Nullable
+    static String keyOf(@NotNull Operation op) {
+        Variable result = op.getResult();
+        Opcode opcode = op.getOpcode();
+        if (result == null || opcode == Opcode.PHI) {
+            return null;
+        }
+        if (opcode == Opcode.CALL) {
+            // Functions returning an object may allocate it
+            if (!op.isPureCall() || result.getPointerLevel() != 0) {
+                return null;
+            }
+        } else if (!opcode.isPure() && opcode != Opcode.LOAD) {
+            return null;
+        }
+
+        List<String> operands = new ArrayList<>();
+        for (OperationItem item : op.getOperands()) {
+            operands.add(keyOf(item));
+        }
+        if (isCommutative(op)
+            && operands.get(0).compareTo(operands.get(1)) > 0) {
+            operands.add(operands.remove(0));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(opcode.name());
+        if (op.getComparison() != null) {
+            sb.append(' ').append(op.getComparison().name());
+        }
+        if (op.getName() != null) {
+            sb.append(" @").append(op.getName());
+        }
+        sb.append(' ').append(typeOf(result));
+        for (String operand : operands) {
+            sb.append(", ").append(operand);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param value Stored value
+     * @param address Address
+     * @return Key of a load of this address, the same as `keyOf(Operation)`
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String loadKeyOf(
+        @NotNull OperationItem value,
+        @NotNull OperationItem address
+    ) {
+        return Opcode.LOAD.name() + " " + typeOf(value) + ", " + keyOf(address);
+    }
+
+    /**
+     * @param item Value
+     * @return Key of the value, literals and SSA values being distinct
+     *     since the latter start with a '%' or a '@'
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String keyOf(@NotNull OperationItem item) {
+        return typeOf(item) + " " + item;
+    }
+
+    /**
+     * @param item Value
+     * @return Type of the value, with its pointer level
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String typeOf(@NotNull OperationItem item) {
+        return item.getType() + "*".repeat(item.getPointerLevel());
+    }
+
+    /**
+     * @param op Operation
+     * @return Operands can be swapped or not
+     */
+    @Contract(pure = true)
+    private static boolean isCommutative(@NotNull Operation op) {
+        switch (op.getOpcode()) {
+            case ADD:
+            case MUL:
+            case AND:
+            case OR:
+                return true;
+            case CMP:
+                return op.getComparison() == Comparison.EQ
+                       || op.getComparison() == Comparison.NE;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public boolean run(@NotNull Function f) {
+        return new Numbering(f).run();
+    }
+
+    /**
+     * Numbering of a single function
+     */
+    private static class Numbering {
+        /**
+         * Function
+         */
+        @NotNull
+        private final Function _function;
+
+        /**
+         * Available values, by key. Loads are only available for the memory
+         * generation they were recorded in
+         */
+        @NotNull
+        private final Map<String, OperationItem> _available;
+
+        /**
+         * Memory generation of each available load, by key
+         */
+        @NotNull
+        private final Map<String, Integer> _loadGenerations;
+
+        /**
+         * Keys recorded, and their previous value, to restore them when
+         * leaving a block
+         */
+        @NotNull
+        private final List<Object[]> _undoLog;
+
+        /**
+         * Value of each removed operation, by name
+         */
+        @NotNull
+        private final Map<String, OperationItem> _replacements;
+
+        /**
+         * Current memory generation, changed by every store or impure call
+         */
+        private int _generation;
+
+        /**
+         * Number of memory generations created
+         */
+        private int _generationCount;
+
+        /**
+         * Constructor
+         * @param f Function
+         */
+        Numbering(@NotNull Function f) {
+            _function = f;
+            _available = new HashMap<>();
+            _loadGenerations = new HashMap<>();
+            _undoLog = new ArrayList<>();
+            _replacements = new HashMap<>();
+            _generation = 0;
+            _generationCount = 1;
+        }
+
+        /**
+         * @return Changed or not
+         */
+        boolean run() {
+            DominatorTree dom = new DominatorTree(_function);
+            Map<BasicBlock, List<BasicBlock>> preds =
+                _function.getPredecessors();
+
+            // Walk the dominator tree in preorder. Each frame of a block
+            //  holds its next child, the size of the undo log when entering
+            //  it and its memory generation at its end
+            List<BasicBlock> blocks = new ArrayList<>();
+            List<int[]> frames = new ArrayList<>();
+
+            boolean changed = false;
+            BasicBlock entry = _function.getEntry();
+            changed |= visit(entry);
+            blocks.add(entry);
+            frames.add(new int[]{0, 0, _generation});
+            while (!blocks.isEmpty()) {
+                int top = blocks.size() - 1;
+                BasicBlock b = blocks.get(top);
+                int[] frame = frames.get(top);
+                List<BasicBlock> children = dom.getChildren(b);
+                if (frame[0] < children.size()) {
+                    BasicBlock child = children.get(frame[0]++);
+                    List<BasicBlock> childPreds = preds.get(child);
+                    if (childPreds.size() == 1 && childPreds.get(0) == b) {
+                        // Only reached from the end of its dominator
+                        _generation = frame[2];
+                    } else {
+                        // Memory may have changed on another path
+                        _generation = _generationCount++;
+                    }
+                    int undo = _undoLog.size();
+                    changed |= visit(child);
+                    blocks.add(child);
+                    frames.add(new int[]{0, undo, _generation});
+                } else {
+                    undo(frame[1]);
+                    blocks.remove(top);
+                    frames.remove(top);
+                }
+            }
+
+            _function.replaceUses(_replacements);
+            return changed;
+        }
+
+        /**
+         * Record an available value
+         * @param key Key
+         * @param value Value
+         * @param load Load or not
+         */
+        private void record(
+            @NotNull String key,
+            @NotNull OperationItem value,
+            boolean load
+        ) {
+            _undoLog.add(new Object[]{
+                key,
+                _available.put(key, value),
+                load ? _loadGenerations.put(key, _generation) : null,
+            });
+        }
+
+        /**
+         * Restore the available values to a previous state
+         * @param size Size of the undo log to restore
+         */
+        private void undo(int size) {
+            while (_undoLog.size() > size) {
+                Object[] entry = _undoLog.remove(_undoLog.size() - 1);
+                String key = (String) entry[0];
+                if (entry[1] == null) {
+                    _available.remove(key);
+                } else {
+                    _available.put(key, (OperationItem) entry[1]);
+                }
+                if (entry[2] == null) {
+                    _loadGenerations.remove(key);
+                } else {
+                    _loadGenerations.put(key, (Integer) entry[2]);
+                }
+            }
+        }
+
+        /**
+         * @param key Key
+         * @param load Load or not
+         * @return Available value, or null if none
+         */
+        @Nullable
+        private OperationItem lookup(@NotNull String key, boolean load) {
+            OperationItem value = _available.get(key);
+            if (value == null || !load) {
+                return value;
+            }
+            Integer generation = _loadGenerations.get(key);
+            return generation != null && generation == _generation
+                ? value
+                : null;
+        }
+
+        /**
+         * Number the operations of a block, removing the redundant ones
+         * @param b Block
+         * @return Changed or not
+         */
+        private boolean visit(@NotNull BasicBlock b) {
+            List<Operation> ops = new ArrayList<>();
+            boolean changed = false;
+            for (Operation op : b.getOperations()) {
+                op.replaceUses(_replacements);
+                Opcode opcode = op.getOpcode();
+
+                if (opcode == Opcode.STORE
+                    || (opcode == Opcode.CALL && !op.isPureCall())) {
+                    _generation = _generationCount++;
+                    if (opcode == Opcode.STORE) {
+                        // The stored value can be loaded back
+                        OperationItem value = op.getOperand(0);
+                        OperationItem address = op.getOperand(1);
+                        record(loadKeyOf(value, address), value, true);
+                    }
+                    ops.add(op);
+                    continue;
+                }
+
+                String key = keyOf(op);
+                if (key == null) {
+                    ops.add(op);
+                    continue;
+                }
+
+                Variable result = op.getResult();
+                assert result != null;
+                boolean load = opcode == Opcode.LOAD;
+                OperationItem value = lookup(key, load);
+                if (value == null) {
+                    record(key, result, load);
+                    ops.add(op);
+                } else {
+                    _replacements.put(result.getName(), value);
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                b.getOperations().clear();
+                b.getOperations().addAll(ops);
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inliner of the whole module. Functions are visited bottom-up in the call
+ * graph, so that the callees are already inlined and simplified when their
+ * size is measured, and the calls of the functions small enough are replaced
+ * with a copy of their body. Recursive calls are never inlined, only the
+ * first call of a cycle reached by the traversal can be
+ * @author RomainTHD
+ * @see Function
+ */
+@NonNls
+public class Inliner {
+    /**
+     * Maximum number of operations of an inlined function
+     */
+    private final int _threshold;
+
+    /**
+     * Passes run again on each function after inlining calls in it
+     */
+    @NotNull
+    private final List<FunctionPass> _passes;
+
+    /**
+     * Constructor
+     * @param threshold Maximum number of operations of an inlined function
+     * @param passes Passes run again on each function changed
+     */
+    public Inliner(int threshold, @NotNull List<FunctionPass> passes) {
+        _threshold = threshold;
+        _passes = passes;
+    }
+
+    /**
+     * Inline the calls of a module
+     * @param functions Functions of the module, already simplified
+     * @return Number of calls inlined
+     */
+    public int run(@NotNull List<Function> functions) {
+        Map<String, Function> byName = new HashMap<>();
+        for (Function f : functions) {
+            byName.put(f.getName(), f);
+        }
+
+        // Iterative depth-first traversal, each function being processed
+        //  once all its callees are, or are on the stack because of a cycle
+        Map<Function, Boolean> visited = new IdentityHashMap<>();
+        Map<Function, Boolean> done = new IdentityHashMap<>();
+        int inlined = 0;
+        for (Function root : functions) {
+            if (visited.put(root, true) != null) {
+                continue;
+            }
+
+            List<Function> stack = new ArrayList<>();
+            List<List<Function>> callees = new ArrayList<>();
+            stack.add(root);
+            callees.add(getCallees(root, byName));
+            while (!stack.isEmpty()) {
+                int top = stack.size() - 1;
+                List<Function> next = callees.get(top);
+                if (!next.isEmpty()) {
+                    Function callee = next.remove(next.size() - 1);
+                    if (visited.put(callee, true) == null) {
+                        stack.add(callee);
+                        callees.add(getCallees(callee, byName));
+                    }
+                    continue;
+                }
+
+                Function f = stack.remove(top);
+                callees.remove(top);
+                int count = inlineCalls(f, byName, done);
+                if (count > 0) {
+                    inlined += count;
+                    for (FunctionPass pass : _passes) {
+                        pass.run(f);
+                    }
+                    Verifier.verify(f);
+                }
+                done.put(f, true);
+            }
+        }
+        return inlined;
+    }
+
+    /**
+     * @param f Function
+     * @param byName Functions of the module, by name
+     * @return Functions of the module called by this one
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static List<Function> getCallees(
+        @NotNull Function f,
+        @NotNull Map<String, Function> byName
+    ) {
+        List<Function> callees = new ArrayList<>();
+        for (BasicBlock b : f.getBlocks()) {
+            for (Operation op : b.getOperations()) {
+                if (op.getOpcode() == Opcode.CALL) {
+                    Function callee = byName.get(op.getName());
+                    if (callee != null) {
+                        callees.add(callee);
+                    }
+                }
+            }
+        }
+        return callees;
+    }
+
+    /**
+     * Inline the calls of a function to the processed functions small enough
+     * @param f Function
+     * @param byName Functions of the module, by name
+     * @param done Functions already processed
+     * @return Number of calls inlined
+     */
+    private int inlineCalls(
+        @NotNull Function f,
+        @NotNull Map<String, Function> byName,
+        @NotNull Map<Function, Boolean> done
+    ) {
+        int inlined = 0;
+        // The blocks list grows while inlining. The copied blocks are
+        //  skipped, since the recursive calls they contain would be inlined
+        //  forever, and the continuation of the call is visited next
+        for (int i = 0; i < f.getBlocks().size(); ++i) {
+            BasicBlock b = f.getBlocks().get(i);
+            List<Operation> ops = b.getOperations();
+            for (int j = 0; j < ops.size(); ++j) {
+                Operation op = ops.get(j);
+                if (op.getOpcode() != Opcode.CALL) {
+                    continue;
+                }
+                Function callee = byName.get(op.getName());
+                if (callee == null
+                    || callee == f
+                    || !done.containsKey(callee)
+                    || callee.getOperationCount() > _threshold
+                    || !isCompatible(op, callee)) {
+                    continue;
+                }
+                i += inline(f, i, j, callee) - 1;
+                ++inlined;
+                break;
+            }
+        }
+        return inlined;
+    }
+
+    /**
+     * @param call Call
+     * @param callee Called function
+     * @return Operands of the call of the same types as the arguments or
+     *     not, since some calls rely on an implicit cast of `self`
+     */
+    @Contract(pure = true)
+    private static boolean isCompatible(
+        @NotNull Operation call,
+        @NotNull Function callee
+    ) {
+        List<Variable> args = callee.getArgs();
+        if (call.getOperands().size() != args.size()) {
+            return false;
+        }
+        for (int i = 0; i < args.size(); ++i) {
+            OperationItem operand = call.getOperand(i);
+            if (!operand.getType().equals(args.get(i).getType())
+                || operand.getPointerLevel() != args.get(i).getPointerLevel()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replace a call with a copy of the called function. The block of the
+     * call is split in two, the copy being inserted between both parts, and
+     * the returned values being merged at the start of the second one
+     * @param f Calling function
+     * @param blockIndex Position of the block of the call
+     * @param opIndex Position of the call in its block
+     * @param callee Called function
+     * @return Number of blocks inserted, the continuation being the last one
+     */
+    private static int inline(
+        @NotNull Function f,
+        int blockIndex,
+        int opIndex,
+        @NotNull Function callee
+    ) {
+        List<BasicBlock> blocks = f.getBlocks();
+        BasicBlock b = blocks.get(blockIndex);
+        List<Operation> ops = b.getOperations();
+        Operation call = ops.get(opIndex);
+
+        // Continuation, with the operations following the call
+        BasicBlock cont = f.getBlock(f.newName(b.getName()));
+        List<Operation> tail = ops.subList(opIndex + 1, ops.size());
+        cont.getOperations().addAll(tail);
+        tail.clear();
+        ops.remove(opIndex);
+        for (BasicBlock succ : cont.getSuccessors()) {
+            for (Operation phi : succ.getPhis()) {
+                List<BasicBlock> incoming = phi.getTargets();
+                for (int i = 0; i < incoming.size(); ++i) {
+                    if (incoming.get(i) == b) {
+                        phi.setTarget(i, cont);
+                    }
+                }
+            }
+        }
+
+        // Copy of the callee, arguments replaced by the call operands
+        Map<String, OperationItem> values = new HashMap<>();
+        for (int i = 0; i < callee.getArgs().size(); ++i) {
+            values.put(
+                callee.getArgs().get(i).getName(),
+                call.getOperand(i)
+            );
+        }
+        Map<BasicBlock, BasicBlock> copies = new IdentityHashMap<>();
+        for (BasicBlock calleeBlock : callee.getBlocks()) {
+            copies.put(
+                calleeBlock,
+                f.getBlock(f.newName(calleeBlock.getName()))
+            );
+            for (Operation op : calleeBlock.getOperations()) {
+                Variable result = op.getResult();
+                if (result != null) {
+                    values.put(result.getName(), new Variable(
+                        result.getType(),
+                        f.newName(result.getName()),
+                        result.getSourceName(),
+                        result.getPointerLevel(),
+                        result.isClassAttribute(),
+                        false,
+                        result.getSize()
+                    ));
+                }
+            }
+        }
+
+        Operation phi = call.getResult() == null
+            ? null
+            : new Operation(Opcode.PHI, call.getResult(), new ArrayList<>());
+        List<Operation> allocas = new ArrayList<>();
+        List<BasicBlock> inserted = new ArrayList<>();
+        for (BasicBlock calleeBlock : callee.getBlocks()) {
+            BasicBlock copy = copies.get(calleeBlock);
+            for (Operation op : calleeBlock.getOperations()) {
+                Operation clone = copy(op, values, copies);
+                clone.setNesting(call.getNesting() + op.getNesting());
+                if (op.getOpcode() == Opcode.RET) {
+                    if (phi != null) {
+                        phi.addIncoming(clone.getOperand(0), copy);
+                    }
+                    clone = new Operation(
+                        Opcode.JUMP,
+                        null,
+                        new ArrayList<>(),
+                        List.of(cont),
+                        null,
+                        null
+                    );
+                    clone.setNesting(call.getNesting());
+                } else if (op.getOpcode() == Opcode.ALLOCA) {
+                    // Kept in the entry block, so that a loop of the caller
+                    //  doesn't grow the stack
+                    allocas.add(clone);
+                    continue;
+                }
+                copy.add(clone);
+            }
+            inserted.add(copy);
+        }
+
+        BasicBlock entry = copies.get(callee.getEntry());
+        b.add(new Operation(
+            Opcode.JUMP,
+            null,
+            new ArrayList<>(),
+            List.of(entry),
+            null,
+            null
+        ));
+        f.getEntry().getOperations().addAll(0, allocas);
+
+        if (phi != null) {
+            phi.setNesting(call.getNesting());
+            cont.getOperations().add(0, phi);
+        }
+        inserted.add(cont);
+        blocks.addAll(blockIndex + 1, inserted);
+        return inserted.size();
+    }
+
+    /**
+     * @param op Operation of the callee
+     * @param values Copy of each value of the callee, by name
+     * @param copies Copy of each block of the callee
+     * @return Copy of the operation
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static Operation copy(
+        @NotNull Operation op,
+        @NotNull Map<String, OperationItem> values,
+        @NotNull Map<BasicBlock, BasicBlock> copies
+    ) {
+        List<OperationItem> operands = new ArrayList<>();
+        for (OperationItem item : op.getOperands()) {
+            OperationItem value = item instanceof Variable
+                                  && !((Variable) item).isGlobal()
+                ? values.get(((Variable) item).getName())
+                : null;
+            operands.add(value == null ? item : value);
+        }
+        List<BasicBlock> targets = new ArrayList<>();
+        for (BasicBlock target : op.getTargets()) {
+            targets.add(copies.get(target));
+        }
+
+        Variable result = op.getResult();
+        Operation copy = new Operation(
+            op.getOpcode(),
+            result == null
+                ? null
+                : (Variable) values.get(result.getName()),
+            operands,
+            targets,
+            op.getName(),
+            op.getComparison()
+        );
+        if (op.getOpcode() == Opcode.CALL) {
+            copy.setPureCall(op.isPureCall());
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,389 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loop-invariant code motion, hoisting the pure operations and the loads
+ * whose operands don't change in a loop to its preheader, the single block
+ * jumping to its header from outside, like the array length and content
+ * pointer of a for-each loop. Inner loops come first, so that their
+ * invariants can keep going up. Memory being typed in Javalette, a load is
+ * only clobbered by the stores of its type and by the impure calls
+ * @author RomainTHD
+ * @see DominatorTree
+ */
+@NonNls
+public class LoopInvariantCodeMotion implements FunctionPass {
+    /**
+     * @param item Value
+     * @return Type of the value, with its pointer level
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static String typeOf(@NotNull OperationItem item) {
+        return item.getType() + "*".repeat(item.getPointerLevel());
+    }
+
+    @Override
+    public boolean run(@NotNull Function f) {
+        DominatorTree dom = new DominatorTree(f);
+        Map<BasicBlock, List<BasicBlock>> preds = f.getPredecessors();
+
+        // Natural loops, merged by header
+        Map<BasicBlock, Map<BasicBlock, Boolean>> loops =
+            new IdentityHashMap<>();
+        List<BasicBlock> headers = new ArrayList<>();
+        for (BasicBlock b : dom.getReversePostOrder()) {
+            for (BasicBlock header : b.getSuccessors()) {
+                if (!dom.dominates(header, b)) {
+                    continue;
+                }
+                Map<BasicBlock, Boolean> body = loops.get(header);
+                if (body == null) {
+                    body = new IdentityHashMap<>();
+                    body.put(header, true);
+                    loops.put(header, body);
+                    headers.add(header);
+                }
+                List<BasicBlock> work = new ArrayList<>();
+                if (body.put(b, true) == null) {
+                    work.add(b);
+                }
+                while (!work.isEmpty()) {
+                    BasicBlock x = work.remove(work.size() - 1);
+                    for (BasicBlock p : preds.get(x)) {
+                        if (dom.isReachable(p) && body.put(p, true) == null) {
+                            work.add(p);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Inner loops are strictly smaller than the ones containing them
+        headers.sort((a, b) -> loops.get(a).size() - loops.get(b).size());
+
+        Map<String, Operation> defs = new HashMap<>();
+        for (BasicBlock b : f.getBlocks()) {
+            for (Operation op : b.getOperations()) {
+                if (op.getResult() != null) {
+                    defs.put(op.getResult().getName(), op);
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (BasicBlock header : headers) {
+            Map<BasicBlock, Boolean> body = loops.get(header);
+            BasicBlock preheader = getPreheader(header, body, preds);
+            if (preheader != null) {
+                changed |= new Hoisting(dom, header, body, preheader, defs)
+                    .run();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param header Loop header
+     * @param body Loop blocks
+     * @param preds Predecessors of each block
+     * @return Single block jumping to the header from outside the loop, or
+     *     null if there are several or if it can also jump elsewhere
+     */
+    @Contract(pure = true)
+    @Nullable
+    private static BasicBlock getPreheader(
+        @NotNull BasicBlock header,
+        @NotNull Map<BasicBlock, Boolean> body,
+        @NotNull Map<BasicBlock, List<BasicBlock>> preds
+    ) {
+        BasicBlock preheader = null;
+        for (BasicBlock p : preds.get(header)) {
+            if (body.containsKey(p)) {
+                continue;
+            }
+            if (preheader != null && preheader != p) {
+                return null;
+            }
+            preheader = p;
+        }
+        if (preheader == null) {
+            return null;
+        }
+        Operation terminator = preheader.getTerminator();
+        return terminator != null && terminator.getOpcode() == Opcode.JUMP
+            ? preheader
+            : null;
+    }
+
+    /**
+     * Hoisting of the invariants of a single loop
+     */
+    private static class Hoisting {
+        /**
+         * Dominator tree, unchanged since no block is added
+         */
+        @NotNull
+        private final DominatorTree _dom;
+
+        /**
+         * Loop header
+         */
+        @NotNull
+        private final BasicBlock _header;
+
+        /**
+         * Loop blocks
+         */
+        @NotNull
+        private final Map<BasicBlock, Boolean> _body;
+
+        /**
+         * Preheader, receiving the hoisted operations
+         */
+        @NotNull
+        private final BasicBlock _preheader;
+
+        /**
+         * Definition of each value of the function, by name
+         */
+        @NotNull
+        private final Map<String, Operation> _defs;
+
+        /**
+         * Values defined in the loop and not hoisted, by name
+         */
+        @NotNull
+        private final Map<String, Boolean> _variant;
+
+        /**
+         * Types stored in the loop
+         */
+        @NotNull
+        private final Map<String, Boolean> _storedTypes;
+
+        /**
+         * Objects always dereferenced when the loop is entered, whose fields
+         * can then be loaded speculatively, by name
+         */
+        @NotNull
+        private final Map<String, Boolean> _dereferenced;
+
+        /**
+         * Impure call in the loop or not, clobbering the whole memory
+         */
+        private boolean _impureCall;
+
+        /**
+         * Constructor
+         * @param dom Dominator tree
+         * @param header Loop header
+         * @param body Loop blocks
+         * @param preheader Preheader
+         * @param defs Definition of each value of the function
+         */
+        Hoisting(
+            @NotNull DominatorTree dom,
+            @NotNull BasicBlock header,
+            @NotNull Map<BasicBlock, Boolean> body,
+            @NotNull BasicBlock preheader,
+            @NotNull Map<String, Operation> defs
+        ) {
+            _dom = dom;
+            _header = header;
+            _body = body;
+            _preheader = preheader;
+            _defs = defs;
+            _variant = new HashMap<>();
+            _storedTypes = new HashMap<>();
+            _dereferenced = new HashMap<>();
+            _impureCall = false;
+        }
+
+        /**
+         * @return Changed or not
+         */
+        boolean run() {
+            List<BasicBlock> blocks = new ArrayList<>();
+            for (BasicBlock b : _dom.getReversePostOrder()) {
+                if (_body.containsKey(b)) {
+                    blocks.add(b);
+                }
+            }
+
+            List<BasicBlock> exiting = new ArrayList<>();
+            for (BasicBlock b : blocks) {
+                for (BasicBlock succ : b.getSuccessors()) {
+                    if (!_body.containsKey(succ)) {
+                        exiting.add(b);
+                        break;
+                    }
+                }
+                for (Operation op : b.getOperations()) {
+                    if (op.getResult() != null) {
+                        _variant.put(op.getResult().getName(), true);
+                    }
+                    if (op.getOpcode() == Opcode.STORE) {
+                        _storedTypes.put(typeOf(op.getOperand(0)), true);
+                    } else if (op.getOpcode() == Opcode.CALL
+                               && !op.isPureCall()) {
+                        _impureCall = true;
+                    }
+                }
+            }
+
+            Map<BasicBlock, Boolean> guaranteed = new IdentityHashMap<>();
+            for (BasicBlock b : blocks) {
+                boolean always = true;
+                for (BasicBlock exit : exiting) {
+                    always &= _dom.dominates(b, exit);
+                }
+                if (always || b == _header) {
+                    guaranteed.put(b, true);
+                    for (Operation op : b.getOperations()) {
+                        markDereferenced(op);
+                    }
+                }
+            }
+
+            boolean changed = false;
+            for (BasicBlock b : blocks) {
+                boolean always = guaranteed.containsKey(b);
+                List<Operation> ops = b.getOperations();
+                for (int i = 0; i < ops.size(); ++i) {
+                    Operation op = ops.get(i);
+                    if (isInvariant(op, always)) {
+                        ops.remove(i--);
+                        hoist(op);
+                        changed = true;
+                    }
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Record the object dereferenced by a load or a store of one of its
+         * fields
+         * @param op Operation
+         */
+        private void markDereferenced(@NotNull Operation op) {
+            int i;
+            if (op.getOpcode() == Opcode.LOAD) {
+                i = 0;
+            } else if (op.getOpcode() == Opcode.STORE) {
+                i = 1;
+            } else {
+                return;
+            }
+            String base = getFieldBase(op.getOperand(i));
+            if (base != null) {
+                _dereferenced.put(base, true);
+            }
+        }
+
+        /**
+         * @param address Address
+         * @return Object whose field is at this address, or null if it isn't
+         *     a field
+         */
+        @Contract(pure = true)
+        @Nullable
+        private String getFieldBase(@NotNull OperationItem address) {
+            if (!(address instanceof Variable)) {
+                return null;
+            }
+            Operation def = _defs.get(((Variable) address).getName());
+            if (def == null
+                || def.getOpcode() != Opcode.FIELD
+                || !(def.getOperand(0) instanceof Variable)) {
+                return null;
+            }
+            return ((Variable) def.getOperand(0)).getName();
+        }
+
+        /**
+         * @param address Address
+         * @return Can be loaded speculatively or not, being a local variable
+         *     or the field of an object known to be valid
+         */
+        @Contract(pure = true)
+        private boolean isDereferenceable(@NotNull OperationItem address) {
+            if (!(address instanceof Variable)) {
+                return false;
+            }
+            Operation def = _defs.get(((Variable) address).getName());
+            if (def != null && def.getOpcode() == Opcode.ALLOCA) {
+                return true;
+            }
+            String base = getFieldBase(address);
+            return base != null && _dereferenced.containsKey(base);
+        }
+
+        /**
+         * @param op Operation
+         * @param always Executed at each iteration or not
+         * @return Can be hoisted to the preheader or not
+         */
+        @Contract(pure = true)
+        private boolean isInvariant(@NotNull Operation op, boolean always) {
+            Variable result = op.getResult();
+            Opcode opcode = op.getOpcode();
+            if (result == null || opcode == Opcode.PHI) {
+                return false;
+            }
+
+            if (opcode == Opcode.LOAD) {
+                if (_impureCall || _storedTypes.containsKey(typeOf(result))) {
+                    return false;
+                }
+                if (!always && !isDereferenceable(op.getOperand(0))) {
+                    return false;
+                }
+            } else if (opcode == Opcode.CALL) {
+                // A call might not terminate, so it isn't speculated
+                if (!op.isPureCall() || !always) {
+                    return false;
+                }
+            } else if (!opcode.isPure()) {
+                return false;
+            }
+
+            for (OperationItem item : op.getOperands()) {
+                if (item instanceof Variable
+                    && _variant.containsKey(((Variable) item).getName())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Move an operation at the end of the preheader
+         * @param op Operation
+         */
+        private void hoist(@NotNull Operation op) {
+            Variable result = op.getResult();
+            assert result != null;
+            _variant.remove(result.getName());
+
+            Operation terminator = _preheader.getTerminator();
+            assert terminator != null;
+            List<Operation> ops = _preheader.getOperations();
+            op.setNesting(terminator.getNesting());
+            ops.add(ops.indexOf(terminator), op);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package fr.rthd.jlc.ir;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merge of the blocks only reached by an unconditional jump from a single
+ * predecessor, like the chains left by the removal of dead branches
+ * @author RomainTHD
+ * @see ConstantPropagation
+ */
+@NonNls
+public class MergeBlocks implements FunctionPass {
+    @Override
+    public boolean run(@NotNull Function f) {
+        Map<BasicBlock, List<BasicBlock>> preds = f.getPredecessors();
+        Map<BasicBlock, Boolean> merged = new IdentityHashMap<>();
+
+        for (BasicBlock b : f.getBlocks()) {
+            if (merged.containsKey(b)) {
+                continue;
+            }
+
+            Operation jump = b.getTerminator();
+            while (jump != null && jump.getOpcode() == Opcode.JUMP) {
+                BasicBlock next = jump.getTargets().get(0);
+                if (next == b
+                    || next == f.getEntry()
+                    || preds.get(next).size() != 1
+                    || !next.getPhis().isEmpty()) {
+                    break;
+                }
+
+                b.getOperations().remove(jump);
+                b.getOperations().addAll(next.getOperations());
+                merged.put(next, true);
+
+                for (BasicBlock succ : next.getSuccessors()) {
+                    List<BasicBlock> succPreds = preds.get(succ);
+                    succPreds.replaceAll(p -> p == next ? b : p);
+                    for (Operation phi : succ.getPhis()) {
+                        List<BasicBlock> incoming = phi.getTargets();
+                        for (int i = 0; i < incoming.size(); ++i) {
+                            if (incoming.get(i) == next) {
+                                phi.setTarget(i, b);
+                            }
+                        }
+                    }
+                }
+
+                jump = b.getTerminator();
+            }
+        }
+
+        return f.getBlocks().removeIf(merged::containsKey);
+    }
+}
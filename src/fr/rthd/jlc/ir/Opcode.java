@@ -0,0 +1,185 @@
+package fr.rthd.jlc.ir;
+
+import org.jetbrains.annotations.Contract;
+
+/**
+ * Operation code
+ * @author RomainTHD
+ * @see Operation
+ */
+public enum Opcode {
+    /**
+     * Stack allocation, `%dst = alloca T`
+     */
+    ALLOCA(0, 0, true),
+
+    /**
+     * Memory load, `%dst = load T, T* %ptr`
+     */
+    LOAD(1, 0, true),
+
+    /**
+     * Memory store of the first operand at the address of the second one
+     */
+    STORE(2, 0, false),
+
+    /**
+     * Address of a structure field, the field index being a literal
+     */
+    FIELD(2, 0, true),
+
+    /**
+     * Address of an array element
+     */
+    INDEX(2, 0, true),
+
+    /**
+     * Address of a global string literal
+     */
+    STRING(1, 0, true),
+
+    ADD(2, 0, true),
+    SUB(2, 0, true),
+    MUL(2, 0, true),
+    DIV(2, 0, true),
+    MOD(2, 0, true),
+    AND(2, 0, true),
+    OR(2, 0, true),
+
+    /**
+     * Logical negation
+     */
+    NOT(1, 0, true),
+
+    /**
+     * Floating point negation, integers being subtracted from zero instead
+     */
+    NEG(1, 0, true),
+
+    /**
+     * Comparison
+     * @see Comparison
+     */
+    CMP(2, 0, true),
+
+    /**
+     * Function call, with or without a result
+     */
+    CALL(-1, 0, false),
+
+    /**
+     * Pointer cast to the type of the result
+     */
+    CAST(1, 0, true),
+
+    /**
+     * SSA phi node, one operand per incoming block
+     */
+    PHI(-1, -1, true),
+
+    /**
+     * Unconditional jump
+     */
+    JUMP(0, 1, false),
+
+    /**
+     * Conditional jump, to the first target if the condition holds
+     */
+    BRANCH(1, 2, false),
+
+    /**
+     * Return, with or without a value
+     */
+    RET(-1, 0, false),
+
+    /**
+     * Comment or blank line, only kept for the readable output
+     */
+    COMMENT(0, 0, false);
+
+    /**
+     * Number of operands, or -1 if variable
+     */
+    private final int _arity;
+
+    /**
+     * Number of targets, or -1 if variable
+     */
+    private final int _targetCount;
+
+    /**
+     * Always defines a result or not
+     */
+    private final boolean _hasResult;
+
+    /**
+     * Constructor
+     * @param arity Number of operands, or -1 if variable
+     * @param targetCount Number of targets, or -1 if variable
+     * @param hasResult Always defines a result or not
+     */
+    Opcode(int arity, int targetCount, boolean hasResult) {
+        _arity = arity;
+        _targetCount = targetCount;
+        _hasResult = hasResult;
+    }
+
+    /**
+     * @return Number of operands, or -1 if variable
+     */
+    @Contract(pure = true)
+    public int getArity() {
+        return _arity;
+    }
+
+    /**
+     * @return Number of targets, or -1 if variable
+     */
+    @Contract(pure = true)
+    public int getTargetCount() {
+        return _targetCount;
+    }
+
+    /**
+     * @return Always defines a result or not
+     */
+    @Contract(pure = true)
+    public boolean hasResult() {
+        return _hasResult;
+    }
+
+    /**
+     * @return Ends a basic block or not
+     */
+    @Contract(pure = true)
+    public boolean isTerminator() {
+        return this == JUMP || this == BRANCH || this == RET;
+    }
+
+    /**
+     * @return Result only depends on the operands, without any side effect
+     *     nor memory access
+     */
+    @Contract(pure = true)
+    public boolean isPure() {
+        switch (this) {
+            case FIELD:
+            case INDEX:
+            case STRING:
+            case ADD:
+            case SUB:
+            case MUL:
+            case NOT:
+            case NEG:
+            case CMP:
+            case AND:
+            case OR:
+            case CAST:
+            case PHI:
+                return true;
+            default:
+                // Division by zero is undefined behaviour
+                return false;
+        }
+    }
+}
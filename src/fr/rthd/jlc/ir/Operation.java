@@ -0,0 +1,363 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.compiler.Literal;
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Single operation of a basic block. Its result, if any, is an SSA value
+ * defined exactly once in the function, and its operands are either such
+ * values, function arguments, globals or literals
+ * @author RomainTHD
+ * @see BasicBlock
+ */
+@NonNls
+public class Operation {
+    /**
+     * Operation code
+     */
+    @NotNull
+    private final Opcode _opcode;
+
+    /**
+     * Defined value, or null if none
+     */
+    @Nullable
+    private Variable _result;
+
+    /**
+     * Operands
+     */
+    @NotNull
+    private final List<OperationItem> _operands;
+
+    /**
+     * Jump targets, or incoming blocks of a phi node, one per operand
+     */
+    @NotNull
+    private final List<BasicBlock> _targets;
+
+    /**
+     * Called function for calls, text for comments, null otherwise
+     */
+    @Nullable
+    private final String _name;
+
+    /**
+     * Comparison for comparisons, null otherwise
+     */
+    @Nullable
+    private final Comparison _comparison;
+
+    /**
+     * Call of a pure function or not, so without any side effect and only
+     * depending on its arguments
+     */
+    private boolean _pureCall;
+
+    /**
+     * Nesting level in the source code, for the readable output
+     */
+    private int _nesting;
+
+    /**
+     * Constructor
+     * @param opcode Operation code
+     * @param result Defined value, or null if none
+     * @param operands Operands
+     */
+    public Operation(
+        @NotNull Opcode opcode,
+        @Nullable Variable result,
+        @NotNull List<OperationItem> operands
+    ) {
+        this(opcode, result, operands, Collections.emptyList(), null, null);
+    }
+
+    /**
+     * Constructor
+     * @param opcode Operation code
+     * @param result Defined value, or null if none
+     * @param operands Operands
+     * @param targets Jump targets, or incoming blocks of a phi node
+     * @param name Called function for calls, text for comments
+     * @param comparison Comparison for comparisons
+     */
+    public Operation(
+        @NotNull Opcode opcode,
+        @Nullable Variable result,
+        @NotNull List<OperationItem> operands,
+        @NotNull List<BasicBlock> targets,
+        @Nullable String name,
+        @Nullable Comparison comparison
+    ) {
+        _opcode = opcode;
+        _result = result;
+        _operands = new ArrayList<>(operands);
+        _targets = new ArrayList<>(targets);
+        _name = name;
+        _comparison = comparison;
+        _pureCall = false;
+        _nesting = 0;
+    }
+
+    /**
+     * @param a Value
+     * @param b Value
+     * @return Same SSA value or same literal
+     */
+    @Contract(pure = true)
+    public static boolean sameValue(
+        @NotNull OperationItem a,
+        @NotNull OperationItem b
+    ) {
+        if (a == b) {
+            return true;
+        }
+        if (!a.getType().equals(b.getType())
+            || a.getPointerLevel() != b.getPointerLevel()) {
+            return false;
+        }
+        if (a instanceof Variable && b instanceof Variable) {
+            return ((Variable) a).getName().equals(((Variable) b).getName())
+                   && ((Variable) a).isGlobal() == ((Variable) b).isGlobal();
+        }
+        if (a instanceof Literal && b instanceof Literal) {
+            return Objects.equals(
+                ((Literal) a).getValue(),
+                ((Literal) b).getValue()
+            );
+        }
+        return false;
+    }
+
+    /**
+     * @return Operation code
+     */
+    @Contract(pure = true)
+    @NotNull
+    public Opcode getOpcode() {
+        return _opcode;
+    }
+
+    /**
+     * @return Defined value, or null if none
+     */
+    @Contract(pure = true)
+    @Nullable
+    public Variable getResult() {
+        return _result;
+    }
+
+    /**
+     * @param result New defined value, or null if none
+     */
+    public void setResult(@Nullable Variable result) {
+        _result = result;
+    }
+
+    /**
+     * @return Operands
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<OperationItem> getOperands() {
+        return Collections.unmodifiableList(_operands);
+    }
+
+    /**
+     * @param i Operand position
+     * @return Operand
+     */
+    @Contract(pure = true)
+    @NotNull
+    public OperationItem getOperand(int i) {
+        return _operands.get(i);
+    }
+
+    /**
+     * @param i Operand position
+     * @param operand New operand
+     */
+    public void setOperand(int i, @NotNull OperationItem operand) {
+        _operands.set(i, operand);
+    }
+
+    /**
+     * @return Jump targets, or incoming blocks of a phi node
+     */
+    @Contract(pure = true)
+    @NotNull
+    public List<BasicBlock> getTargets() {
+        return Collections.unmodifiableList(_targets);
+    }
+
+    /**
+     * @param i Target position
+     * @param target New target
+     */
+    public void setTarget(int i, @NotNull BasicBlock target) {
+        _targets.set(i, target);
+    }
+
+    /**
+     * Add an incoming value to a phi node
+     * @param value Incoming value
+     * @param block Incoming block
+     */
+    public void addIncoming(
+        @NotNull OperationItem value,
+        @NotNull BasicBlock block
+    ) {
+        assert _opcode == Opcode.PHI;
+        _operands.add(value);
+        _targets.add(block);
+    }
+
+    /**
+     * Remove the incoming values of a phi node from a block
+     * @param block Incoming block
+     * @return Removed or not
+     */
+    public boolean removeIncoming(@NotNull BasicBlock block) {
+        assert _opcode == Opcode.PHI;
+        boolean removed = false;
+        for (int i = _targets.size() - 1; i >= 0; --i) {
+            if (_targets.get(i) == block) {
+                _targets.remove(i);
+                _operands.remove(i);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Replace the operands that are replaced values. Replacements are
+     * followed transitively
+     * @param replacements Replacements, by value name
+     * @return Changed or not
+     */
+    public boolean replaceUses(
+        @NotNull Map<String, ? extends OperationItem> replacements
+    ) {
+        boolean changed = false;
+        for (int i = 0; i < _operands.size(); ++i) {
+            OperationItem operand = _operands.get(i);
+            OperationItem replacement = operand;
+            while (replacement instanceof Variable) {
+                OperationItem next = replacements.get(
+                    ((Variable) replacement).getName()
+                );
+                if (next == null) {
+                    break;
+                }
+                replacement = next;
+            }
+            if (replacement != operand) {
+                _operands.set(i, replacement);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return Called function for calls, text for comments, null otherwise
+     */
+    @Contract(pure = true)
+    @Nullable
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * @return Comparison for comparisons, null otherwise
+     */
+    @Contract(pure = true)
+    @Nullable
+    public Comparison getComparison() {
+        return _comparison;
+    }
+
+    /**
+     * @return Call of a pure function or not
+     */
+    @Contract(pure = true)
+    public boolean isPureCall() {
+        return _pureCall;
+    }
+
+    /**
+     * @param pureCall Call of a pure function or not
+     */
+    public void setPureCall(boolean pureCall) {
+        assert _opcode == Opcode.CALL;
+        _pureCall = pureCall;
+    }
+
+    /**
+     * @return Nesting level in the source code
+     */
+    @Contract(pure = true)
+    public int getNesting() {
+        return _nesting;
+    }
+
+    /**
+     * @param nesting Nesting level in the source code
+     */
+    public void setNesting(int nesting) {
+        _nesting = nesting;
+    }
+
+    /**
+     * @return Ends a basic block or not
+     */
+    @Contract(pure = true)
+    public boolean isTerminator() {
+        return _opcode.isTerminator();
+    }
+
+    /**
+     * @return Comment or not
+     */
+    @Contract(pure = true)
+    public boolean isComment() {
+        return _opcode == Opcode.COMMENT;
+    }
+
+    @Contract(pure = true)
+    @NotNull
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (_result != null) {
+            sb.append(_result).append(" = ");
+        }
+        sb.append(_opcode.name().toLowerCase());
+        if (_comparison != null) {
+            sb.append(' ').append(_comparison.name().toLowerCase());
+        }
+        if (_name != null) {
+            sb.append(' ').append(_name);
+        }
+        for (int i = 0; i < _operands.size(); ++i) {
+            sb.append(i == 0 ? " " : ", ").append(_operands.get(i));
+        }
+        for (BasicBlock target : _targets) {
+            sb.append(" -> ").append(target.getName());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,393 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.compiler.Literal;
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Promotion of the stack variables to SSA values, with phi nodes at the join
+ * points where they are still alive. Only the variables whose address never
+ * escapes, so only loaded and stored, are promoted
+ * @author RomainTHD
+ * @see DominatorTree#getFrontier(BasicBlock)
+ */
+@NonNls
+public class PromoteMemory implements FunctionPass {
+    @Override
+    public boolean run(@NotNull Function f) {
+        boolean changed = f.removeUnreachableBlocks();
+        return new Promotion(f).run() || changed;
+    }
+
+    /**
+     * Promotion of a single function
+     */
+    private static class Promotion {
+        /**
+         * Function
+         */
+        @NotNull
+        private final Function _function;
+
+        /**
+         * Promoted allocations
+         */
+        @NotNull
+        private final List<Variable> _vars;
+
+        /**
+         * Position of each promoted allocation, by name
+         */
+        @NotNull
+        private final Map<String, Integer> _index;
+
+        /**
+         * Promoted variable of each inserted phi node
+         */
+        @NotNull
+        private final Map<Operation, Integer> _phis;
+
+        /**
+         * Current value of each promoted variable, while renaming
+         */
+        @NotNull
+        private final List<List<OperationItem>> _stacks;
+
+        /**
+         * Value of each removed load, by name
+         */
+        @NotNull
+        private final Map<String, OperationItem> _replacements;
+
+        /**
+         * Constructor
+         * @param f Function
+         */
+        Promotion(@NotNull Function f) {
+            _function = f;
+            _vars = new ArrayList<>();
+            _index = new HashMap<>();
+            _phis = new IdentityHashMap<>();
+            _stacks = new ArrayList<>();
+            _replacements = new HashMap<>();
+        }
+
+        /**
+         * @return Changed or not
+         */
+        boolean run() {
+            collect();
+            if (_vars.isEmpty()) {
+                return false;
+            }
+
+            DominatorTree dom = new DominatorTree(_function);
+            placePhis(dom);
+            rename(dom);
+            _function.replaceUses(_replacements);
+            return true;
+        }
+
+        /**
+         * Collect the allocations that can be promoted
+         */
+        private void collect() {
+            Map<String, Variable> allocas = new HashMap<>();
+            List<Variable> order = new ArrayList<>();
+            for (BasicBlock b : _function.getBlocks()) {
+                for (Operation op : b.getOperations()) {
+                    if (op.getOpcode() == Opcode.ALLOCA) {
+                        Variable v = op.getResult();
+                        assert v != null;
+                        allocas.put(v.getName(), v);
+                        order.add(v);
+                    }
+                }
+            }
+
+            for (BasicBlock b : _function.getBlocks()) {
+                for (Operation op : b.getOperations()) {
+                    List<OperationItem> operands = op.getOperands();
+                    for (int i = 0; i < operands.size(); ++i) {
+                        if (!(operands.get(i) instanceof Variable)) {
+                            continue;
+                        }
+                        boolean direct =
+                            (op.getOpcode() == Opcode.LOAD && i == 0)
+                            || (op.getOpcode() == Opcode.STORE && i == 1);
+                        if (!direct) {
+                            // Address escaping, like a call argument
+                            allocas.remove(
+                                ((Variable) operands.get(i)).getName()
+                            );
+                        }
+                    }
+                }
+            }
+
+            for (Variable v : order) {
+                if (allocas.containsKey(v.getName())) {
+                    _index.put(v.getName(), _vars.size());
+                    _vars.add(v);
+                    _stacks.add(new ArrayList<>());
+                }
+            }
+        }
+
+        /**
+         * @param op Load or store
+         * @param i Address operand position
+         * @return Promoted variable accessed, or -1 if none
+         */
+        private int promoted(@NotNull Operation op, int i) {
+            OperationItem address = op.getOperand(i);
+            if (!(address instanceof Variable)) {
+                return -1;
+            }
+            Integer k = _index.get(((Variable) address).getName());
+            return k == null ? -1 : k;
+        }
+
+        /**
+         * Insert the phi nodes at the iterated dominance frontier of the
+         * stores, where the variable is still alive
+         * @param dom Dominator tree
+         */
+        private void placePhis(@NotNull DominatorTree dom) {
+            int n = _vars.size();
+            List<List<BasicBlock>> defBlocks = new ArrayList<>(n);
+            List<List<BasicBlock>> useBlocks = new ArrayList<>(n);
+            for (int k = 0; k < n; ++k) {
+                defBlocks.add(new ArrayList<>());
+                useBlocks.add(new ArrayList<>());
+            }
+
+            // Blocks storing each variable, and the ones loading it before
+            //  any store
+            for (BasicBlock b : _function.getBlocks()) {
+                boolean[] defined = new boolean[n];
+                boolean[] used = new boolean[n];
+                for (Operation op : b.getOperations()) {
+                    if (op.getOpcode() == Opcode.STORE) {
+                        int k = promoted(op, 1);
+                        if (k >= 0 && !defined[k]) {
+                            defined[k] = true;
+                            defBlocks.get(k).add(b);
+                        }
+                    } else if (op.getOpcode() == Opcode.LOAD) {
+                        int k = promoted(op, 0);
+                        if (k >= 0 && !defined[k] && !used[k]) {
+                            used[k] = true;
+                            useBlocks.get(k).add(b);
+                        }
+                    }
+                }
+            }
+
+            Map<BasicBlock, List<BasicBlock>> preds =
+                _function.getPredecessors();
+            for (int k = 0; k < n; ++k) {
+                Map<BasicBlock, Boolean> defs = new IdentityHashMap<>();
+                for (BasicBlock b : defBlocks.get(k)) {
+                    defs.put(b, true);
+                }
+
+                // Blocks where the variable is alive on entry
+                Map<BasicBlock, Boolean> liveIn = new IdentityHashMap<>();
+                List<BasicBlock> work = new ArrayList<>(useBlocks.get(k));
+                for (BasicBlock b : work) {
+                    liveIn.put(b, true);
+                }
+                while (!work.isEmpty()) {
+                    BasicBlock b = work.remove(work.size() - 1);
+                    for (BasicBlock p : preds.get(b)) {
+                        if (!defs.containsKey(p)
+                            && liveIn.put(p, true) == null) {
+                            work.add(p);
+                        }
+                    }
+                }
+
+                Map<BasicBlock, Boolean> visited = new IdentityHashMap<>();
+                work.addAll(defBlocks.get(k));
+                while (!work.isEmpty()) {
+                    BasicBlock b = work.remove(work.size() - 1);
+                    for (BasicBlock join : dom.getFrontier(b)) {
+                        if (visited.put(join, true) != null) {
+                            continue;
+                        }
+                        if (liveIn.containsKey(join)) {
+                            insertPhi(join, k);
+                        }
+                        if (!defs.containsKey(join)) {
+                            work.add(join);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Insert an empty phi node for a variable at the start of a block
+         * @param b Block
+         * @param k Promoted variable
+         */
+        private void insertPhi(@NotNull BasicBlock b, int k) {
+            Variable v = _vars.get(k);
+            Operation phi = new Operation(
+                Opcode.PHI,
+                new Variable(
+                    v.getType(),
+                    _function.newName(v.getName()),
+                    v.getSourceName(),
+                    v.getPointerLevel() - 1
+                ),
+                new ArrayList<>()
+            );
+            List<Operation> ops = b.getOperations();
+            if (!ops.isEmpty()) {
+                phi.setNesting(ops.get(0).getNesting());
+            }
+            ops.add(0, phi);
+            _phis.put(phi, k);
+        }
+
+        /**
+         * @param k Promoted variable
+         * @return Current value of the variable, its default one if not
+         *     initialized yet
+         */
+        @Contract(pure = true)
+        @NotNull
+        private OperationItem current(int k) {
+            List<OperationItem> stack = _stacks.get(k);
+            if (!stack.isEmpty()) {
+                return stack.get(stack.size() - 1);
+            }
+            Variable v = _vars.get(k);
+            int pointerLevel = v.getPointerLevel() - 1;
+            return new Literal(
+                v.getType(),
+                pointerLevel == 0 ? v.getType().getDefaultValue() : null,
+                pointerLevel
+            );
+        }
+
+        /**
+         * Replace the loads and stores with SSA values, walking the dominator
+         * tree in preorder
+         * @param dom Dominator tree
+         */
+        private void rename(@NotNull DominatorTree dom) {
+            List<BasicBlock> blocks = new ArrayList<>();
+            List<Integer> next = new ArrayList<>();
+            List<List<Integer>> pushed = new ArrayList<>();
+
+            BasicBlock entry = _function.getEntry();
+            blocks.add(entry);
+            next.add(0);
+            pushed.add(renameBlock(entry));
+            while (!blocks.isEmpty()) {
+                int top = blocks.size() - 1;
+                List<BasicBlock> children = dom.getChildren(blocks.get(top));
+                int i = next.get(top);
+                if (i < children.size()) {
+                    next.set(top, i + 1);
+                    BasicBlock child = children.get(i);
+                    blocks.add(child);
+                    next.add(0);
+                    pushed.add(renameBlock(child));
+                } else {
+                    for (int k : pushed.get(top)) {
+                        List<OperationItem> stack = _stacks.get(k);
+                        stack.remove(stack.size() - 1);
+                    }
+                    blocks.remove(top);
+                    next.remove(top);
+                    pushed.remove(top);
+                }
+            }
+        }
+
+        /**
+         * Rename a single block and fill the phi nodes of its successors
+         * @param b Block
+         * @return Variables defined by the block, to restore when leaving it
+         */
+        @NotNull
+        private List<Integer> renameBlock(@NotNull BasicBlock b) {
+            List<Integer> pushed = new ArrayList<>();
+            List<Operation> ops = new ArrayList<>();
+            for (Operation op : b.getOperations()) {
+                Variable result = op.getResult();
+                int k = -1;
+                switch (op.getOpcode()) {
+                    case PHI:
+                        Integer phi = _phis.get(op);
+                        if (phi != null) {
+                            assert result != null;
+                            _stacks.get(phi).add(result);
+                            pushed.add(phi);
+                        }
+                        break;
+
+                    case ALLOCA:
+                        assert result != null;
+                        if (_index.containsKey(result.getName())) {
+                            continue;
+                        }
+                        break;
+
+                    case LOAD:
+                        k = promoted(op, 0);
+                        if (k >= 0) {
+                            assert result != null;
+                            _replacements.put(result.getName(), current(k));
+                            continue;
+                        }
+                        break;
+
+                    case STORE:
+                        k = promoted(op, 1);
+                        if (k >= 0) {
+                            op.replaceUses(_replacements);
+                            _stacks.get(k).add(op.getOperand(0));
+                            pushed.add(k);
+                            continue;
+                        }
+                        break;
+
+                    default:
+                        break;
+                }
+                ops.add(op);
+            }
+            b.getOperations().clear();
+            b.getOperations().addAll(ops);
+
+            Map<BasicBlock, Boolean> filled = new IdentityHashMap<>();
+            for (BasicBlock succ : b.getSuccessors()) {
+                if (filled.put(succ, true) != null) {
+                    continue;
+                }
+                for (Operation phi : succ.getPhis()) {
+                    Integer k = _phis.get(phi);
+                    if (k != null) {
+                        phi.addIncoming(current(k), b);
+                    }
+                }
+            }
+
+            return pushed;
+        }
+    }
+}
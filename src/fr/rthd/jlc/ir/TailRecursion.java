@@ -0,0 +1,126 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.compiler.Variable;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversion of the self tail calls to a loop. The body of the entry block
+ * moves to a loop header, where each argument becomes a phi node, and each
+ * tail call becomes a jump to this header with the new arguments, so that
+ * a tail recursive function runs in constant stack space
+ * @author RomainTHD
+ * @see BasicBlock#isTailCall(int)
+ */
+@NonNls
+public class TailRecursion implements FunctionPass {
+    @Override
+    public boolean run(@NotNull Function f) {
+        // Tail calls and their blocks. A block has at most one, before its
+        //  return. Unlabelled blocks are dead, and can't jump anyway
+        List<BasicBlock> sites = new ArrayList<>();
+        List<Operation> calls = new ArrayList<>();
+        for (BasicBlock b : f.getBlocks()) {
+            List<Operation> ops = b.getOperations();
+            for (int i = 0; i < ops.size() && b.getLabel() != null; ++i) {
+                if (f.getName().equals(ops.get(i).getName())
+                    && b.isTailCall(i)) {
+                    sites.add(b);
+                    calls.add(ops.get(i));
+                    break;
+                }
+            }
+        }
+
+        if (sites.isEmpty()) {
+            return false;
+        }
+
+        // The entry block can't be a jump target, so it only keeps the
+        //  allocations, all of them, since the loop mustn't grow the stack
+        BasicBlock entry = f.getEntry();
+        BasicBlock header = f.getBlock(f.newName("tail_recursion"));
+        List<Operation> allocas = new ArrayList<>();
+        for (BasicBlock b : f.getBlocks()) {
+            List<Operation> ops = b.getOperations();
+            for (Operation op : ops) {
+                if (op.getOpcode() == Opcode.ALLOCA) {
+                    allocas.add(op);
+                }
+            }
+            ops.removeIf(op -> op.getOpcode() == Opcode.ALLOCA);
+        }
+        header.getOperations().addAll(entry.getOperations());
+        f.getBlocks().add(1, header);
+        entry.getOperations().clear();
+        entry.getOperations().addAll(allocas);
+        entry.add(jump(header, 0));
+        for (BasicBlock succ : header.getSuccessors()) {
+            for (Operation phi : succ.getPhis()) {
+                List<BasicBlock> incoming = phi.getTargets();
+                for (int i = 0; i < incoming.size(); ++i) {
+                    if (incoming.get(i) == entry) {
+                        phi.setTarget(i, header);
+                    }
+                }
+            }
+        }
+        sites.replaceAll(b -> b == entry ? header : b);
+
+        // Arguments replaced by their value in the current iteration
+        Map<String, Variable> values = new HashMap<>();
+        List<Operation> phis = new ArrayList<>();
+        for (Variable arg : f.getArgs()) {
+            Variable value = new Variable(
+                arg.getType(),
+                f.newName(arg.getName()),
+                arg.getSourceName(),
+                arg.getPointerLevel()
+            );
+            values.put(arg.getName(), value);
+            Operation phi = new Operation(Opcode.PHI, value, new ArrayList<>());
+            phi.addIncoming(arg, entry);
+            phis.add(phi);
+        }
+        f.replaceUses(values);
+
+        for (int i = 0; i < sites.size(); ++i) {
+            BasicBlock b = sites.get(i);
+            List<Operation> ops = b.getOperations();
+            Operation call = calls.get(i);
+            for (int j = 0; j < phis.size(); ++j) {
+                phis.get(j).addIncoming(call.getOperand(j), b);
+            }
+            // Allocations moved, so the position of the call changed
+            ops.subList(ops.indexOf(call), ops.size()).clear();
+            b.add(jump(header, call.getNesting()));
+        }
+
+        header.getOperations().addAll(0, phis);
+        return true;
+    }
+
+    /**
+     * @param target Target
+     * @param nesting Nesting level in the source code
+     * @return Unconditional jump
+     */
+    @NotNull
+    private static Operation jump(@NotNull BasicBlock target, int nesting) {
+        Operation op = new Operation(
+            Opcode.JUMP,
+            null,
+            new ArrayList<>(),
+            List.of(target),
+            null,
+            null
+        );
+        op.setNesting(nesting);
+        return op;
+    }
+}
@@ -0,0 +1,279 @@
+package fr.rthd.jlc.ir;
+
+import fr.rthd.jlc.compiler.OperationItem;
+import fr.rthd.jlc.compiler.Variable;
+import fr.rthd.jlc.ir.exception.InvalidIRException;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IR verifier, checking the structure of the control flow graph and the SSA
+ * form: every block is terminated, every value is defined once, and every
+ * definition dominates its uses. Unreachable blocks are only checked for
+ * their structure
+ * @author RomainTHD
+ * @see Function
+ */
+@NonNls
+public class Verifier {
+    /**
+     * Function being verified
+     */
+    @NotNull
+    private final Function _function;
+
+    /**
+     * Blocks of the function, to reject foreign ones
+     */
+    @NotNull
+    private final Map<BasicBlock, Boolean> _blocks;
+
+    /**
+     * Definition of each local value, by name. Null for arguments
+     */
+    @NotNull
+    private final Map<String, Operation> _defs;
+
+    /**
+     * Block of each definition
+     */
+    @NotNull
+    private final Map<Operation, BasicBlock> _defBlocks;
+
+    /**
+     * Position of each definition in its block
+     */
+    @NotNull
+    private final Map<Operation, Integer> _defPositions;
+
+    /**
+     * Constructor
+     * @param f Function to verify
+     */
+    private Verifier(@NotNull Function f) {
+        _function = f;
+        _blocks = new IdentityHashMap<>();
+        _defs = new HashMap<>();
+        _defBlocks = new IdentityHashMap<>();
+        _defPositions = new IdentityHashMap<>();
+    }
+
+    /**
+     * Verify a function
+     * @param f Function
+     * @throws InvalidIRException If the function is malformed
+     */
+    public static void verify(@NotNull Function f) {
+        new Verifier(f).run();
+    }
+
+    /**
+     * @param msg Error message
+     * @return Exception to throw
+     */
+    @NotNull
+    private InvalidIRException error(@NotNull String msg) {
+        return new InvalidIRException(_function.getName(), msg);
+    }
+
+    /**
+     * Run the verification
+     */
+    private void run() {
+        if (_function.getBlocks().isEmpty()) {
+            throw error("no entry block");
+        }
+
+        for (BasicBlock b : _function.getBlocks()) {
+            if (_blocks.put(b, true) != null) {
+                throw error("block " + b + " inserted twice");
+            }
+        }
+
+        for (Variable arg : _function.getArgs()) {
+            if (_defs.put(arg.getName(), null) != null) {
+                throw error("argument " + arg + " defined twice");
+            }
+        }
+
+        for (BasicBlock b : _function.getBlocks()) {
+            checkStructure(b);
+        }
+
+        DominatorTree dom = new DominatorTree(_function);
+        Map<BasicBlock, List<BasicBlock>> preds = _function.getPredecessors();
+        for (BasicBlock b : _function.getBlocks()) {
+            checkUses(b, dom, preds.get(b));
+        }
+    }
+
+    /**
+     * Check the structure of a block and record its definitions
+     * @param b Block
+     */
+    private void checkStructure(@NotNull BasicBlock b) {
+        List<Operation> ops = b.getOperations();
+        Operation terminator = b.getTerminator();
+        if (terminator == null) {
+            throw error("block " + b + " isn't terminated");
+        }
+
+        boolean phiAllowed = true;
+        for (int i = 0; i < ops.size(); ++i) {
+            Operation op = ops.get(i);
+            Opcode opcode = op.getOpcode();
+
+            if (op.isComment()) {
+                continue;
+            }
+
+            if (op.isTerminator() && op != terminator) {
+                throw error("terminator in the middle of block " + b);
+            }
+
+            if (opcode == Opcode.PHI) {
+                if (!phiAllowed) {
+                    throw error("phi node after other operations in " + b);
+                }
+            } else {
+                phiAllowed = false;
+            }
+
+            int arity = opcode.getArity();
+            if (arity >= 0 && op.getOperands().size() != arity) {
+                throw error("wrong number of operands: " + op);
+            }
+
+            int targetCount = opcode.getTargetCount();
+            if (targetCount >= 0 && op.getTargets().size() != targetCount) {
+                throw error("wrong number of targets: " + op);
+            }
+
+            for (BasicBlock target : op.getTargets()) {
+                if (!_blocks.containsKey(target)) {
+                    throw error("reference to a foreign block: " + op);
+                }
+            }
+
+            Variable result = op.getResult();
+            if (opcode.hasResult() && result == null) {
+                throw error("missing result: " + op);
+            }
+
+            if (result != null) {
+                if (!opcode.hasResult() && opcode != Opcode.CALL) {
+                    throw error("unexpected result: " + op);
+                }
+                if (_defs.containsKey(result.getName())) {
+                    throw error("value " + result + " defined twice");
+                }
+                _defs.put(result.getName(), op);
+                _defBlocks.put(op, b);
+                _defPositions.put(op, i);
+            }
+        }
+    }
+
+    /**
+     * Check that every use of a block is dominated by its definition
+     * @param b Block
+     * @param dom Dominator tree
+     * @param preds Predecessors of the block
+     */
+    private void checkUses(
+        @NotNull BasicBlock b,
+        @NotNull DominatorTree dom,
+        @NotNull List<BasicBlock> preds
+    ) {
+        boolean reachable = dom.isReachable(b);
+        List<Operation> ops = b.getOperations();
+        for (int i = 0; i < ops.size(); ++i) {
+            Operation op = ops.get(i);
+
+            if (op.getOpcode() == Opcode.PHI) {
+                if (op.getTargets().size() != op.getOperands().size()) {
+                    throw error("phi node without a block per value: " + op);
+                }
+                if (!sameBlocks(op.getTargets(), preds)) {
+                    throw error(
+                        "phi node not matching the predecessors of "
+                        + b + ": " + op
+                    );
+                }
+            }
+
+            List<OperationItem> operands = op.getOperands();
+            for (int j = 0; j < operands.size(); ++j) {
+                OperationItem item = operands.get(j);
+                if (!(item instanceof Variable)
+                    || ((Variable) item).isGlobal()) {
+                    // Literals and globals
+                    continue;
+                }
+
+                String name = ((Variable) item).getName();
+                if (!_defs.containsKey(name)) {
+                    throw error("value " + item + " used but not defined");
+                }
+
+                Operation def = _defs.get(name);
+                if (def == null || !reachable) {
+                    // Arguments dominate everything
+                    continue;
+                }
+
+                BasicBlock defBlock = _defBlocks.get(def);
+                if (op.getOpcode() == Opcode.PHI) {
+                    // Must be available at the end of the incoming block
+                    BasicBlock incoming = op.getTargets().get(j);
+                    if (dom.isReachable(incoming)
+                        && !dom.dominates(defBlock, incoming)) {
+                        throw error(
+                            "value " + item + " not available from "
+                            + incoming + ": " + op
+                        );
+                    }
+                } else if (defBlock == b) {
+                    if (_defPositions.get(def) >= i) {
+                        throw error(
+                            "value " + item + " used before its definition: "
+                            + op
+                        );
+                    }
+                } else if (!dom.dominates(defBlock, b)) {
+                    throw error("value " + item + " not dominated: " + op);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param a Blocks
+     * @param b Blocks
+     * @return Same blocks, duplicates ignored
+     */
+    private static boolean sameBlocks(
+        @NotNull List<BasicBlock> a,
+        @NotNull List<BasicBlock> b
+    ) {
+        Map<BasicBlock, Boolean> set = new IdentityHashMap<>();
+        for (BasicBlock x : a) {
+            set.put(x, true);
+        }
+        for (BasicBlock x : b) {
+            if (!set.containsKey(x)) {
+                return false;
+            }
+        }
+        Map<BasicBlock, Boolean> other = new IdentityHashMap<>();
+        for (BasicBlock x : b) {
+            other.put(x, true);
+        }
+        return other.size() == set.size();
+    }
+}
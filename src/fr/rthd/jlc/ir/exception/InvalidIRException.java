@@ -0,0 +1,19 @@
+package fr.rthd.jlc.ir.exception;
+
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Malformed IR, always a compiler bug
+ * @author RomainTHD
+ */
+@Nls
+public class InvalidIRException extends RuntimeException {
+    public InvalidIRException(@NotNull String function, @NotNull String msg) {
+        super(String.format(
+            "Invalid IR in `%s`: %s",
+            function,
+            msg
+        ));
+    }
+}
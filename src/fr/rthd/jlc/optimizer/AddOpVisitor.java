@@ -19,6 +19,7 @@ class AddOpVisitor implements AddOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(Plus p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> new ELitInt(l + r),
@@ -30,6 +31,7 @@ class AddOpVisitor implements AddOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(Minus p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> new ELitInt(l - r),
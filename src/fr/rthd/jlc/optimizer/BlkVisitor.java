@@ -12,7 +12,8 @@ class BlkVisitor implements Blk.Visitor<Blk, EnvOptimizer> {
 
         env.enterScope();
 
-        for (Stmt s : p.liststmt_) {
+        for (int i = 0; i < p.liststmt_.size(); ++i) {
+            Stmt s = p.liststmt_.get(i);
             AnnotatedStmt<?> stmt = s.accept(new StmtVisitor(), env);
             if (stmt.getParentStmt() instanceof Empty) {
                 continue;
@@ -21,6 +22,10 @@ class BlkVisitor implements Blk.Visitor<Blk, EnvOptimizer> {
             statements.add(stmt);
 
             if (stmt.doesReturn()) {
+                if (i != p.liststmt_.size() - 1) {
+                    // Unreachable statements removed
+                    env.countChange();
+                }
                 break;
             }
         }
@@ -0,0 +1,269 @@
+package fr.rthd.jlc.optimizer;
+
+import fr.rthd.jlc.utils.Choice;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Call graph of a single optimization pass, for unused functions removal and
+ * purity analysis. Strongly connected components are computed once with
+ * Tarjan's algorithm, so that both analyses are linear in the size of the
+ * graph, recursive cycles included
+ * @author RomainTHD
+ * @see FunTypeOptimizer
+ */
+class CallGraph {
+    /**
+     * Functions, by node ID
+     */
+    @NotNull
+    private final List<FunTypeOptimizer> _functions;
+
+    /**
+     * Node ID of each function
+     */
+    @NotNull
+    private final Map<FunTypeOptimizer, Integer> _ids;
+
+    /**
+     * Callees of each node, duplicates allowed
+     */
+    @NotNull
+    private final List<List<Integer>> _callees;
+
+    /**
+     * Component of each node, null until analyzed
+     */
+    @Nullable
+    private int[] _component;
+
+    /**
+     * Whether each node is reachable from main or not, null until analyzed
+     */
+    @Nullable
+    private boolean[] _reachable;
+
+    /**
+     * Whether each component may be impure or not, null until analyzed
+     */
+    @Nullable
+    private boolean[] _impure;
+
+    /**
+     * Constructor
+     */
+    public CallGraph() {
+        _functions = new ArrayList<>();
+        _ids = new IdentityHashMap<>();
+        _callees = new ArrayList<>();
+        _component = null;
+        _reachable = null;
+        _impure = null;
+    }
+
+    /**
+     * @param f Function
+     * @return Node ID of the function, added if needed
+     */
+    private int node(@NotNull FunTypeOptimizer f) {
+        Integer id = _ids.get(f);
+        if (id == null) {
+            id = _functions.size();
+            _ids.put(f, id);
+            _functions.add(f);
+            _callees.add(new ArrayList<>());
+        }
+        return id;
+    }
+
+    /**
+     * Add a call
+     * @param caller Calling function
+     * @param callee Called function
+     */
+    public void addCall(
+        @NotNull FunTypeOptimizer caller,
+        @NotNull FunTypeOptimizer callee
+    ) {
+        int from = node(caller);
+        int to = node(callee);
+        _callees.get(from).add(to);
+        _component = null;
+    }
+
+    /**
+     * Add a function, even if it neither calls nor is called
+     * @param f Function
+     */
+    public void addFunction(@NotNull FunTypeOptimizer f) {
+        node(f);
+        _component = null;
+    }
+
+    /**
+     * Compute the strongly connected components, iteratively since call
+     * chains can be deeper than the stack. Components are numbered in reverse
+     * topological order, callees before their callers
+     * @return Number of components
+     */
+    private int computeComponents() {
+        int n = _functions.size();
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int stackSize = 0;
+        // Call stack of the depth-first search, node and next callee position
+        int[] dfsNode = new int[n];
+        int[] dfsEdge = new int[n];
+        int nextIndex = 1;
+        int components = 0;
+
+        _component = new int[n];
+
+        for (int root = 0; root < n; ++root) {
+            if (index[root] != 0) {
+                continue;
+            }
+
+            int depth = 0;
+            dfsNode[0] = root;
+            dfsEdge[0] = 0;
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int v = dfsNode[depth];
+                List<Integer> callees = _callees.get(v);
+
+                if (dfsEdge[depth] < callees.size()) {
+                    int w = callees.get(dfsEdge[depth]++);
+                    if (index[w] == 0) {
+                        ++depth;
+                        dfsNode[depth] = w;
+                        dfsEdge[depth] = 0;
+                        index[w] = lowLink[w] = nextIndex++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                if (lowLink[v] == index[v]) {
+                    // Root of a component
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        _component[w] = components;
+                    } while (w != v);
+                    ++components;
+                }
+
+                --depth;
+                if (depth >= 0) {
+                    int parent = dfsNode[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+            }
+        }
+
+        return components;
+    }
+
+    /**
+     * Analyze the graph: components, reachability from main and purity
+     */
+    public void analyze() {
+        int n = _functions.size();
+        int components = computeComponents();
+
+        // Single traversal from main
+        _reachable = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int v = 0; v < n; ++v) {
+            if (_functions.get(v).isMain()) {
+                _reachable[v] = true;
+                queue[tail++] = v;
+            }
+        }
+        while (head < tail) {
+            for (int w : _callees.get(queue[head++])) {
+                if (!_reachable[w]) {
+                    _reachable[w] = true;
+                    queue[tail++] = w;
+                }
+            }
+        }
+
+        // A component is impure if one of its functions is, if it is a
+        //  recursive cycle, or if it calls an impure component. Callees
+        //  come first, so a single pass over the components is enough
+        int[] size = new int[components];
+        for (int v = 0; v < n; ++v) {
+            ++size[_component[v]];
+        }
+
+        List<List<Integer>> members = new ArrayList<>(components);
+        for (int c = 0; c < components; ++c) {
+            members.add(new ArrayList<>(size[c]));
+        }
+        for (int v = 0; v < n; ++v) {
+            members.get(_component[v]).add(v);
+        }
+
+        _impure = new boolean[components];
+        for (int c = 0; c < components; ++c) {
+            boolean impure = size[c] > 1;
+            for (int v : members.get(c)) {
+                if (_functions.get(v).isPure() == Choice.FALSE) {
+                    impure = true;
+                }
+                for (int w : _callees.get(v)) {
+                    if (_impure[_component[w]]) {
+                        impure = true;
+                    }
+                }
+            }
+            _impure[c] = impure;
+        }
+    }
+
+    /**
+     * @param f Function
+     * @return If the function is called, directly or not, by main
+     */
+    @Contract(pure = true)
+    public boolean isUsedByMain(@NotNull FunTypeOptimizer f) {
+        assert _component != null && _reachable != null : "Not analyzed";
+        Integer id = _ids.get(f);
+        return id != null && _reachable[id];
+    }
+
+    /**
+     * @param f Function
+     * @return Purity of the function, impure if it calls an impure function,
+     *     directly or not
+     */
+    @Contract(pure = true)
+    @NotNull
+    public Choice getPurity(@NotNull FunTypeOptimizer f) {
+        assert _component != null && _impure != null : "Not analyzed";
+        Integer id = _ids.get(f);
+        if (id == null) {
+            return f.isPure() == Choice.FALSE ? Choice.FALSE : Choice.TRUE;
+        }
+        return _impure[_component[id]] ? Choice.FALSE : Choice.TRUE;
+    }
+}
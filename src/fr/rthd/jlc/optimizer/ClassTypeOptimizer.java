@@ -1,5 +1,6 @@
 package fr.rthd.jlc.optimizer;
 
+import fr.rthd.jlc.TypeCode;
 import fr.rthd.jlc.env.Attribute;
 import fr.rthd.jlc.env.ClassType;
 import fr.rthd.jlc.env.FunType;
@@ -9,18 +10,18 @@ import org.jetbrains.annotations.Nullable;
 class ClassTypeOptimizer extends ClassType<FunTypeOptimizer> {
     /**
      * Constructor for inheritance
-     * @param name Class name
+     * @param type Class type
      * @param superclassName Superclass name or null
      */
     public ClassTypeOptimizer(
-        @NotNull String name,
+        @NotNull TypeCode type,
         @Nullable String superclassName
     ) {
-        super(name, superclassName);
+        super(type, superclassName);
     }
 
     public ClassTypeOptimizer(ClassType<?> cls) {
-        super(cls.getName(), cls.getSuperclassName());
+        super(cls.getType(), cls.getSuperclassName());
         for (FunType f : cls.getOwnMethods()) {
             addMethod(new FunTypeOptimizer(f), false);
         }
@@ -0,0 +1,719 @@
+package fr.rthd.jlc.optimizer;
+
+import fr.rthd.jlc.AnnotatedExpr;
+import fr.rthd.jlc.utils.Choice;
+import javalette.Absyn.Arg;
+import javalette.Absyn.Argument;
+import javalette.Absyn.Ass;
+import javalette.Absyn.BStmt;
+import javalette.Absyn.Blk;
+import javalette.Absyn.Block;
+import javalette.Absyn.ClsDef;
+import javalette.Absyn.Cond;
+import javalette.Absyn.CondElse;
+import javalette.Absyn.Decl;
+import javalette.Absyn.Decr;
+import javalette.Absyn.Div;
+import javalette.Absyn.EAdd;
+import javalette.Absyn.EAnd;
+import javalette.Absyn.EApp;
+import javalette.Absyn.EDot;
+import javalette.Absyn.EIndex;
+import javalette.Absyn.ELitDoub;
+import javalette.Absyn.ELitFalse;
+import javalette.Absyn.ELitInt;
+import javalette.Absyn.ELitTrue;
+import javalette.Absyn.EMul;
+import javalette.Absyn.ENew;
+import javalette.Absyn.ENull;
+import javalette.Absyn.EOr;
+import javalette.Absyn.ERel;
+import javalette.Absyn.EString;
+import javalette.Absyn.EVar;
+import javalette.Absyn.Empty;
+import javalette.Absyn.Expr;
+import javalette.Absyn.FnDef;
+import javalette.Absyn.FnMember;
+import javalette.Absyn.For;
+import javalette.Absyn.Incr;
+import javalette.Absyn.Index;
+import javalette.Absyn.Init;
+import javalette.Absyn.Item;
+import javalette.Absyn.ListItem;
+import javalette.Absyn.ListMember;
+import javalette.Absyn.ListStmt;
+import javalette.Absyn.ListTopDef;
+import javalette.Absyn.Member;
+import javalette.Absyn.Mod;
+import javalette.Absyn.Neg;
+import javalette.Absyn.NoInit;
+import javalette.Absyn.Not;
+import javalette.Absyn.Prog;
+import javalette.Absyn.Program;
+import javalette.Absyn.Ret;
+import javalette.Absyn.SExp;
+import javalette.Absyn.SIndex;
+import javalette.Absyn.Stmt;
+import javalette.Absyn.TopClsDef;
+import javalette.Absyn.TopDef;
+import javalette.Absyn.TopFnDef;
+import javalette.Absyn.VRet;
+import javalette.Absyn.While;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dead store elimination, from a backward liveness analysis of the local
+ * variables of each function. Assignments, increments and decrements of a
+ * local not read afterwards are removed, as well as the declarations of the
+ * locals never used anymore, as long as the removed values are computed by
+ * pure expressions. A local only used after being assigned again loses its
+ * initializer but keeps its declaration. Attributes and array elements are
+ * never considered dead. Each removal is recorded as a change
+ * @author RomainTHD
+ * @see PassManager
+ */
+@NonNls
+class DeadStorePass implements OptimizerPass {
+    /**
+     * @param e Expression
+     * @return Expression without its annotations
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static Expr unwrap(@NotNull Expr e) {
+        while (e instanceof AnnotatedExpr) {
+            e = ((AnnotatedExpr<?>) e).getParentExp();
+        }
+        return e;
+    }
+
+    /**
+     * @param s Statement
+     * @return Statement without its annotation
+     */
+    @Contract(pure = true)
+    @NotNull
+    private static Stmt unwrap(@NotNull Stmt s) {
+        while (s instanceof AnnotatedStmt) {
+            s = ((AnnotatedStmt<?>) s).getParentStmt();
+        }
+        return s;
+    }
+
+    @NotNull
+    @Override
+    public Prog run(@NotNull Prog p, @NotNull EnvOptimizer env) {
+        ListTopDef defs = new ListTopDef();
+        for (TopDef def : ((Program) p).listtopdef_) {
+            if (def instanceof TopFnDef) {
+                FnDef f = (FnDef) ((TopFnDef) def).funcdef_;
+                defs.add(new TopFnDef(new Liveness(env, null).run(f)));
+            } else {
+                ClsDef c = (ClsDef) ((TopClsDef) def).classdef_;
+                ClassTypeOptimizer type = env.lookupClass(c.ident_);
+                assert type != null;
+                ListMember members = new ListMember();
+                for (Member member : c.listmember_) {
+                    if (member instanceof FnMember) {
+                        FnDef f = (FnDef) ((FnMember) member).funcdef_;
+                        members.add(new FnMember(
+                            new Liveness(env, type).run(f)
+                        ));
+                    } else {
+                        members.add(member);
+                    }
+                }
+                defs.add(new TopClsDef(new ClsDef(
+                    c.ident_,
+                    c.classinheritance_,
+                    members
+                )));
+            }
+        }
+        return new Program(defs);
+    }
+
+    /**
+     * Liveness analysis and dead store removal of a single function
+     */
+    private static class Liveness {
+        /**
+         * Environment
+         */
+        @NotNull
+        private final EnvOptimizer _env;
+
+        /**
+         * Class of the method, or null for a function
+         */
+        @Nullable
+        private final ClassTypeOptimizer _class;
+
+        /**
+         * Assignments, increments and decrements of a local variable, the
+         * other ones being attributes
+         */
+        @NotNull
+        private final Map<Stmt, Boolean> _localStores;
+
+        /**
+         * Variables still referenced after the current statement, whose
+         * declaration must be kept even if they aren't live
+         */
+        @NotNull
+        private final Set<String> _mentioned;
+
+        /**
+         * Statements rebuilt or only analyzed, like a loop body until its
+         * liveness is stable
+         */
+        private boolean _transform;
+
+        /**
+         * Constructor
+         * @param env Environment
+         * @param c Class of the method, or null for a function
+         */
+        Liveness(@NotNull EnvOptimizer env, @Nullable ClassTypeOptimizer c) {
+            _env = env;
+            _class = c;
+            _localStores = new IdentityHashMap<>();
+            _mentioned = new HashSet<>();
+            _transform = true;
+        }
+
+        /**
+         * @param f Function
+         * @return Function without its dead stores
+         */
+        @NotNull
+        FnDef run(@NotNull FnDef f) {
+            List<Set<String>> scopes = new ArrayList<>();
+            scopes.add(new HashSet<>());
+            for (Arg arg : f.listarg_) {
+                scopes.get(0).add(((Argument) arg).ident_);
+            }
+            resolve(new BStmt(f.blk_), scopes);
+
+            // Locals are all dead when the function returns
+            Blk blk = block(f.blk_, new HashSet<>());
+            return new FnDef(f.type_, f.ident_, f.listarg_, blk);
+        }
+
+        /**
+         * Find the assignments of local variables, shadowing the attributes
+         * of the same name
+         * @param s Statement
+         * @param scopes Names declared by each enclosing scope
+         */
+        private void resolve(
+            @NotNull Stmt s,
+            @NotNull List<Set<String>> scopes
+        ) {
+            s = unwrap(s);
+            String target = null;
+            if (s instanceof Decl) {
+                for (Item item : ((Decl) s).listitem_) {
+                    scopes.get(scopes.size() - 1).add(item instanceof Init
+                        ? ((Init) item).ident_
+                        : ((NoInit) item).ident_);
+                }
+            } else if (s instanceof Ass) {
+                Expr e = unwrap(((Ass) s).expr_1);
+                if (e instanceof EVar) {
+                    target = ((EVar) e).ident_;
+                }
+            } else if (s instanceof Incr) {
+                target = ((Incr) s).ident_;
+            } else if (s instanceof Decr) {
+                target = ((Decr) s).ident_;
+            } else if (s instanceof BStmt) {
+                scopes.add(new HashSet<>());
+                for (Stmt child : ((Block) ((BStmt) s).blk_).liststmt_) {
+                    resolve(child, scopes);
+                }
+                scopes.remove(scopes.size() - 1);
+            } else if (s instanceof Cond) {
+                resolveScoped(((Cond) s).stmt_, scopes);
+            } else if (s instanceof CondElse) {
+                resolveScoped(((CondElse) s).stmt_1, scopes);
+                resolveScoped(((CondElse) s).stmt_2, scopes);
+            } else if (s instanceof While) {
+                resolveScoped(((While) s).stmt_, scopes);
+            } else if (s instanceof For) {
+                scopes.add(new HashSet<>(List.of(((For) s).ident_)));
+                resolveScoped(((For) s).stmt_, scopes);
+                scopes.remove(scopes.size() - 1);
+            }
+
+            if (target != null) {
+                for (Set<String> scope : scopes) {
+                    if (scope.contains(target)) {
+                        _localStores.put(s, true);
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Find the assignments of local variables in a statement with its
+         * own scope, like the body of a loop
+         * @param s Statement
+         * @param scopes Names declared by each enclosing scope
+         */
+        private void resolveScoped(
+            @NotNull Stmt s,
+            @NotNull List<Set<String>> scopes
+        ) {
+            scopes.add(new HashSet<>());
+            resolve(s, scopes);
+            scopes.remove(scopes.size() - 1);
+        }
+
+        /**
+         * Record a removal
+         * @return Null, the removed statement
+         */
+        @Nullable
+        private Stmt remove() {
+            if (_transform) {
+                _env.countChange();
+            }
+            return null;
+        }
+
+        /**
+         * Mark a variable as referenced
+         * @param name Variable name
+         */
+        private void mention(@NotNull String name) {
+            if (_transform) {
+                _mentioned.add(name);
+            }
+        }
+
+        /**
+         * Restore the status of a variable of the enclosing scope, when
+         * leaving the scope of a declaration shadowing it
+         * @param name Variable name
+         * @param set Current set
+         * @param outer Set at the end of the scope of the declaration
+         */
+        private static void restore(
+            @NotNull String name,
+            @NotNull Set<String> set,
+            @NotNull Set<String> outer
+        ) {
+            if (outer.contains(name)) {
+                set.add(name);
+            } else {
+                set.remove(name);
+            }
+        }
+
+        /**
+         * @param b Block
+         * @param live Variables live after the block, replaced by the ones
+         *     live before it
+         * @return Block without its dead stores
+         */
+        @NotNull
+        private Blk block(@NotNull Blk b, @NotNull Set<String> live) {
+            return new Block(statements(((Block) b).liststmt_, live));
+        }
+
+        /**
+         * @param s Statement with its own scope
+         * @param live Variables live after the statement, replaced by the
+         *     ones live before it
+         * @return Statement without its dead stores
+         */
+        @NotNull
+        private Stmt scoped(@NotNull Stmt s, @NotNull Set<String> live) {
+            ListStmt stmts = statements(List.of(s), live);
+            return stmts.isEmpty()
+                ? new AnnotatedStmt<>(new Empty())
+                : stmts.get(0);
+        }
+
+        /**
+         * @param stmts Statements of a scope
+         * @param live Variables live after the statements, replaced by the
+         *     ones live before them
+         * @return Statements without the dead stores
+         */
+        @NotNull
+        private ListStmt statements(
+            @NotNull List<Stmt> stmts,
+            @NotNull Set<String> live
+        ) {
+            // Status of the variables of the enclosing scopes, the ones
+            //  declared in this scope being shadowed until its end
+            Set<String> outerLive = new HashSet<>(live);
+            Set<String> outerMentioned = new HashSet<>(_mentioned);
+
+            ListStmt res = new ListStmt();
+            for (int i = stmts.size() - 1; i >= 0; --i) {
+                Stmt s = statement(
+                    stmts.get(i),
+                    live,
+                    outerLive,
+                    outerMentioned
+                );
+                if (s != null) {
+                    res.addFirst(s);
+                }
+            }
+            return res;
+        }
+
+        /**
+         * @param s Statement
+         * @param live Variables live after the statement, replaced by the
+         *     ones live before it
+         * @param outerLive Variables live at the end of the scope
+         * @param outerMentioned Variables referenced after the scope
+         * @return Statement without its dead stores, or null if removed
+         */
+        @Nullable
+        private Stmt statement(
+            @NotNull Stmt s,
+            @NotNull Set<String> live,
+            @NotNull Set<String> outerLive,
+            @NotNull Set<String> outerMentioned
+        ) {
+            boolean doesReturn = s instanceof AnnotatedStmt
+                                 && ((AnnotatedStmt<?>) s).doesReturn();
+            Stmt inner = unwrap(s);
+
+            if (inner instanceof Decl) {
+                return decl((Decl) inner, live, outerLive, outerMentioned);
+            } else if (inner instanceof Ass) {
+                Ass ass = (Ass) inner;
+                Expr target = unwrap(ass.expr_1);
+                if (target instanceof EVar
+                    && _localStores.containsKey(inner)) {
+                    String name = ((EVar) target).ident_;
+                    if (!live.contains(name) && isPure(ass.expr_2)) {
+                        return remove();
+                    }
+                    live.remove(name);
+                    mention(name);
+                } else {
+                    use(ass.expr_1, live);
+                }
+                use(ass.expr_2, live);
+                return s;
+            } else if (inner instanceof Incr || inner instanceof Decr) {
+                String name = inner instanceof Incr
+                    ? ((Incr) inner).ident_
+                    : ((Decr) inner).ident_;
+                if (_localStores.containsKey(inner) && !live.contains(name)) {
+                    return remove();
+                }
+                live.add(name);
+                mention(name);
+                return s;
+            } else if (inner instanceof Ret) {
+                live.clear();
+                use(((Ret) inner).expr_, live);
+                return s;
+            } else if (inner instanceof VRet) {
+                live.clear();
+                return s;
+            } else if (inner instanceof SExp) {
+                use(((SExp) inner).expr_, live);
+                return s;
+            } else if (inner instanceof BStmt) {
+                Blk blk = block(((BStmt) inner).blk_, live);
+                return new AnnotatedStmt<>(new BStmt(blk), doesReturn);
+            } else if (inner instanceof Cond) {
+                Cond c = (Cond) inner;
+                Set<String> thenLive = new HashSet<>(live);
+                Stmt stmt = scoped(c.stmt_, thenLive);
+                live.addAll(thenLive);
+                use(c.expr_, live);
+                return new AnnotatedStmt<>(
+                    new Cond(c.expr_, stmt),
+                    doesReturn
+                );
+            } else if (inner instanceof CondElse) {
+                CondElse c = (CondElse) inner;
+                Set<String> thenLive = new HashSet<>(live);
+                Stmt stmt1 = scoped(c.stmt_1, thenLive);
+                Set<String> elseLive = new HashSet<>(live);
+                Stmt stmt2 = scoped(c.stmt_2, elseLive);
+                live.clear();
+                live.addAll(thenLive);
+                live.addAll(elseLive);
+                use(c.expr_, live);
+                return new AnnotatedStmt<>(
+                    new CondElse(c.expr_, stmt1, stmt2),
+                    doesReturn
+                );
+            } else if (inner instanceof While) {
+                While w = (While) inner;
+                Set<String> head = loopHead(w.stmt_, w.expr_, null, live);
+                Set<String> bodyLive = new HashSet<>(head);
+                Stmt stmt = scoped(w.stmt_, bodyLive);
+                live.clear();
+                live.addAll(head);
+                use(w.expr_, live);
+                return new AnnotatedStmt<>(
+                    new While(w.expr_, stmt),
+                    doesReturn
+                );
+            } else if (inner instanceof For) {
+                For f = (For) inner;
+                boolean mentioned = _mentioned.contains(f.ident_);
+                Set<String> head = loopHead(f.stmt_, null, f.ident_, live);
+                Set<String> bodyLive = new HashSet<>(head);
+                bodyLive.remove(f.ident_);
+                Stmt stmt = scoped(f.stmt_, bodyLive);
+                if (!mentioned) {
+                    // The loop variable shadows the enclosing one
+                    _mentioned.remove(f.ident_);
+                }
+                live.clear();
+                live.addAll(head);
+                use(f.expr_, live);
+                return new AnnotatedStmt<>(
+                    new For(f.type_, f.ident_, f.expr_, stmt),
+                    doesReturn
+                );
+            } else {
+                return s;
+            }
+        }
+
+        /**
+         * Compute the variables live at the start of each iteration of a
+         * loop, iterating on its body until they are stable
+         * @param body Loop body
+         * @param cond Condition checked before each iteration, or null
+         * @param var Variable assigned before each iteration, or null
+         * @param out Variables live after the loop
+         * @return Variables live at the start of each iteration
+         */
+        @NotNull
+        private Set<String> loopHead(
+            @NotNull Stmt body,
+            @Nullable Expr cond,
+            @Nullable String var,
+            @NotNull Set<String> out
+        ) {
+            boolean transform = _transform;
+            _transform = false;
+
+            Set<String> head = new HashSet<>(out);
+            if (cond != null) {
+                use(cond, head);
+            }
+            while (true) {
+                Set<String> live = new HashSet<>(head);
+                live.remove(var);
+                scoped(body, live);
+                live.remove(var);
+                live.addAll(out);
+                if (cond != null) {
+                    use(cond, live);
+                }
+                if (live.equals(head)) {
+                    break;
+                }
+                head = live;
+            }
+
+            _transform = transform;
+            return head;
+        }
+
+        /**
+         * @param d Declaration
+         * @param live Variables live after the declaration, replaced by the
+         *     ones live before it
+         * @param outerLive Variables live at the end of the scope
+         * @param outerMentioned Variables referenced after the scope
+         * @return Declaration without its dead items, or null if removed
+         */
+        @Nullable
+        private Stmt decl(
+            @NotNull Decl d,
+            @NotNull Set<String> live,
+            @NotNull Set<String> outerLive,
+            @NotNull Set<String> outerMentioned
+        ) {
+            ListItem items = new ListItem();
+            for (int i = d.listitem_.size() - 1; i >= 0; --i) {
+                Item item = d.listitem_.get(i);
+                String name;
+                Expr init;
+                if (item instanceof Init) {
+                    name = ((Init) item).ident_;
+                    init = ((Init) item).expr_;
+                } else {
+                    name = ((NoInit) item).ident_;
+                    init = null;
+                }
+
+                if (!live.contains(name) && (init == null || isPure(init))) {
+                    if (!_mentioned.contains(name)) {
+                        // Unused local
+                        item = null;
+                        remove();
+                    } else if (init != null) {
+                        // Assigned before being read
+                        item = new NoInit(name);
+                        remove();
+                    }
+                }
+
+                restore(name, live, outerLive);
+                if (_transform) {
+                    restore(name, _mentioned, outerMentioned);
+                }
+
+                if (item != null) {
+                    if (item instanceof Init) {
+                        use(((Init) item).expr_, live);
+                    }
+                    items.addFirst(item);
+                }
+            }
+
+            return items.isEmpty() ? null : new AnnotatedStmt<>(new Decl(
+                d.type_,
+                items
+            ));
+        }
+
+        /**
+         * Mark the variables read by an expression as live
+         * @param e Expression
+         * @param live Live variables
+         */
+        private void use(@NotNull Expr e, @NotNull Set<String> live) {
+            e = unwrap(e);
+            if (e instanceof EVar) {
+                live.add(((EVar) e).ident_);
+                mention(((EVar) e).ident_);
+            } else if (e instanceof Neg) {
+                use(((Neg) e).expr_, live);
+            } else if (e instanceof Not) {
+                use(((Not) e).expr_, live);
+            } else if (e instanceof EMul) {
+                use(((EMul) e).expr_1, live);
+                use(((EMul) e).expr_2, live);
+            } else if (e instanceof EAdd) {
+                use(((EAdd) e).expr_1, live);
+                use(((EAdd) e).expr_2, live);
+            } else if (e instanceof ERel) {
+                use(((ERel) e).expr_1, live);
+                use(((ERel) e).expr_2, live);
+            } else if (e instanceof EAnd) {
+                use(((EAnd) e).expr_1, live);
+                use(((EAnd) e).expr_2, live);
+            } else if (e instanceof EOr) {
+                use(((EOr) e).expr_1, live);
+                use(((EOr) e).expr_2, live);
+            } else if (e instanceof EApp) {
+                if (!(unwrap(((EApp) e).expr_) instanceof EVar)) {
+                    // Method call, the function name isn't a variable
+                    use(((EApp) e).expr_, live);
+                }
+                for (Expr arg : ((EApp) e).listexpr_) {
+                    use(arg, live);
+                }
+            } else if (e instanceof EDot) {
+                use(((EDot) e).expr_, live);
+            } else if (e instanceof EIndex) {
+                use(((EIndex) e).expr_, live);
+                use(((SIndex) ((EIndex) e).index_).expr_, live);
+                for (Index idx : ((EIndex) e).listindex_) {
+                    use(((SIndex) idx).expr_, live);
+                }
+            } else if (e instanceof ENew) {
+                for (Index idx : ((ENew) e).listindex_) {
+                    use(((SIndex) idx).expr_, live);
+                }
+            }
+        }
+
+        /**
+         * @param e Expression
+         * @return Can be removed or not, without side effect nor runtime
+         *     error
+         */
+        @Contract(pure = true)
+        private boolean isPure(@NotNull Expr e) {
+            e = unwrap(e);
+            if (e instanceof EVar
+                || e instanceof ELitInt
+                || e instanceof ELitDoub
+                || e instanceof ELitTrue
+                || e instanceof ELitFalse
+                || e instanceof EString
+                || e instanceof ENull) {
+                return true;
+            } else if (e instanceof Neg) {
+                return isPure(((Neg) e).expr_);
+            } else if (e instanceof Not) {
+                return isPure(((Not) e).expr_);
+            } else if (e instanceof EMul) {
+                EMul mul = (EMul) e;
+                if (mul.mulop_ instanceof Div || mul.mulop_ instanceof Mod) {
+                    // Integer division by zero
+                    Expr right = unwrap(mul.expr_2);
+                    if (!(right instanceof ELitDoub
+                          || (right instanceof ELitInt
+                              && ((ELitInt) right).integer_ != 0))) {
+                        return false;
+                    }
+                }
+                return isPure(mul.expr_1) && isPure(mul.expr_2);
+            } else if (e instanceof EAdd) {
+                return isPure(((EAdd) e).expr_1) && isPure(((EAdd) e).expr_2);
+            } else if (e instanceof ERel) {
+                return isPure(((ERel) e).expr_1) && isPure(((ERel) e).expr_2);
+            } else if (e instanceof EAnd) {
+                return isPure(((EAnd) e).expr_1) && isPure(((EAnd) e).expr_2);
+            } else if (e instanceof EOr) {
+                return isPure(((EOr) e).expr_1) && isPure(((EOr) e).expr_2);
+            } else if (e instanceof EApp) {
+                Expr callee = unwrap(((EApp) e).expr_);
+                if (!(callee instanceof EVar)) {
+                    return false;
+                }
+                String name = ((EVar) callee).ident_;
+                if (_class != null && _class.hasMethod(name)) {
+                    // Method of the class, never considered pure
+                    return false;
+                }
+                FunTypeOptimizer func = _env.lookupFun(name);
+                if (func == null || func.isPure() != Choice.TRUE) {
+                    return false;
+                }
+                for (Expr arg : ((EApp) e).listexpr_) {
+                    if (!isPure(arg)) {
+                        return false;
+                    }
+                }
+                return true;
+            } else {
+                // Array accesses and allocations may fail
+                return false;
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import fr.rthd.jlc.AnnotatedExpr;
 import fr.rthd.jlc.env.ClassType;
 import fr.rthd.jlc.env.Env;
 import fr.rthd.jlc.env.FunType;
+import javalette.Absyn.Expr;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -27,17 +28,34 @@ class EnvOptimizer extends Env<AnnotatedExpr<?>, FunTypeOptimizer, ClassTypeOpti
      */
     private int _pass = 0;
 
+    /**
+     * Call graph of the current pass
+     */
+    @NotNull
+    private CallGraph _callGraph = new CallGraph();
+
     /**
      * Constant propagation status
      */
     private boolean _constantPropagationEnabled = true;
 
+    /**
+     * Number of changes made to the program, used to detect a fixed point
+     */
+    private int _changeCount = 0;
+
+    /**
+     * Expression returned as is by the return statement being visited
+     */
+    @Nullable
+    private Expr _tailCall = null;
+
     /**
      * Constructor
      * @param env Parent environment
      */
     public EnvOptimizer(@NotNull Env<?, FunType, ClassType<?>> env) {
-        super();
+        super(env.getTypeUniverse());
         for (FunType funType : env.getAllFun()) {
             // We receive `FunType` objects but need to store `FunTypeOptimizer`
             //  objects
@@ -49,6 +67,9 @@ class EnvOptimizer extends Env<AnnotatedExpr<?>, FunTypeOptimizer, ClassTypeOpti
         for (ClassTypeOptimizer classType : getAllClass()) {
             classType.updateSuperclass(lookupClass(classType.getSuperclassName()));
         }
+        for (ClassTypeOptimizer classType : getAllClass()) {
+            classType.freeze();
+        }
     }
 
     /**
@@ -71,9 +92,18 @@ class EnvOptimizer extends Env<AnnotatedExpr<?>, FunTypeOptimizer, ClassTypeOpti
     /**
      * Increment the pass count
      */
-    @Contract(pure = true)
     public void newPass() {
         ++_pass;
+        _callGraph = new CallGraph();
+    }
+
+    /**
+     * @return Call graph of the current pass
+     */
+    @Contract(pure = true)
+    @NotNull
+    public CallGraph getCallGraph() {
+        return _callGraph;
     }
 
     /**
@@ -98,4 +128,37 @@ class EnvOptimizer extends Env<AnnotatedExpr<?>, FunTypeOptimizer, ClassTypeOpti
     public boolean getConstantPropagationStatus() {
         return _constantPropagationEnabled;
     }
+
+    /**
+     * Set the expression returned as is by the return statement being
+     * visited, which is a tail call if it is a call
+     * @param e Returned expression, unwrapped, or null outside of returns
+     */
+    public void setTailCall(@Nullable Expr e) {
+        _tailCall = e;
+    }
+
+    /**
+     * @param e Function call
+     * @return If the call is in tail position or not
+     */
+    @Contract(pure = true)
+    public boolean isTailCall(@NotNull Expr e) {
+        return e == _tailCall;
+    }
+
+    /**
+     * Record a change made to the program
+     */
+    public void countChange() {
+        ++_changeCount;
+    }
+
+    /**
+     * @return Number of changes made to the program
+     */
+    @Contract(pure = true)
+    public int getChangeCount() {
+        return _changeCount;
+    }
 }
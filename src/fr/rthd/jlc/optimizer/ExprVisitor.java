@@ -39,6 +39,9 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<? extends Expr>, EnvOpti
         AnnotatedExpr<?> expr = env.lookupVar(e.ident_);
         assert expr != null;
         if (env.getConstantPropagationStatus()) {
+            if (Optimizer.isLiteral(expr)) {
+                env.countChange();
+            }
             return expr;
         } else {
             return new AnnotatedExpr<>(
@@ -90,10 +93,11 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<? extends Expr>, EnvOpti
 
         FunTypeOptimizer currentFunction = env.getCurrentFunction();
         assert currentFunction != null;
-        funcType.addUsageIn(currentFunction);
+        env.getCallGraph().addCall(currentFunction, funcType);
 
-        if (funcType == currentFunction) {
-            // Recursive function
+        if (funcType == currentFunction && !env.isTailCall(e)) {
+            // Recursive function. Self tail calls are turned into loops,
+            //  see `fr.rthd.jlc.ir.TailRecursion`, so they keep the purity
             currentFunction.setPure(Choice.FALSE);
         }
 
@@ -124,7 +128,7 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<? extends Expr>, EnvOpti
             listIndex.add(idx.accept(new IndexVisitor(), env));
         }
         AnnotatedExpr<?> expr = e.expr_.accept(new ExprVisitor(), env);
-        TypeCode t = TypeCode.forArray(
+        TypeCode t = env.getTypeUniverse().forArray(
             expr.getType().getBaseType(),
             expr.getType().getDimension() - 1 - listIndex.size()
         );
@@ -144,9 +148,9 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<? extends Expr>, EnvOpti
         for (Index idx : p.listindex_) {
             indices.add(idx.accept(new IndexVisitor(), env));
         }
-        TypeCode t = TypeCode.forArray(p.basetype_.accept(
+        TypeCode t = env.getTypeUniverse().forArray(p.basetype_.accept(
             new TypeVisitor(),
-            null
+            env.getTypeUniverse()
         ), p.listindex_.size());
         return new AnnotatedExpr<>(
             t,
@@ -157,11 +161,13 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<? extends Expr>, EnvOpti
     public AnnotatedExpr<?> visit(Neg e, EnvOptimizer env) {
         AnnotatedExpr<?> expr = e.expr_.accept(new ExprVisitor(), env);
         if (expr.getParentExp() instanceof ELitInt) {
+            env.countChange();
             return new AnnotatedExpr<>(
                 TypeCode.CInt,
                 new ELitInt(-((ELitInt) expr.getParentExp()).integer_)
             );
         } else if (expr.getParentExp() instanceof ELitDoub) {
+            env.countChange();
             return new AnnotatedExpr<>(
                 TypeCode.CDouble,
                 new ELitDoub(-((ELitDoub) expr.getParentExp()).double_)
@@ -177,11 +183,13 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<? extends Expr>, EnvOpti
     public AnnotatedExpr<?> visit(Not e, EnvOptimizer env) {
         AnnotatedExpr<?> expr = e.expr_.accept(new ExprVisitor(), env);
         if (expr.getParentExp() instanceof ELitTrue) {
+            env.countChange();
             return new AnnotatedExpr<>(
                 TypeCode.CBool,
                 new ELitFalse()
             );
         } else if (expr.getParentExp() instanceof ELitFalse) {
+            env.countChange();
             return new AnnotatedExpr<>(
                 TypeCode.CBool,
                 new ELitTrue()
@@ -217,11 +225,14 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<? extends Expr>, EnvOpti
         AnnotatedExpr<?> right = e.expr_2.accept(new ExprVisitor(), env);
 
         if (left.getParentExp() instanceof ELitTrue) {
+            env.countChange();
             return new AnnotatedExpr<>(TypeCode.CBool, right);
         } else if (right.getParentExp() instanceof ELitTrue) {
+            env.countChange();
             return new AnnotatedExpr<>(TypeCode.CBool, left);
         } else if (left.getParentExp() instanceof ELitFalse) {
             // Short circuit
+            env.countChange();
             return new AnnotatedExpr<>(TypeCode.CBool, new ELitFalse());
         } else if (right.getParentExp() instanceof ELitFalse) {
             // Still need to execute the left expression, even though
@@ -244,6 +255,7 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<? extends Expr>, EnvOpti
 
         if (left.getParentExp() instanceof ELitTrue) {
             // Short circuit
+            env.countChange();
             return new AnnotatedExpr<>(TypeCode.CBool, new ELitTrue());
         } else if (right.getParentExp() instanceof ELitTrue) {
             // Still need to execute the left expression, even though
@@ -253,8 +265,10 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<? extends Expr>, EnvOpti
                 new EOr(left, right)
             );
         } else if (left.getParentExp() instanceof ELitFalse) {
+            env.countChange();
             return new AnnotatedExpr<>(TypeCode.CBool, right);
         } else if (right.getParentExp() instanceof ELitFalse) {
+            env.countChange();
             return new AnnotatedExpr<>(TypeCode.CBool, left);
         } else {
             return new AnnotatedExpr<>(
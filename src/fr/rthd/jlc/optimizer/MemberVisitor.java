@@ -27,7 +27,7 @@ class MemberVisitor implements Member.Visitor<Member, EnvOptimizer> {
     @Override
     public Member visit(AttrMember p, EnvOptimizer env) {
         if (_attributeOnly) {
-            TypeCode t = p.type_.accept(new TypeVisitor(), null);
+            TypeCode t = p.type_.accept(new TypeVisitor(), env.getTypeUniverse());
             env.insertVar(p.ident_, new AnnotatedExpr<>(
                 t,
                 new EVar(p.ident_)
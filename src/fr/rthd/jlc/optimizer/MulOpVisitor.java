@@ -20,6 +20,7 @@ class MulOpVisitor implements MulOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(Times p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> new ELitInt(l * r),
@@ -31,6 +32,7 @@ class MulOpVisitor implements MulOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(Div p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> new ELitInt(l / r),
@@ -42,6 +44,7 @@ class MulOpVisitor implements MulOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(Mod p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> new ELitInt(l % r),
@@ -5,6 +5,7 @@ import fr.rthd.jlc.Visitor;
 import fr.rthd.jlc.env.ClassType;
 import fr.rthd.jlc.env.Env;
 import fr.rthd.jlc.env.FunType;
+import fr.rthd.jlc.internal.PassStatistics;
 import javalette.Absyn.ELitDoub;
 import javalette.Absyn.ELitFalse;
 import javalette.Absyn.ELitInt;
@@ -15,8 +16,10 @@ import javalette.Absyn.Prog;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+
 /**
- * Optimizer
+ * Optimizer, running the passes of the `PassManager` until a fixed point
  *
  * - Unused functions removal, even with cycles or recursive calls
  * - Constants propagation
@@ -26,6 +29,7 @@ import org.jetbrains.annotations.Nullable;
  * - Dead code elimination
  * - Return checker
  * @author RomainTHD
+ * @see PassManager
  */
 public class Optimizer implements Visitor {
     /**
@@ -34,13 +38,48 @@ public class Optimizer implements Visitor {
      */
     private final int _optimizationLevel;
 
+    /**
+     * Passes run instead of the pipeline of the optimization level, or null
+     * @see fr.rthd.jlc.ArgParse#passes
+     */
+    @Nullable
+    private final List<String> _passes;
+
+    /**
+     * Statistics of each pass run
+     */
+    @NotNull
+    private final PassStatistics _stats;
+
+    /**
+     * Constructor, with the pipeline of the optimization level
+     * @param optimizationLevel Optimization level
+     */
     public Optimizer(int optimizationLevel) {
+        this(optimizationLevel, null, new PassStatistics(false));
+    }
+
+    /**
+     * Constructor
+     * @param optimizationLevel Optimization level
+     * @param passes Passes run instead of the pipeline of the optimization
+     *     level, or null
+     * @param stats Statistics of each pass run
+     */
+    public Optimizer(
+        int optimizationLevel,
+        @Nullable List<String> passes,
+        @NotNull PassStatistics stats
+    ) {
         _optimizationLevel = optimizationLevel;
+        _passes = passes;
+        _stats = stats;
     }
 
     /**
      * Generic action on an operator. The correct function will be called if
      * both sides are literals. Otherwise, the default action will be called.
+     * @param env Environment, recording the evaluated operations as changes
      * @param left Left expression
      * @param right Right expression
      * @param onInt Function for integer operations
@@ -51,6 +90,7 @@ public class Optimizer implements Visitor {
      */
     @NotNull
     static Expr operatorAction(
+        @NotNull EnvOptimizer env,
         @NotNull AnnotatedExpr<?> left,
         @NotNull AnnotatedExpr<?> right,
         @Nullable OperatorAction<Integer> onInt,
@@ -63,12 +103,14 @@ public class Optimizer implements Visitor {
             int lvalue = ((ELitInt) left.getParentExp()).integer_;
             int rvalue = ((ELitInt) right.getParentExp()).integer_;
             assert onInt != null;
+            env.countChange();
             return onInt.execute(lvalue, rvalue);
         } else if (left.getParentExp() instanceof ELitDoub &&
                    right.getParentExp() instanceof ELitDoub) {
             double lvalue = ((ELitDoub) left.getParentExp()).double_;
             double rvalue = ((ELitDoub) right.getParentExp()).double_;
             assert onDouble != null;
+            env.countChange();
             return onDouble.execute(lvalue, rvalue);
         } else {
             Boolean lvalue = null;
@@ -90,6 +132,7 @@ public class Optimizer implements Visitor {
                 return onDefault.execute(left, right);
             } else {
                 assert onBool != null;
+                env.countChange();
                 return onBool.execute(lvalue, rvalue);
             }
         }
@@ -113,16 +156,29 @@ public class Optimizer implements Visitor {
         @NotNull Prog p,
         @NotNull Env<?, FunType, ClassType<?>> parentEnv
     ) {
-        if (_optimizationLevel == 0) {
+        List<String> pipeline = _passes == null
+            ? PassManager.getPipeline(_optimizationLevel)
+            : _passes;
+        if (pipeline.isEmpty()) {
             // No optimization
             return p;
         } else {
             EnvOptimizer env = new EnvOptimizer(parentEnv);
-            // First pass will mark functions as pure or impure
-            p = p.accept(new ProgVisitor(), env);
-            env.newPass();
-            // Second pass will optimize expressions based on functions purity
-            return p.accept(new ProgVisitor(), env);
+            p = new PassManager(
+                pipeline,
+                PassManager.getBudget(_optimizationLevel),
+                _stats
+            ).run(p, env);
+
+            // The backend works on the functions of the parent environment,
+            //  so that the IR passes can reuse the purity of the callees
+            for (FunTypeOptimizer func : env.getAllFun()) {
+                FunType parent = parentEnv.lookupFun(func.getName());
+                if (parent != null) {
+                    parent.setPure(func.isPure());
+                }
+            }
+            return p;
         }
     }
 }
@@ -0,0 +1,22 @@
+package fr.rthd.jlc.optimizer;
+
+import javalette.Absyn.Prog;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Optimization pass on the AST, registered by name in the `PassManager`.
+ * Each rewrite must be recorded with `EnvOptimizer.countChange()`, so that
+ * the pass manager can tell when a fixed point is reached
+ * @author RomainTHD
+ * @see PassManager
+ */
+interface OptimizerPass {
+    /**
+     * Run the pass on the whole program
+     * @param p Program
+     * @param env Environment, shared by all the passes and their runs
+     * @return Optimized program
+     */
+    @NotNull
+    Prog run(@NotNull Prog p, @NotNull EnvOptimizer env);
+}
@@ -0,0 +1,165 @@
+package fr.rthd.jlc.optimizer;
+
+import fr.rthd.jlc.internal.PassStatistics;
+import javalette.Absyn.Prog;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pass manager of the optimizer. Passes are registered by name, and a
+ * pipeline of passes is run again and again until none of them changes the
+ * program anymore, or until the iteration budget of the optimization level
+ * is spent. Each run is recorded in the statistics, with its number of
+ * changes
+ * @author RomainTHD
+ * @see OptimizerPass
+ * @see fr.rthd.jlc.ArgParse#passes
+ */
+@NonNls
+public class PassManager {
+    /**
+     * Registered passes, by name
+     */
+    private static final Map<String, OptimizerPass> PASSES =
+        new LinkedHashMap<>();
+
+    static {
+        register("simplify", new SimplifyPass());
+        register("dse", new DeadStorePass());
+    }
+
+    /**
+     * Passes run at each iteration, in order
+     */
+    @NotNull
+    private final List<OptimizerPass> _pipeline;
+
+    /**
+     * Names of the passes run at each iteration
+     */
+    @NotNull
+    private final List<String> _names;
+
+    /**
+     * Maximum number of iterations
+     */
+    private final int _budget;
+
+    /**
+     * Statistics of each pass run
+     */
+    @NotNull
+    private final PassStatistics _stats;
+
+    /**
+     * Constructor
+     * @param names Names of the passes run at each iteration
+     * @param budget Maximum number of iterations
+     * @param stats Statistics of each pass run
+     */
+    PassManager(
+        @NotNull List<String> names,
+        int budget,
+        @NotNull PassStatistics stats
+    ) {
+        _pipeline = new ArrayList<>();
+        for (String name : names) {
+            OptimizerPass pass = PASSES.get(name);
+            assert pass != null : "Unknown pass `" + name + "`";
+            _pipeline.add(pass);
+        }
+        _names = names;
+        _budget = budget;
+        _stats = stats;
+    }
+
+    /**
+     * Register a pass
+     * @param name Name of the pass, used by `--passes`
+     * @param pass Pass, stateless
+     */
+    private static void register(
+        @NotNull String name,
+        @NotNull OptimizerPass pass
+    ) {
+        assert !PASSES.containsKey(name) : "Pass `" + name + "` registered";
+        PASSES.put(name, pass);
+    }
+
+    /**
+     * @param name Name
+     * @return If a pass has this name or not
+     */
+    @Contract(pure = true)
+    public static boolean exists(@NotNull String name) {
+        return PASSES.containsKey(name);
+    }
+
+    /**
+     * Both passes only ever shrink the program, so every level but `-O0`
+     * runs them, the size levels included. The levels differ by their
+     * iteration budget, and by the IR passes of the code generation
+     * @param optimizationLevel Optimization level
+     * @return Names of the passes of this level, run at each iteration
+     * @see fr.rthd.jlc.ArgParse#optimizationLevel
+     * @see #getBudget(int)
+     */
+    @Contract(pure = true)
+    @NotNull
+    static List<String> getPipeline(int optimizationLevel) {
+        if (optimizationLevel == 0) {
+            return Collections.emptyList();
+        }
+        // Propagated constants leave dead stores behind them
+        return List.of("simplify", "dse");
+    }
+
+    /**
+     * @param optimizationLevel Optimization level
+     * @return Maximum number of iterations of the pipeline. Purity is only
+     *     known after a first iteration, so at least two are needed
+     */
+    @Contract(pure = true)
+    static int getBudget(int optimizationLevel) {
+        switch (optimizationLevel) {
+            case 2:
+                return 8;
+            case 3:
+                return 16;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Run the pipeline until a fixed point
+     * @param p Program
+     * @param env Environment
+     * @return Optimized program
+     */
+    @NotNull
+    Prog run(@NotNull Prog p, @NotNull EnvOptimizer env) {
+        for (int i = 0; i < _budget; ++i) {
+            int start = env.getChangeCount();
+            for (int j = 0; j < _pipeline.size(); ++j) {
+                int before = env.getChangeCount();
+                _stats.start("opt:" + _names.get(j));
+                p = _pipeline.get(j).run(p, env);
+                int changes = env.getChangeCount() - before;
+                _stats.stop(() -> changes, "changes");
+            }
+
+            if (env.getChangeCount() == start) {
+                break;
+            }
+        }
+        return p;
+    }
+}
@@ -1,5 +1,6 @@
 package fr.rthd.jlc.optimizer;
 
+import fr.rthd.jlc.utils.Choice;
 import javalette.Absyn.FnDef;
 import javalette.Absyn.FuncDef;
 import javalette.Absyn.ListTopDef;
@@ -8,14 +9,35 @@ import javalette.Absyn.Program;
 import javalette.Absyn.TopDef;
 import javalette.Absyn.TopFnDef;
 
+import java.util.HashMap;
+import java.util.Map;
+
 class ProgVisitor implements Prog.Visitor<Prog, EnvOptimizer> {
     public Program visit(Program p, EnvOptimizer env) {
+        // Purity before this run, a change of purity allowing the next run
+        //  to remove more calls
+        Map<String, Choice> purity = new HashMap<>();
+        for (FunTypeOptimizer func : env.getAllFun()) {
+            purity.put(func.getName(), func.isPure());
+        }
+
         ListTopDef topDef = new ListTopDef();
 
         for (TopDef def : p.listtopdef_) {
             topDef.add(def.accept(new TopDefVisitor(), env));
         }
 
+        CallGraph callGraph = env.getCallGraph();
+        for (TopDef def : topDef) {
+            if (def instanceof TopFnDef) {
+                FuncDef fdef = ((TopFnDef) def).funcdef_;
+                FunTypeOptimizer func = env.lookupFun(((FnDef) fdef).ident_);
+                assert func != null;
+                callGraph.addFunction(func);
+            }
+        }
+        callGraph.analyze();
+
         ListTopDef usedTopDef = new ListTopDef();
 
         for (TopDef def : topDef) {
@@ -23,11 +45,15 @@ class ProgVisitor implements Prog.Visitor<Prog, EnvOptimizer> {
                 FuncDef fdef = ((TopFnDef) def).funcdef_;
                 FunTypeOptimizer func = env.lookupFun(((FnDef) fdef).ident_);
                 assert func != null;
-                if (func.isUsedByMain()) {
-                    func.updatePurity();
+                if (callGraph.isUsedByMain(func)) {
+                    func.setPure(callGraph.getPurity(func));
+                    if (func.isPure() != purity.get(func.getName())) {
+                        env.countChange();
+                    }
                     usedTopDef.add(def);
                 } else {
                     env.removeFun(func.getName());
+                    env.countChange();
                 }
             } else {
                 // Class def, not implemented yet
@@ -35,15 +61,6 @@ class ProgVisitor implements Prog.Visitor<Prog, EnvOptimizer> {
             }
         }
 
-        for (TopDef def : usedTopDef) {
-            if (def instanceof TopFnDef) {
-                FuncDef fdef = ((TopFnDef) def).funcdef_;
-                FunTypeOptimizer func = env.lookupFun(((FnDef) fdef).ident_);
-                assert func != null;
-                func.clearUsage();
-            }
-        }
-
         return new Program(usedTopDef);
     }
 }
@@ -23,6 +23,7 @@ class RelOpVisitor implements RelOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(LTH p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> l < r ? new ELitTrue() : new ELitFalse(),
@@ -34,6 +35,7 @@ class RelOpVisitor implements RelOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(LE p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> l <= r ? new ELitTrue() : new ELitFalse(),
@@ -45,6 +47,7 @@ class RelOpVisitor implements RelOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(GTH p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> l > r ? new ELitTrue() : new ELitFalse(),
@@ -56,6 +59,7 @@ class RelOpVisitor implements RelOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(GE p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> l <= r ? new ELitTrue() : new ELitFalse(),
@@ -67,6 +71,7 @@ class RelOpVisitor implements RelOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(EQU p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> l.equals(r) ? new ELitTrue() : new ELitFalse(),
@@ -78,6 +83,7 @@ class RelOpVisitor implements RelOp.Visitor<AnnotatedExpr<?>, EnvOptimizer> {
 
     public AnnotatedExpr<?> visit(NE p, EnvOptimizer env) {
         return new AnnotatedExpr<>(_left.getType(), Optimizer.operatorAction(
+            env,
             _left,
             _right,
             (l, r) -> l.equals(r) ? new ELitFalse() : new ELitTrue(),
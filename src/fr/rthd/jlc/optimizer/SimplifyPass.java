@@ -0,0 +1,21 @@
+package fr.rthd.jlc.optimizer;
+
+import javalette.Absyn.Prog;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Simplification of the whole program: constants propagation, literals
+ * evaluation, simplification of the conditions, removal of the unused
+ * functions and of the calls to pure functions. The purity of the functions
+ * is computed on the call graph of each run and used by the next one
+ * @author RomainTHD
+ * @see CallGraph
+ */
+class SimplifyPass implements OptimizerPass {
+    @NotNull
+    @Override
+    public Prog run(@NotNull Prog p, @NotNull EnvOptimizer env) {
+        env.newPass();
+        return p.accept(new ProgVisitor(), env);
+    }
+}
@@ -66,7 +66,7 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
                 )
             ).accept(new ExprVisitor(), env);
 
-            if (env.isTopLevel(exp)) {
+            if (env.isTopLevel(ident)) {
                 // We're in the same block, we can just update the value
                 env.updateVar(ident, newExp);
             } else {
@@ -89,6 +89,7 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
     public AnnotatedStmt<Stmt> visit(BStmt s, EnvOptimizer env) {
         Block blk = (Block) s.blk_.accept(new BlkVisitor(), env);
         if (blk.liststmt_.size() == 0) {
+            env.countChange();
             return new AnnotatedStmt<>(new Empty());
         }
 
@@ -103,7 +104,7 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
     }
 
     public AnnotatedStmt<Decl> visit(Decl s, EnvOptimizer env) {
-        TypeCode type = s.type_.accept(new TypeVisitor(), null);
+        TypeCode type = s.type_.accept(new TypeVisitor(), env.getTypeUniverse());
         ListItem items = new ListItem();
 
         for (Item item : s.listitem_) {
@@ -119,7 +120,7 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
             String varName = ((EVar) s.expr_1).ident_;
             if (Optimizer.isLiteral(exp)) {
                 // We can reduce this to something like `x = n`
-                if (env.isTopLevel(env.lookupVar(varName))) {
+                if (env.isTopLevel(varName)) {
                     // We're in the same block, we can just update the value
                     env.updateVar(varName, exp);
                 } else {
@@ -163,10 +164,14 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
     }
 
     public AnnotatedStmt<Ret> visit(Ret s, EnvOptimizer env) {
-        return new AnnotatedStmt<>(new Ret(s.expr_.accept(
-            new ExprVisitor(),
-            env
-        )), true);
+        Expr returned = s.expr_;
+        while (returned instanceof AnnotatedExpr) {
+            returned = ((AnnotatedExpr<?>) returned).getParentExp();
+        }
+        env.setTailCall(returned);
+        AnnotatedExpr<?> exp = s.expr_.accept(new ExprVisitor(), env);
+        env.setTailCall(null);
+        return new AnnotatedStmt<>(new Ret(exp), true);
     }
 
     public AnnotatedStmt<VRet> visit(VRet s, EnvOptimizer env) {
@@ -180,8 +185,10 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
         );
 
         if (exp.getParentExp() instanceof ELitTrue) {
+            env.countChange();
             return s.stmt_.accept(new StmtVisitor(), env);
         } else if (exp.getParentExp() instanceof ELitFalse) {
+            env.countChange();
             return new AnnotatedStmt<>(new Empty());
         } else {
             env.enterScope();
@@ -199,8 +206,10 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
         );
 
         if (exp.getParentExp() instanceof ELitTrue) {
+            env.countChange();
             return s.stmt_1.accept(new StmtVisitor(), env);
         } else if (exp.getParentExp() instanceof ELitFalse) {
+            env.countChange();
             return s.stmt_2.accept(new StmtVisitor(), env);
         } else {
             env.enterScope();
@@ -247,14 +256,17 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
         // TODO: Optimize infinite loop
 
         if (exp.getParentExp() instanceof ELitFalse) {
+            env.countChange();
             return new AnnotatedStmt<>(new Empty());
         } else {
-            // FIXME: Constant propagation in while body must be fixed
+            // Constants reaching the loop are propagated on the IR instead,
+            //  see `fr.rthd.jlc.ir.ConstantPropagation`. The previous status
+            //  is restored, since this loop may be nested in another one
             env.setConstantPropagation(false);
             env.enterScope();
             Stmt stmt = s.stmt_.accept(new StmtVisitor(), env);
             env.leaveScope();
-            env.setConstantPropagation(true);
+            env.setConstantPropagation(constantPropagation);
 
             if (exp.getParentExp() instanceof ELitTrue) {
                 // Functions with infinite loops cannot safely be marked
@@ -279,12 +291,12 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
             p.ident_,
             p.expr_
         ).accept(
-            new ItemVisitor(p.type_.accept(new TypeVisitor(), null)),
+            new ItemVisitor(p.type_.accept(new TypeVisitor(), env.getTypeUniverse())),
             env
         );
 
-        // TODO: See While visitor for why we need to disable constant
-        //  propagation
+        // See While visitor for why we need to disable constant propagation,
+        //  the loop being handled on the IR instead
         boolean constantPropagation = env.getConstantPropagationStatus();
         env.setConstantPropagation(false);
         AnnotatedStmt<?> s = p.stmt_.accept(new StmtVisitor(), env);
@@ -315,6 +327,7 @@ class StmtVisitor implements Stmt.Visitor<AnnotatedStmt<? extends Stmt>, EnvOpti
 
             if (funType != null) {
                 if (funType.isPure() == Choice.TRUE) {
+                    env.countChange();
                     return new AnnotatedStmt<>(new Empty());
                 }
             }
@@ -0,0 +1,241 @@
+package fr.rthd.jlc.server;
+
+import fr.rthd.jlc.Main;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compile server, keeping a warm JVM behind a Unix socket. Requests are
+ * compiled one at a time, exactly like a cold `jlc` run.
+ * <p>
+ * Request, from the client: the working directory, the number of arguments
+ * and the arguments, as big-endian 32-bit lengths followed by UTF-8 strings.
+ * The raw standard input follows once the server asks for it, and the client
+ * then shuts down its output.
+ * <p>
+ * Response, from the server: frames made of a type byte, a big-endian 32-bit
+ * length and the content. Types are stdout, stderr, stdin request and exit
+ * status, the last frame of a response.
+ * @author RomainTHD
+ */
+@NonNls
+public class CompileServer {
+    /**
+     * Standard output frame
+     */
+    static final byte FRAME_STDOUT = 'O';
+
+    /**
+     * Standard error frame
+     */
+    static final byte FRAME_STDERR = 'E';
+
+    /**
+     * Standard input request frame, without content
+     */
+    static final byte FRAME_STDIN = 'I';
+
+    /**
+     * Exit status frame, with a 32-bit status
+     */
+    static final byte FRAME_EXIT = 'X';
+
+    /**
+     * Maximum argument length, to reject garbage requests
+     */
+    private static final int MAX_STRING_LENGTH = 1 << 16;
+
+    /**
+     * Size of the output buffers
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Unix socket path
+     */
+    @NotNull
+    private final Path _socketPath;
+
+    /**
+     * Constructor
+     * @param socketPath Unix socket path, default one if null
+     */
+    public CompileServer(@Nullable String socketPath) {
+        _socketPath = Paths.get(
+            socketPath == null ? getDefaultSocketPath() : socketPath
+        );
+    }
+
+    /**
+     * Default socket path, shared with the `jlc` script. Uses `JLC_SOCKET` if
+     * set, `$TMPDIR/jlc-$USER.sock` otherwise
+     * @return Default socket path
+     */
+    @Contract(pure = true)
+    @NotNull
+    public static String getDefaultSocketPath() {
+        String path = System.getenv("JLC_SOCKET");
+        if (path != null && !path.isEmpty()) {
+            return path;
+        }
+
+        String tmp = System.getenv("TMPDIR");
+        if (tmp == null || tmp.isEmpty()) {
+            tmp = "/tmp";
+        }
+        return Paths.get(
+            tmp,
+            "jlc-" + System.getProperty("user.name") + ".sock"
+        ).toString();
+    }
+
+    /**
+     * Read a string of the request
+     * @param in Socket input
+     * @return String
+     * @throws IOException On read error or invalid request
+     */
+    @NotNull
+    private static String readString(
+        @NotNull DataInputStream in
+    ) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("Invalid request");
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Check if another server already listens on the socket
+     * @return Socket in use or not
+     */
+    private boolean isRunning() {
+        try (SocketChannel ignored = SocketChannel.open(
+            UnixDomainSocketAddress.of(_socketPath)
+        )) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Listen and compile requests until the process is killed
+     * @throws IOException If the socket can't be created
+     */
+    public void run() throws IOException {
+        if (Files.exists(_socketPath)) {
+            if (isRunning()) {
+                throw new IOException(
+                    "A server already listens on " + _socketPath
+                );
+            }
+
+            // Stale socket of a killed server
+            Files.delete(_socketPath);
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(
+            StandardProtocolFamily.UNIX
+        )) {
+            server.bind(UnixDomainSocketAddress.of(_socketPath));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(_socketPath);
+                } catch (IOException ignored) {
+                    // Will be detected as stale by the next server
+                }
+            }));
+            System.err.println("Listening on " + _socketPath);
+
+            while (true) {
+                try (SocketChannel client = server.accept()) {
+                    handle(client);
+                } catch (IOException e) {
+                    System.err.println("Request failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Compile a single request
+     * @param client Client socket
+     * @throws IOException On communication error
+     */
+    private void handle(@NotNull SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            Channels.newInputStream(client)
+        ));
+        OutputStream socketOut = Channels.newOutputStream(client);
+
+        Path workingDir = Paths.get(readString(in));
+        int argc = in.readInt();
+        if (argc < 0 || argc > MAX_STRING_LENGTH) {
+            throw new IOException("Invalid request");
+        }
+
+        String[] args = new String[argc];
+        for (int i = 0; i < argc; ++i) {
+            args[i] = readString(in);
+        }
+
+        PrintStream out = new PrintStream(
+            new BufferedOutputStream(
+                new FrameOutputStream(socketOut, FRAME_STDOUT),
+                BUFFER_SIZE
+            ),
+            false,
+            StandardCharsets.UTF_8
+        );
+        PrintStream err = new PrintStream(
+            new BufferedOutputStream(
+                new FrameOutputStream(socketOut, FRAME_STDERR),
+                BUFFER_SIZE
+            ),
+            false,
+            StandardCharsets.UTF_8
+        );
+        InputStream stdin = new RequestedInputStream(in, socketOut);
+
+        int status = Main.compile(args, stdin, out, err, workingDir);
+
+        out.flush();
+        err.flush();
+        FrameOutputStream.writeFrame(
+            socketOut,
+            FRAME_EXIT,
+            new byte[]{
+                (byte) (status >>> 24),
+                (byte) (status >>> 16),
+                (byte) (status >>> 8),
+                (byte) status,
+            },
+            0,
+            4
+        );
+    }
+}
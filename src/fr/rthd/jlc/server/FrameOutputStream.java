@@ -0,0 +1,77 @@
+package fr.rthd.jlc.server;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream sending everything written to it as frames of a given type
+ * @author RomainTHD
+ * @see CompileServer
+ */
+@NonNls
+class FrameOutputStream extends OutputStream {
+    /**
+     * Socket output, shared between all the streams of a request
+     */
+    @NotNull
+    private final OutputStream _socket;
+
+    /**
+     * Frame type
+     */
+    private final byte _type;
+
+    /**
+     * Constructor
+     * @param socket Socket output, used as a lock between the streams
+     * @param type Frame type
+     */
+    FrameOutputStream(@NotNull OutputStream socket, byte type) {
+        _socket = socket;
+        _type = type;
+    }
+
+    /**
+     * Write a single frame
+     * @param socket Socket output
+     * @param type Frame type
+     * @param b Frame content
+     * @param off Content offset
+     * @param len Content length
+     * @throws IOException On write error
+     */
+    static void writeFrame(
+        @NotNull OutputStream socket,
+        byte type,
+        @NotNull byte[] b,
+        int off,
+        int len
+    ) throws IOException {
+        synchronized (socket) {
+            socket.write(new byte[]{
+                type,
+                (byte) (len >>> 24),
+                (byte) (len >>> 16),
+                (byte) (len >>> 8),
+                (byte) len,
+            });
+            socket.write(b, off, len);
+            socket.flush();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(@NotNull byte[] b, int off, int len) throws IOException {
+        if (len != 0) {
+            writeFrame(_socket, _type, b, off, len);
+        }
+    }
+}
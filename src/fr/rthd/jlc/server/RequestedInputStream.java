@@ -0,0 +1,82 @@
+package fr.rthd.jlc.server;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Standard input of a request. The client only sends its standard input once
+ * the compiler tries to read it, since most calls use an input file instead
+ * @author RomainTHD
+ * @see CompileServer
+ */
+@NonNls
+class RequestedInputStream extends InputStream {
+    /**
+     * Socket input, the standard input follows the request header
+     */
+    @NotNull
+    private final InputStream _socketIn;
+
+    /**
+     * Socket output, to request the standard input
+     */
+    @NotNull
+    private final OutputStream _socketOut;
+
+    /**
+     * Standard input already requested or not
+     */
+    private boolean _requested;
+
+    /**
+     * Constructor
+     * @param socketIn Socket input
+     * @param socketOut Socket output
+     */
+    RequestedInputStream(
+        @NotNull InputStream socketIn,
+        @NotNull OutputStream socketOut
+    ) {
+        _socketIn = socketIn;
+        _socketOut = socketOut;
+        _requested = false;
+    }
+
+    /**
+     * Ask the client for its standard input, only once
+     * @throws IOException On write error
+     */
+    private void request() throws IOException {
+        if (!_requested) {
+            _requested = true;
+            FrameOutputStream.writeFrame(
+                _socketOut,
+                CompileServer.FRAME_STDIN,
+                new byte[0],
+                0,
+                0
+            );
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        request();
+        return _socketIn.read();
+    }
+
+    @Override
+    public int read(@NotNull byte[] b, int off, int len) throws IOException {
+        request();
+        return _socketIn.read(b, off, len);
+    }
+
+    @Override
+    public void close() {
+        // The socket is closed by the server once the request is done
+    }
+}
@@ -1,6 +1,7 @@
 package fr.rthd.jlc.typechecker;
 
 import fr.rthd.jlc.TypeCode;
+import fr.rthd.jlc.TypeUniverse;
 import fr.rthd.jlc.TypeVisitor;
 import fr.rthd.jlc.env.FunArg;
 import fr.rthd.jlc.typechecker.exception.InvalidDeclaredTypeException;
@@ -13,16 +14,16 @@ import org.jetbrains.annotations.NonNls;
  * @author RomainTHD
  */
 @NonNls
-class ArgVisitor implements Arg.Visitor<FunArg, Void> {
+class ArgVisitor implements Arg.Visitor<FunArg, TypeUniverse> {
     /**
      * Function argument
      * @param a Function argument
-     * @param ignored Visitor pattern artifact
+     * @param types Type universe
      * @return Function argument
      */
     @Override
-    public FunArg visit(Argument a, Void ignored) {
-        TypeCode type = a.type_.accept(new TypeVisitor(), null);
+    public FunArg visit(Argument a, TypeUniverse types) {
+        TypeCode type = a.type_.accept(new TypeVisitor(), types);
 
         if (type == TypeCode.CVoid) {
             throw new InvalidDeclaredTypeException(type, a.ident_);
@@ -37,7 +37,7 @@ class ClassDefOnlySignatureVisitor implements ClassDef.Visitor<Void, EnvTypechec
         }
 
         env.insertClass(new ClassType<>(
-            p.ident_,
+            env.getTypeUniverse().forClass(p.ident_),
             superclass
         ));
 
@@ -80,7 +80,7 @@ class ClassDefSignatureVisitor implements ClassDef.Visitor<Void, EnvTypecheck> {
         );
 
         p.listmember_.add(new FnMember(fdef));
-        addMethod((ClassType<FunType>) c, fdef, true);
+        addMethod((ClassType<FunType>) c, fdef, true, env);
     }
 
     /**
@@ -88,15 +88,17 @@ class ClassDefSignatureVisitor implements ClassDef.Visitor<Void, EnvTypecheck> {
      * @param c Class
      * @param f Method
      * @param override Override or not
+     * @param env Environment
      */
     private void addMethod(
         @NotNull ClassType<FunType> c,
         @NotNull FnDef f,
-        boolean override
+        boolean override,
+        @NotNull EnvTypecheck env
     ) {
         List<FunArg> args = new LinkedList<>();
         for (Arg arg : f.listarg_) {
-            args.add(arg.accept(new ArgVisitor(), null));
+            args.add(arg.accept(new ArgVisitor(), env.getTypeUniverse()));
         }
         if (!override && c.hasMethod(f.ident_)) {
             throw new DuplicateFieldException(
@@ -106,7 +108,7 @@ class ClassDefSignatureVisitor implements ClassDef.Visitor<Void, EnvTypecheck> {
             );
         }
         c.addMethod(new FunType(
-            f.type_.accept(new TypeVisitor(), null),
+            f.type_.accept(new TypeVisitor(), env.getTypeUniverse()),
             f.ident_,
             args
         ), override);
@@ -116,8 +118,13 @@ class ClassDefSignatureVisitor implements ClassDef.Visitor<Void, EnvTypecheck> {
      * Add an attribute to the current class
      * @param c Class
      * @param a Attribute
+     * @param env Environment
      */
-    private void addAttribute(@NotNull ClassType<?> c, @NotNull AttrMember a) {
+    private void addAttribute(
+        @NotNull ClassType<?> c,
+        @NotNull AttrMember a,
+        @NotNull EnvTypecheck env
+    ) {
         if (c.hasAttribute(a.ident_)) {
             throw new DuplicateFieldException(
                 a.ident_,
@@ -126,7 +133,7 @@ class ClassDefSignatureVisitor implements ClassDef.Visitor<Void, EnvTypecheck> {
             );
         }
         c.addAttribute(new Attribute(
-            a.type_.accept(new TypeVisitor(), null),
+            a.type_.accept(new TypeVisitor(), env.getTypeUniverse()),
             a.ident_
         ));
     }
@@ -145,10 +152,11 @@ class ClassDefSignatureVisitor implements ClassDef.Visitor<Void, EnvTypecheck> {
                 addMethod(
                     (ClassType<FunType>) c,
                     (FnDef) ((FnMember) m).funcdef_,
-                    false
+                    false,
+                    env
                 );
             } else if (m instanceof AttrMember) {
-                addAttribute(c, (AttrMember) m);
+                addAttribute(c, (AttrMember) m, env);
             } else {
                 throw new IllegalArgumentException(
                     "Unknown member type: " + m.getClass().getName()
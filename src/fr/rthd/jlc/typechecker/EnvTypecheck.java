@@ -3,12 +3,21 @@ package fr.rthd.jlc.typechecker;
 import fr.rthd.jlc.TypeCode;
 import fr.rthd.jlc.env.ClassType;
 import fr.rthd.jlc.env.Env;
+import fr.rthd.jlc.env.Attribute;
 import fr.rthd.jlc.env.FunType;
+import javalette.Absyn.FuncDef;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+
 /**
  * Environment for typechecker
  * @author RomainTHD
@@ -22,6 +31,19 @@ class EnvTypecheck extends Env<TypeCode, FunType, ClassType<? extends FunType>>
     @Nullable
     private FunType _currentFunction = null;
 
+    /**
+     * Deferred function checks, in source order
+     */
+    @NotNull
+    private final List<TypecheckTask> _deferred;
+
+    /**
+     * Deferred function checks, by function. Compared by identity since two
+     * methods of different classes can be structurally equal
+     */
+    @NotNull
+    private final Map<FuncDef, TypecheckTask> _deferredByFunc;
+
     /**
      * The function does return or not
      */
@@ -33,6 +55,90 @@ class EnvTypecheck extends Env<TypeCode, FunType, ClassType<? extends FunType>>
      */
     public EnvTypecheck(@NotNull Env<?, FunType, ClassType<?>> parent) {
         super(parent);
+        _deferred = new ArrayList<>();
+        _deferredByFunc = new IdentityHashMap<>();
+    }
+
+    /**
+     * Function-local constructor, sharing the signatures of the parent
+     * @param parent Parent environment
+     */
+    private EnvTypecheck(@NotNull EnvTypecheck parent) {
+        super(parent);
+        _deferred = new ArrayList<>();
+        _deferredByFunc = new IdentityHashMap<>();
+    }
+
+    /**
+     * Defer the check of a function body. It will run on its own environment,
+     * so the signatures must not change anymore
+     * @param func Function to check
+     * @param c Class of the method, null for a function
+     * @see #runDeferred()
+     */
+    public void defer(
+        @NotNull FuncDef func,
+        @Nullable ClassType<? extends FunType> c
+    ) {
+        TypecheckTask task = new TypecheckTask(new EnvTypecheck(this), func, c);
+        _deferred.add(task);
+        _deferredByFunc.put(func, task);
+    }
+
+    /**
+     * Run the deferred checks in parallel. Every check runs to completion,
+     * so the reported failure doesn't depend on the scheduling
+     * @throws RuntimeException First exception in source order, if any
+     * @throws Error First error in source order, if any
+     */
+    public void runDeferred() {
+        ForkJoinTask.invokeAll(_deferred);
+
+        for (TypecheckTask task : _deferred) {
+            if (task.hasFailed()) {
+                task.getResult();
+            }
+        }
+    }
+
+    /**
+     * @param func Function
+     * @return Deferred check of this function, null if not deferred
+     */
+    @Contract(pure = true)
+    @Nullable
+    public TypecheckTask getDeferred(@NotNull FuncDef func) {
+        return _deferredByFunc.get(func);
+    }
+
+    /**
+     * Enter a class body, where its methods and attributes are visible
+     * @param c Class
+     */
+    public void enterClass(@NotNull ClassType<? extends FunType> c) {
+        Map<String, FunType> classFunctions = new HashMap<>();
+        for (FunType f : c.getAllMethods()) {
+            classFunctions.put(f.getName(), f);
+        }
+        setClassFunctions(classFunctions);
+        setCurrentClass(c);
+        enterScope();
+
+        for (Attribute a : c.getAllAttributes()) {
+            insertVar(a.getName(), a.getType());
+        }
+
+        insertVar("self", c.getType());
+    }
+
+    /**
+     * Leave a class body
+     * @see #enterClass(ClassType)
+     */
+    public void leaveClass() {
+        leaveScope();
+        setCurrentClass(null);
+        setClassFunctions(null);
     }
 
     /**
@@ -273,7 +273,7 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<?>, EnvTypecheck> {
         }
 
         return new AnnotatedExpr<>(
-            TypeCode.forArray(expr.getType().getBaseType(), newDim),
+            env.getTypeUniverse().forArray(expr.getType().getBaseType(), newDim),
             new EIndex(expr, idx, indexes),
             expr.getValue() == Value.RValue ? Value.RValue : _value
         );
@@ -313,15 +313,15 @@ class ExprVisitor implements Expr.Visitor<AnnotatedExpr<?>, EnvTypecheck> {
      */
     @Override
     public AnnotatedExpr<ENew> visit(ENew e, EnvTypecheck env) {
-        TypeCode t = e.basetype_.accept(new TypeVisitor(), null);
+        TypeCode t = e.basetype_.accept(new TypeVisitor(), env.getTypeUniverse());
 
         int nonInitAddon = e.maybenoninitarray_ instanceof NonInitArray ? 1 : 0;
 
-        t = TypeCode.forArray(t, e.listindex_.size() + nonInitAddon);
+        t = env.getTypeUniverse().forArray(t, e.listindex_.size() + nonInitAddon);
 
         for (int i = 0; i < e.listindex_.size() + nonInitAddon; ++i) {
             // Populate all intermediate types, used for compiler
-            TypeCode.forArray(t.getBaseType(), i);
+            env.getTypeUniverse().forArray(t.getBaseType(), i);
         }
 
         ListIndex listIndex = new ListIndex();
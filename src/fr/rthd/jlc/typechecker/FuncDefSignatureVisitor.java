@@ -27,10 +27,10 @@ class FuncDefSignatureVisitor implements FuncDef.Visitor<Void, EnvTypecheck> {
     public Void visit(FnDef p, EnvTypecheck env) {
         List<FunArg> argsType = new LinkedList<>();
         for (Arg arg : p.listarg_) {
-            argsType.add(arg.accept(new ArgVisitor(), null));
+            argsType.add(arg.accept(new ArgVisitor(), env.getTypeUniverse()));
         }
 
-        TypeCode retType = p.type_.accept(new TypeVisitor(), null);
+        TypeCode retType = p.type_.accept(new TypeVisitor(), env.getTypeUniverse());
         env.insertFun(new FunType(retType, p.ident_, argsType));
 
         return null;
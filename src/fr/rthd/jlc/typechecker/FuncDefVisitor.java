@@ -23,6 +23,12 @@ class FuncDefVisitor implements FuncDef.Visitor<FnDef, EnvTypecheck> {
      */
     @Override
     public FnDef visit(FnDef f, EnvTypecheck env) {
+        TypecheckTask deferred = env.getDeferred(f);
+        if (deferred != null) {
+            // Already checked in parallel, see ProgVisitor
+            return deferred.getResult();
+        }
+
         FunType func = env.lookupFun(f.ident_);
         assert func != null;
 
@@ -37,6 +37,7 @@ class ProgSignatureVisitor implements Prog.Visitor<Prog, EnvTypecheck> {
         checkCycles(env);
         listFunctions(listTopDef, env);
         addConstructors(listTopDef, env);
+        freezeClasses(env);
         addExternalFunctions(env);
         checkMain(env);
         return new Program(listTopDef);
@@ -124,6 +125,16 @@ class ProgSignatureVisitor implements Prog.Visitor<Prog, EnvTypecheck> {
         }
     }
 
+    /**
+     * Freeze all the classes, now that their members are known
+     * @param env Environment
+     */
+    private void freezeClasses(@NotNull EnvTypecheck env) {
+        for (ClassType<? extends FunType> c : env.getAllClass()) {
+            c.freeze();
+        }
+    }
+
     /**
      * Add the external functions to the environment, like `printInt`
      * @param env Environment
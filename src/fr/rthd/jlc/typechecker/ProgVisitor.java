@@ -1,9 +1,16 @@
 package fr.rthd.jlc.typechecker;
 
+import fr.rthd.jlc.env.ClassType;
+import fr.rthd.jlc.env.FunType;
+import javalette.Absyn.ClsDef;
+import javalette.Absyn.FnMember;
 import javalette.Absyn.ListTopDef;
+import javalette.Absyn.Member;
 import javalette.Absyn.Prog;
 import javalette.Absyn.Program;
+import javalette.Absyn.TopClsDef;
 import javalette.Absyn.TopDef;
+import javalette.Absyn.TopFnDef;
 import org.jetbrains.annotations.NonNls;
 
 /**
@@ -20,6 +27,25 @@ class ProgVisitor implements Prog.Visitor<Prog, EnvTypecheck> {
      */
     @Override
     public Program visit(Program p, EnvTypecheck env) {
+        // Signatures are known, so function bodies are independent and can be
+        //  checked in parallel
+        for (TopDef def : p.listtopdef_) {
+            if (def instanceof TopFnDef) {
+                env.defer(((TopFnDef) def).funcdef_, null);
+            } else if (def instanceof TopClsDef) {
+                ClsDef cls = (ClsDef) ((TopClsDef) def).classdef_;
+                ClassType<? extends FunType> c = env.lookupClass(cls.ident_);
+                assert c != null;
+                for (Member m : cls.listmember_) {
+                    if (m instanceof FnMember) {
+                        env.defer(((FnMember) m).funcdef_, c);
+                    }
+                }
+            }
+        }
+        env.runDeferred();
+
+        // Rebuild the program with the checked functions
         ListTopDef topDef = new ListTopDef();
 
         for (TopDef def : p.listtopdef_) {
@@ -72,7 +72,7 @@ class StmtVisitor implements Stmt.Visitor<Stmt, EnvTypecheck> {
      */
     @Override
     public Decl visit(Decl s, EnvTypecheck env) {
-        TypeCode type = s.type_.accept(new TypeVisitor(), null);
+        TypeCode type = s.type_.accept(new TypeVisitor(), env.getTypeUniverse());
         if (type == TypeCode.CVoid) {
             throw new InvalidDeclaredTypeException(
                 type
@@ -352,7 +352,7 @@ class StmtVisitor implements Stmt.Visitor<Stmt, EnvTypecheck> {
      */
     @Override
     public For visit(For s, EnvTypecheck env) {
-        TypeCode varType = s.type_.accept(new TypeVisitor(), null);
+        TypeCode varType = s.type_.accept(new TypeVisitor(), env.getTypeUniverse());
         AnnotatedExpr<?> expr = s.expr_.accept(new ExprVisitor(), env);
 
         if (!expr.getType().isArray()) {
@@ -0,0 +1,109 @@
+package fr.rthd.jlc.typechecker;
+
+import fr.rthd.jlc.env.ClassType;
+import fr.rthd.jlc.env.FunType;
+import javalette.Absyn.FnDef;
+import javalette.Absyn.FuncDef;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Type checking of a single function or method body, on its own environment
+ * so that several of them can run in parallel
+ * @author RomainTHD
+ * @see EnvTypecheck#defer(FuncDef, ClassType)
+ */
+@NonNls
+class TypecheckTask extends RecursiveAction {
+    /**
+     * Function-local environment
+     */
+    @NotNull
+    private final EnvTypecheck _env;
+
+    /**
+     * Function to check
+     */
+    @NotNull
+    private final FuncDef _func;
+
+    /**
+     * Class of the method, null for a function
+     */
+    @Nullable
+    private final ClassType<? extends FunType> _class;
+
+    /**
+     * Checked function, null until checked or if the check failed
+     */
+    @Nullable
+    private FnDef _result;
+
+    /**
+     * Error raised by the check, kept to be rethrown as is by the caller, so
+     * that the failures are reported in source order. Errors like a stack
+     * overflow are kept as well
+     */
+    @Nullable
+    private Throwable _error;
+
+    /**
+     * Constructor
+     * @param env Function-local environment
+     * @param func Function to check
+     * @param c Class of the method, null for a function
+     */
+    TypecheckTask(
+        @NotNull EnvTypecheck env,
+        @NotNull FuncDef func,
+        @Nullable ClassType<? extends FunType> c
+    ) {
+        _env = env;
+        _func = func;
+        _class = c;
+        _result = null;
+        _error = null;
+    }
+
+    @Override
+    protected void compute() {
+        try {
+            if (_class != null) {
+                _env.enterClass(_class);
+            }
+            _result = _func.accept(new FuncDefVisitor(), _env);
+        } catch (Throwable e) {
+            _error = e;
+        }
+    }
+
+    /**
+     * @return If the check failed or not
+     */
+    public boolean hasFailed() {
+        return _error != null;
+    }
+
+    /**
+     * @return Checked function
+     * @throws RuntimeException Exception raised by the check, if any
+     * @throws Error Error raised by the check, if any
+     */
+    @NotNull
+    public FnDef getResult() {
+        if (_error instanceof RuntimeException) {
+            throw (RuntimeException) _error;
+        } else if (_error instanceof Error) {
+            throw (Error) _error;
+        } else if (_error != null) {
+            // Checked exceptions can't be thrown by the visitors
+            throw new IllegalStateException(_error);
+        }
+
+        assert _result != null;
+        return _result;
+    }
+}
@@ -0,0 +1,258 @@
+package fr.rthd.jlc.utils;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Source input of the lexer. Files are memory-mapped and other inputs are read
+ * in large chunks through a channel. The bytes are then decoded on demand, one
+ * chunk at a time, so the source is never copied into a single string. Like
+ * a line by line read, a non-empty source always ends with a newline, which
+ * the lexer needs to end a comment on the last line
+ * @author RomainTHD
+ */
+@NonNls
+public class SourceReader extends Reader {
+    /**
+     * Size of the chunks read from a channel, and of the decoded chunks
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Source channel, null if the whole source is already mapped
+     */
+    @Nullable
+    private final ReadableByteChannel _channel;
+
+    /**
+     * Bytes not decoded yet
+     */
+    @NotNull
+    private final ByteBuffer _bytes;
+
+    /**
+     * Decoded chars not read yet
+     */
+    @NotNull
+    private final CharBuffer _chars;
+
+    /**
+     * Decoder of the source charset
+     */
+    @NotNull
+    private final CharsetDecoder _decoder;
+
+    /**
+     * No more bytes will be added to the buffer
+     */
+    private boolean _endOfInput;
+
+    /**
+     * The decoder has been flushed, nothing more to decode
+     */
+    private boolean _flushed;
+
+    /**
+     * Last decoded char, -1 if none yet
+     */
+    private int _last;
+
+    /**
+     * Constructor
+     * @param channel Source channel, null if the bytes are already complete
+     * @param bytes Initial bytes
+     * @param charset Source charset
+     */
+    private SourceReader(
+        @Nullable ReadableByteChannel channel,
+        @NotNull ByteBuffer bytes,
+        @NotNull Charset charset
+    ) {
+        _channel = channel;
+        _bytes = bytes;
+        _decoder = charset
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _chars = CharBuffer.allocate(CHUNK_SIZE);
+        // Empty buffer, ready to be read
+        _chars.flip();
+        _endOfInput = channel == null;
+        _flushed = false;
+        _last = -1;
+    }
+
+    /**
+     * Open a source file
+     * @param path File path
+     * @return Source reader
+     * @throws IOException If the file can't be read
+     */
+    @NotNull
+    public static SourceReader fromFile(@NotNull String path) throws IOException {
+        FileChannel fc = FileChannel.open(
+            Paths.get(path),
+            StandardOpenOption.READ
+        );
+
+        if (fc.size() > Integer.MAX_VALUE) {
+            // Too large for a single mapping, read it by chunks instead
+            return fromChannel(fc);
+        }
+
+        try {
+            // The mapping stays valid once the channel is closed
+            ByteBuffer mapped = fc.map(
+                FileChannel.MapMode.READ_ONLY,
+                0,
+                fc.size()
+            );
+            return new SourceReader(null, mapped, Charset.defaultCharset());
+        } finally {
+            fc.close();
+        }
+    }
+
+    /**
+     * Open a stream, like stdin
+     * @param in Input stream
+     * @return Source reader
+     */
+    @NotNull
+    public static SourceReader fromStream(@NotNull InputStream in) {
+        return fromChannel(Channels.newChannel(in));
+    }
+
+    /**
+     * Open a channel
+     * @param channel Channel
+     * @return Source reader
+     */
+    @NotNull
+    private static SourceReader fromChannel(
+        @NotNull ReadableByteChannel channel
+    ) {
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        // Empty buffer, ready to be read
+        buffer.flip();
+        return new SourceReader(channel, buffer, Charset.defaultCharset());
+    }
+
+    /**
+     * Read the next chunk from the channel
+     * @throws IOException If the channel can't be read
+     */
+    private void fill() throws IOException {
+        assert _channel != null;
+        _bytes.compact();
+        int n = _channel.read(_bytes);
+        _bytes.flip();
+        if (n < 0) {
+            _endOfInput = true;
+        }
+    }
+
+    /**
+     * Decode the next chars
+     * @return False if the whole input has been read
+     * @throws IOException If the input can't be read or decoded
+     */
+    private boolean fillChars() throws IOException {
+        if (_flushed) {
+            return false;
+        }
+
+        _chars.compact();
+        try {
+            while (_chars.position() == 0) {
+                CoderResult res = _decoder.decode(_bytes, _chars, _endOfInput);
+                if (res.isError()) {
+                    res.throwException();
+                }
+
+                if (_chars.position() != 0) {
+                    _last = _chars.get(_chars.position() - 1);
+                    break;
+                }
+
+                if (_endOfInput) {
+                    _decoder.flush(_chars);
+                    if (_chars.position() != 0) {
+                        _last = _chars.get(_chars.position() - 1);
+                    }
+                    if (_last != -1 && _last != '\n') {
+                        // Missing final newline
+                        _chars.put('\n');
+                    }
+                    _flushed = true;
+                    break;
+                }
+
+                fill();
+            }
+        } finally {
+            _chars.flip();
+        }
+
+        return _chars.hasRemaining();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!_chars.hasRemaining() && !fillChars()) {
+            return -1;
+        }
+        return _chars.get();
+    }
+
+    @Override
+    public int read(
+        @NotNull char[] cbuf,
+        int off,
+        int len
+    ) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!_chars.hasRemaining() && !fillChars()) {
+            return -1;
+        }
+
+        int n = Math.min(len, _chars.remaining());
+        _chars.get(cbuf, off, n);
+        return n;
+    }
+
+    @Contract(pure = true)
+    @Override
+    public boolean ready() {
+        return _chars.hasRemaining() || _bytes.hasRemaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _flushed = true;
+        _chars.position(_chars.limit());
+        if (_channel != null) {
+            _channel.close();
+        }
+    }
+}
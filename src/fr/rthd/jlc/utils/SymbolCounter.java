@@ -0,0 +1,55 @@
+package fr.rthd.jlc.utils;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Occurrence counter of identifiers, without boxing
+ * @author RomainTHD
+ * @see SymbolIndex
+ */
+@NonNls
+public class SymbolCounter {
+    /**
+     * Index of the identifiers
+     */
+    @NotNull
+    private final SymbolIndex _index;
+
+    /**
+     * Counts, by identifier index
+     */
+    @NotNull
+    private int[] _counts;
+
+    /**
+     * Constructor
+     */
+    public SymbolCounter() {
+        _index = new SymbolIndex();
+        _counts = new int[_index.capacity()];
+    }
+
+    /**
+     * Count an occurrence of an identifier
+     * @param key Identifier
+     * @return Number of previous occurrences
+     */
+    public int next(@NotNull String key) {
+        int i = _index.add(key);
+        if (i >= _counts.length) {
+            _counts = Arrays.copyOf(_counts, _index.capacity());
+        }
+        return _counts[i]++;
+    }
+
+    /**
+     * Reset every count, keeping the capacity
+     */
+    public void clear() {
+        Arrays.fill(_counts, 0, _index.size(), 0);
+        _index.clear();
+    }
+}
@@ -0,0 +1,174 @@
+package fr.rthd.jlc.utils;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Dense index of identifiers, numbering them from 0 in insertion order.
+ * Open addressing with linear probing, the entries being flat arrays so that
+ * no entry object is allocated. Identifiers coming from the lexer are
+ * interned, so comparing them by identity is enough most of the time and
+ * `equals` is only a fallback
+ * @author RomainTHD
+ * @see SymbolMap
+ * @see SymbolCounter
+ */
+@NonNls
+public class SymbolIndex {
+    /**
+     * Initial number of entries
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Identifiers, by index
+     */
+    @NotNull
+    private String[] _keys;
+
+    /**
+     * Hashes of the identifiers, by index
+     */
+    @NotNull
+    private int[] _hashes;
+
+    /**
+     * Hash table, index + 1 of the identifier in each slot or 0 if empty.
+     * Always twice as large as the entries, to keep the probes short
+     */
+    @NotNull
+    private int[] _slots;
+
+    /**
+     * Number of identifiers
+     */
+    private int _size;
+
+    /**
+     * Constructor
+     */
+    public SymbolIndex() {
+        _keys = new String[INITIAL_CAPACITY];
+        _hashes = new int[INITIAL_CAPACITY];
+        _slots = new int[INITIAL_CAPACITY * 2];
+        _size = 0;
+    }
+
+    /**
+     * @param key Identifier
+     * @return Hash of the identifier, spread over the low bits
+     */
+    @Contract(pure = true)
+    private static int hash(@NotNull String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @param key Identifier
+     * @return Index of the identifier, or -1 if not indexed
+     */
+    @Contract(pure = true)
+    public int indexOf(@NotNull String key) {
+        int h = hash(key);
+        int mask = _slots.length - 1;
+        for (int s = h & mask; ; s = (s + 1) & mask) {
+            int i = _slots[s] - 1;
+            if (i < 0) {
+                return -1;
+            }
+
+            String k = _keys[i];
+            if (k == key || (_hashes[i] == h && k.equals(key))) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Index an identifier, if not already indexed
+     * @param key Identifier
+     * @return Index of the identifier
+     */
+    public int add(@NotNull String key) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            return i;
+        }
+
+        if (_size == _keys.length) {
+            grow();
+        }
+
+        i = _size++;
+        _keys[i] = key;
+        _hashes[i] = hash(key);
+        insertSlot(i);
+        return i;
+    }
+
+    /**
+     * Put an index in the first free slot of its identifier
+     * @param i Identifier index
+     */
+    private void insertSlot(int i) {
+        int mask = _slots.length - 1;
+        int s = _hashes[i] & mask;
+        while (_slots[s] != 0) {
+            s = (s + 1) & mask;
+        }
+        _slots[s] = i + 1;
+    }
+
+    /**
+     * Double the capacity and rehash
+     */
+    private void grow() {
+        int capacity = _keys.length * 2;
+        _keys = Arrays.copyOf(_keys, capacity);
+        _hashes = Arrays.copyOf(_hashes, capacity);
+        _slots = new int[capacity * 2];
+        for (int i = 0; i < _size; ++i) {
+            insertSlot(i);
+        }
+    }
+
+    /**
+     * @param i Index
+     * @return Identifier at this index
+     */
+    @Contract(pure = true)
+    @NotNull
+    public String keyAt(int i) {
+        assert i >= 0 && i < _size;
+        return _keys[i];
+    }
+
+    /**
+     * @return Number of identifiers
+     */
+    @Contract(pure = true)
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * @return Current capacity, indexes below it never trigger a resize
+     */
+    @Contract(pure = true)
+    public int capacity() {
+        return _keys.length;
+    }
+
+    /**
+     * Remove every identifier, keeping the capacity
+     */
+    public void clear() {
+        Arrays.fill(_keys, 0, _size, null);
+        Arrays.fill(_slots, 0);
+        _size = 0;
+    }
+}
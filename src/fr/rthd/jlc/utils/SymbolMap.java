@@ -0,0 +1,128 @@
+package fr.rthd.jlc.utils;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Map from identifiers to values, iterated in insertion order. Keys can't be
+ * removed, but can be mapped to null
+ * @param <V> Value type
+ * @author RomainTHD
+ * @see SymbolIndex
+ */
+@NonNls
+public class SymbolMap<V> {
+    /**
+     * Index of the keys
+     */
+    @NotNull
+    private final SymbolIndex _index;
+
+    /**
+     * Values, by key index
+     */
+    @NotNull
+    private Object[] _values;
+
+    /**
+     * Constructor
+     */
+    public SymbolMap() {
+        _index = new SymbolIndex();
+        _values = new Object[_index.capacity()];
+    }
+
+    /**
+     * @param key Key
+     * @return Value, or null if not found
+     */
+    @Contract(pure = true)
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(@NotNull String key) {
+        int i = _index.indexOf(key);
+        return i < 0 ? null : (V) _values[i];
+    }
+
+    /**
+     * @param key Key
+     * @return If the key is mapped, even to null
+     */
+    @Contract(pure = true)
+    public boolean containsKey(@NotNull String key) {
+        return _index.indexOf(key) >= 0;
+    }
+
+    /**
+     * @param key Key
+     * @param value Value
+     * @return Previous value, or null if none
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V put(@NotNull String key, @Nullable V value) {
+        int i = _index.add(key);
+        if (i >= _values.length) {
+            _values = Arrays.copyOf(_values, _index.capacity());
+        }
+
+        V previous = (V) _values[i];
+        _values[i] = value;
+        return previous;
+    }
+
+    /**
+     * @return Keys, in insertion order
+     */
+    @NotNull
+    public List<String> keys() {
+        List<String> keys = new ArrayList<>(_index.size());
+        for (int i = 0; i < _index.size(); ++i) {
+            keys.add(_index.keyAt(i));
+        }
+        return keys;
+    }
+
+    /**
+     * @return Non-null values, in insertion order
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> values = new ArrayList<>(_index.size());
+        for (int i = 0; i < _index.size(); ++i) {
+            if (_values[i] != null) {
+                values.add((V) _values[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Remove every key, keeping the capacity
+     */
+    public void clear() {
+        Arrays.fill(_values, 0, _index.size(), null);
+        _index.clear();
+    }
+
+    @Contract(pure = true)
+    @NotNull
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("{");
+        for (int i = 0; i < _index.size(); ++i) {
+            if (i > 0) {
+                s.append(", ");
+            }
+            s.append(_index.keyAt(i)).append("=").append(_values[i]);
+        }
+        return s.append("}").toString();
+    }
+}
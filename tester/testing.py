@@ -13,6 +13,16 @@ from shutil import which
 
 from typing import List, Tuple
 
+# Compiler flag of each optimization level
+OPTIMIZATION_FLAGS = {
+    "z": "-0z",
+    "s": "-0s",
+    "0": "--O0",
+    "1": "--O1",
+    "2": "--O2",
+    "3": "--O3",
+}
+
 
 class Struct:
     """
@@ -165,7 +175,7 @@ def link_riscv(path: str, source_str: str) -> None:
         clean_files([tmp_s, tmp_o])
 
 
-def run_compiler(exe: str, src_file: str, is_good: str):
+def run_compiler(exe: str, src_file: str, is_good: str, flags: List[str]):
     """
     Compile a Javalette source file with the Javalette compiler.
     Note: The Javalette compiler should take its input on stdin.
@@ -173,12 +183,13 @@ def run_compiler(exe: str, src_file: str, is_good: str):
     :param src_file: Javalette source file (with extension .jl)
     :param is_good: Boolean telling us whether the test-case is expected to
                     succeed or not
+    :param flags: Compiler flags
     :return: Unknown
     """
     try:
         infile = open(src_file)
         child = subprocess.run(
-            [exe],
+            [exe] + flags,
             stdout=subprocess.PIPE,
             stderr=subprocess.PIPE,
             stdin=infile,
@@ -216,7 +227,7 @@ def run_compiler(exe: str, src_file: str, is_good: str):
     )
 
 
-def exec_test(exe, filename, is_good, linker, runner):
+def exec_test(exe, filename, is_good, linker, runner, flags):
     """
     Execute one test.
     :param exe: Compiler executable
@@ -226,14 +237,21 @@ def exec_test(exe, filename, is_good, linker, runner):
     :param linker: Linker for whatever particular backend we're using (or None,
                    if we're only type checking)
     :param runner:
+    :param flags: Compiler flags
     :return:
     """
     input_file = filename + ".input"
     output_file = filename + ".output"
     source_file = filename + ".jl"
+    flags_file = filename + ".flags"
+
+    # Flags of this test, after the global ones so that they override them.
+    if os.path.isfile(flags_file):
+        with open(flags_file) as f:
+            flags = flags + f.read().split()
 
     # Try to run the compiler on the source file.
-    compiler_success, data = run_compiler(exe, source_file, is_good)
+    compiler_success, data = run_compiler(exe, source_file, is_good, flags)
 
     # If compilation failed, or if the test is expected to fail,
     # or if we're only running the type checker, then quit here.
@@ -347,6 +365,15 @@ def init_argparser() -> argparse.ArgumentParser:
         default=[],
         help="test extensions (one or several)",
     )
+    parser.add_argument(
+        "-O",
+        metavar="<level>",
+        nargs="+",
+        default=[],
+        choices=sorted(OPTIMIZATION_FLAGS),
+        help="run the tests at each optimization level (default: the "
+             "compiler's default level)",
+    )
     parser.add_argument(
         "--noclean",
         action="store_true",
@@ -503,7 +530,13 @@ def status_msg(filename: int, curr: int, tot: int) -> None:
     sys.stdout.flush()
 
 
-def run_tests(path: str, backends: List[str], prefix: str, exts: List[str]):
+def run_tests(
+    path: str,
+    backends: List[str],
+    prefix: str,
+    exts: List[str],
+    flags: List[str],
+):
     """
     Run tests. For each backend, test all regular tests, and all extensions.
     If the list of backends is empty, only run type-checking.
@@ -511,6 +544,7 @@ def run_tests(path: str, backends: List[str], prefix: str, exts: List[str]):
     :param backends: List of backends to test
     :param prefix: Prefix for executable
     :param exts: List of extensions to test
+    :param flags: Compiler flags
     :return: Success or not
     """
     # Print banner.
@@ -521,6 +555,7 @@ def run_tests(path: str, backends: List[str], prefix: str, exts: List[str]):
         ("None (type checking only)" if backends == [] else str(backends))
     )
     print("  Extensions: " + ("None" if exts == [] else str(exts)))
+    print("  Flags:      " + ("None" if flags == [] else " ".join(flags)))
     print("")
 
     # Build a list of test cases based on the chosen extensions.
@@ -543,7 +578,14 @@ def run_tests(path: str, backends: List[str], prefix: str, exts: List[str]):
         full_name = os.path.join(path, prefix)
         for filename, is_good in test_files:
             status_msg(filename, tests_ok + tests_bad + 1, tests_total)
-            is_ok, data = exec_test(full_name, filename, is_good, None, None)
+            is_ok, data = exec_test(
+                full_name,
+                filename,
+                is_good,
+                None,
+                None,
+                flags,
+            )
             if is_ok:
                 tests_ok += 1
                 print("OK")
@@ -580,6 +622,7 @@ def run_tests(path: str, backends: List[str], prefix: str, exts: List[str]):
                         is_good,
                         linker,
                         runner,
+                        flags,
                     )
                     if is_ok:
                         tests_ok += 1
@@ -681,7 +724,12 @@ def main() -> None:
         # executables were produced.
 
         # Run tests.
-        failure = not run_tests(path, backends, ns.s, ns.x)
+        # Run the whole testsuite once per optimization level, if any
+        levels = ns.O if ns.O else [None]
+        for level in levels:
+            flags = [] if level is None else [OPTIMIZATION_FLAGS[level]]
+            if not run_tests(path, backends, ns.s, ns.x, flags):
+                failure = True
 
     except TestingException as exc:
         failure = True
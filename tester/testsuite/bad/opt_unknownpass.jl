@@ -0,0 +1,6 @@
+// Valid program, rejected since `--passes` names an unknown pass
+
+int main() {
+    printInt(1);
+    return 0;
+}
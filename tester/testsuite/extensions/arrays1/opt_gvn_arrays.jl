@@ -0,0 +1,44 @@
+// Loads numbered by the global value numbering, from -O1. A load is only
+//  reused while no store nor impure call may have changed the memory
+
+void set(int[] t, int i, int v) {
+    t[i] = v;
+}
+
+int main() {
+    int[] t = new int[2];
+    t[0] = 1;
+
+    // Reused, nothing changed the element in between
+    int x = t[0];
+    int y = t[0];
+    printInt(x + y);
+
+    // Not reused across a store, even to another element
+    t[0] = 2;
+    printInt(t[0]);
+    t[1] = 7;
+    printInt(t[0] + t[1]);
+
+    // Not reused across an impure call modifying the array
+    int before = t[1];
+    set(t, 1, 9);
+    printInt(before);
+    printInt(t[1]);
+
+    // Stored value loaded back in a dominated block
+    t[0] = 4;
+    if (t.length == 2) {
+        printInt(t[0]);
+    }
+
+    // Not reused across a store in a loop
+    int i = 0;
+    while (i < 3) {
+        printInt(t[0]);
+        t[0] = t[0] + 1;
+        i++;
+    }
+    printInt(t[0]);
+    return 0;
+}
@@ -0,0 +1,49 @@
+// Array lengths and contents hoisted out of the loops that don't modify
+//  them, from -O1
+
+int sum(int[] t) {
+    int s = 0;
+    for (int x : t) {
+        s = s + x;
+    }
+    return s;
+}
+
+int main() {
+    int[] t = new int[5];
+    int i = 0;
+    while (i < t.length) {
+        t[i] = i * i;
+        i++;
+    }
+    printInt(sum(t));
+
+    // Array replaced in the loop, so its length isn't invariant
+    int[] u = new int[1];
+    int n = 0;
+    while (n < u.length) {
+        if (u.length < 4) {
+            u = new int[u.length + 1];
+        }
+        n++;
+    }
+    printInt(u.length);
+    printInt(n);
+
+    // Element stored in the loop, so its load isn't invariant
+    int[] c = new int[1];
+    int k = 0;
+    while (k < 5) {
+        c[0] = c[0] + k;
+        k++;
+    }
+    printInt(c[0]);
+
+    // Loop never entered
+    int[] e = new int[0];
+    for (int x : e) {
+        printInt(100 / x);
+    }
+    printInt(e.length);
+    return 0;
+}
@@ -0,0 +1,61 @@
+// Getters and setters inlined from -O2, the fields being loaded again after
+//  each store
+
+class Point {
+    int x;
+    int y;
+
+    int getX() {
+        return x;
+    }
+
+    int getY() {
+        return y;
+    }
+
+    void setX(int v) {
+        x = v;
+    }
+
+    void move(int dx, int dy) {
+        x = x + dx;
+        y = y + dy;
+    }
+
+    int norm1() {
+        return abs(self.getX()) + abs(self.getY());
+    }
+}
+
+int abs(int v) {
+    if (v < 0) {
+        return -v;
+    }
+    return v;
+}
+
+int main() {
+    Point p = new Point;
+    p.setX(3);
+    int i = 0;
+    int s = 0;
+    while (i < 4) {
+        s = s + p.getX();
+        p.move(1, -2);
+        i++;
+    }
+    printInt(s);
+    printInt(p.getX());
+    printInt(p.getY());
+    printInt(p.norm1());
+
+    int before = p.getX();
+    p.setX(100);
+    int after = p.getX();
+    printInt(before);
+    printInt(after);
+
+    Point q = new Point;
+    printInt(q.getY());
+    return 0;
+}
@@ -0,0 +1,105 @@
+// Method dispatch through the vtable at -O0, and devirtualized from -O1 when
+//  no subclass overrides the method
+
+class Animal {
+    int legs;
+
+    void init(int n) {
+        legs = n;
+    }
+
+    // Never overridden
+    int getLegs() {
+        return legs;
+    }
+
+    void speak() {
+        printString("...");
+    }
+
+    int weight() {
+        return 1;
+    }
+
+    // Calls through self, resolved by the dynamic type
+    void describe() {
+        self.speak();
+        printInt(self.weight());
+        printInt(self.getLegs());
+    }
+}
+
+class Dog extends Animal {
+    void speak() {
+        printString("woof");
+    }
+
+    int weight() {
+        return 20;
+    }
+}
+
+// Overrides a single method of its parent
+class Puppy extends Dog {
+    int weight() {
+        return 5;
+    }
+}
+
+class Cat extends Animal {
+    void speak() {
+        printString("meow");
+    }
+}
+
+int weigh(Animal a) {
+    return a.weight();
+}
+
+int main() {
+    Animal a = new Animal;
+    a.init(0);
+    a.describe();
+
+    // Overridden methods through a base class reference
+    Animal d = new Dog;
+    d.init(4);
+    d.describe();
+
+    // Two levels below the static type
+    Animal p = new Puppy;
+    p.init(4);
+    p.describe();
+
+    // Speak isn't overridden below Dog, weight is
+    Dog pd = new Puppy;
+    pd.speak();
+    printInt(pd.weight());
+
+    // Leaf class
+    Puppy pp = new Puppy;
+    printInt(pp.weight());
+
+    // Inherited from the base class
+    Cat c = new Cat;
+    c.init(4);
+    c.speak();
+    printInt(c.weight());
+    printInt(c.getLegs());
+
+    printInt(weigh(a) + weigh(d) + weigh(p));
+
+    // Dynamic type changing in a loop
+    Animal x = new Animal;
+    int i = 0;
+    while (i < 3) {
+        if (i == 1) {
+            x = new Dog;
+        } else if (i == 2) {
+            x = new Cat;
+        }
+        x.speak();
+        i++;
+    }
+    return 0;
+}
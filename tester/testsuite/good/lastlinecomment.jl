@@ -0,0 +1,6 @@
+int main() {
+    printString("no final newline");
+    return 0;
+}
+
+// The source ends on this comment, without a newline
\ No newline at end of file
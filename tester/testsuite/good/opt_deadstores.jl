@@ -0,0 +1,40 @@
+// Dead stores removed by the optimizer, whose impure right-hand sides must
+//  still run, in order
+
+int trace(int x) {
+    printInt(x);
+    return x;
+}
+
+int twice(int x) {
+    return 2 * x;
+}
+
+int main() {
+    // Overwritten before being read
+    int a = trace(1);
+    a = 2;
+    printInt(a);
+
+    // Never read
+    int b = twice(21);
+    int c = trace(3);
+    c++;
+
+    // Read in a loop, so kept
+    int d = 0;
+    int i = 0;
+    while (i < 3) {
+        d = d + twice(i);
+        i++;
+    }
+    printInt(d);
+
+    // Dead after the loop only
+    int e = 10;
+    while (e > 7) {
+        e--;
+    }
+    e = trace(4);
+    return 0;
+}
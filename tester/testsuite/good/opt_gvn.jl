@@ -0,0 +1,62 @@
+// Global value numbering, from -O1. The inputs are read so that they
+//  aren't known at compile time
+
+int sq(int x) {
+    return x * x;
+}
+
+int trace(int x) {
+    printInt(x);
+    return x;
+}
+
+// The second call has the same argument, so it reuses the first one
+int pureTwice(int a) {
+    return sq(a) + sq(a);
+}
+
+// Calls with different arguments are different values
+int pureDifferent(int a, int b) {
+    return sq(a) - sq(b);
+}
+
+// The impure call runs, and prints, twice
+int impureTwice(int a) {
+    return trace(a) + trace(a);
+}
+
+// The pure call is reused across the impure one
+int pureAroundImpure(int a) {
+    int x = sq(a);
+    trace(a);
+    return x + sq(a);
+}
+
+// Both branches compute the same invariants, hoisted before the loop and
+//  then merged
+int hoistedTwice(int n, int a, int b) {
+    int s = 0;
+    int i = 0;
+    while (i < n) {
+        if (i % 2 == 0) {
+            s = s + a * b + sq(a);
+        } else {
+            s = s - a * b + sq(a);
+        }
+        i++;
+    }
+    return s;
+}
+
+int main() {
+    int n = readInt();
+    int a = readInt();
+    int b = readInt();
+    printInt(pureTwice(a));
+    printInt(pureDifferent(a, b));
+    printInt(impureTwice(b));
+    printInt(pureAroundImpure(b));
+    printInt(hoistedTwice(n, a, b));
+    printInt(hoistedTwice(0, a, b));
+    return 0;
+}
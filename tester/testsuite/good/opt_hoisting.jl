@@ -0,0 +1,85 @@
+// Loop-invariant code motion, from -O1. The inputs are read so that they
+//  aren't known at compile time
+
+int sq(int x) {
+    return x * x;
+}
+
+int trace(int x) {
+    printInt(x);
+    return x;
+}
+
+int sumInvariant(int n, int a, int b) {
+    int s = 0;
+    int i = 0;
+    while (i < n) {
+        s = s + a * b + sq(a);
+        i++;
+    }
+    return s;
+}
+
+// The body, with its division, must not run when the loop isn't entered
+int guardedDiv(int n, int d) {
+    int s = 0;
+    int i = 0;
+    while (i < n) {
+        s = s + 100 / d;
+        i++;
+    }
+    return s;
+}
+
+int conditional(int n, int a) {
+    int s = 0;
+    int i = 0;
+    while (i < n) {
+        if (i % 2 == 0) {
+            s = s + (a + 1) * 3;
+        } else {
+            s = s - a;
+        }
+        i++;
+    }
+    return s;
+}
+
+// The impure call stays in the loop, and runs at each iteration
+int impureInLoop(int n) {
+    int s = 0;
+    int i = 0;
+    while (i < n) {
+        s = s + trace(n);
+        i++;
+    }
+    return s;
+}
+
+int nested(int n, int a) {
+    int s = 0;
+    int i = 0;
+    while (i < n) {
+        int j = 0;
+        while (j < n) {
+            s = s + a * 2 + i;
+            j++;
+        }
+        i++;
+    }
+    return s;
+}
+
+int main() {
+    int n = readInt();
+    int a = readInt();
+    int b = readInt();
+    int zero = readInt();
+    printInt(sumInvariant(n, a, b));
+    printInt(guardedDiv(zero, zero));
+    printInt(guardedDiv(n, a));
+    printInt(conditional(n, a));
+    printInt(impureInLoop(2));
+    printInt(nested(n, a));
+    return 0;
+}
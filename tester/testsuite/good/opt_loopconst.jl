@@ -0,0 +1,79 @@
+// Constants propagated across loops, from -O1
+
+int main() {
+    // Constant at each iteration, the other branch being dead
+    int x = 3;
+    int y = 0;
+    int i = 0;
+    while (i < 10) {
+        if (x == 3) {
+            y = y + x;
+        } else {
+            x = x + 1;
+        }
+        i++;
+    }
+    printInt(x);
+    printInt(y);
+
+    // Assigned the same constant in the loop
+    int k = 5;
+    int j = 0;
+    while (j < 4) {
+        k = 5;
+        j++;
+    }
+    printInt(k);
+
+    // Constant at the first iteration only
+    int a = 1;
+    int n = 0;
+    while (n < 5) {
+        if (a == 1) {
+            printInt(n);
+        }
+        a = a * 2;
+        n++;
+    }
+    printInt(a);
+
+    // Loop never entered
+    int z = 7;
+    while (false) {
+        z = 8;
+    }
+    printInt(z);
+
+    // Nested loops, the inner bound changing with the outer loop
+    int total = 0;
+    int p = 0;
+    while (p < 3) {
+        int q = 0;
+        while (q < p) {
+            total = total + q + 1;
+            q++;
+        }
+        p++;
+    }
+    printInt(total);
+
+    // Condition only known after some iterations
+    boolean done = false;
+    int m = 0;
+    while (!done) {
+        m++;
+        if (m == 6) {
+            done = true;
+        }
+    }
+    printInt(m);
+
+    double d = 1.5;
+    int r = 0;
+    while (r < 2) {
+        d = d * 2.0;
+        r++;
+    }
+    printDouble(d);
+    return 0;
+}
@@ -0,0 +1,20 @@
+// Only the passes given by `--passes` run, here without the dead store
+//  elimination. The dead stores are kept, and their values still computed
+
+int trace(int x) {
+    printInt(x);
+    return x;
+}
+
+int main() {
+    int a = 2 * 3 + 1;
+    int b = trace(a);
+    b = trace(a + 1);
+    int c = a * 0;
+    if (true) {
+        printInt(a);
+    } else {
+        printInt(c);
+    }
+    return 0;
+}
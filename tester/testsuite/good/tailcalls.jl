@@ -0,0 +1,72 @@
+// Tail calls. The self tail recursion is deep enough to overflow the stack
+//  unless it runs in constant stack space, as a loop from -O1 and as a
+//  musttail call at -O0
+
+int sumTo(int n, int acc) {
+    if (n == 0) {
+        return acc;
+    }
+    int next = (acc + n) % 1000007;
+    return sumTo(n - 1, next);
+}
+
+void countDown(int n) {
+    if (n == 0) {
+        printString("liftoff");
+        return;
+    }
+    countDown(n - 1);
+    return;
+}
+
+// Mutual recursion, each call being a tail call to the other function
+boolean isEven(int n) {
+    if (n == 0) {
+        return true;
+    }
+    return isOdd(n - 1);
+}
+
+boolean isOdd(int n) {
+    if (n == 0) {
+        return false;
+    }
+    return isEven(n - 1);
+}
+
+// Tail call to a function of another prototype
+int scaled(int n) {
+    return scale(n, 3.0);
+}
+
+int scale(int n, double factor) {
+    double x = factor;
+    int res = 0;
+    while (x > 0.5) {
+        res = res + n;
+        x = x - 1.0;
+    }
+    return res;
+}
+
+// Not a tail call, the result being used after the call
+int fact(int n) {
+    if (n <= 1) {
+        return 1;
+    }
+    return n * fact(n - 1);
+}
+
+int main() {
+    printInt(sumTo(10000000, 0));
+    countDown(100000);
+    if (isEven(10000)) {
+        printString("even");
+    }
+    if (isOdd(7777)) {
+        printString("odd");
+    }
+    printInt(scaled(14));
+    printInt(fact(10));
+    return 0;
+}
@@ -0,0 +1,18 @@
+// Self tail calls are turned into loops, so they don't make their function
+//  impure, and the unused calls of such a pure function are removed. The
+//  removed call would divide by zero, the divisor being read so that it
+//  isn't known at compile time
+
+int divideAtEnd(int n, int d) {
+    if (n == 0) {
+        return 100 / d;
+    }
+    return divideAtEnd(n - 1, d);
+}
+
+int main() {
+    int zero = readInt();
+    divideAtEnd(3, zero);
+    printInt(divideAtEnd(3, 4));
+    return 0;
+}